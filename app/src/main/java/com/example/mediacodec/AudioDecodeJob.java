@@ -0,0 +1,604 @@
+package com.example.mediacodec;
+
+import android.media.AudioFormat;
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.util.Log;
+
+import com.example.mediacodec.core.adts.AdtsHeader;
+import com.example.mediacodec.core.adts.AdtsIndex;
+import com.example.mediacodec.core.adts.AdtsRangeSource;
+import com.example.mediacodec.core.checkpoint.Checkpoint;
+import com.example.mediacodec.core.checkpoint.ResumableOutput;
+import com.example.mediacodec.core.codec.CodecBudget;
+import com.example.mediacodec.core.dsp.PcmConverter;
+import com.example.mediacodec.core.dsp.SampleConverter;
+import com.example.mediacodec.core.dsp.TransformingDataSink;
+import com.example.mediacodec.core.io.ChannelDataSink;
+import com.example.mediacodec.core.io.DataSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.job.TranscodeJob;
+import com.example.mediacodec.core.loudness.LoudnessInfo;
+import com.example.mediacodec.core.loudness.LoudnessMeter;
+import com.example.mediacodec.core.loudness.LoudnessNormalizer;
+import com.example.mediacodec.core.loudness.LoudnessSink;
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.metrics.MeteredDataSink;
+import com.example.mediacodec.core.metrics.MetricsRegistry;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.pcm.PcmFormat;
+import com.example.mediacodec.core.pcm.PcmRangeClipper;
+import com.example.mediacodec.core.pipeline.PipelinedDecoder;
+import com.example.mediacodec.core.pipeline.SampleSource;
+import com.example.mediacodec.core.pipeline.SerialDecoder;
+import com.example.mediacodec.core.pipeline.StageStats;
+import com.example.mediacodec.core.waveform.PeakAccumulator;
+import com.example.mediacodec.core.waveform.PeakPyramid;
+import com.example.mediacodec.core.waveform.PeakSink;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Locale;
+
+/**
+ * 把音频文件的第一条音轨解码成PCM，写入文件或指定的DataSink。
+ * 设置了时间区间时只解码区间内的数据：ADTS文件通过帧索引直接定位，其他格式用MediaExtractor.seekTo。
+ * 设置了输出格式时，解码器输出的PCM先转换成该格式（重采样、混合声道）再写入。
+ * 可续接时从检查点记录的输出时间起按区间解码，接在part文件已有的数据之后。
+ * 需要波形摘要时在同一遍解码中累加峰值，完成后写入音频文件旁的sidecar（见{@link PeakPyramid}）。
+ * 需要响度测量时同样在解码中测量输出，完成后写入PCM文件旁的sidecar（见{@link LoudnessInfo}），供编码时归一化；
+ * 也可以在解码时直接单遍归一化（见{@link LoudnessNormalizer}）
+ */
+class AudioDecodeJob implements TranscodeJob {
+    private static final String TAG = "MediaCodec";
+    private static final String PREFIX_AUDIO = "audio/";
+    //流水线模式下单个压缩样本和单块PCM的最大字节数：8声道、每帧2048个采样（HE-AAC）
+    private static final int PIPELINE_INPUT_SIZE = 16 * 1024;
+    private static final int PIPELINE_OUTPUT_SIZE = 8 * 2048 * 2;
+    //区间解码时MediaExtractor从区间起点之前多少微秒开始读，用于预热解码器（约4帧AAC）
+    private static final long RANGE_PRIMING_US = 100000;
+    private static final String SUFFIX_ADTS = ".aac";
+    //音轨格式中编码器延迟和填充的采样数，Android 11起才有MediaFormat.KEY_ENCODER_DELAY/KEY_ENCODER_PADDING常量
+    static final String KEY_ENCODER_DELAY = "encoder-delay";
+    static final String KEY_ENCODER_PADDING = "encoder-padding";
+    //可续接时每输出这么多微秒的PCM记录一次检查点
+    private static final long CHECKPOINT_INTERVAL_US = 10000000;
+    //续接时区间的终点，表示一直解码到文件末尾；再大换算成帧数时会溢出
+    private static final long OPEN_END_US = Long.MAX_VALUE / 1000000;
+    //波形摘要第0层每块的帧数，44.1kHz下约5.8ms
+    private static final int PEAK_BLOCK_FRAMES = 256;
+
+    private final String mAudioPath;
+    private final String mPcmPath;
+    private final DataSink mSink;
+    private final int mFlushThreshold;
+    private boolean mCallbackMode = true;
+    private boolean mPipelined;
+    private MetricsRegistry mMetricsRegistry;
+    private long mStartUs;
+    private long mEndUs = -1;
+    private PcmFormat mOutputFormat;
+    private DirectBufferPool mBufferPool;
+    private CodecBudget mCodecBudget;
+    private boolean mKeepEncoderDelay;
+    private boolean mResumable;
+    private boolean mWaveformPeaks;
+    private boolean mLoudnessAnalysis;
+    //单遍归一化的目标响度，NaN表示不归一化
+    private double mNormalizeTargetLufs = Double.NaN;
+    private double mNormalizeCeilingDbtp;
+
+    AudioDecodeJob(String audioPath, String pcmPath) {
+        this(audioPath, pcmPath, ChannelDataSink.DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    /**
+     * @param flushThreshold 暂存的PCM数据达到该字节数时才写入文件
+     */
+    AudioDecodeJob(String audioPath, String pcmPath, int flushThreshold) {
+        this.mAudioPath = audioPath;
+        this.mPcmPath = pcmPath;
+        this.mSink = null;
+        this.mFlushThreshold = flushThreshold;
+    }
+
+    /**
+     * 解码数据写入指定的sink，例如边解码边播放时的RingBufferSink
+     */
+    AudioDecodeJob(String audioPath, DataSink sink) {
+        this.mAudioPath = audioPath;
+        this.mPcmPath = null;
+        this.mSink = sink;
+        this.mFlushThreshold = 0;
+    }
+
+    /**
+     * 是否使用MediaCodec.setCallback的回调模式，默认为true
+     */
+    void setCodecCallbackMode(boolean callbackMode) {
+        this.mCallbackMode = callbackMode;
+    }
+
+    /**
+     * 是否把读取、解码和写入分到三个线程上流水线执行，默认为false。
+     * 写入较慢（例如存储卡卡顿）时，解码器不会因为等待写入而停顿。
+     * 格式转换、响度处理和检查点都在写入阶段进行；区间解码需要按输出格式裁剪，仍然串行解码。
+     */
+    void setPipelined(boolean pipelined) {
+        this.mPipelined = pipelined;
+    }
+
+    /**
+     * 任务运行期间在registry中登记指标，结束时移除
+     */
+    void setMetricsRegistry(MetricsRegistry registry) {
+        this.mMetricsRegistry = registry;
+    }
+
+    /**
+     * 只解码[startUs, endUs)区间内的数据，输出与完整解码时同一区间的PCM一致。
+     * 区间解码不使用流水线模式
+     */
+    void setRange(long startUs, long endUs) {
+        if (startUs < 0 || endUs <= startUs) {
+            throw new IllegalArgumentException("invalid range: " + startUs + ".." + endUs);
+        }
+        this.mStartUs = startUs;
+        this.mEndUs = endUs;
+    }
+
+    /**
+     * 输出统一转换成format（16位PCM），不论源文件的采样率和声道数。
+     * 为null（默认）时原样输出解码器的格式。设置了输出格式时不使用流水线模式，以便跟随解码器的输出格式变化
+     */
+    void setOutputFormat(PcmFormat format) {
+        this.mOutputFormat = format;
+    }
+
+    /**
+     * 为true时配置解码器前把编码器延迟和填充置0，解码器输出全部采样，由调用方按音轨格式自行裁剪，
+     * 例如无缝播放列表在拼接处裁剪。默认false，是否裁剪由解码器决定
+     */
+    void setKeepEncoderDelay(boolean keep) {
+        this.mKeepEncoderDelay = keep;
+    }
+
+    /**
+     * 是否可续接，默认为false，只用于输出到文件且没有设置区间的任务。
+     * 为true时PCM先写入输出文件旁的part文件，每输出约10秒和任务取消时记录检查点（见{@link ResumableOutput}），
+     * 同样的任务再次运行时从检查点的输出时间继续解码，完成后改名为输出文件。
+     * 设置了需要重采样的输出格式时，续接处有不超过重采样滤波器长度的过渡，与完整解码的输出不完全相同
+     */
+    void setResumable(boolean resumable) {
+        this.mResumable = resumable;
+    }
+
+    /**
+     * 是否在解码的同时生成波形摘要，默认为false，需要设置输出格式。
+     * 完整解码成功后写入音频文件旁的{@link PeakPyramid#SIDECAR_SUFFIX}文件；区间解码和从检查点续接的解码
+     * 只有部分输出，不生成。sidecar写入失败不影响解码结果
+     */
+    void setWaveformPeaks(boolean peaks) {
+        this.mWaveformPeaks = peaks;
+    }
+
+    /**
+     * 是否在解码的同时测量输出的响度，默认为false，需要设置输出格式并输出到文件。
+     * 完整解码成功后写入PCM文件旁的{@link LoudnessInfo#SIDECAR_SUFFIX}文件，编码时据此计算归一化的增益；
+     * 区间解码和从检查点续接的解码只有部分输出，不生成
+     */
+    void setLoudnessAnalysis(boolean analysis) {
+        this.mLoudnessAnalysis = analysis;
+    }
+
+    /**
+     * 解码时单遍归一化到targetLufs，输出峰值不超过ceilingDbtp，需要设置输出格式，不能与可续接同时使用。
+     * 用于边解码边播放等没有机会事先测量的场合，开头几秒的响度还在调整；输出到文件再编码时应使用两遍处理
+     */
+    void setLoudnessNormalization(double targetLufs, double ceilingDbtp) {
+        this.mNormalizeTargetLufs = targetLufs;
+        this.mNormalizeCeilingDbtp = ceilingDbtp;
+    }
+
+    /**
+     * 写文件的暂存区、流水线和格式转换的buffer从pool中借用，任务结束时归还
+     */
+    void setBufferPool(DirectBufferPool pool) {
+        this.mBufferPool = pool;
+    }
+
+    /**
+     * 创建解码器前从budget取得一个名额，解码结束后归还，与其他任务共用设备的实例数限制
+     */
+    void setCodecBudget(CodecBudget budget) {
+        this.mCodecBudget = budget;
+    }
+
+    /**
+     * 打开音频文件并选中第一条音轨
+     * @throws IOException 文件无法打开或没有音轨
+     */
+    static MediaExtractor openAudioTrack(String audioPath) throws IOException {
+        //此类可分离视频文件的音轨和视频轨道
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(audioPath);
+            int trackCount = extractor.getTrackCount();
+            Log.d(TAG, "trackCount：" + trackCount);
+            for (int i = 0; i < trackCount; i++) {
+                if (extractor.getTrackFormat(i).
+                        getString(MediaFormat.KEY_MIME).startsWith(PREFIX_AUDIO)) {
+                    extractor.selectTrack(i);
+                    return extractor;
+                }
+            }
+        } catch (IOException e) {
+            extractor.release();
+            throw e;
+        }
+        extractor.release();
+        throw new IOException("没有音轨：" + audioPath);
+    }
+
+    /**
+     * 读取第一条音轨的MediaFormat
+     */
+    static MediaFormat readAudioFormat(String audioPath) throws IOException {
+        MediaExtractor extractor = openAudioTrack(audioPath);
+        try {
+            return extractor.getTrackFormat(extractor.getSampleTrackIndex());
+        } finally {
+            extractor.release();
+        }
+    }
+
+    @Override
+    public void run(JobContext context) throws Exception {
+        if (mCodecBudget == null) {
+            decode(context);
+            return;
+        }
+        if (!mCodecBudget.acquire(1, context)) {
+            return;
+        }
+        try {
+            decode(context);
+        } finally {
+            mCodecBudget.release(1);
+        }
+    }
+
+    private void decode(JobContext context) throws Exception {
+        MediaExtractor extractor = null;
+        FileChannel adtsChannel = null;
+        MediaCodecDriver driver = null;
+        DataSink sink = null;
+        ResumableOutput output = null;
+        long startUs = mStartUs;
+        long endUs = mEndUs;
+        TranscodeMetrics metrics = mMetricsRegistry != null
+                ? mMetricsRegistry.register("decode " + mAudioPath) : new TranscodeMetrics(mAudioPath);
+        //进度回调从指标中采样帧数和吞吐量
+        context.setMetrics(metrics);
+        try {
+            if (mWaveformPeaks && mOutputFormat == null) {
+                throw new IllegalStateException("waveform peaks require an output format");
+            }
+            boolean normalize = !Double.isNaN(mNormalizeTargetLufs);
+            if ((mLoudnessAnalysis || normalize) && mOutputFormat == null) {
+                throw new IllegalStateException("loudness processing requires an output format");
+            }
+            if (mLoudnessAnalysis && mPcmPath == null) {
+                throw new IllegalStateException("loudness analysis requires file output");
+            }
+            if (normalize && mResumable) {
+                //归一化的增益取决于之前全部的输入，续接后无法恢复
+                throw new IllegalStateException("loudness normalization is not resumable");
+            }
+            if (mResumable) {
+                if (mPcmPath == null || endUs > 0) {
+                    throw new IllegalStateException("resumable decode requires file output without range");
+                }
+                output = ResumableOutput.open(new File(mPcmPath), getResumeConfig());
+                Checkpoint resumePoint = output.getResumePoint();
+                if (resumePoint != null) {
+                    //已输出的部分不再解码，从检查点的输出时间按区间解码到文件末尾
+                    Log.d(TAG, "从" + resumePoint.getInputPosition() + "us续接，已输出"
+                            + resumePoint.getOutputBytes() + "字节");
+                    startUs = resumePoint.getInputPosition();
+                    endUs = OPEN_END_US;
+                }
+            }
+            boolean range = endUs > 0;
+            SampleSource source;
+            MediaFormat format;
+            long durationUs;
+            if (range && mAudioPath.toLowerCase(Locale.US).endsWith(SUFFIX_ADTS)) {
+                //ADTS文件没有索引，用帧索引（sidecar中已有时直接读取）定位到区间起点之前的几帧
+                AdtsIndex index = AdtsIndex.load(new File(mAudioPath));
+                adtsChannel = new FileInputStream(mAudioPath).getChannel();
+                source = new AdtsRangeSource(adtsChannel, index, startUs, endUs);
+                format = createAdtsFormat(index.getHeader());
+                durationUs = index.getDurationUs();
+            } else {
+                extractor = openAudioTrack(mAudioPath);
+                //直接从音频文件中得到音轨的MediaFormat
+                format = extractor.getTrackFormat(extractor.getSampleTrackIndex());
+                durationUs = format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : 0;
+                if (range) {
+                    extractor.seekTo(Math.max(0, startUs - RANGE_PRIMING_US), MediaExtractor.SEEK_TO_PREVIOUS_SYNC);
+                }
+                source = new ExtractorSampleSource(extractor);
+            }
+            //初始化音频解码器,并配置解码器属性
+            MediaCodec mediaCodec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
+            driver = MediaCodecDriver.create(mediaCodec, mCallbackMode);
+            if (mKeepEncoderDelay) {
+                format.setInteger(KEY_ENCODER_DELAY, 0);
+                format.setInteger(KEY_ENCODER_PADDING, 0);
+            }
+            driver.configure(format, 0);
+
+            //解码数据直接从outputBuffer经FileChannel写入文件，攒够mFlushThreshold字节才写一次
+            DataSink baseSink;
+            if (mSink != null) {
+                baseSink = mSink;
+            } else {
+                FileChannel channel = output != null ? output.getChannel() : new FileOutputStream(mPcmPath).getChannel();
+                baseSink = new ChannelDataSink(channel, mFlushThreshold, mBufferPool);
+            }
+            //波形摘要按转换后的输出格式累加
+            PeakSink peaks = null;
+            if (mWaveformPeaks && !range) {
+                PeakAccumulator accumulator = new PeakAccumulator(mOutputFormat, PEAK_BLOCK_FRAMES,
+                        mOutputFormat.usToFrames(durationUs));
+                peaks = new PeakSink(baseSink, accumulator);
+                baseSink = peaks;
+            }
+            LoudnessSink loudness = null;
+            if (mLoudnessAnalysis && !range) {
+                loudness = new LoudnessSink(baseSink, new LoudnessMeter(mOutputFormat));
+                baseSink = loudness;
+            }
+            if (normalize) {
+                //测量和波形摘要都针对归一化之后的输出
+                baseSink = new TransformingDataSink(baseSink,
+                        new LoudnessNormalizer(mOutputFormat, mNormalizeTargetLufs, mNormalizeCeilingDbtp), mBufferPool);
+            }
+            //先按音轨格式转换，解码器报告实际输出格式后再更换
+            TransformingDataSink converting = mOutputFormat != null
+                    ? new TransformingDataSink(baseSink, createConverter(format), mBufferPool) : null;
+            sink = new MeteredDataSink(converting != null ? converting : baseSink, metrics);
+            //part文件中PCM的格式，用于把已写入的字节数换算成续接的时间
+            PcmFormat fileFormat = mOutputFormat != null ? mOutputFormat : createPcmFormat(format);
+            DecodeListener listener;
+            if (mPipelined && !range) {
+                //格式转换和检查点都在流水线的写入阶段进行
+                listener = new DecodeListener(null, driver, sink, converting, output, fileFormat, -1, endUs);
+                runPipelined(source, driver, sink, listener, durationUs, metrics, context);
+            } else {
+                if (mPipelined) {
+                    Log.d(TAG, mAudioPath + " 区间解码需要按输出格式裁剪，不使用流水线");
+                }
+                SerialDecoder decoder = new SerialDecoder(source, driver, sink);
+                decoder.setMetrics(metrics);
+                if (range) {
+                    //区间解码时丢弃预热部分和区间之后的输出
+                    decoder.setClipper(createClipper(format, startUs, endUs));
+                    decoder.setInputEndUs(endUs);
+                    decoder.setProgressRange(startUs,
+                            (durationUs > 0 ? Math.min(endUs, durationUs) : endUs) - startUs);
+                } else {
+                    decoder.setProgressRange(0, durationUs);
+                }
+                listener = new DecodeListener(decoder, driver, sink, converting, output, fileFormat,
+                        range ? startUs : -1, endUs);
+                decoder.setListener(listener);
+                //启动MediaCodec，等待传入数据
+                decoder.run(context);
+            }
+            if (output != null && context.isCancelled()) {
+                //取消时记下已写入的位置，保留part文件和检查点
+                listener.checkpoint();
+            }
+            sink.close();
+            sink = null;
+            if (output != null && !context.isCancelled()) {
+                output.commit();
+            }
+            if (peaks != null && !context.isCancelled()) {
+                savePeaks(peaks.getAccumulator());
+            }
+            if (loudness != null && !context.isCancelled()) {
+                saveLoudness(loudness.getMeter());
+            }
+        } finally {
+            if (driver != null) {
+                driver.release();
+            }
+            if (extractor != null) {
+                extractor.release();
+            }
+            IoUtils.closeQuietly(adtsChannel);
+            IoUtils.closeQuietly(sink);
+            IoUtils.closeQuietly(output);
+            if (mMetricsRegistry != null) {
+                mMetricsRegistry.unregister(metrics);
+            }
+        }
+    }
+
+    /**
+     * 读取、解码、写入分三个线程执行。取消时正常返回，此时写入阶段已结束，可以记录检查点
+     */
+    private void runPipelined(SampleSource source, MediaCodecDriver driver, DataSink sink, DecodeListener listener,
+                              long durationUs, TranscodeMetrics metrics, JobContext context) throws Exception {
+        PipelinedDecoder decoder = new PipelinedDecoder(source, driver, sink,
+                PipelinedDecoder.DEFAULT_BUFFER_COUNT, PIPELINE_INPUT_SIZE, PIPELINE_OUTPUT_SIZE, mBufferPool);
+        decoder.setDurationUs(durationUs);
+        decoder.setMetrics(metrics);
+        decoder.setListener(listener);
+        try {
+            decoder.run(context);
+        } catch (Exception e) {
+            if (!context.isCancelled()) {
+                throw e;
+            }
+        } finally {
+            for (StageStats stats : decoder.getStats()) {
+                Log.d(TAG, mAudioPath + " " + stats);
+            }
+        }
+    }
+
+    private void savePeaks(PeakAccumulator accumulator) {
+        PeakPyramid pyramid = accumulator.finish();
+        if (pyramid == null) {
+            return;
+        }
+        try {
+            pyramid.save(new File(mAudioPath));
+            Log.d(TAG, mAudioPath + " 波形摘要：" + pyramid.getLevelCount() + "层，第0层"
+                    + pyramid.getBlockCount(0) + "块");
+        } catch (IOException e) {
+            //不影响解码结果，下次完整解码时再生成
+            Log.w(TAG, "不能写入波形摘要：" + mAudioPath, e);
+        }
+    }
+
+    private void saveLoudness(LoudnessMeter meter) {
+        LoudnessInfo info = meter.getInfo();
+        try {
+            info.save(new File(mPcmPath));
+            Log.d(TAG, mPcmPath + " 响度：" + info);
+        } catch (IOException e) {
+            //编码时没有sidecar会重新测量一遍
+            Log.w(TAG, "不能写入响度：" + mPcmPath, e);
+        }
+    }
+
+    /**
+     * 跟随解码器的输出格式更换裁剪器和格式转换；可续接时每输出CHECKPOINT_INTERVAL_US记录一次检查点。
+     * 流水线解码时在写入阶段的线程中调用，mDecoder为null（不做区间解码）
+     */
+    private class DecodeListener implements SerialDecoder.Listener {
+        private final SerialDecoder mDecoder;
+        private final MediaCodecDriver mDriver;
+        private final DataSink mSink;
+        private final TransformingDataSink mConverting;
+        private final ResumableOutput mOutput;
+        //区间起点，不是区间解码时为-1
+        private final long mRangeStartUs;
+        private final long mRangeEndUs;
+        private PcmFormat mFileFormat;
+        private long mCheckpointUs;
+
+        DecodeListener(SerialDecoder decoder, MediaCodecDriver driver, DataSink sink, TransformingDataSink converting,
+                       ResumableOutput output, PcmFormat fileFormat, long rangeStartUs, long rangeEndUs) {
+            this.mDecoder = decoder;
+            this.mDriver = driver;
+            this.mSink = sink;
+            this.mConverting = converting;
+            this.mOutput = output;
+            this.mFileFormat = fileFormat;
+            this.mRangeStartUs = rangeStartUs;
+            this.mRangeEndUs = rangeEndUs;
+            this.mCheckpointUs = Math.max(0, rangeStartUs);
+        }
+
+        @Override
+        public void onOutputFormatChanged() throws IOException {
+            MediaFormat outputFormat = mDriver.getOutputFormat();
+            Log.d(TAG, "解码输出格式：" + outputFormat);
+            if (mRangeStartUs >= 0) {
+                //HE-AAC的输出采样率是ADTS头部中的两倍，按实际输出格式裁剪
+                mDecoder.setClipper(createClipper(outputFormat, mRangeStartUs, mRangeEndUs));
+            }
+            if (mConverting != null) {
+                mConverting.setTransform(createConverter(outputFormat));
+            }
+            if (mOutputFormat == null) {
+                mFileFormat = createPcmFormat(outputFormat);
+            }
+        }
+
+        @Override
+        public void onOutputWritten(long presentationTimeUs) throws IOException {
+            if (mOutput != null && presentationTimeUs - mCheckpointUs >= CHECKPOINT_INTERVAL_US) {
+                checkpoint();
+                mCheckpointUs = presentationTimeUs;
+            }
+        }
+
+        /**
+         * 把sink中暂存的数据写入part文件后记录检查点，续接时间由part文件的字节数换算。
+         * 重采样器中还没有输出的尾部不计入，续接时重新解码
+         */
+        void checkpoint() throws IOException {
+            //取消时线程已被中断，ResumableOutput在写入期间清除中断状态
+            long frames = mOutput.flush(mSink) / mFileFormat.getBytesPerFrame();
+            mOutput.checkpoint(mFileFormat.framesToUs(frames));
+        }
+    }
+
+    /**
+     * 从解码器输出格式到mOutputFormat的转换，格式相同时返回null（直接透传）
+     */
+    private PcmConverter createConverter(MediaFormat format) {
+        return createConverter(mAudioPath, format, mOutputFormat);
+    }
+
+    /**
+     * 从解码器输出格式format到outputFormat的转换，格式相同时返回null（直接透传）
+     * @param name 用于日志
+     */
+    static PcmConverter createConverter(String name, MediaFormat format, PcmFormat outputFormat) {
+        int encoding = SampleConverter.ENCODING_PCM_16BIT;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N && format.containsKey(MediaFormat.KEY_PCM_ENCODING)
+                && format.getInteger(MediaFormat.KEY_PCM_ENCODING) == AudioFormat.ENCODING_PCM_FLOAT) {
+            encoding = SampleConverter.ENCODING_PCM_FLOAT;
+        }
+        PcmConverter converter = new PcmConverter(format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                format.getInteger(MediaFormat.KEY_CHANNEL_COUNT), encoding,
+                outputFormat.getSampleRate(), outputFormat.getChannelCount(), SampleConverter.ENCODING_PCM_16BIT);
+        Log.d(TAG, name + " " + converter);
+        return converter.isIdentity() ? null : converter;
+    }
+
+    private static PcmRangeClipper createClipper(MediaFormat format, long startUs, long endUs) {
+        return new PcmRangeClipper(createPcmFormat(format), startUs, endUs);
+    }
+
+    private static PcmFormat createPcmFormat(MediaFormat format) {
+        return new PcmFormat(format.getInteger(MediaFormat.KEY_SAMPLE_RATE),
+                format.getInteger(MediaFormat.KEY_CHANNEL_COUNT));
+    }
+
+    /**
+     * 输入文件或输出格式变化时检查点作废
+     */
+    private String getResumeConfig() {
+        File audio = new File(mAudioPath);
+        return String.format(Locale.US, "decode %s %d %d %s %b", mAudioPath, audio.length(), audio.lastModified(),
+                mOutputFormat, mKeepEncoderDelay);
+    }
+
+    /**
+     * 直接读取ADTS帧时没有MediaExtractor给出的格式，由ADTS头部生成AudioSpecificConfig作为csd-0
+     */
+    private static MediaFormat createAdtsFormat(AdtsHeader header) {
+        MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC,
+                header.getSampleRate(), header.getChannelCount());
+        ByteBuffer config = ByteBuffer.allocate(2);
+        header.writeAudioSpecificConfig(config);
+        config.flip();
+        format.setByteBuffer("csd-0", config);
+        return format;
+    }
+}
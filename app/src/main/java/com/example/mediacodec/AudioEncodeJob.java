@@ -0,0 +1,610 @@
+package com.example.mediacodec;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.util.Log;
+
+import com.example.mediacodec.core.adts.AdtsFrameScanner;
+import com.example.mediacodec.core.adts.AdtsHeader;
+import com.example.mediacodec.core.adts.AdtsSink;
+import com.example.mediacodec.core.cache.OutputCache;
+import com.example.mediacodec.core.dsp.PcmGain;
+import com.example.mediacodec.core.checkpoint.Checkpoint;
+import com.example.mediacodec.core.checkpoint.ResumableOutput;
+import com.example.mediacodec.core.codec.CodecBudget;
+import com.example.mediacodec.core.codec.EncodeProfile;
+import com.example.mediacodec.core.io.AacSink;
+import com.example.mediacodec.core.io.ChannelDataSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.job.TranscodeJob;
+import com.example.mediacodec.core.loudness.LoudnessInfo;
+import com.example.mediacodec.core.loudness.LoudnessMeter;
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.metrics.MeteredAacSink;
+import com.example.mediacodec.core.metrics.MetricsRegistry;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.pcm.MappedPcmSource;
+import com.example.mediacodec.core.mp4.Mp4Writer;
+import com.example.mediacodec.core.pcm.PcmSource;
+import com.example.mediacodec.core.pipeline.SerialEncoder;
+import com.example.mediacodec.core.segment.Segment;
+import com.example.mediacodec.core.segment.SegmentEncoder;
+import com.example.mediacodec.core.segment.SegmentPlanner;
+import com.example.mediacodec.core.segment.SegmentedEncoder;
+import com.example.mediacodec.core.silence.SilenceDetector;
+import com.example.mediacodec.core.silence.SilenceTrimOptions;
+import com.example.mediacodec.core.silence.TrimPlan;
+import com.example.mediacodec.core.silence.TrimmedPcmSource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 把PCM文件编码成AAC文件：输出路径以.m4a或.mp4结尾时写MP4容器，否则写ADTS裸流。
+ * 设置了目标响度时按PCM的响度（解码时保存的sidecar，没有时先测量一遍）算出固定增益，送入编码器前乘上。
+ * 设置了静音裁剪时先检测一遍静音，编码器只读取保留的部分，去掉的各段写入输出文件旁的JSON文件
+ */
+class AudioEncodeJob implements TranscodeJob {
+    private static final String TAG = "MediaCodec";
+    //分段编码时每段的时长（秒）
+    private static final int SEGMENT_SECONDS = 10;
+    //续接输出为MP4时，封装过程中的临时文件后缀
+    private static final String REMUX_SUFFIX = ".remux";
+    //静音裁剪时记录去掉的各段的JSON文件后缀
+    static final String SILENCE_MAP_SUFFIX = ".silence.json";
+    //静音裁剪记录在输出缓存中的键后缀
+    private static final String SILENCE_MAP_CACHE_SUFFIX = "-silence";
+
+    private final String mPcmPath;
+    private final String mAudioPath;
+    private boolean mCallbackMode = true;
+    private boolean mFastStart = true;
+    private int mParallelism = 1;
+    private boolean mResumable;
+    private EncodeProfile mProfile = EncodeProfile.DEFAULT;
+    private OutputCache mCache;
+    private MetricsRegistry mMetricsRegistry;
+    private DirectBufferPool mBufferPool;
+    private CodecBudget mCodecBudget;
+    //目标响度，NaN表示不归一化
+    private double mLoudnessTargetLufs = Double.NaN;
+    private double mLoudnessCeilingDbtp;
+    //本次编码使用的线性增益，run开始时确定
+    private float mGain = 1f;
+    private SilenceTrimOptions mSilenceTrim;
+    //本次编码的裁剪方案，不裁剪时为null，run开始时确定
+    private TrimPlan mTrimPlan;
+
+    AudioEncodeJob(String pcmPath, String audioPath) {
+        this.mPcmPath = pcmPath;
+        this.mAudioPath = audioPath;
+    }
+
+    /**
+     * 编码参数，默认为{@link EncodeProfile#DEFAULT}。PCM文件没有头部，按profile的采样率和声道数解释
+     */
+    void setProfile(EncodeProfile profile) {
+        this.mProfile = profile;
+    }
+
+    /**
+     * 设置后先按输入文件内容和编码参数查找缓存，命中时直接复制缓存的结果；编码完成后把结果存入缓存
+     */
+    void setOutputCache(OutputCache cache) {
+        this.mCache = cache;
+    }
+
+    /**
+     * 是否使用MediaCodec.setCallback的回调模式，默认为true
+     */
+    void setCodecCallbackMode(boolean callbackMode) {
+        this.mCallbackMode = callbackMode;
+    }
+
+    /**
+     * 输出MP4时是否把moov写在mdat之前，默认为true。
+     * 为true时编码期间AAC数据先写入输出文件旁的临时文件，结束时再复制到moov之后
+     */
+    void setFastStart(boolean fastStart) {
+        this.mFastStart = fastStart;
+    }
+
+    /**
+     * 同时使用的编码器实例数，默认为1。大于1时把PCM分段并发编码，再按顺序拼接输出
+     */
+    void setParallelism(int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.mParallelism = parallelism;
+    }
+
+    /**
+     * 是否可续接，默认为false。为true时总是分段编码，每段写完后在输出文件旁记录检查点（见{@link ResumableOutput}），
+     * 任务被取消或进程被杀后，同样的任务再次运行时从最后写完的一段继续
+     */
+    void setResumable(boolean resumable) {
+        this.mResumable = resumable;
+    }
+
+    /**
+     * 把积分响度归一化到targetLufs，同时保证真峰值不超过ceilingDbtp（两遍处理的第二遍，见{@link LoudnessInfo#gainDb}）。
+     * 响度取自PCM文件旁的sidecar（解码时设置了响度测量），没有或已过期时先完整读一遍PCM测量并保存。
+     * 增益对整个文件固定，分段编码和续接的结果与一次编码相同
+     */
+    void setLoudnessTarget(double targetLufs, double ceilingDbtp) {
+        this.mLoudnessTargetLufs = targetLufs;
+        this.mLoudnessCeilingDbtp = ceilingDbtp;
+    }
+
+    /**
+     * 编码前裁剪静音，为null（默认）时不裁剪。开头结尾的静音和中间过长的静音不送入编码器，
+     * 编码时间和输出大小按去掉的比例减少；去掉的各段在源PCM和输出中的位置写入输出文件旁的
+     * {@link #SILENCE_MAP_SUFFIX}文件（见{@link TrimPlan#toJson}）
+     */
+    void setSilenceTrimming(SilenceTrimOptions options) {
+        this.mSilenceTrim = options;
+    }
+
+    /**
+     * 任务运行期间在registry中登记指标，结束时移除
+     */
+    void setMetricsRegistry(MetricsRegistry registry) {
+        this.mMetricsRegistry = registry;
+    }
+
+    /**
+     * 写ADTS文件的暂存区从pool中借用，任务结束时归还
+     */
+    void setBufferPool(DirectBufferPool pool) {
+        this.mBufferPool = pool;
+    }
+
+    /**
+     * 每个编码器实例（分段编码时每段一个）创建前从budget取得名额，与其他任务共用设备的实例数限制
+     */
+    void setCodecBudget(CodecBudget budget) {
+        this.mCodecBudget = budget;
+    }
+
+    @Override
+    public void run(JobContext context) throws Exception {
+        TranscodeMetrics metrics = mMetricsRegistry != null
+                ? mMetricsRegistry.register("encode " + mPcmPath) : new TranscodeMetrics(mPcmPath);
+        //进度回调从指标中采样帧数和吞吐量
+        context.setMetrics(metrics);
+        try {
+            //缓存键已包含响度目标和静音裁剪参数，命中时不需要测量响度、检测静音
+            String cacheKey = null;
+            if (mCache != null) {
+                cacheKey = OutputCache.key(new File(mPcmPath), getOutputParams());
+                if (mCache.copyTo(cacheKey, new File(mAudioPath))) {
+                    Log.d(TAG, "命中输出缓存：" + mAudioPath);
+                    if (mSilenceTrim != null && !restoreSilenceMap(cacheKey, context)) {
+                        return;
+                    }
+                    context.setProgress(1, 1);
+                    return;
+                }
+            }
+            mGain = 1f;
+            if (!Double.isNaN(mLoudnessTargetLufs)) {
+                LoudnessInfo info = loadLoudness(context);
+                if (info == null) {
+                    return;
+                }
+                double gainDb = info.gainDb(mLoudnessTargetLufs, mLoudnessCeilingDbtp);
+                Log.d(TAG, mPcmPath + " 响度：" + info + "，增益" + String.format(Locale.US, "%.2f", gainDb) + "dB");
+                mGain = PcmGain.fromDb(gainDb);
+            }
+            mTrimPlan = null;
+            if (mSilenceTrim != null && !planSilenceTrim(context)) {
+                return;
+            }
+            if (mResumable) {
+                runResumable(context, metrics);
+            } else {
+                runDirect(context, metrics);
+            }
+            if (cacheKey != null && !context.isCancelled()) {
+                mCache.put(cacheKey, new File(mAudioPath));
+                File silenceMap = new File(mAudioPath + SILENCE_MAP_SUFFIX);
+                if (mSilenceTrim != null && silenceMap.isFile()) {
+                    mCache.put(cacheKey + SILENCE_MAP_CACHE_SUFFIX, silenceMap);
+                }
+            }
+        } finally {
+            if (mMetricsRegistry != null) {
+                mMetricsRegistry.unregister(metrics);
+            }
+        }
+    }
+
+    /**
+     * 影响输出文件内容的全部参数：编码参数、容器格式、响度目标和静音裁剪。
+     * 增益由PCM内容和响度目标决定，键中只放目标，查缓存前不需要测量响度
+     */
+    private String getOutputParams() {
+        return mProfile.toKey() + (isMp4Path(mAudioPath) ? (mFastStart ? " mp4-faststart" : " mp4") : " adts")
+                + " segments:" + (mParallelism > 1 || mResumable ? SEGMENT_SECONDS : 0)
+                + (!Double.isNaN(mLoudnessTargetLufs)
+                        ? " loudness:" + mLoudnessTargetLufs + "/" + mLoudnessCeilingDbtp : "")
+                + (mSilenceTrim != null ? " " + mSilenceTrim.toKey() : "");
+    }
+
+    /**
+     * 命中输出缓存时从缓存复制静音裁剪记录，缓存中没有时重新检测，只为写出JSON
+     * @return 检测期间被取消时返回false
+     */
+    private boolean restoreSilenceMap(String cacheKey, JobContext context) throws IOException {
+        if (mCache.copyTo(cacheKey + SILENCE_MAP_CACHE_SUFFIX, new File(mAudioPath + SILENCE_MAP_SUFFIX))) {
+            return true;
+        }
+        return planSilenceTrim(context);
+    }
+
+    /**
+     * 检测整个PCM的静音，按mSilenceTrim确定mTrimPlan并写出JSON。
+     * 检测是顺序读取映射的文件并求平方和，比编码快几个数量级
+     * @return 检测期间被取消时返回false
+     */
+    private boolean planSilenceTrim(JobContext context) throws IOException {
+        PcmSource source = openPcmFile();
+        TrimPlan plan;
+        try {
+            SilenceDetector detector = mSilenceTrim.newDetector(source.getFormat());
+            ByteBuffer buffer;
+            while ((buffer = source.next(mProfile.getMaxInputSize())) != null) {
+                if (context.isCancelled()) {
+                    return false;
+                }
+                detector.accept(buffer);
+            }
+            plan = detector.finish().trim(mSilenceTrim);
+        } finally {
+            IoUtils.closeQuietly(source);
+        }
+        Log.d(TAG, mPcmPath + " 静音裁剪：" + plan);
+        try {
+            plan.saveJson(new File(mAudioPath + SILENCE_MAP_SUFFIX));
+        } catch (IOException e) {
+            //不影响编码结果
+            Log.w(TAG, "不能写入静音裁剪记录：" + mAudioPath, e);
+        }
+        if (plan.getOutputFrames() == 0) {
+            //全部是静音且不保留padding时没有可编码的数据，按原样编码
+            Log.w(TAG, "裁剪后没有数据，不裁剪：" + mPcmPath);
+        } else if (!plan.isIdentity()) {
+            mTrimPlan = plan;
+        }
+        return true;
+    }
+
+    /**
+     * 读取PCM的响度sidecar，没有时测量整个文件并保存
+     * @return 测量期间被取消时返回null
+     */
+    private LoudnessInfo loadLoudness(JobContext context) throws IOException {
+        File pcm = new File(mPcmPath);
+        LoudnessInfo info = LoudnessInfo.load(pcm);
+        if (info != null) {
+            return info;
+        }
+        Log.d(TAG, "没有响度sidecar，先测量：" + mPcmPath);
+        LoudnessMeter meter = new LoudnessMeter(mProfile.getPcmFormat());
+        PcmSource source = openPcmFile();
+        try {
+            ByteBuffer buffer;
+            while ((buffer = source.next(mProfile.getMaxInputSize())) != null) {
+                if (context.isCancelled()) {
+                    return null;
+                }
+                //PCM文件是小端序（Android解码器的输出），LoudnessMeter不看buffer的order
+                meter.accept(buffer);
+            }
+        } finally {
+            IoUtils.closeQuietly(source);
+        }
+        info = meter.getInfo();
+        try {
+            info.save(pcm);
+        } catch (IOException e) {
+            //下次编码时再测量
+            Log.w(TAG, "不能写入响度：" + mPcmPath, e);
+        }
+        return info;
+    }
+
+    private void runDirect(JobContext context, TranscodeMetrics metrics) throws Exception {
+        AacSink sink = null;
+        try {
+            //初始化文件写入端
+            sink = new MeteredAacSink(openSink(), metrics);
+            if (mParallelism > 1) {
+                runSegmented(context, sink, metrics);
+            } else {
+                if (mCodecBudget != null && !mCodecBudget.acquire(1, context)) {
+                    return;
+                }
+                PcmSource source = null;
+                try {
+                    source = openSource();
+                    encode(source, 0, source.getFrameCount(), sink, context, metrics, true);
+                } finally {
+                    IoUtils.closeQuietly(source);
+                    if (mCodecBudget != null) {
+                        mCodecBudget.release(1);
+                    }
+                }
+            }
+            sink.close();
+            sink = null;
+        } finally {
+            IoUtils.closeQuietly(sink);
+        }
+    }
+
+    /**
+     * PCM文件映射到内存，按整帧从映射的数据直接复制到编码器的inputBuffer，时间戳由读取位置计算。
+     * 裁剪静音时只读取保留的部分，帧位置按裁剪后计算
+     */
+    private PcmSource openSource() throws IOException {
+        PcmSource source = openPcmFile();
+        if (mTrimPlan == null) {
+            return source;
+        }
+        PcmSource trimmed = null;
+        try {
+            trimmed = new TrimmedPcmSource(source, mTrimPlan);
+            return trimmed;
+        } finally {
+            if (trimmed == null) {
+                IoUtils.closeQuietly(source);
+            }
+        }
+    }
+
+    private PcmSource openPcmFile() throws IOException {
+        return new MappedPcmSource(new FileInputStream(mPcmPath).getChannel(), mProfile.getPcmFormat());
+    }
+
+    /**
+     * 把PCM按AAC帧对齐切成约SEGMENT_SECONDS秒的段，在mParallelism个编码器实例上并发编码后按顺序拼接
+     */
+    private void runSegmented(JobContext context, AacSink sink, TranscodeMetrics metrics) throws Exception {
+        long totalFrames = getTotalFrames();
+        List<Segment> segments = planSegments(totalFrames);
+        Log.d(TAG, "分段编码：" + segments.size() + "段，" + mParallelism + "个编码器");
+        newSegmentedEncoder(metrics).run(segments, sink, context);
+        metrics.setMediaTimeUs(mProfile.getPcmFormat().framesToUs(totalFrames));
+    }
+
+    private long getTotalFrames() throws IOException {
+        PcmSource probe = openSource();
+        try {
+            return probe.getFrameCount();
+        } finally {
+            probe.close();
+        }
+    }
+
+    private List<Segment> planSegments(long totalFrames) {
+        return SegmentPlanner.plan(totalFrames, (long) SEGMENT_SECONDS * mProfile.getSampleRate(),
+                AdtsHeader.SAMPLES_PER_FRAME, SegmentPlanner.DEFAULT_PRIMING_FRAMES);
+    }
+
+    /**
+     * 分段保留部分的第一个PCM帧，检查点按它记录输入位置
+     */
+    private static long keptStartFrame(List<Segment> segments, int index, long totalFrames) {
+        if (index >= segments.size()) {
+            return totalFrames;
+        }
+        Segment segment = segments.get(index);
+        return segment.getInputStartFrame() + (long) segment.getSkipFrames() * AdtsHeader.SAMPLES_PER_FRAME;
+    }
+
+    private SegmentedEncoder newSegmentedEncoder(final TranscodeMetrics metrics) {
+        SegmentedEncoder encoder = new SegmentedEncoder(new SegmentEncoder() {
+            @Override
+            public void encode(Segment segment, AacSink output, JobContext segmentContext) throws Exception {
+                //每段使用独立的映射和编码器实例
+                PcmSource source = openSource();
+                try {
+                    AudioEncodeJob.this.encode(source, segment.getInputStartFrame(), segment.getInputEndFrame(),
+                            output, segmentContext, metrics, false);
+                } finally {
+                    IoUtils.closeQuietly(source);
+                }
+            }
+        }, mParallelism);
+        encoder.setCodecBudget(mCodecBudget);
+        return encoder;
+    }
+
+    /**
+     * 可续接的编码：按段写入目标文件旁的part文件，每段写完记录检查点，再次运行时从检查点之后的一段继续。
+     * MP4的sample table要到结束时才能写出，中途的文件无法续接，因此part文件总是ADTS，
+     * 全部编码完成后再封装成MP4。
+     */
+    private void runResumable(final JobContext context, TranscodeMetrics metrics) throws Exception {
+        final long totalFrames = getTotalFrames();
+        final List<Segment> segments = planSegments(totalFrames);
+        File pcm = new File(mPcmPath);
+        //输入文件或编码参数变化时检查点作废
+        String config = String.format(Locale.US, "encode %s %d %d %s %d %d %s %s", mPcmPath, pcm.length(),
+                pcm.lastModified(), mProfile.toKey(), SEGMENT_SECONDS, SegmentPlanner.DEFAULT_PRIMING_FRAMES, mGain,
+                mSilenceTrim != null ? mSilenceTrim.toKey() : "");
+        final ResumableOutput output = ResumableOutput.open(new File(mAudioPath), config);
+        AacSink sink = null;
+        try {
+            int first = 0;
+            Checkpoint resumePoint = output.getResumePoint();
+            if (resumePoint != null) {
+                while (first <= segments.size()
+                        && keptStartFrame(segments, first, totalFrames) != resumePoint.getInputPosition()) {
+                    first++;
+                }
+                if (first > segments.size()) {
+                    Log.w(TAG, "检查点与分段不符，从头编码：" + resumePoint);
+                    output.restart();
+                    first = 0;
+                } else {
+                    Log.d(TAG, "从第" + first + "段续接，已输出" + resumePoint.getOutputBytes() + "字节");
+                }
+            }
+
+            final ChannelDataSink data = new ChannelDataSink(output.getChannel(), mProfile.getMaxInputSize(),
+                    mBufferPool);
+            sink = new MeteredAacSink(new AdtsSink(data, createAdtsHeader()), metrics);
+            Log.d(TAG, "分段编码：" + (segments.size() - first) + "/" + segments.size() + "段，"
+                    + mParallelism + "个编码器");
+            SegmentedEncoder encoder = newSegmentedEncoder(metrics);
+            encoder.setListener(new SegmentedEncoder.Listener() {
+                @Override
+                public void onSegmentWritten(Segment segment) throws IOException {
+                    output.flush(data);
+                    output.checkpoint(keptStartFrame(segments, segment.getIndex() + 1, totalFrames));
+                }
+            });
+            encoder.run(segments.subList(first, segments.size()), sink, context);
+            //关闭时写出缓冲的数据并关闭part文件的channel；取消时保留part文件和检查点
+            sink.close();
+            sink = null;
+            if (context.isCancelled()) {
+                return;
+            }
+            metrics.setMediaTimeUs(mProfile.getPcmFormat().framesToUs(totalFrames));
+            if (isMp4Path(mAudioPath)) {
+                remuxToMp4(output.getPartFile());
+                output.discard();
+            } else {
+                output.commit();
+            }
+        } finally {
+            IoUtils.closeQuietly(sink);
+            IoUtils.closeQuietly(output);
+        }
+    }
+
+    /**
+     * 把ADTS文件中的帧封装成MP4：写入临时文件，sync后改名为mAudioPath
+     */
+    private void remuxToMp4(File adts) throws IOException {
+        File temp = new File(mAudioPath + REMUX_SUFFIX);
+        FileInputStream input = new FileInputStream(adts);
+        AacSink writer = null;
+        try {
+            writer = openMp4Writer(temp.getPath());
+            AdtsFrameScanner scanner = new AdtsFrameScanner(input.getChannel());
+            long samples = 0;
+            int sampleRate = mProfile.getSampleRate();
+            while (scanner.next()) {
+                if (samples == 0) {
+                    AdtsHeader header = AdtsHeader.parse(scanner.frame());
+                    ByteBuffer config = ByteBuffer.allocate(2);
+                    header.writeAudioSpecificConfig(config);
+                    config.flip();
+                    writer.setAudioSpecificConfig(config);
+                    sampleRate = header.getSampleRate();
+                }
+                writer.writeFrame(scanner.payload(), samples * 1000000 / sampleRate);
+                samples += scanner.frameSamples();
+            }
+            writer.close();
+            writer = null;
+        } finally {
+            IoUtils.closeQuietly(writer);
+            IoUtils.closeQuietly(input);
+        }
+        IoUtils.sync(temp);
+        if (!temp.renameTo(new File(mAudioPath))) {
+            temp.delete();
+            throw new IOException("rename failed: " + mAudioPath);
+        }
+    }
+
+    /**
+     * 用一个编码器实例编码source中[startFrame, endFrame)的PCM帧，输出写入sink（不关闭sink）
+     * @param reportProgress 是否更新进度和媒体时间，分段编码时由SegmentedEncoder统一报告
+     */
+    private void encode(PcmSource source, long startFrame, long endFrame, AacSink sink, JobContext context,
+                        TranscodeMetrics metrics, boolean reportProgress) throws IOException, InterruptedException {
+        MediaCodecDriver driver = null;
+        try {
+            //初始化编码格式 mimetype 采样率 声道数
+            MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC,
+                    mProfile.getSampleRate(), mProfile.getChannelCount());
+            format.setInteger(MediaFormat.KEY_BIT_RATE, mProfile.getBitRate());
+            format.setInteger(MediaFormat.KEY_AAC_PROFILE, mProfile.getAacProfile());
+            format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, mProfile.getMaxInputSize());
+            if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+                //0为实时，1为尽力而为
+                format.setInteger(MediaFormat.KEY_PRIORITY, mProfile.isRealtime() ? 0 : 1);
+            }
+
+            //初始化编码器
+            MediaCodec mediaCodec = CodecSelector.createEncoder(MediaFormat.MIMETYPE_AUDIO_AAC, mProfile);
+            driver = MediaCodecDriver.create(mediaCodec, mCallbackMode);
+            driver.configure(format, MediaCodec.CONFIGURE_FLAG_ENCODE);
+
+            SerialEncoder encoder = new SerialEncoder(source, driver, sink);
+            encoder.setRange(startFrame, endFrame);
+            encoder.setMaxInputSize(mProfile.getMaxInputSize());
+            encoder.setMetrics(metrics);
+            encoder.setReportProgress(reportProgress);
+            encoder.setGain(mGain);
+            encoder.run(context);
+        } finally {
+            if (driver != null) {
+                driver.release();
+            }
+        }
+    }
+
+    static boolean isMp4Path(String path) {
+        String lower = path.toLowerCase(Locale.US);
+        return lower.endsWith(".m4a") || lower.endsWith(".mp4");
+    }
+
+    private AacSink openSink() throws IOException {
+        if (!isMp4Path(mAudioPath)) {
+            //ADTS头部和AAC数据攒够maxInputSize字节再写入文件
+            return new AdtsSink(new ChannelDataSink(new FileOutputStream(mAudioPath).getChannel(),
+                    mProfile.getMaxInputSize(), mBufferPool), createAdtsHeader());
+        }
+        return openMp4Writer(mAudioPath);
+    }
+
+    private AdtsHeader createAdtsHeader() {
+        return AdtsHeader.of(mProfile.getSampleRate(), mProfile.getChannelCount(), mProfile.getAacProfile());
+    }
+
+    private AacSink openMp4Writer(String path) throws IOException {
+        FileChannel output = new FileOutputStream(path).getChannel();
+        if (!mFastStart) {
+            return new Mp4Writer(output, mProfile.getSampleRate(), mProfile.getChannelCount());
+        }
+        FileChannel scratch = null;
+        try {
+            File scratchFile = new File(path + ".mdat");
+            scratch = new RandomAccessFile(scratchFile, "rw").getChannel();
+            scratch.truncate(0);
+            //打开后立即删除，文件在channel关闭时释放，任务失败也不会留下临时文件
+            scratchFile.delete();
+            return new Mp4Writer(output, scratch, mProfile.getSampleRate(), mProfile.getChannelCount());
+        } catch (IOException e) {
+            IoUtils.closeQuietly(scratch);
+            IoUtils.closeQuietly(output);
+            throw e;
+        }
+    }
+}
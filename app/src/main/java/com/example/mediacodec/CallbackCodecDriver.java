@@ -0,0 +1,63 @@
+package com.example.mediacodec;
+
+import android.annotation.TargetApi;
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Build;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import com.example.mediacodec.core.codec.CodecEvent;
+import com.example.mediacodec.core.codec.CodecEventQueue;
+
+/**
+ * 回调模式：MediaCodec的回调在专用的HandlerThread上执行，事件放入CodecEventQueue，
+ * 编解码任务线程没有事件时阻塞等待，不会空转。必须在configure之前创建。
+ */
+@TargetApi(Build.VERSION_CODES.M)
+class CallbackCodecDriver extends MediaCodecDriver {
+    private final HandlerThread mCallbackThread;
+    private final CodecEventQueue mEvents = new CodecEventQueue();
+
+    CallbackCodecDriver(MediaCodec codec) {
+        super(codec);
+        mCallbackThread = new HandlerThread("codec-callback", Process.THREAD_PRIORITY_AUDIO);
+        mCallbackThread.start();
+        codec.setCallback(new MediaCodec.Callback() {
+            @Override
+            public void onInputBufferAvailable(@NonNull MediaCodec codec, int index) {
+                mEvents.offerInput(index);
+            }
+
+            @Override
+            public void onOutputBufferAvailable(@NonNull MediaCodec codec, int index,
+                                                @NonNull MediaCodec.BufferInfo info) {
+                mEvents.offerOutput(index, info.offset, info.size, info.presentationTimeUs, info.flags);
+            }
+
+            @Override
+            public void onError(@NonNull MediaCodec codec, @NonNull MediaCodec.CodecException e) {
+                mEvents.offerError(e.getErrorCode());
+            }
+
+            @Override
+            public void onOutputFormatChanged(@NonNull MediaCodec codec, @NonNull MediaFormat format) {
+                mEvents.offerFormatChanged();
+            }
+        }, new Handler(mCallbackThread.getLooper()));
+    }
+
+    @Override
+    public boolean nextEvent(CodecEvent event, long timeoutUs) throws InterruptedException {
+        return mEvents.poll(event, timeoutUs);
+    }
+
+    @Override
+    public void release() {
+        super.release();
+        mCallbackThread.quitSafely();
+    }
+}
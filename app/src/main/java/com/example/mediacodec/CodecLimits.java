@@ -0,0 +1,32 @@
+package com.example.mediacodec;
+
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.os.Build;
+
+/**
+ * 设备上编解码器实例数的限制，用作CodecBudget的名额，也用于决定同时执行的编解码任务数
+ */
+final class CodecLimits {
+    private CodecLimits() {
+    }
+
+    /**
+     * AAC解码器和编码器中较小的最大实例数，且不超过CPU核数。Android 6.0以下无法查询，取CPU核数。
+     */
+    static int maxConcurrentJobs() {
+        int limit = Runtime.getRuntime().availableProcessors();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            MediaCodecList codecList = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+            for (MediaCodecInfo info : codecList.getCodecInfos()) {
+                for (String type : info.getSupportedTypes()) {
+                    if (type.equalsIgnoreCase(MediaFormat.MIMETYPE_AUDIO_AAC)) {
+                        limit = Math.min(limit, info.getCapabilitiesForType(type).getMaxSupportedInstances());
+                    }
+                }
+            }
+        }
+        return Math.max(1, limit);
+    }
+}
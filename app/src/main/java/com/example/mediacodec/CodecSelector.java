@@ -0,0 +1,65 @@
+package com.example.mediacodec;
+
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecList;
+import android.os.Build;
+import android.util.Log;
+
+import com.example.mediacodec.core.codec.EncodeProfile;
+
+import java.io.IOException;
+import java.util.Locale;
+
+/**
+ * 按{@link EncodeProfile}的编码器选择创建编码器：指定了名称时按名称创建，
+ * 优先硬件或软件时从MediaCodecList中找第一个符合的编码器，找不到时用系统默认的编码器
+ */
+final class CodecSelector {
+    private static final String TAG = "MediaCodec";
+
+    private CodecSelector() {
+    }
+
+    static MediaCodec createEncoder(String mime, EncodeProfile profile) throws IOException {
+        if (profile.getCodecName() != null) {
+            return MediaCodec.createByCodecName(profile.getCodecName());
+        }
+        if (profile.getCodecPreference() != EncodeProfile.CODEC_DEFAULT) {
+            boolean software = profile.getCodecPreference() == EncodeProfile.CODEC_SOFTWARE;
+            String name = findEncoder(mime, software);
+            if (name != null) {
+                Log.d(TAG, "选择编码器：" + name);
+                return MediaCodec.createByCodecName(name);
+            }
+            Log.w(TAG, "没有" + (software ? "软件" : "硬件") + "编码器，使用默认编码器");
+        }
+        return MediaCodec.createEncoderByType(mime);
+    }
+
+    private static String findEncoder(String mime, boolean software) {
+        MediaCodecList codecList = new MediaCodecList(MediaCodecList.REGULAR_CODECS);
+        for (MediaCodecInfo info : codecList.getCodecInfos()) {
+            if (!info.isEncoder() || isSoftware(info) != software) {
+                continue;
+            }
+            for (String type : info.getSupportedTypes()) {
+                if (type.equalsIgnoreCase(mime)) {
+                    return info.getName();
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Android 10起由系统报告，之前按名称判断：Android自带的软件编解码器以OMX.google.或c2.android.开头
+     */
+    static boolean isSoftware(MediaCodecInfo info) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            return info.isSoftwareOnly();
+        }
+        String name = info.getName().toLowerCase(Locale.US);
+        return name.startsWith("omx.google.") || name.startsWith("c2.android.") || name.contains(".sw.");
+    }
+}
@@ -0,0 +1,127 @@
+package com.example.mediacodec;
+
+import android.media.MediaFormat;
+import android.util.Log;
+
+import com.example.mediacodec.core.codec.CodecBudget;
+import com.example.mediacodec.core.io.PcmRingBuffer;
+import com.example.mediacodec.core.io.RingBufferSink;
+import com.example.mediacodec.core.job.JobHandle;
+import com.example.mediacodec.core.job.JobListener;
+import com.example.mediacodec.core.job.JobProgress;
+import com.example.mediacodec.core.job.JobScheduler;
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.metrics.MetricsRegistry;
+import com.example.mediacodec.core.pcm.PcmFormat;
+import com.example.mediacodec.core.playback.PlaylistItem;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * 播放列表中的一个音频文件：start时提交解码任务，输出转换成播放列表的格式后写入预取缓冲区。
+ * 解码器保留编码器延迟和填充，由{@link com.example.mediacodec.core.playback.GaplessPlaylist}按音轨格式中的
+ * encoder-delay/encoder-padding在拼接处裁剪；音轨格式中没有这两项时（例如ADTS文件）不裁剪。
+ * 采样率转换的滤波器延迟已由{@link com.example.mediacodec.core.dsp.PcmConverter}补偿，输出与源对齐，
+ * 延迟和填充只需按采样率换算。
+ */
+class DecodePlaylistItem implements PlaylistItem {
+    private static final String TAG = "MediaCodec";
+
+    private final String mPath;
+    private final PcmFormat mFormat;
+    private final JobScheduler mScheduler;
+    private boolean mCallbackMode = true;
+    private MetricsRegistry mMetricsRegistry;
+    private DirectBufferPool mBufferPool;
+    private CodecBudget mCodecBudget;
+    private int mDelayFrames;
+    private int mPaddingFrames;
+
+    DecodePlaylistItem(String path, PcmFormat format, JobScheduler scheduler) {
+        this.mPath = path;
+        this.mFormat = format;
+        this.mScheduler = scheduler;
+    }
+
+    void setCodecCallbackMode(boolean callbackMode) {
+        this.mCallbackMode = callbackMode;
+    }
+
+    void setMetricsRegistry(MetricsRegistry registry) {
+        this.mMetricsRegistry = registry;
+    }
+
+    void setBufferPool(DirectBufferPool pool) {
+        this.mBufferPool = pool;
+    }
+
+    void setCodecBudget(CodecBudget budget) {
+        this.mCodecBudget = budget;
+    }
+
+    @Override
+    public String getName() {
+        return new File(mPath).getName();
+    }
+
+    @Override
+    public void start(final PcmRingBuffer target) throws IOException {
+        //延迟和填充按源采样率计，换算成输出帧数
+        MediaFormat format = AudioDecodeJob.readAudioFormat(mPath);
+        int sampleRate = format.getInteger(MediaFormat.KEY_SAMPLE_RATE);
+        mDelayFrames = toOutputFrames(format, AudioDecodeJob.KEY_ENCODER_DELAY, sampleRate);
+        mPaddingFrames = toOutputFrames(format, AudioDecodeJob.KEY_ENCODER_PADDING, sampleRate);
+        Log.d(TAG, getName() + ": delay=" + mDelayFrames + ", padding=" + mPaddingFrames);
+
+        AudioDecodeJob job = new AudioDecodeJob(mPath, new RingBufferSink(target));
+        job.setCodecCallbackMode(mCallbackMode);
+        job.setOutputFormat(mFormat);
+        job.setKeepEncoderDelay(true);
+        job.setMetricsRegistry(mMetricsRegistry);
+        job.setBufferPool(mBufferPool);
+        job.setCodecBudget(mCodecBudget);
+        //播放中的解码优先于批量任务执行
+        mScheduler.submit(getName(), job, JobScheduler.PRIORITY_HIGH, new JobListener() {
+            @Override
+            public void onProgress(JobHandle job, JobProgress progress) {
+            }
+
+            @Override
+            public void onFinish(JobHandle job) {
+            }
+
+            @Override
+            public void onFail(JobHandle job, Throwable error) {
+                //播放列表取消后解码任务写入失败是正常结束
+                if (!target.isCancelled()) {
+                    Log.e(TAG, job.getName() + " 解码失败", error);
+                    target.cancel();
+                }
+            }
+
+            @Override
+            public void onCancel(JobHandle job) {
+                target.cancel();
+            }
+        });
+    }
+
+    private int toOutputFrames(MediaFormat format, String key, int sampleRate) {
+        if (!format.containsKey(key)) {
+            return 0;
+        }
+        //与PcmConverter的输出长度一样四舍五入
+        return (int) Math.round((double) format.getInteger(key) * mFormat.getSampleRate() / sampleRate);
+    }
+
+    @Override
+    public int getDelayFrames() {
+        return mDelayFrames;
+    }
+
+    @Override
+    public int getPaddingFrames() {
+        return mPaddingFrames;
+    }
+}
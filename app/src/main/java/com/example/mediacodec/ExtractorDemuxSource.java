@@ -0,0 +1,76 @@
+package com.example.mediacodec;
+
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+
+import com.example.mediacodec.core.demux.DemuxSource;
+import com.example.mediacodec.core.demux.TrackInfo;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 以MediaExtractor作为多轨道的读取，轨道信息在创建时从MediaFormat转换好
+ */
+class ExtractorDemuxSource implements DemuxSource {
+    private final MediaExtractor mExtractor;
+    private final TrackInfo[] mTracks;
+
+    /**
+     * @param extractor 已设置数据源，还没有选中轨道
+     */
+    ExtractorDemuxSource(MediaExtractor extractor) {
+        this.mExtractor = extractor;
+        this.mTracks = new TrackInfo[extractor.getTrackCount()];
+        for (int i = 0; i < mTracks.length; i++) {
+            mTracks[i] = createTrackInfo(i, extractor.getTrackFormat(i));
+        }
+    }
+
+    static TrackInfo createTrackInfo(int index, MediaFormat format) {
+        String mime = format.getString(MediaFormat.KEY_MIME);
+        boolean audio = mime != null && mime.startsWith("audio/");
+        return new TrackInfo(index, mime,
+                audio ? format.getInteger(MediaFormat.KEY_SAMPLE_RATE) : 0,
+                audio ? format.getInteger(MediaFormat.KEY_CHANNEL_COUNT) : 0,
+                format.containsKey(MediaFormat.KEY_DURATION) ? format.getLong(MediaFormat.KEY_DURATION) : 0,
+                format.containsKey(MediaFormat.KEY_LANGUAGE) ? format.getString(MediaFormat.KEY_LANGUAGE) : null);
+    }
+
+    @Override
+    public int getTrackCount() {
+        return mTracks.length;
+    }
+
+    @Override
+    public TrackInfo getTrackInfo(int track) {
+        return mTracks[track];
+    }
+
+    @Override
+    public void selectTrack(int track) {
+        mExtractor.selectTrack(track);
+    }
+
+    @Override
+    public int getSampleTrackIndex() {
+        return mExtractor.getSampleTrackIndex();
+    }
+
+    @Override
+    public int readSampleData(ByteBuffer dst) {
+        int position = dst.position();
+        int size = mExtractor.readSampleData(dst, position);
+        dst.position(position);
+        return size;
+    }
+
+    @Override
+    public long getSampleTime() {
+        return mExtractor.getSampleTime();
+    }
+
+    @Override
+    public boolean advance() {
+        return mExtractor.advance();
+    }
+}
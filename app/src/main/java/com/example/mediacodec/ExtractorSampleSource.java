@@ -0,0 +1,36 @@
+package com.example.mediacodec;
+
+import android.media.MediaExtractor;
+
+import com.example.mediacodec.core.pipeline.SampleSource;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 以MediaExtractor中已选中的音轨作为流水线的读取阶段
+ */
+class ExtractorSampleSource implements SampleSource {
+    private final MediaExtractor mExtractor;
+
+    ExtractorSampleSource(MediaExtractor extractor) {
+        this.mExtractor = extractor;
+    }
+
+    @Override
+    public int readSampleData(ByteBuffer dst) {
+        int position = dst.position();
+        int size = mExtractor.readSampleData(dst, position);
+        dst.position(position);
+        return size;
+    }
+
+    @Override
+    public long getSampleTime() {
+        return mExtractor.getSampleTime();
+    }
+
+    @Override
+    public boolean advance() {
+        return mExtractor.advance();
+    }
+}
@@ -4,34 +4,49 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.core.app.ActivityCompat;
 
+import com.example.mediacodec.core.cache.OutputCache;
+import com.example.mediacodec.core.codec.CodecBudget;
+import com.example.mediacodec.core.codec.EncodeProfile;
+import com.example.mediacodec.core.demux.TrackSelector;
+import com.example.mediacodec.core.demux.TrackSelectors;
+import com.example.mediacodec.core.io.PcmRingBuffer;
+import com.example.mediacodec.core.io.RingBufferSink;
+import com.example.mediacodec.core.job.JobHandle;
+import com.example.mediacodec.core.job.JobListener;
+import com.example.mediacodec.core.job.JobProgress;
+import com.example.mediacodec.core.job.JobScheduler;
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.metrics.MetricsRegistry;
+import com.example.mediacodec.core.metrics.MetricsSnapshot;
+import com.example.mediacodec.core.pcm.MappedPcmSource;
+import com.example.mediacodec.core.pcm.PcmFormat;
+import com.example.mediacodec.core.pcm.PcmSource;
+import com.example.mediacodec.core.playback.GaplessPlaylist;
+import com.example.mediacodec.core.playback.PlaylistItem;
+import com.example.mediacodec.core.silence.SilenceTrimOptions;
+
 import android.Manifest;
+import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
-import android.media.AudioAttributes;
-import android.media.AudioFormat;
-import android.media.AudioManager;
-import android.media.AudioTrack;
-import android.media.MediaCodec;
-import android.media.MediaCodecInfo;
-import android.media.MediaExtractor;
-import android.media.MediaFormat;
-import android.os.AsyncTask;
-import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Log;
 import android.view.View;
 import android.widget.Button;
+import android.widget.TextView;
 import android.widget.Toast;
 
-import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.lang.ref.WeakReference;
-import java.nio.ByteBuffer;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
 
 public class MainActivity extends AppCompatActivity implements View.OnClickListener {
     private static final String TAG = "MediaCodec";
@@ -47,18 +62,88 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     private static final String PCM_PATH = SD_PATH + "/input.pcm";
     // aac文件（结果文件）
     private static final String AAC_RESULT_PATH = SD_PATH + "/out.aac";
+    // m4a文件（结果文件）
+    private static final String M4A_RESULT_PATH = SD_PATH + "/out.m4a";
     private static final String PCM_RESULT_PATH = SD_PATH + "/input1.pcm";
 
-    private static final String PREFIX_AUDIO = "audio/";
-
-    private AudioDecodeTask mAudioDecodeTask;
-    private AudioEncodeTask mAudioEncodeTask;
-    private PlayInModeStreamTask mPlayTask;
-    private AudioTrack mAudioTrack;
+    // 编解码器使用MediaCodec.setCallback的回调模式（Android 6.0及以上），否则使用轮询模式
+    private static final boolean CODEC_CALLBACK_MODE = true;
+    // 每个任务结束时把指标以JSON lines格式追加到该文件
+    private static final String METRICS_PATH = SD_PATH + "/metrics.jsonl";
+    private static final boolean METRICS_JSON_LINES = true;
+    // 解码成PCM文件时，读取、解码、写入分三个线程流水线执行
+    private static final boolean DECODE_PIPELINED = true;
+    // 播放AAC时边解码边播放，不再先解码成PCM文件
+    private static final boolean PLAY_AAC_STREAMING = true;
+    // 解码线程和播放线程之间的环形缓冲区大小
+    private static final int STREAM_BUFFER_SIZE = 256 * 1024;
+    // 批量解码的输出目录
+    private static final String PCM_DIR_PATH = SD_PATH + "/pcm";
+    private static final String SUFFIX_AAC = ".aac";
+    private static final String SUFFIX_PCM = ".pcm";
+    // 编码结果写成带sample table的M4A（faststart），否则写ADTS裸流
+    private static final boolean ENCODE_MP4 = true;
+    private static final String ENCODE_RESULT_PATH = ENCODE_MP4 ? M4A_RESULT_PATH : AAC_RESULT_PATH;
+    // 编码时最多同时使用的编码器实例数，PCM分段并发编码后拼接；为1时用一个编码器顺序编码
+    private static final int MAX_ENCODE_PARALLELISM = 4;
+    // 编码参数：PCM文件按这里的采样率和声道数解释
+    private static final EncodeProfile ENCODE_PROFILE = new EncodeProfile.Builder()
+            .setSampleRate(44100)
+            .setChannelCount(2)
+            .setBitRate(96000)
+            .setAacProfile(EncodeProfile.AAC_LC)
+            .build();
+    // 编码结果缓存在应用的缓存目录中，同一个PCM文件用同样的参数再编码时直接复制结果
+    private static final String ENCODE_CACHE_DIR = "encode";
+    private static final long ENCODE_CACHE_SIZE = 200L * 1024 * 1024;
+    // 解码和编码到文件是否可续接：退出时被取消的任务留下检查点，下次从检查点继续
+    private static final boolean TRANSCODE_RESUMABLE = true;
+    // 解码输出的PCM统一转换成44.1kHz立体声，播放和后续处理不必关心源文件的格式
+    private static final PcmFormat DECODE_OUTPUT_FORMAT = new PcmFormat(44100, 2);
+    // 解码的同时生成波形摘要，写入音频文件旁的.peaks文件，界面显示波形时不必读取PCM
+    private static final boolean DECODE_WAVEFORM_PEAKS = true;
+    // 响度归一化的目标（流媒体常用的-16 LUFS）和峰值上限：解码到文件时测量响度，编码时按测量结果调整增益，
+    // 边解码边播放时单遍归一化
+    private static final double LOUDNESS_TARGET_LUFS = -16;
+    private static final double LOUDNESS_CEILING_DBTP = -1;
+    private static final boolean DECODE_LOUDNESS_ANALYSIS = true;
+    // 编码前裁剪静音：去掉开头结尾的静音，中间超过1秒的静音压缩到1秒，去掉的部分记录在输出文件旁的.silence.json中
+    private static final SilenceTrimOptions ENCODE_SILENCE_TRIM = SilenceTrimOptions.DEFAULT;
+    // input.pcm按44.1kHz单声道16位播放
+    private static final PcmFormat PLAY_PCM_FORMAT = new PcmFormat(44100, 1);
+    // 连续播放时每个文件预取（解码后）的数据量，约3秒
+    private static final int PLAYLIST_PREFETCH_SIZE = 512 * 1024;
+    private static final String SUFFIX_M4A = ".m4a";
+    private static final String SUFFIX_MP4 = ".mp4";
+    // 批量解码MP4/M4A时解码哪些音轨：容器只读一遍，每条音轨写入各自的PCM文件（文件名.轨道序号.pcm）
+    private static final TrackSelector DECODE_TRACK_SELECTOR = TrackSelectors.allAudio();
+
+    private JobScheduler mScheduler;
+    private CodecBudget mCodecBudget;
+    private MetricsRegistry mMetrics;
+    private DirectBufferPool mBufferPool;
+    private OutputCache mEncodeCache;
+    private Writer mMetricsWriter;
+    private JobHandle mStreamDecodeJob;
+    private Executor mMainExecutor;
+    private PlaybackEngine mPlayback;
+    private PcmRingBuffer mStreamBuffer;
+    private GaplessPlaylist mPlaylist;
+    private TextView mProgressView;
+
+    /**
+     * 只关心任务结束的JobListener，进度回调默认显示在界面底部并打印日志
+     */
+    private abstract class SimpleJobListener implements JobListener {
+        @Override
+        public void onProgress(JobHandle handle, JobProgress progress) {
+            showProgress(handle, progress);
+        }
 
-    public interface CodecListener {
-        void codecFinish();
-        void codecFail();
+        @Override
+        public void onCancel(JobHandle handle) {
+            Log.d(TAG, handle.getName() + " 已取消");
+        }
     }
 
     @Override
@@ -67,9 +152,59 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         setContentView(R.layout.activity_main);
         verifyStoragePermissions();
         Log.d(TAG, "SD_PATH: " + SD_PATH);
+        //任务数按设备能同时创建的AAC编解码器实例数决定，回调在主线程执行。
+        //一个任务可能同时使用多个编解码器（分段编码、多音轨解码），实际的实例数由mCodecBudget限制
+        final Handler mainHandler = new Handler(Looper.getMainLooper());
+        mMainExecutor = new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                mainHandler.post(command);
+            }
+        };
+        mCodecBudget = new CodecBudget(CodecLimits.maxConcurrentJobs());
+        mScheduler = new JobScheduler(mCodecBudget.getCapacity(), mMainExecutor);
+        Log.d(TAG, "poolSize: " + mScheduler.getPoolSize());
+        mMetrics = new MetricsRegistry();
+        if (METRICS_JSON_LINES) {
+            try {
+                mMetricsWriter = new OutputStreamWriter(new FileOutputStream(METRICS_PATH, true), "UTF-8");
+                mMetrics.setJsonLinesWriter(mMetricsWriter);
+            } catch (IOException e) {
+                Log.w(TAG, "无法写入指标文件：" + METRICS_PATH, e);
+            }
+        }
+        //各任务的暂存buffer都从这个池中借用；可调试的版本开启泄漏检测
+        boolean debuggable = (getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+        mBufferPool = new DirectBufferPool(DirectBufferPool.DEFAULT_CACHE_SIZE,
+                DirectBufferPool.DEFAULT_SHARED_BYTES, debuggable);
+        mBufferPool.setLeakListener(new DirectBufferPool.LeakListener() {
+            @Override
+            public void onLeak(int capacity, Throwable leasedAt) {
+                Log.e(TAG, "direct buffer没有归还：" + capacity + "字节", leasedAt);
+            }
+        });
+        try {
+            mEncodeCache = new OutputCache(new File(getCacheDir(), ENCODE_CACHE_DIR), ENCODE_CACHE_SIZE);
+        } catch (IOException e) {
+            Log.w(TAG, "无法打开编码缓存", e);
+        }
+        mProgressView = findViewById(R.id.tv_progress);
         addOnClickListener(R.id.btn_decode_audio, R.id.btn_play_pcm,
-                R.id.btn_encode_audio, R.id.btn_play_aac);
+                R.id.btn_encode_audio, R.id.btn_play_aac, R.id.btn_decode_dir, R.id.btn_play_playlist);
+
+    }
 
+    /**
+     * 进度回调已由调度器限制了频率，每次都可以直接更新界面
+     */
+    private void showProgress(JobHandle handle, JobProgress progress) {
+        Log.v(TAG, handle.getName() + " " + progress);
+        double fraction = progress.getFraction();
+        String percent = fraction >= 0 ? (int) (fraction * 100) + "%" : "--";
+        String speed = progress.getBytesPerSecond() >= 0
+                ? (long) progress.getBytesPerSecond() / 1024 + "KB/s" : "--";
+        String eta = progress.getEtaMs() >= 0 ? String.valueOf((progress.getEtaMs() + 999) / 1000) : "--";
+        mProgressView.setText(getString(R.string.job_progress, handle.getName(), percent, speed, eta));
     }
 
     private void addOnClickListener(int... ids) {
@@ -103,14 +238,18 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
     protected void onDestroy() {
         super.onDestroy();
         stopPlay();
-        if (mAudioDecodeTask != null) {
-            mAudioDecodeTask.cancel(true);
-            mAudioDecodeTask = null;
-        }
-        if (mAudioEncodeTask != null) {
-            mAudioEncodeTask.cancel(true);
-            mAudioEncodeTask = null;
-        }
+        //取消所有未完成的编解码任务，回调不再通知
+        mScheduler.shutdown();
+        mMetrics.setJsonLinesWriter(null);
+        IoUtils.closeQuietly(mMetricsWriter);
+        mBufferPool.checkLeaks();
+    }
+
+    /**
+     * 正在运行的编解码和播放任务的指标快照
+     */
+    public List<MetricsSnapshot> getMetricsSnapshots() {
+        return mMetrics.snapshotAll();
     }
 
     //首先将aac解码成PCM，再将PCM编码成aac格式的音频文件
@@ -119,18 +258,22 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
         Log.d(TAG, "onClick: " + v.getId());
         switch (v.getId()) {
             case R.id.btn_decode_audio:
-                decode(AAC_PATH, PCM_PATH,new CodecListener() {
+                decode(AAC_PATH, PCM_PATH, new SimpleJobListener() {
                     @Override
-                    public void codecFinish() {
-                        decodeEnd(true);
+                    public void onFinish(JobHandle handle) {
+                        showToast(R.string.audio_decode_finish);
                     }
 
                     @Override
-                    public void codecFail() {
-                        decodeEnd(false);
+                    public void onFail(JobHandle handle, Throwable error) {
+                        Log.e(TAG, "解码失败", error);
+                        showToast(R.string.audio_decode_fail);
                     }
                 });
                 break;
+            case R.id.btn_decode_dir:
+                decodeDir(SD_PATH, PCM_DIR_PATH);
+                break;
             case R.id.btn_play_pcm:
                 Button btnPlay = (Button) v;
                 if (btnPlay.getText().toString().equals(getString(R.string.play_pcm))) {
@@ -145,525 +288,337 @@ public class MainActivity extends AppCompatActivity implements View.OnClickListe
                 encode();
                 break;
             case R.id.btn_play_aac:
-                decode(AAC_RESULT_PATH, PCM_RESULT_PATH, new CodecListener() {
+                if (PLAY_AAC_STREAMING) {
+                    Button btnPlayAAC = (Button) v;
+                    if (btnPlayAAC.getText().toString().equals(getString(R.string.play_aac))) {
+                        btnPlayAAC.setText(getString(R.string.stop_play));
+                        playInModeStreamDecoding(ENCODE_RESULT_PATH);
+                    } else {
+                        stopAACPlay();
+                    }
+                    break;
+                }
+                decode(ENCODE_RESULT_PATH, PCM_RESULT_PATH, new SimpleJobListener() {
                     @Override
-                    public void codecFinish() {
-                        decodeEnd(true);
-                        playInModeStream(PCM_RESULT_PATH);
+                    public void onFinish(JobHandle handle) {
+                        showToast(R.string.audio_decode_finish);
+                        playInModeStream(PCM_RESULT_PATH, DECODE_OUTPUT_FORMAT);
                     }
 
                     @Override
-                    public void codecFail() {
-                        decodeEnd(false);
+                    public void onFail(JobHandle handle, Throwable error) {
+                        Log.e(TAG, "解码失败", error);
+                        showToast(R.string.audio_decode_fail);
                     }
                 });
+                break;
+            case R.id.btn_play_playlist:
+                Button btnPlaylist = (Button) v;
+                if (btnPlaylist.getText().toString().equals(getString(R.string.play_playlist))) {
+                    btnPlaylist.setText(getString(R.string.stop_play));
+                    playPlaylist(SD_PATH);
+                } else {
+                    stopPlaylist();
+                }
+                break;
             default:
                 break;
         }
     }
 
-    private void decode(String audioPath, String outPath, CodecListener listener) {
-        if (mAudioDecodeTask != null) {
-            Log.w(TAG, getString(R.string.running));
+    /**
+     * 提交解码任务，多个任务按线程池大小并行执行
+     */
+    private JobHandle decode(String audioPath, String outPath, JobListener listener) {
+        AudioDecodeJob job = new AudioDecodeJob(audioPath, outPath);
+        job.setCodecCallbackMode(CODEC_CALLBACK_MODE);
+        job.setPipelined(DECODE_PIPELINED);
+        job.setOutputFormat(DECODE_OUTPUT_FORMAT);
+        job.setResumable(TRANSCODE_RESUMABLE);
+        job.setWaveformPeaks(DECODE_WAVEFORM_PEAKS);
+        job.setLoudnessAnalysis(DECODE_LOUDNESS_ANALYSIS);
+        job.setMetricsRegistry(mMetrics);
+        job.setBufferPool(mBufferPool);
+        job.setCodecBudget(mCodecBudget);
+        return mScheduler.submit(new File(audioPath).getName(), job, listener);
+    }
+
+    /**
+     * 提交多音轨解码任务：容器只读一遍，选中的每条音轨各自解码成pcmPrefix.轨道序号.pcm
+     */
+    private JobHandle decodeTracks(String audioPath, String pcmPrefix, JobListener listener) {
+        MultiTrackDecodeJob job = new MultiTrackDecodeJob(audioPath, pcmPrefix);
+        job.setTrackSelector(DECODE_TRACK_SELECTOR);
+        job.setCodecBudget(mCodecBudget);
+        job.setCodecCallbackMode(CODEC_CALLBACK_MODE);
+        job.setOutputFormat(DECODE_OUTPUT_FORMAT);
+        job.setMetricsRegistry(mMetrics);
+        job.setBufferPool(mBufferPool);
+        return mScheduler.submit(new File(audioPath).getName(), job, listener);
+    }
+
+    /**
+     * 批量解码：把目录下所有AAC文件解码成PCM，MP4和M4A文件的每条音轨各解码成一个PCM，放到outDir目录下
+     */
+    private void decodeDir(String dirPath, String outDir) {
+        File[] files = new File(dirPath).listFiles();
+        File out = new File(outDir);
+        if (files == null || (!out.isDirectory() && !out.mkdirs())) {
+            showToast(R.string.audio_decode_fail);
             return;
         }
-        //此类可分离视频文件的音轨和视频轨道
-        MediaExtractor extractor = new MediaExtractor();
-        //音频MP3文件其实只有一个音轨
-        int trackIndex = -1;
-        //判断音频文件是否有音频音轨
-        boolean hasAudio = false;
-
-        try {
-            extractor.setDataSource(audioPath);
-            int trackCount = extractor.getTrackCount();
-            Log.d(TAG, "trackCount：" + trackCount);
-            for (int i = 0; i < trackCount; i++) {
-                if (extractor.getTrackFormat(i).
-                        getString(MediaFormat.KEY_MIME).startsWith(PREFIX_AUDIO)) {
-                    trackIndex = i;
-                    hasAudio = true;
-                    break;
-                }
+        final int[] remaining = {0};
+        final int[] failed = {0};
+        JobListener listener = new SimpleJobListener() {
+            @Override
+            public void onFinish(JobHandle handle) {
+                onJobEnd();
             }
 
-            Log.d(TAG, "hasAudio：" + hasAudio);
-            if (hasAudio) {
-                extractor.selectTrack(trackIndex);
-                mAudioDecodeTask = new AudioDecodeTask(extractor, trackIndex, outPath, listener);
-                mAudioDecodeTask.execute();
-            } else {
-                notifyDecodeFail(listener);
+            @Override
+            public void onFail(JobHandle handle, Throwable error) {
+                Log.e(TAG, handle.getName() + " 解码失败", error);
+                failed[0]++;
+                onJobEnd();
             }
-        } catch (IOException e) {
-            e.printStackTrace();
-            notifyDecodeFail(listener);
-        }
-    }
-
-    private void decodeEnd(boolean success){
-        showToast(success ? R.string.audio_decode_finish : R.string.audio_decode_fail);
-        mAudioDecodeTask = null;
-    }
 
-    private void notifyDecodeFail(CodecListener listener) {
-        if (listener != null) {
-            runOnUiThread(new Runnable() {
-                @Override
-                public void run() {
-                    Log.e(TAG,"解码失败");
-                    listener.codecFail();
+            private void onJobEnd() {
+                if (--remaining[0] == 0) {
+                    showToast(failed[0] == 0 ? R.string.audio_decode_dir_finish : R.string.audio_decode_fail);
                 }
-            });
+            }
+        };
+        for (File file : files) {
+            String name = file.getName();
+            if (file.isFile() && name.toLowerCase().endsWith(SUFFIX_AAC)) {
+                String pcmName = name.substring(0, name.length() - SUFFIX_AAC.length()) + SUFFIX_PCM;
+                decode(file.getPath(), new File(out, pcmName).getPath(), listener);
+                remaining[0]++;
+            } else if (file.isFile() && (name.toLowerCase().endsWith(SUFFIX_MP4)
+                    || name.toLowerCase().endsWith(SUFFIX_M4A))) {
+                decodeTracks(file.getPath(), new File(out, name.substring(0, name.lastIndexOf('.'))).getPath(),
+                        listener);
+                remaining[0]++;
+            }
         }
+        Log.d(TAG, "decodeDir: " + remaining[0] + " files");
     }
 
     private void encode() {
-        if (mAudioEncodeTask != null) {
-            Log.w(TAG, getString(R.string.running));
-            return;
-        }
-        mAudioEncodeTask = new AudioEncodeTask(PCM_PATH, AAC_RESULT_PATH, new CodecListener() {
+        AudioEncodeJob job = new AudioEncodeJob(PCM_PATH, ENCODE_RESULT_PATH);
+        job.setProfile(ENCODE_PROFILE);
+        job.setOutputCache(mEncodeCache);
+        job.setCodecCallbackMode(CODEC_CALLBACK_MODE);
+        //各段的编码器从mCodecBudget取得名额，并发数超过空闲名额时多出的段排队等待
+        job.setParallelism(Math.min(mCodecBudget.getCapacity(), MAX_ENCODE_PARALLELISM));
+        job.setResumable(TRANSCODE_RESUMABLE);
+        job.setLoudnessTarget(LOUDNESS_TARGET_LUFS, LOUDNESS_CEILING_DBTP);
+        job.setSilenceTrimming(ENCODE_SILENCE_TRIM);
+        job.setMetricsRegistry(mMetrics);
+        job.setBufferPool(mBufferPool);
+        job.setCodecBudget(mCodecBudget);
+        mScheduler.submit(new File(PCM_PATH).getName(), job, new SimpleJobListener() {
             @Override
-            public void codecFinish() {
-                encodeEnd(true);
+            public void onFinish(JobHandle handle) {
+                showToast(R.string.audio_encode_finish);
             }
+
             @Override
-            public void codecFail() {
-                encodeEnd(false);
+            public void onFail(JobHandle handle, Throwable error) {
+                Log.e(TAG, "编码失败", error);
+                showToast(R.string.audio_encode_fail);
             }
         });
-        mAudioEncodeTask.execute();
-    }
-
-    private void encodeEnd(boolean success) {
-        showToast(success ? R.string.audio_encode_finish : R.string.audio_encode_fail);
-        mAudioEncodeTask = null;
     }
 
     private void playInModeStream(String path) {
-        mPlayTask = new PlayInModeStreamTask(this, path);
-        mPlayTask.execute();
+        playInModeStream(path, PLAY_PCM_FORMAT);
     }
 
-    private void stopPlayInModeStream() {
-        stopPlay(R.id.btn_play_pcm, R.string.play_pcm);
+    private void playInModeStream(String path, PcmFormat format) {
+        Log.d(TAG, "playInModeStream: " + path);
+        boolean inputPcm = PCM_PATH.equals(path);
+        PlaybackListener listener = new PlaybackListener(path, inputPcm ? R.id.btn_play_pcm : R.id.btn_play_aac,
+                inputPcm ? R.string.play_pcm : R.string.play_aac);
+        PcmSource source;
+        try {
+            //PCM文件映射到内存，映射的数据直接写入AudioTrack，不经过中间的byte[]
+            source = new MappedPcmSource(new FileInputStream(path).getChannel(), format);
+        } catch (IOException e) {
+            Log.e(TAG, "playInModeStream", e);
+            listener.onPlayEnd();
+            return;
+        }
+        startPlayback(new PlaybackEngine(new File(path).getName(), source,
+                PlaybackEngine.outputBurstFrames(this), mMainExecutor, listener));
     }
 
-    private void stopAACPlay() {
-        stopPlay(R.id.btn_play_aac, R.string.play_aac);
-    }
+    /**
+     * 边解码边播放：解码得到的PCM统一转换成DECODE_OUTPUT_FORMAT，经环形缓冲区交给播放线程，缓冲区满时解码线程阻塞
+     */
+    private void playInModeStreamDecoding(String audioPath) {
+        final PcmRingBuffer ringBuffer = new PcmRingBuffer(STREAM_BUFFER_SIZE);
+        AudioDecodeJob job = new AudioDecodeJob(audioPath, new RingBufferSink(ringBuffer));
+        job.setCodecCallbackMode(CODEC_CALLBACK_MODE);
+        job.setMetricsRegistry(mMetrics);
+        job.setBufferPool(mBufferPool);
+        job.setCodecBudget(mCodecBudget);
+        job.setOutputFormat(DECODE_OUTPUT_FORMAT);
+        job.setLoudnessNormalization(LOUDNESS_TARGET_LUFS, LOUDNESS_CEILING_DBTP);
+        //播放中的解码优先于批量任务执行
+        mStreamDecodeJob = mScheduler.submit(new File(audioPath).getName(), job,
+                JobScheduler.PRIORITY_HIGH, new SimpleJobListener() {
+            @Override
+            public void onFinish(JobHandle handle) {
+            }
 
-    private void stopPlay(int id, int stringId) {
-        Button button = findViewById(id);
-        button.setText(getString(stringId));
-        stopPlay();
+            @Override
+            public void onFail(JobHandle handle, Throwable error) {
+                Log.e(TAG, "解码失败", error);
+                showToast(R.string.audio_decode_fail);
+                if (mStreamBuffer == ringBuffer) {
+                    stopAACPlay();
+                }
+            }
+        });
+        mStreamBuffer = ringBuffer;
+        startPlayback(new PlaybackEngine(new File(audioPath).getName(), ringBuffer, DECODE_OUTPUT_FORMAT,
+                PlaybackEngine.outputBurstFrames(this), mMainExecutor,
+                new PlaybackListener(audioPath, R.id.btn_play_aac, R.string.play_aac)));
     }
 
-    private void stopPlay() {
-        if (mPlayTask != null) {
-            mPlayTask.cancel(true);
-            mPlayTask = null;
+    /**
+     * 无缝连续播放目录下的AAC/M4A文件：下一个文件在当前文件播放时就开始解码，
+     * 各文件解码成DECODE_OUTPUT_FORMAT后首尾相接写入同一个环形缓冲区，整个列表只用一个AudioTrack
+     */
+    private void playPlaylist(String dirPath) {
+        File[] files = new File(dirPath).listFiles();
+        if (files == null) {
+            files = new File[0];
         }
-        if (mAudioTrack != null) {
-            Log.d(TAG, "Stopping");
-            mAudioTrack.stop();
-            Log.d(TAG, "Releasing");
-            mAudioTrack.release();
-            Log.d(TAG, "Nulling");
-            mAudioTrack = null;
+        Arrays.sort(files);
+        final PcmRingBuffer ringBuffer = new PcmRingBuffer(STREAM_BUFFER_SIZE);
+        GaplessPlaylist playlist = new GaplessPlaylist(DECODE_OUTPUT_FORMAT, ringBuffer, PLAYLIST_PREFETCH_SIZE);
+        for (File file : files) {
+            String name = file.getName().toLowerCase();
+            if (file.isFile() && (name.endsWith(SUFFIX_AAC) || name.endsWith(SUFFIX_M4A))) {
+                DecodePlaylistItem item = new DecodePlaylistItem(file.getPath(), DECODE_OUTPUT_FORMAT, mScheduler);
+                item.setCodecCallbackMode(CODEC_CALLBACK_MODE);
+                item.setMetricsRegistry(mMetrics);
+                item.setBufferPool(mBufferPool);
+                item.setCodecBudget(mCodecBudget);
+                playlist.add(item);
+            }
         }
+        if (playlist.size() == 0) {
+            showToast(R.string.playlist_empty);
+            stopPlaylist();
+            return;
+        }
+        playlist.setListener(new GaplessPlaylist.Listener() {
+            @Override
+            public void onItemStarted(int index, PlaylistItem item, long startFrame) {
+                Log.d(TAG, "playlist " + index + ": " + item.getName() + " 从第" + startFrame + "帧开始");
+            }
+
+            @Override
+            public void onItemFailed(int index, PlaylistItem item, Throwable error) {
+                Log.e(TAG, "playlist " + index + ": " + item.getName() + " 已跳过", error);
+            }
+        });
+        mStreamBuffer = ringBuffer;
+        mPlaylist = playlist;
+        new Thread(playlist, "playlist").start();
+        startPlayback(new PlaybackEngine("playlist", ringBuffer, DECODE_OUTPUT_FORMAT,
+                PlaybackEngine.outputBurstFrames(this), mMainExecutor,
+                new PlaybackListener(dirPath, R.id.btn_play_playlist, R.string.play_playlist)));
     }
 
-    private void showToast(int id) {
-        Toast.makeText(MainActivity.this, id, Toast.LENGTH_SHORT).show();
-        Log.d(TAG, "showToast##################" + getString(id));
+    private void startPlayback(PlaybackEngine engine) {
+        engine.setMetricsRegistry(mMetrics);
+        engine.setBufferPool(mBufferPool);
+        mPlayback = engine;
+        engine.start();
     }
 
-    private static class PlayInModeStreamTask extends AsyncTask<Void, Void, Void> {
-        /**
-         * 采样率，现在能够保证在所有设备上使用的采样率是44100Hz, 但是其他的采样率（22050, 16000, 11025）在一些设备上也可以使用。
-         */
-        public static final int SAMPLE_RATE_INHZ = 44100;
-        /**
-         * 声道数。CHANNEL_IN_MONO (单通道) and CHANNEL_IN_STEREO（双通道）. 其中CHANNEL_IN_MONO是可以保证在所有设备能够使用的。
-         */
-        public static final int CHANNEL_CONFIG = AudioFormat.CHANNEL_IN_MONO;
-        /**
-         * 返回的音频数据的格式。 ENCODING_PCM_8BIT, ENCODING_PCM_16BIT, and ENCODING_PCM_FLOAT.
-         */
-        public static final int AUDIO_FORMAT = AudioFormat.ENCODING_PCM_16BIT;
-        WeakReference<MainActivity> activity;
-        String pcmPath;
-        PlayInModeStreamTask(MainActivity activity, String path) {
-            this.activity = new WeakReference<>(activity);
-            this.pcmPath = path;
+    /**
+     * 播放结束时恢复按钮
+     */
+    private class PlaybackListener implements PlaybackEngine.Listener {
+        private final String mName;
+        private final int mButtonId;
+        private final int mStringId;
+
+        PlaybackListener(String name, int buttonId, int stringId) {
+            this.mName = name;
+            this.mButtonId = buttonId;
+            this.mStringId = stringId;
         }
 
         @Override
-        protected void onPreExecute() {
-            if (activity == null || activity.get() == null) {
-                return;
+        public void onComplete(PlaybackEngine engine) {
+            Log.d(TAG, "play " + mName + " 完成, underruns=" + engine.getUnderrunCount()
+                    + ", latency=" + engine.getLatencyUs() / 1000 + "ms");
+            if (mPlayback == engine) {
+                onPlayEnd();
             }
-            /*
-             * SAMPLE_RATE_INHZ 对应pcm音频的采样率
-             * channelConfig 对应pcm音频的声道
-             * AUDIO_FORMAT 对应pcm音频的格式
-             * */
-            int channelConfig = AudioFormat.CHANNEL_OUT_MONO;
-            int minBufferSize = AudioTrack.getMinBufferSize(SAMPLE_RATE_INHZ, channelConfig, AUDIO_FORMAT);
-            activity.get().mAudioTrack = new AudioTrack(
-                    new AudioAttributes.Builder()
-                            .setUsage(AudioAttributes.USAGE_MEDIA)
-                            .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
-                            .build(),
-                    new AudioFormat.Builder()
-                            .setSampleRate(SAMPLE_RATE_INHZ)
-                            .setEncoding(AUDIO_FORMAT)
-                            .setChannelMask(channelConfig)
-                            .build(),
-                    minBufferSize,
-                    AudioTrack.MODE_STREAM,
-                    AudioManager.AUDIO_SESSION_ID_GENERATE);
-            activity.get().mAudioTrack.play();
         }
 
         @Override
-        protected Void doInBackground(Void... voids) {
-            if (activity == null || activity.get() == null) {
-                return null;
-            }
-            int channelConfig = AudioFormat.CHANNEL_OUT_MONO;
-            int minBufferSize = AudioTrack.getMinBufferSize(SAMPLE_RATE_INHZ, channelConfig, AUDIO_FORMAT);
-            File file = new File(pcmPath);
-            Log.d(TAG, "playInModeStream: " + file);
-            try {
-                FileInputStream in = new FileInputStream(file);
-                try {
-                    byte[] buffer = new byte[minBufferSize];
-                    while (!isCancelled() && in.available() > 0) {
-                        int readCount = in.read(buffer);
-                        if (readCount == AudioTrack.ERROR_INVALID_OPERATION || readCount == AudioTrack.ERROR_BAD_VALUE) {
-                            continue;
-                        }
-                        if (readCount != 0 && readCount != -1 && activity.get().mAudioTrack != null) {
-                            activity.get().mAudioTrack.write(buffer, 0, readCount);
-                        }
-                    }
-                    try {
-                        in.close();
-                    } catch (IOException e) {
-                        e.printStackTrace();
-                    }
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
-            } catch (FileNotFoundException e) {
-                e.printStackTrace();
+        public void onError(PlaybackEngine engine, Throwable error) {
+            Log.e(TAG, "play " + mName, error);
+            if (mPlayback == engine) {
+                onPlayEnd();
             }
-            return null;
         }
 
-        @Override
-        protected void onPostExecute(Void unused) {
-            if (activity == null || activity.get() == null) {
-                return;
-            }
-            if (pcmPath.equals(PCM_PATH)) {
-                activity.get().stopPlayInModeStream();
-            } else {
-                activity.get().stopAACPlay();
-            }
+        void onPlayEnd() {
+            stopPlay(mButtonId, mStringId);
         }
     }
 
-    private static class AudioDecodeTask extends AsyncTask<Void, Void, Boolean> {
-        private final static int TIMEOUT = 0;
-        private MediaExtractor mExtractor;
-        private int mTrackIndex;
-        private String mPcmPath;
-        private CodecListener mListener;
-
-        public AudioDecodeTask(MediaExtractor extractor, int trackIndex,
-                               String outPath, CodecListener listener) {
-            this.mExtractor = extractor;
-            this.mTrackIndex = trackIndex;
-            this.mPcmPath = outPath;
-            this.mListener = listener;
-        }
+    private void stopPlayInModeStream() {
+        stopPlay(R.id.btn_play_pcm, R.string.play_pcm);
+    }
 
-        @Override
-        protected Boolean doInBackground(Void... voids) {
-            try {
-                //直接从MP3音频文件中得到音轨的MediaFormat
-                MediaFormat format = mExtractor.getTrackFormat(mTrackIndex);
-                //初始化音频解码器,并配置解码器属性
-                MediaCodec mediaCodec = MediaCodec.createDecoderByType(format.getString(MediaFormat.KEY_MIME));
-                mediaCodec.configure(format, null, null, 0);
-
-                //启动MediaCodec，等待传入数据
-                mediaCodec.start();
-
-                //获取需要编码数据的输入流队列，返回的是一个ByteBuffer数组
-                ByteBuffer[] inputBuffers = mediaCodec.getInputBuffers();
-                //获取编解码之后的数据输出流队列，返回的是一个ByteBuffer数组
-                ByteBuffer[] outputBuffers = mediaCodec.getOutputBuffers();
-
-                //用于描述解码得到的byte[]数据的相关信息
-                MediaCodec.BufferInfo decodeInfo = new MediaCodec.BufferInfo();
-                //用于描述输入数据的byte[]数据的相关信息
-                MediaCodec.BufferInfo inputInfo = new MediaCodec.BufferInfo();
-                boolean finish = false;
-                //整体输入结束标记
-                boolean inputDone = false;
-
-                FileOutputStream fos = new FileOutputStream(mPcmPath);
-                while (!finish && !isCancelled()) {
-                    if (!inputDone) {
-                        for (int i = 0; i < inputBuffers.length; i++) {
-                            //从输入流队列中取数据进行操作
-                            //返回用于填充有效数据的输入buffer的索引，如果当前没有可用的buffer，则返回-1
-                            int inputIndex = mediaCodec.dequeueInputBuffer(TIMEOUT);
-                            if (inputIndex >= 0) {
-                                //从分离器拿出输入，写入解码器
-                                //拿到inputBuffer
-                                ByteBuffer inputBuffer = inputBuffers[inputIndex];
-                                //将position置为0，并不清除buffer内容
-                                inputBuffer.clear();
-
-                                //将MediaExtractor读取数据到inputBuffer
-                                int sampleSize = mExtractor.readSampleData(inputBuffer, 0);
-                                if (sampleSize < 0) { //表示所有数据已经读取完毕
-                                    inputDone = true;
-                                    mediaCodec.queueInputBuffer(inputIndex, 0, 0, 0L,
-                                            MediaCodec.BUFFER_FLAG_END_OF_STREAM);
-                                } else {
-                                    inputInfo.offset = 0;
-                                    inputInfo.size = sampleSize;
-                                    inputInfo.flags = MediaCodec.BUFFER_FLAG_SYNC_FRAME;
-                                    inputInfo.presentationTimeUs = mExtractor.getSampleTime();
-
-                                    //Log.d(TAG, "往解码器写入数据，当前时间戳：" + inputInfo.presentationTimeUs);
-                                    //通知MediaCodec解码刚刚传入的数据
-                                    mediaCodec.queueInputBuffer(inputIndex, inputInfo.offset, sampleSize,
-                                            inputInfo.presentationTimeUs, 0);
-                                    //读取下一帧数据
-                                    mExtractor.advance();
-                                }
-                            }
-                        }
-                    }
+    private void stopAACPlay() {
+        stopPlay(R.id.btn_play_aac, R.string.play_aac);
+    }
 
-                    /* dequeueInputBuffer dequeueOutputBuffer 返回值解释
-                    INFO_TRY_AGAIN_LATER=-1 等待超时
-                    INFO_OUTPUT_FORMAT_CHANGED=-2 媒体格式更改
-                    INFO_OUTPUT_BUFFERS_CHANGED=-3 缓冲区已更改（过时）
-                    大于等于0的为缓冲区数据下标
-                     */
-
-                    //整体解码结束标记
-                    boolean decodeOutputDone = false;
-                    byte[] pcmData;
-                    while (!decodeOutputDone) {
-                        int outputIndex = mediaCodec.dequeueOutputBuffer(decodeInfo, TIMEOUT);
-                        if (outputIndex == MediaCodec.INFO_TRY_AGAIN_LATER) {
-                            // 没有可用的解码器
-                            decodeOutputDone = true;
-                        } else if (outputIndex == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
-                            outputBuffers = mediaCodec.getOutputBuffers();
-                        } else if (outputIndex >= 0) {
-                            ByteBuffer outputBuffer = Build.VERSION.SDK_INT >= Build.VERSION_CODES.LOLLIPOP ?
-                                    mediaCodec.getOutputBuffer(outputIndex) : outputBuffers[outputIndex];
-
-                            pcmData = new byte[decodeInfo.size];
-                            outputBuffer.get(pcmData);
-                            outputBuffer.clear();
-
-                            //数据写入文件中
-                            fos.write(pcmData);
-                            fos.flush();
-                            //Log.d(TAG,"释放输出流缓冲区：" + outputIndex);
-                            mediaCodec.releaseOutputBuffer(outputIndex, false);
-
-                            if ((decodeInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
-                                mExtractor.release();
-                                mediaCodec.stop();
-                                mediaCodec.release();
-                                finish = true;
-                                decodeOutputDone = true;
-                            }
-
-                        }
-                    }
-                }
-                fos.close();
-                return true;
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
-            return false;
-        }
+    private void stopPlaylist() {
+        stopPlay(R.id.btn_play_playlist, R.string.play_playlist);
+    }
 
-        @Override
-        protected void onPostExecute(Boolean success) {
-            if (mListener == null || isCancelled()) {
-                return;
-            }
-            if (success) {
-                mListener.codecFinish();
-            } else {
-                mListener.codecFail();
-            }
-        }
+    private void stopPlay(int id, int stringId) {
+        Button button = findViewById(id);
+        button.setText(getString(stringId));
+        stopPlay();
     }
 
-    private static class AudioEncodeTask extends AsyncTask<Void, Void, Boolean> {
-        private static final int BUFFER_SIZE = 100 * 1024;
-        private static final int SAMPLE_RATE = 44100;
-        private static final int CHANNEL_COUNT = 2;
-        private static final int BIT_RATE = 96000;
-        private static final int MAX_INPUT_SIZE = 500 * 1024;
-        private static final long TIME_OUT = 10000;
-        private static final int ADTS_HEAD_SIZE = 7;
-
-        private String mPcmPath;
-        private String mAudioPath;
-        private CodecListener mListener;
-
-        public AudioEncodeTask(String pcmPath, String audioPath, CodecListener listener) {
-            this.mPcmPath = pcmPath;
-            this.mAudioPath = audioPath;
-            this.mListener = listener;
+    private void stopPlay() {
+        if (mPlaylist != null) {
+            //同时取消正在预取的文件
+            mPlaylist.cancel();
+            mPlaylist = null;
         }
-
-        @Override
-        protected Boolean doInBackground(Void... voids) {
-            if (new File(mPcmPath).exists() && !isCancelled()) {
-                try {
-                    FileInputStream fis = new FileInputStream(mPcmPath);
-                    byte[] buffer = new byte[BUFFER_SIZE];
-                    byte[] data;
-
-                    int inputIndex, outputIndex;
-                    ByteBuffer inputBuffer, outputBuffer;
-
-                    byte[] targetData;
-                    int outBitSize;
-                    int outPacketSize;
-
-                    //初始化编码格式 mimetype 采样率 声道数
-                    MediaFormat format = MediaFormat.createAudioFormat(MediaFormat.MIMETYPE_AUDIO_AAC,
-                            SAMPLE_RATE, CHANNEL_COUNT);
-                    format.setInteger(MediaFormat.KEY_BIT_RATE, BIT_RATE);
-                    format.setInteger(MediaFormat.KEY_AAC_PROFILE, MediaCodecInfo.CodecProfileLevel.AACObjectLC);
-                    format.setInteger(MediaFormat.KEY_MAX_INPUT_SIZE, MAX_INPUT_SIZE);
-
-                    //初始化编码器
-                    MediaCodec mediaCodec = MediaCodec.createEncoderByType(MediaFormat.MIMETYPE_AUDIO_AAC);
-                    mediaCodec.configure(format,null,null,MediaCodec.CONFIGURE_FLAG_ENCODE);
-                    mediaCodec.start();
-
-                    ByteBuffer[] inputBuffers = mediaCodec.getInputBuffers();
-                    ByteBuffer[] outputBuffers = mediaCodec.getOutputBuffers();
-                    MediaCodec.BufferInfo bufferInfo = new MediaCodec.BufferInfo();
-
-                    //初始化文件写入流
-                    FileOutputStream fos = new FileOutputStream(mAudioPath);
-                    BufferedOutputStream bos = new BufferedOutputStream(fos, MAX_INPUT_SIZE);
-                    boolean readFinish = false;
-                    while (!readFinish && !isCancelled()) {
-                        //减掉1很重要，不要忘记
-                        for (int i = 0; i < inputBuffers.length - 1; i++) {
-                            if (fis.read(buffer) != -1) {
-                                data = Arrays.copyOf(buffer, buffer.length);
-                            } else {
-                                Log.d(TAG,"文件读取完成");
-                                readFinish = true;
-                                break;
-                            }
-                            //Log.d(TAG,"读取文件并写入编码器" + data.length);
-
-                            //从输入流队列中取数据进行编码操作
-                            //dequeueInputBuffer（time）需要传入一个时间值，-1表示一直等待，0表示不等待有可能会丢帧，其他表示等待多少毫秒
-                            inputIndex = mediaCodec.dequeueInputBuffer(-1);
-                            if (inputIndex >= 0) {
-                                inputBuffer = inputBuffers[inputIndex];
-                                inputBuffer.clear();
-                                inputBuffer.limit(data.length);//限制ByteBuffer的访问长度
-                                //将pcm数据填充给inputBuffer
-                                inputBuffer.put(data);//添加数据
-                                //在指定索引处填充输入buffer后，使用queueInputBuffer将buffer提交给组件
-                                mediaCodec.queueInputBuffer(inputIndex, 0, data.length, 0, 0);
-                            }
-                        }
-
-                        outputIndex = mediaCodec.dequeueOutputBuffer(bufferInfo, TIME_OUT);
-                        while (outputIndex >= 0) {
-                            //从解码器中取出数据
-                            outBitSize = bufferInfo.size;
-                            //添加ADTS头部后的长度，7为adts头部大小
-                            outPacketSize = outBitSize + ADTS_HEAD_SIZE;
-                            //拿到输出的buffer
-                            outputBuffer = outputBuffers[outputIndex];
-                            outputBuffer.position(bufferInfo.offset);
-                            outputBuffer.limit(bufferInfo.offset + outBitSize);
-
-                            targetData = new byte[outPacketSize];
-                            //添加ADTS
-                            addADTStoPacket(targetData, outPacketSize);
-                            //将编码得到的AAC数据取出到byte[]中，偏移量为7
-                            outputBuffer.get(targetData, ADTS_HEAD_SIZE, outBitSize);
-                            outputBuffer.position(bufferInfo.offset);
-                            //Log.d(TAG, "编码成功并写入文件" + targetData.length);
-
-                            //将文件保存在sdcard中
-                            bos.write(targetData, 0, targetData.length);
-                            bos.flush();
-
-                            mediaCodec.releaseOutputBuffer(outputIndex, false);
-                            outputIndex = mediaCodec.dequeueOutputBuffer(bufferInfo, TIME_OUT);
-                        }
-                    }
-                    mediaCodec.stop();
-                    mediaCodec.release();
-                    fos.close();
-                    return true;
-                } catch (IOException e) {
-                    e.printStackTrace();
-                }
+        if (mStreamBuffer != null) {
+            //停止边解码边播放时，同时结束解码
+            mStreamBuffer.cancel();
+            mStreamBuffer = null;
+            if (mStreamDecodeJob != null) {
+                mStreamDecodeJob.cancel();
+                mStreamDecodeJob = null;
             }
-            return false;
         }
-
-        /**
-         * 写入ADTS头部数据
-         * @param packet
-         * @param packetLen
-         */
-        private static void addADTStoPacket(byte[] packet, int packetLen) {
-            int profile = 2; // AAC LC
-            int freqIdx = 4; // 44.1KHz
-            int chanCfg = 2; // CPE
-
-            packet[0] = (byte) 0xFF;
-            packet[1] = (byte) 0xF9;
-            packet[2] = (byte) (((profile - 1) << 6) + (freqIdx << 2) + (chanCfg >> 2));
-            packet[3] = (byte) (((chanCfg & 3) << 6) + (packetLen >> 11));
-            packet[4] = (byte) ((packetLen & 0x7FF) >> 3);
-            packet[5] = (byte) (((packetLen & 7) << 5) + 0x1F);
-            packet[6] = (byte) 0xFC;
+        if (mPlayback != null) {
+            //AudioTrack在播放线程中释放
+            mPlayback.stop();
+            mPlayback = null;
         }
+    }
 
-        @Override
-        protected void onPostExecute(Boolean success) {
-            if (mListener == null || isCancelled()) {
-                return;
-            }
-            if (success) {
-                mListener.codecFinish();
-            } else {
-                mListener.codecFail();
-            }
-        }
+    private void showToast(int id) {
+        Toast.makeText(MainActivity.this, id, Toast.LENGTH_SHORT).show();
+        Log.d(TAG, "showToast##################" + getString(id));
     }
-}
\ No newline at end of file
+}
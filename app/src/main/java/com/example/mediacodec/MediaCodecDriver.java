@@ -0,0 +1,73 @@
+package com.example.mediacodec;
+
+import android.media.MediaCodec;
+import android.media.MediaFormat;
+import android.os.Build;
+
+import com.example.mediacodec.core.codec.CodecDriver;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 基于MediaCodec的CodecDriver，分为轮询和回调两种实现
+ */
+abstract class MediaCodecDriver implements CodecDriver {
+    protected final MediaCodec mCodec;
+
+    MediaCodecDriver(MediaCodec codec) {
+        this.mCodec = codec;
+    }
+
+    /**
+     * @param callbackMode 是否使用MediaCodec.setCallback的回调模式，Android 6.0以下总是使用轮询模式
+     */
+    static MediaCodecDriver create(MediaCodec codec, boolean callbackMode) {
+        if (callbackMode && Build.VERSION.SDK_INT >= Build.VERSION_CODES.M) {
+            return new CallbackCodecDriver(codec);
+        }
+        return new PollingCodecDriver(codec);
+    }
+
+    void configure(MediaFormat format, int flags) {
+        mCodec.configure(format, null, null, flags);
+    }
+
+    MediaFormat getOutputFormat() {
+        return mCodec.getOutputFormat();
+    }
+
+    @Override
+    public void start() {
+        mCodec.start();
+    }
+
+    @Override
+    public ByteBuffer getInputBuffer(int index) {
+        return mCodec.getInputBuffer(index);
+    }
+
+    @Override
+    public ByteBuffer getOutputBuffer(int index) {
+        return mCodec.getOutputBuffer(index);
+    }
+
+    @Override
+    public void queueInputBuffer(int index, int offset, int size, long presentationTimeUs, int flags) {
+        mCodec.queueInputBuffer(index, offset, size, presentationTimeUs, flags);
+    }
+
+    @Override
+    public void releaseOutputBuffer(int index) {
+        mCodec.releaseOutputBuffer(index, false);
+    }
+
+    @Override
+    public void release() {
+        try {
+            mCodec.stop();
+        } catch (IllegalStateException e) {
+            // 未启动或已出错时stop会抛异常，不影响release
+        }
+        mCodec.release();
+    }
+}
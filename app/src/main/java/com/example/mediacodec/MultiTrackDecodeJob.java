@@ -0,0 +1,216 @@
+package com.example.mediacodec;
+
+import android.media.MediaCodec;
+import android.media.MediaExtractor;
+import android.media.MediaFormat;
+import android.util.Log;
+
+import com.example.mediacodec.core.codec.CodecBudget;
+import com.example.mediacodec.core.demux.DemuxFanOut;
+import com.example.mediacodec.core.demux.TrackDecoder;
+import com.example.mediacodec.core.demux.TrackInfo;
+import com.example.mediacodec.core.demux.TrackSelector;
+import com.example.mediacodec.core.demux.TrackSelectors;
+import com.example.mediacodec.core.dsp.TransformingDataSink;
+import com.example.mediacodec.core.io.ChannelDataSink;
+import com.example.mediacodec.core.io.DataSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.job.TranscodeJob;
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.metrics.MeteredDataSink;
+import com.example.mediacodec.core.metrics.MetricsRegistry;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.pcm.PcmFormat;
+import com.example.mediacodec.core.pipeline.SampleSource;
+import com.example.mediacodec.core.pipeline.SerialDecoder;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * 把容器（例如带多条音轨的MP4视频）中选中的多条音轨同时解码成PCM：容器只读一遍，
+ * 样本分发给每条音轨各自的解码器（见{@link DemuxFanOut}），每条音轨写入自己的PCM文件{@link #getPcmPath}。
+ * 任务的进度是各音轨之和，每条音轨的进度可以通过{@link #setTrackListener}单独得到。
+ * 任何一条音轨失败时整个任务失败，已写入的文件不删除
+ */
+class MultiTrackDecodeJob implements TranscodeJob {
+    private static final String TAG = "MediaCodec";
+    //容器没有给出最大样本大小时使用：8声道、每帧2048个采样（HE-AAC）
+    private static final int DEFAULT_MAX_SAMPLE_SIZE = 16 * 1024;
+
+    private final String mAudioPath;
+    private final String mPcmPrefix;
+    private final int mFlushThreshold;
+    private TrackSelector mSelector = TrackSelectors.allAudio();
+    private boolean mCallbackMode = true;
+    private PcmFormat mOutputFormat;
+    private MetricsRegistry mMetricsRegistry;
+    private DirectBufferPool mBufferPool;
+    private CodecBudget mCodecBudget;
+    private DemuxFanOut.Listener mTrackListener;
+
+    /**
+     * @param pcmPrefix 各音轨的输出文件为pcmPrefix.轨道序号.pcm
+     */
+    MultiTrackDecodeJob(String audioPath, String pcmPrefix) {
+        this.mAudioPath = audioPath;
+        this.mPcmPrefix = pcmPrefix;
+        this.mFlushThreshold = ChannelDataSink.DEFAULT_FLUSH_THRESHOLD;
+    }
+
+    /**
+     * 第track条轨道的输出文件
+     */
+    String getPcmPath(int track) {
+        return mPcmPrefix + "." + track + ".pcm";
+    }
+
+    /**
+     * 解码哪些音轨，默认为全部音轨
+     */
+    void setTrackSelector(TrackSelector selector) {
+        this.mSelector = selector;
+    }
+
+    /**
+     * 是否使用MediaCodec.setCallback的回调模式，默认为true
+     */
+    void setCodecCallbackMode(boolean callbackMode) {
+        this.mCallbackMode = callbackMode;
+    }
+
+    /**
+     * 各音轨的输出统一转换成format（16位PCM），为null（默认）时原样输出解码器的格式
+     */
+    void setOutputFormat(PcmFormat format) {
+        this.mOutputFormat = format;
+    }
+
+    /**
+     * 任务运行期间在registry中为每条音轨登记指标，结束时移除
+     */
+    void setMetricsRegistry(MetricsRegistry registry) {
+        this.mMetricsRegistry = registry;
+    }
+
+    /**
+     * 写文件的暂存区、分发队列和格式转换的buffer从pool中借用，任务结束时归还
+     */
+    void setBufferPool(DirectBufferPool pool) {
+        this.mBufferPool = pool;
+    }
+
+    /**
+     * 每条音轨的解码器占budget的一个名额，开始解码前一次取得全部名额；
+     * 选中的音轨多于总名额时只解码前面的音轨
+     */
+    void setCodecBudget(CodecBudget budget) {
+        this.mCodecBudget = budget;
+    }
+
+    /**
+     * 每条音轨的解码进度，在该音轨的解码线程中回调
+     */
+    void setTrackListener(DemuxFanOut.Listener listener) {
+        this.mTrackListener = listener;
+    }
+
+    @Override
+    public void run(JobContext context) throws Exception {
+        MediaExtractor extractor = new MediaExtractor();
+        try {
+            extractor.setDataSource(mAudioPath);
+            //解码线程不访问extractor，轨道格式在读取开始前取出
+            int trackCount = extractor.getTrackCount();
+            final MediaFormat[] formats = new MediaFormat[trackCount];
+            int maxSampleSize = 0;
+            for (int i = 0; i < trackCount; i++) {
+                formats[i] = extractor.getTrackFormat(i);
+                if (formats[i].containsKey(MediaFormat.KEY_MAX_INPUT_SIZE)
+                        && formats[i].getString(MediaFormat.KEY_MIME).startsWith("audio/")) {
+                    maxSampleSize = Math.max(maxSampleSize, formats[i].getInteger(MediaFormat.KEY_MAX_INPUT_SIZE));
+                }
+            }
+            DemuxFanOut fanOut = new DemuxFanOut(new ExtractorDemuxSource(extractor), new TrackDecoder() {
+                @Override
+                public void decode(TrackInfo track, SampleSource source, JobContext trackContext) throws Exception {
+                    decodeTrack(track, formats[track.getIndex()], source, trackContext);
+                }
+            }, DemuxFanOut.DEFAULT_QUEUE_CAPACITY, maxSampleSize > 0 ? maxSampleSize : DEFAULT_MAX_SAMPLE_SIZE,
+                    mBufferPool);
+            fanOut.setListener(mTrackListener);
+            fanOut.setCodecBudget(mCodecBudget);
+            List<TrackInfo> tracks = fanOut.run(mSelector, context);
+            Log.d(TAG, mAudioPath + " 解码了" + tracks.size() + "条音轨：" + tracks);
+        } finally {
+            extractor.release();
+        }
+    }
+
+    /**
+     * 在该音轨的解码线程上用独立的解码器解码到独立的文件
+     */
+    private void decodeTrack(TrackInfo track, MediaFormat format, SampleSource source, JobContext context)
+            throws Exception {
+        String name = mAudioPath + "#" + track.getIndex();
+        TranscodeMetrics metrics = mMetricsRegistry != null
+                ? mMetricsRegistry.register("decode " + name) : new TranscodeMetrics(name);
+        MediaCodecDriver driver = null;
+        DataSink sink = null;
+        try {
+            MediaCodec mediaCodec = MediaCodec.createDecoderByType(track.getMime());
+            driver = MediaCodecDriver.create(mediaCodec, mCallbackMode);
+            driver.configure(format, 0);
+            DataSink baseSink = new ChannelDataSink(new FileOutputStream(getPcmPath(track.getIndex())).getChannel(),
+                    mFlushThreshold, mBufferPool);
+            //先按音轨格式转换，解码器报告实际输出格式后再更换
+            TransformingDataSink converting = mOutputFormat != null ? new TransformingDataSink(baseSink,
+                    AudioDecodeJob.createConverter(name, format, mOutputFormat), mBufferPool) : null;
+            sink = new MeteredDataSink(converting != null ? converting : baseSink, metrics);
+            SerialDecoder decoder = new SerialDecoder(source, driver, sink);
+            decoder.setMetrics(metrics);
+            decoder.setProgressRange(0, track.getDurationUs());
+            decoder.setListener(new TrackListener(name, driver, converting));
+            decoder.run(context);
+            sink.close();
+            sink = null;
+        } finally {
+            if (driver != null) {
+                driver.release();
+            }
+            IoUtils.closeQuietly(sink);
+            if (mMetricsRegistry != null) {
+                mMetricsRegistry.unregister(metrics);
+            }
+        }
+    }
+
+    /**
+     * 跟随解码器的输出格式更换格式转换
+     */
+    private class TrackListener implements SerialDecoder.Listener {
+        private final String mName;
+        private final MediaCodecDriver mDriver;
+        private final TransformingDataSink mConverting;
+
+        TrackListener(String name, MediaCodecDriver driver, TransformingDataSink converting) {
+            this.mName = name;
+            this.mDriver = driver;
+            this.mConverting = converting;
+        }
+
+        @Override
+        public void onOutputFormatChanged() throws IOException {
+            MediaFormat outputFormat = mDriver.getOutputFormat();
+            Log.d(TAG, mName + " 解码输出格式：" + outputFormat);
+            if (mConverting != null) {
+                mConverting.setTransform(AudioDecodeJob.createConverter(mName, outputFormat, mOutputFormat));
+            }
+        }
+
+        @Override
+        public void onOutputWritten(long presentationTimeUs) {
+        }
+    }
+}
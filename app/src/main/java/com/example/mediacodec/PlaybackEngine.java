@@ -0,0 +1,404 @@
+package com.example.mediacodec;
+
+import android.content.Context;
+import android.media.AudioAttributes;
+import android.media.AudioFormat;
+import android.media.AudioManager;
+import android.media.AudioTimestamp;
+import android.media.AudioTrack;
+import android.os.Build;
+import android.os.Process;
+import android.util.Log;
+
+import com.example.mediacodec.core.io.PcmRingBuffer;
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.memory.PooledBuffer;
+import com.example.mediacodec.core.metrics.MetricsRegistry;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.pcm.PcmFormat;
+import com.example.mediacodec.core.pcm.PcmSource;
+import com.example.mediacodec.core.playback.JitterBufferController;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Executor;
+
+/**
+ * 低延迟的16位PCM播放：数据来自PCM文件（{@link PcmSource}）或边解码边播放的{@link PcmRingBuffer}。
+ * <p>
+ * 播放在独立的音频线程（THREAD_PRIORITY_URGENT_AUDIO）中进行，AudioTrack也在这个线程中创建，不占用UI线程；
+ * Android 8.0及以上请求PERFORMANCE_MODE_LOW_LATENCY。每次写入一个burst（音频硬件一次取走的帧数）。
+ * <p>
+ * 缓冲大小由{@link JitterBufferController}决定。Android 7.0及以上AudioTrack按最大缓冲分配，
+ * 用setBufferSizeInFrames调整实际使用的大小，欠载由getUnderrunCount得到；
+ * 更早的版本AudioTrack的缓冲固定为最小值，欠载按环形缓冲区读空计算，读空后按目标重新预缓冲再继续播放。
+ * 输出延迟（已写入但还没有被听到的数据）和欠载次数记录在{@link TranscodeMetrics}中。
+ */
+class PlaybackEngine {
+    private static final String TAG = "MediaCodec";
+    private static final int DEFAULT_BURST_FRAMES = 256;
+    // 缓冲的上限（毫秒）
+    private static final int MAX_BUFFER_MS = 500;
+    // 开始时的目标缓冲（burst数），之后由控制器调整
+    private static final int INITIAL_BURSTS = 4;
+    // 输出延迟的采样间隔
+    private static final long LATENCY_SAMPLE_NANOS = 100000000L;
+    // 数据写完后等待AudioTrack播完的最长时间
+    private static final long DRAIN_TIMEOUT_MS = MAX_BUFFER_MS + 200;
+
+    interface Listener {
+        /**
+         * 全部数据已播放完毕，调用{@link #stop}停止的不会回调
+         */
+        void onComplete(PlaybackEngine engine);
+
+        void onError(PlaybackEngine engine, Throwable error);
+    }
+
+    private final String mName;
+    private final PcmSource mSource;
+    private final PcmRingBuffer mRingBuffer;
+    private final PcmFormat mFormat;
+    private final int mBurstFrames;
+    private final Executor mCallbackExecutor;
+    private final Listener mListener;
+    private MetricsRegistry mMetricsRegistry;
+    private DirectBufferPool mBufferPool;
+    private Thread mThread;
+    private volatile boolean mStopped;
+    private volatile int mUnderrunCount;
+    private volatile int mTargetFrames;
+    private volatile long mLatencyUs;
+
+    /**
+     * 播放PCM文件，播放结束后关闭source
+     * @param burstFrames 见{@link #outputBurstFrames}
+     */
+    PlaybackEngine(String name, PcmSource source, int burstFrames, Executor callbackExecutor, Listener listener) {
+        this(name, source, null, source.getFormat(), burstFrames, callbackExecutor, listener);
+    }
+
+    /**
+     * 播放解码线程写入ringBuffer的数据，直到生产者finish或cancel
+     */
+    PlaybackEngine(String name, PcmRingBuffer ringBuffer, PcmFormat format, int burstFrames,
+                   Executor callbackExecutor, Listener listener) {
+        this(name, null, ringBuffer, format, burstFrames, callbackExecutor, listener);
+    }
+
+    private PlaybackEngine(String name, PcmSource source, PcmRingBuffer ringBuffer, PcmFormat format,
+                           int burstFrames, Executor callbackExecutor, Listener listener) {
+        if (format.getChannelCount() > 2) {
+            throw new IllegalArgumentException("unsupported channel count: " + format.getChannelCount());
+        }
+        this.mName = name;
+        this.mSource = source;
+        this.mRingBuffer = ringBuffer;
+        this.mFormat = format;
+        this.mBurstFrames = burstFrames > 0 ? burstFrames : DEFAULT_BURST_FRAMES;
+        this.mCallbackExecutor = callbackExecutor;
+        this.mListener = listener;
+    }
+
+    /**
+     * 设备输出的burst大小（AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER），取不到时返回默认值
+     */
+    static int outputBurstFrames(Context context) {
+        AudioManager audioManager = (AudioManager) context.getSystemService(Context.AUDIO_SERVICE);
+        String frames = audioManager != null
+                ? audioManager.getProperty(AudioManager.PROPERTY_OUTPUT_FRAMES_PER_BUFFER) : null;
+        try {
+            return frames != null ? Integer.parseInt(frames) : DEFAULT_BURST_FRAMES;
+        } catch (NumberFormatException e) {
+            return DEFAULT_BURST_FRAMES;
+        }
+    }
+
+    void setMetricsRegistry(MetricsRegistry registry) {
+        this.mMetricsRegistry = registry;
+    }
+
+    /**
+     * 从环形缓冲区读数据时使用的buffer从pool中借用
+     */
+    void setBufferPool(DirectBufferPool pool) {
+        this.mBufferPool = pool;
+    }
+
+    void start() {
+        if (mThread != null) {
+            throw new IllegalStateException("already started");
+        }
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_URGENT_AUDIO);
+                play();
+            }
+        }, "playback");
+        mThread.start();
+    }
+
+    /**
+     * 停止播放，不等待音频线程结束；之后不会再有回调
+     */
+    void stop() {
+        mStopped = true;
+        if (mThread != null) {
+            mThread.interrupt();
+        }
+    }
+
+    int getUnderrunCount() {
+        return mUnderrunCount;
+    }
+
+    /**
+     * 当前的目标缓冲帧数
+     */
+    int getTargetFrames() {
+        return mTargetFrames;
+    }
+
+    /**
+     * 最近一次采样的输出延迟（微秒）
+     */
+    long getLatencyUs() {
+        return mLatencyUs;
+    }
+
+    private void play() {
+        TranscodeMetrics metrics = mMetricsRegistry != null
+                ? mMetricsRegistry.register("play " + mName) : new TranscodeMetrics(mName);
+        AudioTrack track = null;
+        PooledBuffer lease = null;
+        Throwable error = null;
+        boolean complete = false;
+        try {
+            int sampleRate = mFormat.getSampleRate();
+            int frameSize = mFormat.getBytesPerFrame();
+            int minBufferFrames = AudioTrack.getMinBufferSize(sampleRate, channelMask(),
+                    AudioFormat.ENCODING_PCM_16BIT) / frameSize;
+            int maxFrames = Math.max(minBufferFrames, sampleRate * MAX_BUFFER_MS / 1000);
+            JitterBufferController controller = new JitterBufferController(sampleRate, mBurstFrames,
+                    2 * mBurstFrames, maxFrames);
+            controller.setTargetFrames(INITIAL_BURSTS * mBurstFrames);
+            //Android 7.0起可以调整AudioTrack实际使用的缓冲大小并读取欠载次数
+            boolean adjustable = Build.VERSION.SDK_INT >= Build.VERSION_CODES.N;
+            track = createTrack(adjustable ? controller.getMaxFrames() : minBufferFrames);
+            applyTarget(track, controller, adjustable);
+
+            int chunkSize = mBurstFrames * frameSize;
+            ByteBuffer readBuffer = null;
+            if (mRingBuffer != null) {
+                if (mBufferPool != null) {
+                    lease = mBufferPool.lease(chunkSize);
+                    readBuffer = lease.buffer();
+                } else {
+                    readBuffer = ByteBuffer.allocateDirect(chunkSize);
+                }
+                //预缓冲到目标再开始播放
+                if (!mRingBuffer.awaitReadable(controller.getTargetFrames() * frameSize)) {
+                    return;
+                }
+            }
+            metrics.start();
+            track.play();
+            AudioTimestamp timestamp = new AudioTimestamp();
+            long framesWritten = 0;
+            int lastUnderruns = 0;
+            long nextLatencySample = 0;
+            while (!mStopped) {
+                long now = System.nanoTime();
+                if (adjustable) {
+                    int underruns = track.getUnderrunCount();
+                    for (; lastUnderruns < underruns; lastUnderruns++) {
+                        onUnderrun(metrics, controller, now);
+                    }
+                    applyTarget(track, controller, true);
+                }
+                long queued = framesWritten - (track.getPlaybackHeadPosition() & 0xFFFFFFFFL);
+                int buffered = adjustable ? (int) queued : available(frameSize);
+                if (controller.update(now, buffered)) {
+                    applyTarget(track, controller, adjustable);
+                }
+
+                ByteBuffer chunk;
+                if (mRingBuffer != null) {
+                    if (!adjustable && mRingBuffer.available() == 0 && !mRingBuffer.isFinished()
+                            && !rebuffer(track, metrics, controller, frameSize)) {
+                        break;
+                    }
+                    readBuffer.clear().limit(chunkSize);
+                    if (mRingBuffer.read(readBuffer) < 0) {
+                        complete = true;
+                        break;
+                    }
+                    readBuffer.flip();
+                    chunk = readBuffer;
+                } else {
+                    chunk = mSource.next(chunkSize);
+                    if (chunk == null) {
+                        complete = true;
+                        break;
+                    }
+                }
+                while (chunk.hasRemaining() && !mStopped) {
+                    long start = System.nanoTime();
+                    int written = track.write(chunk, chunk.remaining(), AudioTrack.WRITE_BLOCKING);
+                    if (written < 0) {
+                        throw new IOException("AudioTrack.write: " + written);
+                    }
+                    framesWritten += written / frameSize;
+                    metrics.writeLatency.record(System.nanoTime() - start);
+                    metrics.bytesWritten.add(written);
+                    metrics.framesOut.add(written / frameSize);
+                }
+                metrics.setMediaTimeUs(mFormat.framesToUs(framesWritten));
+                if (now >= nextLatencySample) {
+                    sampleLatency(track, timestamp, framesWritten, metrics);
+                    nextLatencySample = now + LATENCY_SAMPLE_NANOS;
+                }
+            }
+            if (complete && !mStopped) {
+                drain(track, framesWritten);
+            }
+        } catch (InterruptedException e) {
+            Log.d(TAG, "playback interrupted");
+        } catch (Throwable t) {
+            error = t;
+        } finally {
+            if (track != null) {
+                track.release();
+            }
+            if (lease != null) {
+                lease.release();
+            }
+            IoUtils.closeQuietly(mSource);
+            metrics.stop();
+            Log.d(TAG, "play " + mName + ": underruns=" + mUnderrunCount + ", target=" + mTargetFrames
+                    + " frames, latency=" + mLatencyUs / 1000 + "ms");
+            if (mMetricsRegistry != null) {
+                mMetricsRegistry.unregister(metrics);
+            }
+        }
+        notifyEnd(complete, error);
+    }
+
+    private int channelMask() {
+        return mFormat.getChannelCount() == 1 ? AudioFormat.CHANNEL_OUT_MONO : AudioFormat.CHANNEL_OUT_STEREO;
+    }
+
+    private AudioTrack createTrack(int bufferFrames) {
+        AudioAttributes attributes = new AudioAttributes.Builder()
+                .setUsage(AudioAttributes.USAGE_MEDIA)
+                .setContentType(AudioAttributes.CONTENT_TYPE_MUSIC)
+                .build();
+        AudioFormat format = new AudioFormat.Builder()
+                .setSampleRate(mFormat.getSampleRate())
+                .setEncoding(AudioFormat.ENCODING_PCM_16BIT)
+                .setChannelMask(channelMask())
+                .build();
+        int bufferSize = bufferFrames * mFormat.getBytesPerFrame();
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            return new AudioTrack.Builder()
+                    .setAudioAttributes(attributes)
+                    .setAudioFormat(format)
+                    .setBufferSizeInBytes(bufferSize)
+                    .setTransferMode(AudioTrack.MODE_STREAM)
+                    .setPerformanceMode(AudioTrack.PERFORMANCE_MODE_LOW_LATENCY)
+                    .build();
+        }
+        return new AudioTrack(attributes, format, bufferSize, AudioTrack.MODE_STREAM,
+                AudioManager.AUDIO_SESSION_ID_GENERATE);
+    }
+
+    private void applyTarget(AudioTrack track, JitterBufferController controller, boolean adjustable) {
+        int target = controller.getTargetFrames();
+        if (target == mTargetFrames) {
+            return;
+        }
+        mTargetFrames = target;
+        if (adjustable) {
+            track.setBufferSizeInFrames(target);
+        }
+    }
+
+    private void onUnderrun(TranscodeMetrics metrics, JitterBufferController controller, long now) {
+        mUnderrunCount++;
+        metrics.underruns.increment();
+        controller.onUnderrun(now);
+    }
+
+    /**
+     * 环形缓冲区中的帧数
+     */
+    private int available(int frameSize) {
+        return mRingBuffer != null ? mRingBuffer.available() / frameSize : Integer.MAX_VALUE;
+    }
+
+    /**
+     * 环形缓冲区读空（Android 7.0以前）：记一次欠载，暂停播放，等缓冲到新的目标再继续
+     * @return 已取消时返回false
+     */
+    private boolean rebuffer(AudioTrack track, TranscodeMetrics metrics, JitterBufferController controller,
+                             int frameSize) throws InterruptedException {
+        onUnderrun(metrics, controller, System.nanoTime());
+        applyTarget(track, controller, false);
+        track.pause();
+        if (!mRingBuffer.awaitReadable(controller.getTargetFrames() * frameSize)) {
+            return false;
+        }
+        track.play();
+        return true;
+    }
+
+    /**
+     * 输出延迟：已写入的帧数减去此刻正在播放的帧位置。有AudioTimestamp时按时间戳外推，否则用播放头位置
+     */
+    private void sampleLatency(AudioTrack track, AudioTimestamp timestamp, long framesWritten,
+                               TranscodeMetrics metrics) {
+        long playedFrames;
+        if (track.getTimestamp(timestamp)) {
+            playedFrames = timestamp.framePosition
+                    + (System.nanoTime() - timestamp.nanoTime) * mFormat.getSampleRate() / 1000000000L;
+        } else {
+            playedFrames = track.getPlaybackHeadPosition() & 0xFFFFFFFFL;
+        }
+        long latencyUs = mFormat.framesToUs(Math.max(0, framesWritten - playedFrames));
+        mLatencyUs = latencyUs;
+        metrics.outputLatency.record(latencyUs * 1000);
+    }
+
+    /**
+     * 等待已写入的数据播完
+     */
+    private void drain(AudioTrack track, long framesWritten) throws InterruptedException {
+        //MODE_STREAM下stop会先播完已写入的数据
+        track.stop();
+        long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT_MS;
+        while (!mStopped && (track.getPlaybackHeadPosition() & 0xFFFFFFFFL) < framesWritten
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private void notifyEnd(final boolean complete, final Throwable error) {
+        if (mStopped || mListener == null || (!complete && error == null)) {
+            return;
+        }
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                if (mStopped) {
+                    return;
+                }
+                if (error != null) {
+                    mListener.onError(PlaybackEngine.this, error);
+                } else {
+                    mListener.onComplete(PlaybackEngine.this);
+                }
+            }
+        });
+    }
+}
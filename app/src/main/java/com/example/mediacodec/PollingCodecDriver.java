@@ -0,0 +1,59 @@
+package com.example.mediacodec;
+
+import android.media.MediaCodec;
+
+import com.example.mediacodec.core.codec.CodecEvent;
+
+/**
+ * 轮询模式：通过dequeueOutputBuffer/dequeueInputBuffer取得事件。
+ * 先不等待地取输出，再在超时时间内等待输入；输入结束后只等待输出。
+ */
+class PollingCodecDriver extends MediaCodecDriver {
+    private final MediaCodec.BufferInfo mInfo = new MediaCodec.BufferInfo();
+    private boolean mInputDone;
+
+    PollingCodecDriver(MediaCodec codec) {
+        super(codec);
+    }
+
+    @Override
+    public boolean nextEvent(CodecEvent event, long timeoutUs) {
+        if (pollOutput(event, mInputDone ? timeoutUs : 0)) {
+            return true;
+        }
+        if (!mInputDone) {
+            int inputIndex = mCodec.dequeueInputBuffer(timeoutUs);
+            if (inputIndex >= 0) {
+                event.setInputAvailable(inputIndex);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void queueInputBuffer(int index, int offset, int size, long presentationTimeUs, int flags) {
+        super.queueInputBuffer(index, offset, size, presentationTimeUs, flags);
+        if ((flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+            mInputDone = true;
+        }
+    }
+
+    private boolean pollOutput(CodecEvent event, long timeoutUs) {
+        while (true) {
+            int outputIndex = mCodec.dequeueOutputBuffer(mInfo, timeoutUs);
+            if (outputIndex >= 0) {
+                event.setOutputAvailable(outputIndex, mInfo.offset, mInfo.size,
+                        mInfo.presentationTimeUs, mInfo.flags);
+                return true;
+            } else if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+                event.setFormatChanged();
+                return true;
+            } else if (outputIndex != MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+                // INFO_TRY_AGAIN_LATER
+                return false;
+            }
+            // 使用getOutputBuffer(index)取buffer，INFO_OUTPUT_BUFFERS_CHANGED可以忽略
+        }
+    }
+}
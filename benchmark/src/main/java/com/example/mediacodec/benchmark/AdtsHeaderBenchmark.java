@@ -0,0 +1,72 @@
+package com.example.mediacodec.benchmark;
+
+import com.example.mediacodec.core.adts.AdtsHeader;
+import com.example.mediacodec.core.adts.AdtsWriter;
+import com.example.mediacodec.core.io.ChannelDataSink;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 每个编码输出包加ADTS头部：AudioEncodeTask原来的addADTStoPacket（每包新建targetData数组再拷贝）对比AdtsWriter
+ */
+@State(Scope.Thread)
+public class AdtsHeaderBenchmark {
+    @Param({"371", "1500"})
+    public int payloadSize;
+
+    private ByteBuffer mPayload;
+    private AdtsWriter mWriter;
+    private ChannelDataSink mSink;
+
+    @Setup
+    public void setup() {
+        mPayload = ByteBuffer.allocateDirect(payloadSize);
+        mWriter = new AdtsWriter(AdtsHeader.of(44100, 2, AdtsHeader.OBJECT_LC));
+        mSink = new ChannelDataSink(new NullChannel());
+    }
+
+    @Benchmark
+    public byte[] legacyAddADTStoPacket() {
+        int outPacketSize = payloadSize + 7;
+        byte[] targetData = new byte[outPacketSize];
+        addADTStoPacket(targetData, outPacketSize);
+        mPayload.clear();
+        mPayload.get(targetData, 7, payloadSize);
+        return targetData;
+    }
+
+    @Benchmark
+    public ByteBuffer adtsWriterHeader() {
+        return mWriter.header(payloadSize);
+    }
+
+    @Benchmark
+    public void adtsWriterToSink() throws IOException {
+        mPayload.clear();
+        mWriter.write(mSink, mPayload);
+    }
+
+    /**
+     * AudioEncodeTask原来的实现
+     */
+    private static void addADTStoPacket(byte[] packet, int packetLen) {
+        int profile = 2; // AAC LC
+        int freqIdx = 4; // 44.1KHz
+        int chanCfg = 2; // CPE
+
+        packet[0] = (byte) 0xFF;
+        packet[1] = (byte) 0xF9;
+        packet[2] = (byte) (((profile - 1) << 6) + (freqIdx << 2) + (chanCfg >> 2));
+        packet[3] = (byte) (((chanCfg & 3) << 6) + (packetLen >> 11));
+        packet[4] = (byte) ((packetLen & 0x7FF) >> 3);
+        packet[5] = (byte) (((packetLen & 7) << 5) + 0x1F);
+        packet[6] = (byte) 0xFC;
+    }
+}
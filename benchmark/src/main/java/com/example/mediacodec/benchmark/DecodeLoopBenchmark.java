@@ -0,0 +1,117 @@
+package com.example.mediacodec.benchmark;
+
+import com.example.mediacodec.core.codec.FakeCodec;
+import com.example.mediacodec.core.io.DataSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.pipeline.PipelinedDecoder;
+import com.example.mediacodec.core.pipeline.SampleSource;
+import com.example.mediacodec.core.pipeline.SerialDecoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 完整的解码流程在普通JVM上的开销：用原样输出的FakeCodec代替MediaCodec，
+ * 比较在调用者线程中串行解码（SerialDecoder）和三级流水线（PipelinedDecoder）每秒处理的样本数。
+ * 写入端模拟每块输出sinkNanos纳秒的写入耗时。FakeCodec本身不耗时，结果主要反映线程交接和复制的开销，
+ * 流水线只有在编解码器和写入都耗时、可以相互重叠时才有优势。
+ */
+@State(Scope.Thread)
+public class DecodeLoopBenchmark {
+    private static final int SAMPLES = 2000;
+    // 约一帧AAC的大小
+    private static final int SAMPLE_SIZE = 300;
+
+    @Param({"0", "20000"})
+    public long sinkNanos;
+
+    private static final JobContext CONTEXT = new JobContext() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setProgress(long done, long total) {
+        }
+
+        @Override
+        public void setMetrics(TranscodeMetrics metrics) {
+        }
+    };
+
+    private static final class RepeatingSource implements SampleSource {
+        private int mIndex;
+
+        @Override
+        public int readSampleData(ByteBuffer dst) {
+            return mIndex < SAMPLES ? SAMPLE_SIZE : -1;
+        }
+
+        @Override
+        public long getSampleTime() {
+            return mIndex * 23220L;
+        }
+
+        @Override
+        public boolean advance() {
+            return ++mIndex < SAMPLES;
+        }
+    }
+
+    private static final class BusySink implements DataSink {
+        private final long mNanos;
+
+        BusySink(long nanos) {
+            this.mNanos = nanos;
+        }
+
+        @Override
+        public void write(ByteBuffer src) {
+            if (mNanos > 0) {
+                long end = System.nanoTime() + mNanos;
+                while (System.nanoTime() < end) {
+                    Thread.yield();
+                }
+            }
+            src.position(src.limit());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void serial() throws Exception {
+        FakeCodec codec = new FakeCodec(4, SAMPLE_SIZE, 0);
+        try {
+            new SerialDecoder(new RepeatingSource(), codec, new BusySink(sinkNanos)).run(CONTEXT);
+        } finally {
+            codec.release();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(SAMPLES)
+    public void pipelined() throws Exception {
+        FakeCodec codec = new FakeCodec(4, SAMPLE_SIZE, 0);
+        try {
+            new PipelinedDecoder(new RepeatingSource(), codec, new BusySink(sinkNanos),
+                    PipelinedDecoder.DEFAULT_BUFFER_COUNT, SAMPLE_SIZE, SAMPLE_SIZE).run(CONTEXT);
+        } finally {
+            codec.release();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package com.example.mediacodec.benchmark;
+
+import com.example.mediacodec.core.io.ChannelDataSink;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 解码输出写文件：AudioDecodeTask原来每帧new byte[]、write、flush，对比经ChannelDataSink批量写入。
+ * 每次调用写入FRAMES帧，吞吐量单位为帧。
+ */
+@State(Scope.Thread)
+public class DecodeWriteBenchmark {
+    private static final int FRAMES = 256;
+
+    // 1024个采样，双声道16位
+    @Param({"4096"})
+    public int frameSize;
+
+    private File mFile;
+    private FileOutputStream mFos;
+    private ChannelDataSink mSink;
+    private ByteBuffer mOutputBuffer;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mFile = File.createTempFile("decode", ".pcm");
+        mFos = new FileOutputStream(mFile);
+        mSink = new ChannelDataSink(mFos.getChannel());
+        mOutputBuffer = ByteBuffer.allocateDirect(frameSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mSink.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void legacyCopyAndWrite() throws IOException {
+        mFos.getChannel().position(0);
+        byte[] pcmData;
+        for (int i = 0; i < FRAMES; i++) {
+            mOutputBuffer.clear();
+            pcmData = new byte[frameSize];
+            mOutputBuffer.get(pcmData);
+            mOutputBuffer.clear();
+            mFos.write(pcmData);
+            mFos.flush();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(FRAMES)
+    public void channelDataSink() throws IOException {
+        mSink.flush();
+        mFos.getChannel().position(0);
+        for (int i = 0; i < FRAMES; i++) {
+            mOutputBuffer.clear();
+            mSink.write(mOutputBuffer);
+        }
+    }
+}
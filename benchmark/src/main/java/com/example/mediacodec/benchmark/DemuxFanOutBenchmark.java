@@ -0,0 +1,183 @@
+package com.example.mediacodec.benchmark;
+
+import com.example.mediacodec.core.demux.DemuxFanOut;
+import com.example.mediacodec.core.demux.DemuxSource;
+import com.example.mediacodec.core.demux.TrackDecoder;
+import com.example.mediacodec.core.demux.TrackInfo;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.pipeline.SampleSource;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 多音轨解码的读取方式：每次调用处理一个内存中的容器，tracks条音轨交错排列，每条SAMPLES个样本（各约23ms的AAC帧），
+ * 解码器只读取样本并累加字节数。fanOut只读一遍容器并分发给并发的各轨道（{@link DemuxFanOut}），
+ * rereadPerTrack按原来的方式每条音轨打开一次容器、读一遍并跳过其他轨道的样本。
+ * 两者之差是分发的队列和线程开销与重复读取之间的取舍；真实容器的读取（IO和解析）比这里的内存复制慢得多。
+ */
+@State(Scope.Thread)
+public class DemuxFanOutBenchmark {
+    private static final int SAMPLES = 2000;
+    private static final int SAMPLE_SIZE = 512;
+
+    @Param({"1", "2", "4"})
+    public int tracks;
+
+    private byte[] mSample;
+    private DirectBufferPool mPool;
+
+    private static final JobContext CONTEXT = new JobContext() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setProgress(long done, long total) {
+        }
+
+        @Override
+        public void setMetrics(TranscodeMetrics metrics) {
+        }
+    };
+
+    /**
+     * 各轨道样本轮流排列的内存容器
+     */
+    private static final class MemoryDemuxSource implements DemuxSource {
+        private final int mTracks;
+        private final byte[] mSample;
+        private final boolean[] mSelected;
+        private int mPosition;
+
+        MemoryDemuxSource(int tracks, byte[] sample) {
+            this.mTracks = tracks;
+            this.mSample = sample;
+            this.mSelected = new boolean[tracks];
+        }
+
+        @Override
+        public int getTrackCount() {
+            return mTracks;
+        }
+
+        @Override
+        public TrackInfo getTrackInfo(int track) {
+            return new TrackInfo(track, "audio/mp4a-latm", 44100, 2, SAMPLES * 23220L, null);
+        }
+
+        @Override
+        public void selectTrack(int track) {
+            mSelected[track] = true;
+            mPosition = next(-1);
+        }
+
+        private int next(int position) {
+            do {
+                position++;
+            } while (position < mTracks * SAMPLES && !mSelected[position % mTracks]);
+            return position;
+        }
+
+        @Override
+        public int getSampleTrackIndex() {
+            return mPosition < mTracks * SAMPLES ? mPosition % mTracks : -1;
+        }
+
+        @Override
+        public int readSampleData(ByteBuffer dst) {
+            int position = dst.position();
+            dst.put(mSample);
+            dst.position(position);
+            return mSample.length;
+        }
+
+        @Override
+        public long getSampleTime() {
+            return mPosition / mTracks * 23220L;
+        }
+
+        @Override
+        public boolean advance() {
+            mPosition = next(mPosition);
+            return mPosition < mTracks * SAMPLES;
+        }
+    }
+
+    private static final TrackDecoder COUNTING = new TrackDecoder() {
+        @Override
+        public void decode(TrackInfo track, SampleSource source, JobContext context) throws Exception {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(SAMPLE_SIZE);
+            long bytes = 0;
+            int size;
+            while ((size = source.readSampleData(buffer)) >= 0) {
+                bytes += size + buffer.get(0);
+                source.advance();
+            }
+            if (bytes == 0) {
+                throw new IllegalStateException("no samples");
+            }
+        }
+    };
+
+    @Setup
+    public void setup() {
+        mSample = new byte[SAMPLE_SIZE];
+        for (int i = 0; i < mSample.length; i++) {
+            mSample[i] = (byte) i;
+        }
+        mPool = new DirectBufferPool();
+    }
+
+    @Benchmark
+    public void fanOut() throws Exception {
+        int[] selected = new int[tracks];
+        for (int i = 0; i < tracks; i++) {
+            selected[i] = i;
+        }
+        new DemuxFanOut(new MemoryDemuxSource(tracks, mSample), COUNTING, DemuxFanOut.DEFAULT_QUEUE_CAPACITY,
+                SAMPLE_SIZE, mPool).run(selected, CONTEXT);
+    }
+
+    @Benchmark
+    public void rereadPerTrack() throws Exception {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(SAMPLE_SIZE);
+        for (int track = 0; track < tracks; track++) {
+            //原来的方式只选中一条轨道，但容器仍要整个读一遍，这里用全部选中再跳过来模拟
+            final MemoryDemuxSource source = new MemoryDemuxSource(tracks, mSample);
+            for (int i = 0; i < tracks; i++) {
+                source.selectTrack(i);
+            }
+            final int current = track;
+            final ByteBuffer dst = buffer;
+            COUNTING.decode(source.getTrackInfo(track), new SampleSource() {
+                @Override
+                public int readSampleData(ByteBuffer ignored) {
+                    while (source.getSampleTrackIndex() >= 0 && source.getSampleTrackIndex() != current) {
+                        source.readSampleData(dst);
+                        source.advance();
+                    }
+                    return source.getSampleTrackIndex() < 0 ? -1 : source.readSampleData(ignored);
+                }
+
+                @Override
+                public long getSampleTime() {
+                    return source.getSampleTime();
+                }
+
+                @Override
+                public boolean advance() {
+                    return source.advance();
+                }
+            }, CONTEXT);
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package com.example.mediacodec.benchmark;
+
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.memory.PooledBuffer;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * DirectBufferPool借还一个buffer的开销，对比每次新分配direct buffer和byte[]（原来各任务的做法）。
+ * 配合jmh任务的-prof gc看gc.alloc.rate.norm：池化的借还应为0字节/次，开启泄漏检测时每次分配一条记录。
+ * 4个线程同时借还时各线程都命中自己的缓存；handOff组中一个线程借出、另一个线程归还，
+ * 模拟流水线相邻阶段，buffer经共享空闲表流转。
+ */
+@State(Scope.Benchmark)
+public class DirectBufferPoolBenchmark {
+    @Param({"4096", "262144"})
+    public int size;
+
+    private DirectBufferPool mPool;
+    private DirectBufferPool mLeakDetectingPool;
+    private ArrayBlockingQueue<PooledBuffer> mHandOff;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mPool = new DirectBufferPool();
+        mLeakDetectingPool = new DirectBufferPool(DirectBufferPool.DEFAULT_CACHE_SIZE,
+                DirectBufferPool.DEFAULT_SHARED_BYTES, true);
+        mHandOff = new ArrayBlockingQueue<>(16);
+    }
+
+    @Benchmark
+    public ByteBuffer allocateDirect() {
+        return ByteBuffer.allocateDirect(size);
+    }
+
+    @Benchmark
+    public byte[] allocateHeap() {
+        return new byte[size];
+    }
+
+    @Benchmark
+    public ByteBuffer leaseRelease() {
+        PooledBuffer lease = mPool.lease(size);
+        ByteBuffer buffer = lease.buffer();
+        lease.release();
+        return buffer;
+    }
+
+    @Benchmark
+    public ByteBuffer leaseReleaseWithLeakDetection() {
+        PooledBuffer lease = mLeakDetectingPool.lease(size);
+        ByteBuffer buffer = lease.buffer();
+        lease.release();
+        return buffer;
+    }
+
+    @Benchmark
+    @Threads(4)
+    public ByteBuffer leaseReleaseContended() {
+        PooledBuffer lease = mPool.lease(size);
+        ByteBuffer buffer = lease.buffer();
+        lease.release();
+        return buffer;
+    }
+
+    @Benchmark
+    @Group("handOff")
+    @GroupThreads(1)
+    public boolean handOffLease() {
+        PooledBuffer lease = mPool.lease(size);
+        if (!mHandOff.offer(lease)) {
+            lease.release();
+            return false;
+        }
+        return true;
+    }
+
+    @Benchmark
+    @Group("handOff")
+    @GroupThreads(1)
+    public boolean handOffRelease() {
+        PooledBuffer lease = mHandOff.poll();
+        if (lease == null) {
+            return false;
+        }
+        lease.release();
+        return true;
+    }
+}
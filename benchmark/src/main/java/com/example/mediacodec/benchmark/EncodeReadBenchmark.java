@@ -0,0 +1,123 @@
+package com.example.mediacodec.benchmark;
+
+import com.example.mediacodec.core.pcm.MappedPcmSource;
+import com.example.mediacodec.core.pcm.PcmFeeder;
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * 编码输入读取：AudioEncodeTask原来的FileInputStream + Arrays.copyOf + put，对比FileChannel直接读入输入buffer
+ * 以及按整帧读取并计算时间戳的PcmFeeder，和从内存映射的文件填充输入buffer的MappedPcmSource。
+ * 每次调用读完整个PCM文件。
+ */
+@State(Scope.Thread)
+public class EncodeReadBenchmark {
+    private static final int FILE_SIZE = 4 * 1024 * 1024;
+    private static final int BUFFER_SIZE = 100 * 1024;
+
+    private File mFile;
+    private ByteBuffer mInputBuffer;
+    private byte[] mBuffer;
+    private RandomAccessFile mRaf;
+    private MappedPcmSource mMappedSource;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mFile = File.createTempFile("encode", ".pcm");
+        FileOutputStream fos = new FileOutputStream(mFile);
+        fos.write(new byte[FILE_SIZE]);
+        fos.close();
+        // 模拟编码器的输入buffer
+        mInputBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        mBuffer = new byte[BUFFER_SIZE];
+        mRaf = new RandomAccessFile(mFile, "r");
+        mMappedSource = new MappedPcmSource(new RandomAccessFile(mFile, "r").getChannel(), new PcmFormat(44100, 2));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mRaf.close();
+        mMappedSource.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    public long legacyCopyOfLoop() throws IOException {
+        long total = 0;
+        FileInputStream fis = new FileInputStream(mFile);
+        byte[] data;
+        while (fis.read(mBuffer) != -1) {
+            data = Arrays.copyOf(mBuffer, mBuffer.length);
+            mInputBuffer.clear();
+            mInputBuffer.limit(data.length);
+            mInputBuffer.put(data);
+            total += data.length;
+        }
+        fis.close();
+        return total;
+    }
+
+    @Benchmark
+    public long channelReadIntoInputBuffer() throws IOException {
+        long total = 0;
+        FileChannel channel = mRaf.getChannel();
+        channel.position(0);
+        while (true) {
+            mInputBuffer.clear();
+            int count = channel.read(mInputBuffer);
+            if (count < 0) {
+                break;
+            }
+            total += count;
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long pcmFeeder() throws IOException {
+        long total = 0;
+        FileChannel channel = mRaf.getChannel();
+        channel.position(0);
+        PcmFeeder feeder = new PcmFeeder(channel, new PcmFormat(44100, 2));
+        while (true) {
+            mInputBuffer.clear();
+            int count = feeder.fill(mInputBuffer, mInputBuffer.capacity());
+            if (count < 0) {
+                break;
+            }
+            total += count + feeder.getChunkTimeUs();
+        }
+        return total;
+    }
+
+    @Benchmark
+    public long mappedPcmFeeder() throws IOException {
+        long total = 0;
+        mMappedSource.seekToFrame(0);
+        PcmFeeder feeder = new PcmFeeder(mMappedSource);
+        while (true) {
+            mInputBuffer.clear();
+            int count = feeder.fill(mInputBuffer, mInputBuffer.capacity());
+            if (count < 0) {
+                break;
+            }
+            total += count + feeder.getChunkTimeUs();
+        }
+        return total;
+    }
+}
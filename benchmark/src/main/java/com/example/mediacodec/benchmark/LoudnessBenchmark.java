@@ -0,0 +1,73 @@
+package com.example.mediacodec.benchmark;
+
+import com.example.mediacodec.core.loudness.LookaheadLimiter;
+import com.example.mediacodec.core.loudness.LoudnessMeter;
+import com.example.mediacodec.core.loudness.LoudnessNormalizer;
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 响度处理的开销：每次调用处理一块解码器输出（1024帧48kHz立体声，约21ms）。
+ * meter是两遍处理的第一遍（K加权、门限块和4倍过采样的真峰值），limiter是单独的前视限幅器，
+ * normalize是单遍归一化的全部（测量、增益和限幅，含16位与float的转换）。
+ * 每秒的ops乘以1024/48000即为实时倍数；配合-prof gc可以确认都不分配对象。
+ */
+@State(Scope.Thread)
+public class LoudnessBenchmark {
+    private static final PcmFormat FORMAT = new PcmFormat(48000, 2);
+    private static final int FRAMES = 1024;
+
+    private ByteBuffer mPcm;
+    private ByteBuffer mOutput;
+    private float[] mSamples;
+    private float[] mLimited;
+    private LoudnessMeter mMeter;
+    private LookaheadLimiter mLimiter;
+    private LoudnessNormalizer mNormalizer;
+
+    @Setup
+    public void setup() {
+        int samples = FRAMES * FORMAT.getChannelCount();
+        mPcm = ByteBuffer.allocateDirect(FRAMES * FORMAT.getBytesPerFrame()).order(ByteOrder.LITTLE_ENDIAN);
+        mSamples = new float[samples];
+        for (int i = 0; i < samples; i++) {
+            short value = (short) (20000 * Math.sin(i * 0.01));
+            mPcm.putShort(value);
+            mSamples[i] = value / 32768f;
+        }
+        mPcm.flip();
+        mMeter = new LoudnessMeter(FORMAT);
+        mLimiter = new LookaheadLimiter(FORMAT.getChannelCount(), 0.5f, 240, 4800);
+        mLimited = new float[samples];
+        mNormalizer = new LoudnessNormalizer(FORMAT, -16, -1);
+        mOutput = ByteBuffer.allocateDirect(mNormalizer.maxOutputSize(mPcm.remaining()))
+                .order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Benchmark
+    public LoudnessMeter meter() {
+        mMeter.accept(mPcm);
+        return mMeter;
+    }
+
+    @Benchmark
+    public float[] limiter() {
+        mLimiter.process(mSamples, 0, mLimited, 0, FRAMES);
+        return mLimited;
+    }
+
+    @Benchmark
+    public ByteBuffer normalize() {
+        mPcm.rewind();
+        mOutput.clear();
+        mNormalizer.process(mPcm, mOutput);
+        return mOutput;
+    }
+}
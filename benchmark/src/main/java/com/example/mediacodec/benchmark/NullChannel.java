@@ -0,0 +1,25 @@
+package com.example.mediacodec.benchmark;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 丢弃所有数据的channel，用于只测量内存拷贝和分配的benchmark
+ */
+class NullChannel implements WritableByteChannel {
+    @Override
+    public int write(ByteBuffer src) {
+        int count = src.remaining();
+        src.position(src.limit());
+        return count;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.mediacodec.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 播放时读取PCM文件：PlayInModeStreamTask按minBufferSize分块读取并用available()判断结束，
+ * 对比FileChannel读入direct buffer。每次调用读完整个文件，Blackhole代替AudioTrack.write。
+ */
+@State(Scope.Thread)
+public class PlaybackReadBenchmark {
+    private static final int FILE_SIZE = 4 * 1024 * 1024;
+
+    // 44100Hz单声道16位时常见的getMinBufferSize返回值，以及一个较大的块
+    @Param({"3528", "16384"})
+    public int minBufferSize;
+
+    private File mFile;
+    private RandomAccessFile mRaf;
+    private ByteBuffer mDirectBuffer;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        mFile = File.createTempFile("play", ".pcm");
+        FileOutputStream fos = new FileOutputStream(mFile);
+        fos.write(new byte[FILE_SIZE]);
+        fos.close();
+        mRaf = new RandomAccessFile(mFile, "r");
+        mDirectBuffer = ByteBuffer.allocateDirect(minBufferSize);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        mRaf.close();
+        mFile.delete();
+    }
+
+    @Benchmark
+    public void legacyAvailableLoop(Blackhole blackhole) throws IOException {
+        FileInputStream in = new FileInputStream(mFile);
+        byte[] buffer = new byte[minBufferSize];
+        while (in.available() > 0) {
+            int readCount = in.read(buffer);
+            if (readCount != 0 && readCount != -1) {
+                blackhole.consume(buffer);
+            }
+        }
+        in.close();
+    }
+
+    @Benchmark
+    public void channelRead(Blackhole blackhole) throws IOException {
+        FileChannel channel = mRaf.getChannel();
+        channel.position(0);
+        while (true) {
+            mDirectBuffer.clear();
+            if (channel.read(mDirectBuffer) < 0) {
+                break;
+            }
+            mDirectBuffer.flip();
+            blackhole.consume(mDirectBuffer);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.mediacodec.benchmark;
+
+import com.example.mediacodec.core.io.AacSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.segment.Segment;
+import com.example.mediacodec.core.segment.SegmentEncoder;
+import com.example.mediacodec.core.segment.SegmentPlanner;
+import com.example.mediacodec.core.segment.SegmentedEncoder;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * 分段并发编码随编码器实例数的扩展性：用一个CPU密集的模拟编码器（每帧1024个采样做一次定点MDCT量级的乘加）
+ * 编码60秒的立体声PCM，比较parallelism为1、2、4时每秒完成的次数。
+ * 预热帧带来的额外工作量为DEFAULT_PRIMING_FRAMES / 每段帧数（10秒一段时约1%）。
+ * 结果取决于运行机器的核数，单核机器上不会有提升。
+ */
+@State(Scope.Benchmark)
+public class SegmentedEncodeBenchmark {
+    private static final int SAMPLE_RATE = 44100;
+    private static final int SAMPLES_PER_FRAME = 1024;
+    private static final long TOTAL_FRAMES = 60L * SAMPLE_RATE;
+    private static final int FRAME_BYTES = 280;
+
+    @Param({"1", "2", "4"})
+    public int parallelism;
+
+    private List<Segment> mSegments;
+    private SegmentedEncoder mEncoder;
+
+    private static final JobContext CONTEXT = new JobContext() {
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setProgress(long done, long total) {
+        }
+
+        @Override
+        public void setMetrics(TranscodeMetrics metrics) {
+        }
+    };
+
+    /**
+     * 丢弃输出，只计算帧数
+     */
+    private static final class CountingSink implements AacSink {
+        long mFrames;
+
+        @Override
+        public void setAudioSpecificConfig(ByteBuffer config) {
+        }
+
+        @Override
+        public void writeFrame(ByteBuffer frame, long presentationTimeUs) {
+            frame.position(frame.limit());
+            mFrames++;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * 每个AAC帧对两个声道各做一次1024点的O(N log N)量级运算，输出固定大小的帧
+     */
+    private static final class CpuBoundEncoder implements SegmentEncoder {
+        @Override
+        public void encode(Segment segment, AacSink output, JobContext context) throws Exception {
+            short[] samples = new short[SAMPLES_PER_FRAME * 2];
+            ByteBuffer frame = ByteBuffer.allocate(FRAME_BYTES);
+            long start = segment.getInputStartFrame();
+            long frames = (segment.getInputEndFrame() - start + SAMPLES_PER_FRAME - 1) / SAMPLES_PER_FRAME;
+            for (long j = 0; j < frames; j++) {
+                long sample = start + j * SAMPLES_PER_FRAME;
+                for (int i = 0; i < samples.length; i++) {
+                    samples[i] = (short) ((sample + i) * 7919);
+                }
+                long acc = 0;
+                for (int stride = 1; stride < SAMPLES_PER_FRAME; stride <<= 1) {
+                    for (int i = 0; i < samples.length; i++) {
+                        acc += samples[i] * (long) samples[(i + stride) % samples.length];
+                    }
+                }
+                frame.clear();
+                frame.putLong(acc);
+                frame.clear();
+                output.writeFrame(frame, sample * 1000000L / SAMPLE_RATE);
+            }
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mSegments = SegmentPlanner.plan(TOTAL_FRAMES, 10L * SAMPLE_RATE, SAMPLES_PER_FRAME,
+                SegmentPlanner.DEFAULT_PRIMING_FRAMES);
+        mEncoder = new SegmentedEncoder(new CpuBoundEncoder(), parallelism);
+    }
+
+    @Benchmark
+    public long encode() throws Exception {
+        CountingSink sink = new CountingSink();
+        mEncoder.run(mSegments, sink, CONTEXT);
+        return sink.mFrames;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.mediacodec.benchmark;
+
+import com.example.mediacodec.core.pipeline.BufferPool;
+import com.example.mediacodec.core.pipeline.MediaBuffer;
+import com.example.mediacodec.core.pipeline.SpscQueue;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 流水线阶段之间的队列：无锁的SpscQueue对比基于锁的ArrayBlockingQueue，一个生产者线程和一个消费者线程。
+ * offer/poll失败（队列满或空）也计入次数，比较时看消费者一侧成功取到的数量。
+ * pool*对比从BufferPool借还buffer和每块数据新分配direct buffer。
+ */
+@State(Scope.Group)
+public class SpscQueueBenchmark {
+    private static final int CAPACITY = 16;
+    private static final int BUFFER_SIZE = 4096;
+
+    private SpscQueue<MediaBuffer> mSpsc;
+    private ArrayBlockingQueue<MediaBuffer> mBlocking;
+    private MediaBuffer mBuffer;
+    private BufferPool mPool;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        mSpsc = new SpscQueue<>(CAPACITY);
+        mBlocking = new ArrayBlockingQueue<>(CAPACITY);
+        mBuffer = new MediaBuffer(ByteBuffer.allocateDirect(BUFFER_SIZE));
+        mPool = new BufferPool(CAPACITY, BUFFER_SIZE);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public boolean spscOffer() {
+        return mSpsc.offer(mBuffer);
+    }
+
+    @Benchmark
+    @Group("spsc")
+    @GroupThreads(1)
+    public MediaBuffer spscPoll() {
+        return mSpsc.poll();
+    }
+
+    @Benchmark
+    @Group("blocking")
+    @GroupThreads(1)
+    public boolean blockingOffer() {
+        return mBlocking.offer(mBuffer);
+    }
+
+    @Benchmark
+    @Group("blocking")
+    @GroupThreads(1)
+    public MediaBuffer blockingPoll() {
+        return mBlocking.poll();
+    }
+
+    @Benchmark
+    @Group("poolCycle")
+    public MediaBuffer poolAcquireRelease() {
+        MediaBuffer buffer = mPool.tryAcquire();
+        mPool.release(buffer);
+        return buffer;
+    }
+
+    @Benchmark
+    @Group("allocateCycle")
+    public ByteBuffer allocateDirect() {
+        return ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+}
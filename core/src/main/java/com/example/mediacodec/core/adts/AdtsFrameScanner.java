@@ -0,0 +1,176 @@
+package com.example.mediacodec.core.adts;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * 从ADTS流中逐帧查找帧边界。数据分块读入一个复用的direct buffer，遇到无效数据时按字节重新同步。
+ * <pre>
+ * AdtsFrameScanner scanner = new AdtsFrameScanner(channel);
+ * while (scanner.next()) {
+ *     ByteBuffer frame = scanner.frame();
+ * }
+ * </pre>
+ */
+public class AdtsFrameScanner {
+    public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel mChannel;
+    private final ByteBuffer mBuffer;
+    // mBuffer中有效数据的结束位置
+    private int mEnd;
+    // 当前帧在mBuffer中的起点
+    private int mFrameStart;
+    private int mFrameLength;
+    private int mHeaderLength;
+    private int mRawBlocks;
+    // mBuffer起点对应的流偏移量
+    private long mBufferOffset;
+    private boolean mEof;
+    // 重新同步时跳过的字节数
+    private long mSkippedBytes;
+
+    public AdtsFrameScanner(ReadableByteChannel channel) {
+        this(channel, DEFAULT_BUFFER_SIZE);
+    }
+
+    public AdtsFrameScanner(ReadableByteChannel channel, int bufferSize) {
+        if (bufferSize < AdtsHeader.MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("buffer must hold a whole frame: " + bufferSize);
+        }
+        this.mChannel = channel;
+        this.mBuffer = ByteBuffer.allocateDirect(bufferSize);
+    }
+
+    /**
+     * 移动到下一帧
+     * @return 没有完整的帧时返回false
+     */
+    public boolean next() throws IOException {
+        mFrameStart += mFrameLength;
+        mFrameLength = 0;
+        // frame()/payload()改过limit
+        mBuffer.limit(mBuffer.capacity());
+        while (true) {
+            if (mEnd - mFrameStart < AdtsHeader.HEADER_SIZE_WITH_CRC) {
+                fill();
+            }
+            int frameLength = parseFrameLength(mBuffer, mFrameStart, mEnd);
+            if (frameLength < 0) {
+                if (mEnd - mFrameStart < AdtsHeader.HEADER_SIZE) {
+                    // 流末尾不足一个头部的数据
+                    mSkippedBytes += mEnd - mFrameStart;
+                    mFrameStart = mEnd;
+                    return false;
+                }
+                mSkippedBytes++;
+                mFrameStart++;
+                continue;
+            }
+            if (mEnd - mFrameStart < frameLength) {
+                if (!fill()) {
+                    // 流末尾的残缺帧
+                    mSkippedBytes += mEnd - mFrameStart;
+                    mFrameStart = mEnd;
+                    return false;
+                }
+                continue;
+            }
+            boolean protectionAbsent = (mBuffer.get(mFrameStart + 1) & 1) == 1;
+            mHeaderLength = protectionAbsent ? AdtsHeader.HEADER_SIZE : AdtsHeader.HEADER_SIZE_WITH_CRC;
+            mRawBlocks = (mBuffer.get(mFrameStart + 6) & 3) + 1;
+            mFrameLength = frameLength;
+            return true;
+        }
+    }
+
+    /**
+     * 当前帧（包括头部）。返回的是内部buffer，下次调用next()前有效
+     */
+    public ByteBuffer frame() {
+        mBuffer.limit(mFrameStart + mFrameLength);
+        mBuffer.position(mFrameStart);
+        return mBuffer;
+    }
+
+    /**
+     * 当前帧去掉头部后的AAC数据。返回的是内部buffer，下次调用next()前有效
+     */
+    public ByteBuffer payload() {
+        mBuffer.limit(mFrameStart + mFrameLength);
+        mBuffer.position(mFrameStart + mHeaderLength);
+        return mBuffer;
+    }
+
+    /**
+     * 当前帧在流中的偏移量
+     */
+    public long frameOffset() {
+        return mBufferOffset + mFrameStart;
+    }
+
+    public int frameLength() {
+        return mFrameLength;
+    }
+
+    public int headerLength() {
+        return mHeaderLength;
+    }
+
+    /**
+     * 当前帧包含的采样数（每个raw data block为1024个采样）
+     */
+    public int frameSamples() {
+        return mRawBlocks * AdtsHeader.SAMPLES_PER_FRAME;
+    }
+
+    public long getSkippedBytes() {
+        return mSkippedBytes;
+    }
+
+    /**
+     * 检查buffer中pos处是否为合法的ADTS头部
+     * @return 帧长度，不合法时返回-1
+     */
+    public static int parseFrameLength(ByteBuffer buffer, int pos, int end) {
+        if (end - pos < AdtsHeader.HEADER_SIZE || !AdtsHeader.isSyncWord(buffer, pos)) {
+            return -1;
+        }
+        int b2 = buffer.get(pos + 2) & 0xFF;
+        if (((b2 >> 2) & 0xF) > 12) {
+            return -1;
+        }
+        int frameLength = ((buffer.get(pos + 3) & 0x3) << 11)
+                | ((buffer.get(pos + 4) & 0xFF) << 3)
+                | ((buffer.get(pos + 5) & 0xFF) >> 5);
+        int headerLength = (buffer.get(pos + 1) & 1) == 1 ? AdtsHeader.HEADER_SIZE : AdtsHeader.HEADER_SIZE_WITH_CRC;
+        return frameLength < headerLength ? -1 : frameLength;
+    }
+
+    /**
+     * 把当前帧起点之后的数据移到buffer开头并继续读入
+     * @return 读入了新数据时返回true
+     */
+    private boolean fill() throws IOException {
+        if (mEof) {
+            return false;
+        }
+        mBuffer.limit(mEnd);
+        mBuffer.position(mFrameStart);
+        mBuffer.compact();
+        mBufferOffset += mFrameStart;
+        mFrameStart = 0;
+        int read = 0;
+        while (mBuffer.hasRemaining()) {
+            int count = mChannel.read(mBuffer);
+            if (count < 0) {
+                mEof = true;
+                break;
+            }
+            read += count;
+        }
+        mEnd = mBuffer.position();
+        return read > 0;
+    }
+}
@@ -0,0 +1,212 @@
+package com.example.mediacodec.core.adts;
+
+import java.nio.ByteBuffer;
+
+/**
+ * ADTS头部参数：profile（AAC object type）、采样率索引、声道配置。
+ * 头部固定7字节（protection_absent=1，不带CRC），解析时也支持带CRC的9字节头部。
+ */
+public final class AdtsHeader {
+    public static final int HEADER_SIZE = 7;
+    public static final int HEADER_SIZE_WITH_CRC = 9;
+    // frame_length字段为13位
+    public static final int MAX_FRAME_LENGTH = (1 << 13) - 1;
+    // 每个raw data block包含的采样数
+    public static final int SAMPLES_PER_FRAME = 1024;
+
+    /**
+     * AAC object type，数值与MediaCodecInfo.CodecProfileLevel.AACObject*一致
+     */
+    public static final int OBJECT_MAIN = 1;
+    public static final int OBJECT_LC = 2;
+    public static final int OBJECT_SSR = 3;
+    public static final int OBJECT_LTP = 4;
+    public static final int OBJECT_HE = 5;
+    public static final int OBJECT_HE_PS = 29;
+
+    private static final int[] SAMPLE_RATES = {
+            96000, 88200, 64000, 48000, 44100, 32000,
+            24000, 22050, 16000, 12000, 11025, 8000, 7350};
+
+    private final int mObjectType;
+    private final int mSampleRateIndex;
+    private final int mChannelConfig;
+
+    public AdtsHeader(int objectType, int sampleRateIndex, int channelConfig) {
+        if (objectType < OBJECT_MAIN || objectType > OBJECT_LTP) {
+            throw new IllegalArgumentException("object type not representable in ADTS: " + objectType);
+        }
+        if (sampleRateIndex < 0 || sampleRateIndex >= SAMPLE_RATES.length) {
+            throw new IllegalArgumentException("invalid sampling frequency index: " + sampleRateIndex);
+        }
+        if (channelConfig < 0 || channelConfig > 7) {
+            throw new IllegalArgumentException("invalid channel configuration: " + channelConfig);
+        }
+        this.mObjectType = objectType;
+        this.mSampleRateIndex = sampleRateIndex;
+        this.mChannelConfig = channelConfig;
+    }
+
+    /**
+     * 根据编码器的输出格式得到ADTS头部参数。
+     * HE-AAC（SBR/PS）在ADTS中采用隐式信令：头部写AAC LC和一半的核心采样率，HE-AAC v2的核心为单声道。
+     * @param sampleRate 输出采样率（MediaFormat.KEY_SAMPLE_RATE）
+     * @param channelCount 声道数，支持1~6和8（7.1）
+     * @param aacProfile MediaFormat.KEY_AAC_PROFILE
+     */
+    public static AdtsHeader of(int sampleRate, int channelCount, int aacProfile) {
+        int objectType = aacProfile;
+        if (aacProfile == OBJECT_HE || aacProfile == OBJECT_HE_PS) {
+            objectType = OBJECT_LC;
+            sampleRate /= 2;
+            if (aacProfile == OBJECT_HE_PS) {
+                channelCount = 1;
+            }
+        }
+        return new AdtsHeader(objectType, sampleRateIndex(sampleRate), channelConfig(channelCount));
+    }
+
+    /**
+     * 根据AudioSpecificConfig（csd-0）得到ADTS头部参数，不移动position。
+     * HE-AAC的显式信令中，AOT 5/29之后的采样率索引和声道配置就是核心AAC LC的参数，与{@link #of}的隐式信令一致。
+     * @throws IllegalArgumentException 少于2字节或对象类型无法用ADTS表示
+     */
+    public static AdtsHeader fromAudioSpecificConfig(ByteBuffer config) {
+        if (config.remaining() < 2) {
+            throw new IllegalArgumentException("AudioSpecificConfig too short: " + config.remaining());
+        }
+        int pos = config.position();
+        int b0 = config.get(pos) & 0xFF;
+        int b1 = config.get(pos + 1) & 0xFF;
+        int objectType = b0 >> 3;
+        if (objectType == OBJECT_HE || objectType == OBJECT_HE_PS) {
+            objectType = OBJECT_LC;
+        }
+        return new AdtsHeader(objectType, ((b0 & 7) << 1) | (b1 >> 7), (b1 >> 3) & 0xF);
+    }
+
+    /**
+     * 解析buffer中position处的ADTS头部（不移动position）
+     * @throws IllegalArgumentException 不是合法的ADTS头部
+     */
+    public static AdtsHeader parse(ByteBuffer buffer) {
+        int pos = buffer.position();
+        if (!isSyncWord(buffer, pos)) {
+            throw new IllegalArgumentException("no ADTS sync word at " + pos);
+        }
+        int b2 = buffer.get(pos + 2) & 0xFF;
+        int b3 = buffer.get(pos + 3) & 0xFF;
+        return new AdtsHeader((b2 >> 6) + 1, (b2 >> 2) & 0xF, ((b2 & 1) << 2) | (b3 >> 6));
+    }
+
+    /**
+     * 采样率对应的sampling_frequency_index，不在标准表中的采样率取最接近的索引
+     */
+    public static int sampleRateIndex(int sampleRate) {
+        int best = 0;
+        for (int i = 1; i < SAMPLE_RATES.length; i++) {
+            if (Math.abs(SAMPLE_RATES[i] - sampleRate) < Math.abs(SAMPLE_RATES[best] - sampleRate)) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    public static int sampleRate(int sampleRateIndex) {
+        return SAMPLE_RATES[sampleRateIndex];
+    }
+
+    /**
+     * 声道数对应的channel_configuration，7.1（8声道）为7；7声道在ADTS中没有对应的配置
+     */
+    public static int channelConfig(int channelCount) {
+        if (channelCount >= 1 && channelCount <= 6) {
+            return channelCount;
+        }
+        if (channelCount == 8) {
+            return 7;
+        }
+        throw new IllegalArgumentException("unsupported channel count: " + channelCount);
+    }
+
+    public static int channelCount(int channelConfig) {
+        return channelConfig == 7 ? 8 : channelConfig;
+    }
+
+    static boolean isSyncWord(ByteBuffer buffer, int pos) {
+        // syncword 0xFFF，layer固定为00
+        return (buffer.get(pos) & 0xFF) == 0xFF && (buffer.get(pos + 1) & 0xF6) == 0xF0;
+    }
+
+    /**
+     * 在dst的当前位置写入7字节头部
+     * @param frameLength 包括头部在内的整帧长度
+     */
+    public void write(ByteBuffer dst, int frameLength) {
+        if (frameLength < HEADER_SIZE || frameLength > MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("invalid frame length: " + frameLength);
+        }
+        dst.put((byte) 0xFF);
+        // MPEG-4, layer 0, protection_absent=1
+        dst.put((byte) 0xF1);
+        dst.put((byte) (((mObjectType - 1) << 6) | (mSampleRateIndex << 2) | (mChannelConfig >> 2)));
+        dst.put((byte) (((mChannelConfig & 3) << 6) | (frameLength >> 11)));
+        dst.put((byte) ((frameLength & 0x7FF) >> 3));
+        // buffer fullness 0x7FF（可变码率）
+        dst.put((byte) (((frameLength & 7) << 5) | 0x1F));
+        // 1个raw data block
+        dst.put((byte) 0xFC);
+    }
+
+    /**
+     * 对应的AudioSpecificConfig（2字节），即解码器所需的csd-0
+     */
+    public void writeAudioSpecificConfig(ByteBuffer dst) {
+        dst.put((byte) ((mObjectType << 3) | (mSampleRateIndex >> 1)));
+        dst.put((byte) (((mSampleRateIndex & 1) << 7) | (mChannelConfig << 3)));
+    }
+
+    public int getObjectType() {
+        return mObjectType;
+    }
+
+    public int getSampleRateIndex() {
+        return mSampleRateIndex;
+    }
+
+    public int getSampleRate() {
+        return SAMPLE_RATES[mSampleRateIndex];
+    }
+
+    public int getChannelConfig() {
+        return mChannelConfig;
+    }
+
+    public int getChannelCount() {
+        return channelCount(mChannelConfig);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof AdtsHeader)) {
+            return false;
+        }
+        AdtsHeader other = (AdtsHeader) o;
+        return mObjectType == other.mObjectType && mSampleRateIndex == other.mSampleRateIndex
+                && mChannelConfig == other.mChannelConfig;
+    }
+
+    @Override
+    public int hashCode() {
+        return (mObjectType * 31 + mSampleRateIndex) * 31 + mChannelConfig;
+    }
+
+    @Override
+    public String toString() {
+        return "AdtsHeader{objectType=" + mObjectType + ", sampleRate=" + getSampleRate()
+                + ", channelConfig=" + mChannelConfig + "}";
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.mediacodec.core.adts;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * ADTS文件的帧索引：帧序号到文件偏移量和时间戳的映射，用于seek和按时间区间解码。
+ * 偏移量存放在long数组中（每帧8字节）；每帧的raw data block数都为1（常见情况）时，
+ * 时间戳由帧序号直接算出，否则另存每帧起始采样位置。
+ * <p>
+ * 索引由一次顺序扫描ADTS头部建立，可以保存到音频文件旁的sidecar文件（{@link #SIDECAR_SUFFIX}），
+ * 之后打开同一个文件时直接读取，文件的大小或修改时间变化时重新扫描。
+ */
+public final class AdtsIndex {
+    public static final String SIDECAR_SUFFIX = ".adtsidx";
+
+    private static final int MAGIC = 0x41444958; // "ADIX"
+    private static final int VERSION = 1;
+    private static final int SCAN_BUFFER_SIZE = 256 * 1024;
+    // sidecar头部：magic、version、源文件大小、修改时间、帧数、数据末尾、ASC（2字节）、uniform标记
+    private static final int SIDECAR_HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 8 + 2 + 1;
+
+    private final AdtsHeader mHeader;
+    private final int mFrameCount;
+    private final long[] mOffsets;
+    // 每帧的起始采样位置，多一个元素为总采样数；每帧都是1024个采样时为null
+    private final long[] mSampleStarts;
+    // 最后一帧的结束位置
+    private final long mEndOffset;
+
+    private AdtsIndex(AdtsHeader header, int frameCount, long[] offsets, long[] sampleStarts, long endOffset) {
+        this.mHeader = header;
+        this.mFrameCount = frameCount;
+        this.mOffsets = offsets;
+        this.mSampleStarts = sampleStarts;
+        this.mEndOffset = endOffset;
+    }
+
+    /**
+     * 顺序扫描整个ADTS流建立索引，跳过帧之间的无效数据
+     * @throws IOException 读取失败或流中没有完整的帧
+     */
+    public static AdtsIndex build(ReadableByteChannel channel) throws IOException {
+        AdtsFrameScanner scanner = new AdtsFrameScanner(channel, SCAN_BUFFER_SIZE);
+        AdtsHeader header = null;
+        long[] offsets = new long[1024];
+        long[] sampleStarts = null;
+        long samples = 0;
+        long endOffset = 0;
+        int count = 0;
+        while (scanner.next()) {
+            if (header == null) {
+                header = AdtsHeader.parse(scanner.frame());
+            }
+            if (count == offsets.length) {
+                offsets = Arrays.copyOf(offsets, count * 2);
+            }
+            offsets[count] = scanner.frameOffset();
+            int frameSamples = scanner.frameSamples();
+            if (sampleStarts == null && frameSamples != AdtsHeader.SAMPLES_PER_FRAME) {
+                //出现多个raw data block的帧，之前的帧都是1024个采样
+                sampleStarts = new long[offsets.length + 1];
+                for (int i = 0; i <= count; i++) {
+                    sampleStarts[i] = (long) i * AdtsHeader.SAMPLES_PER_FRAME;
+                }
+            }
+            if (sampleStarts != null) {
+                if (count + 1 >= sampleStarts.length) {
+                    sampleStarts = Arrays.copyOf(sampleStarts, Math.max(offsets.length, count + 1) + 1);
+                }
+                sampleStarts[count] = samples;
+                sampleStarts[count + 1] = samples + frameSamples;
+            }
+            samples += frameSamples;
+            endOffset = scanner.frameOffset() + scanner.frameLength();
+            count++;
+        }
+        if (header == null) {
+            throw new IOException("no ADTS frame found");
+        }
+        return new AdtsIndex(header, count, offsets, sampleStarts, endOffset);
+    }
+
+    /**
+     * 得到音频文件的索引：sidecar有效时直接读取，否则扫描文件并尝试写入sidecar。
+     * sidecar写入失败（例如目录只读）不影响返回的索引。
+     */
+    public static AdtsIndex load(File audio) throws IOException {
+        File sidecar = sidecarFile(audio);
+        if (sidecar.isFile()) {
+            FileInputStream in = new FileInputStream(sidecar);
+            try {
+                AdtsIndex index = readFrom(in.getChannel(), audio.length(), audio.lastModified());
+                if (index != null) {
+                    return index;
+                }
+            } catch (IOException e) {
+                //sidecar损坏，重新扫描
+            } finally {
+                in.close();
+            }
+        }
+        AdtsIndex index;
+        FileInputStream in = new FileInputStream(audio);
+        try {
+            index = build(in.getChannel());
+        } finally {
+            in.close();
+        }
+        try {
+            index.save(audio);
+        } catch (IOException e) {
+            //不能写sidecar时每次打开都重新扫描
+        }
+        return index;
+    }
+
+    public static File sidecarFile(File audio) {
+        return new File(audio.getPath() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * 写入audio对应的sidecar文件。先写临时文件再改名，读取方不会看到写了一半的索引
+     */
+    public void save(File audio) throws IOException {
+        File sidecar = sidecarFile(audio);
+        File temp = new File(sidecar.getPath() + ".tmp");
+        boolean saved = false;
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                writeTo(out.getChannel(), audio.length(), audio.lastModified());
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            saved = temp.renameTo(sidecar);
+            if (!saved) {
+                throw new IOException("rename failed: " + sidecar);
+            }
+        } finally {
+            if (!saved) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * 按sidecar格式写出索引。偏移量写成与前一帧的差值（4字节），多个raw data block时每帧再写1字节的block数
+     * @param sourceLength 源文件大小，读取时用于判断索引是否过期
+     * @param sourceModified 源文件修改时间
+     */
+    public void writeTo(WritableByteChannel channel, long sourceLength, long sourceModified) throws IOException {
+        int perFrame = 4 + (mSampleStarts != null ? 1 : 0);
+        ByteBuffer buffer = ByteBuffer.allocate(Math.min(SIDECAR_HEADER_SIZE + mFrameCount * perFrame, 64 * 1024));
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(sourceLength);
+        buffer.putLong(sourceModified);
+        buffer.putInt(mFrameCount);
+        buffer.putLong(mEndOffset);
+        mHeader.writeAudioSpecificConfig(buffer);
+        buffer.put((byte) (mSampleStarts == null ? 1 : 0));
+        long previous = 0;
+        for (int i = 0; i < mFrameCount; i++) {
+            if (buffer.remaining() < perFrame) {
+                drain(channel, buffer);
+            }
+            buffer.putInt((int) (mOffsets[i] - previous));
+            previous = mOffsets[i];
+            if (mSampleStarts != null) {
+                buffer.put((byte) ((mSampleStarts[i + 1] - mSampleStarts[i]) / AdtsHeader.SAMPLES_PER_FRAME));
+            }
+        }
+        drain(channel, buffer);
+    }
+
+    /**
+     * 读取sidecar格式的索引
+     * @return 源文件的大小或修改时间与索引中记录的不一致时返回null
+     * @throws IOException 读取失败或数据不完整
+     */
+    public static AdtsIndex readFrom(ReadableByteChannel channel, long sourceLength, long sourceModified)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        buffer.limit(SIDECAR_HEADER_SIZE);
+        fill(channel, buffer);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        if (buffer.getLong() != sourceLength || buffer.getLong() != sourceModified) {
+            return null;
+        }
+        int frameCount = buffer.getInt();
+        long endOffset = buffer.getLong();
+        if (frameCount <= 0) {
+            throw new IOException("invalid frame count: " + frameCount);
+        }
+        AdtsHeader header;
+        try {
+            header = AdtsHeader.fromAudioSpecificConfig(buffer);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        buffer.position(buffer.position() + 2);
+        boolean uniform = buffer.get() != 0;
+        int perFrame = uniform ? 4 : 5;
+        long[] offsets = new long[frameCount];
+        long[] sampleStarts = uniform ? null : new long[frameCount + 1];
+        buffer.clear().limit(0);
+        long offset = 0;
+        for (int i = 0; i < frameCount; i++) {
+            if (buffer.remaining() < perFrame) {
+                buffer.compact();
+                buffer.limit(Math.min(buffer.capacity(), buffer.position() + (frameCount - i) * perFrame));
+                fill(channel, buffer);
+            }
+            offset += buffer.getInt();
+            offsets[i] = offset;
+            if (sampleStarts != null) {
+                sampleStarts[i + 1] = sampleStarts[i] + (buffer.get() & 0xFF) * AdtsHeader.SAMPLES_PER_FRAME;
+            }
+        }
+        return new AdtsIndex(header, frameCount, offsets, sampleStarts, endOffset);
+    }
+
+    /**
+     * 读满buffer的position到limit并flip
+     */
+    private static void fill(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("truncated index");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void drain(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 第一帧的头部参数（ADTS中的采样率，HE-AAC为核心采样率）
+     */
+    public AdtsHeader getHeader() {
+        return mHeader;
+    }
+
+    public int getFrameCount() {
+        return mFrameCount;
+    }
+
+    public long getFrameOffset(int frame) {
+        return mOffsets[frame];
+    }
+
+    /**
+     * 最后一帧的结束位置，之后的数据不是完整的帧
+     */
+    public long getEndOffset() {
+        return mEndOffset;
+    }
+
+    /**
+     * 帧的起始采样位置（以ADTS头部的采样率计），frame等于帧数时为总采样数
+     */
+    public long getFrameSample(int frame) {
+        return mSampleStarts != null ? mSampleStarts[frame] : (long) frame * AdtsHeader.SAMPLES_PER_FRAME;
+    }
+
+    public long getFrameTimeUs(int frame) {
+        return getFrameSample(frame) * 1000000L / mHeader.getSampleRate();
+    }
+
+    public long getDurationUs() {
+        return getFrameTimeUs(mFrameCount);
+    }
+
+    /**
+     * 包含timeUs的帧，超出范围时取第一帧或最后一帧
+     */
+    public int findFrame(long timeUs) {
+        long sample = Math.max(0, timeUs) * mHeader.getSampleRate() / 1000000L;
+        int frame;
+        if (mSampleStarts == null) {
+            frame = (int) Math.min(sample / AdtsHeader.SAMPLES_PER_FRAME, Integer.MAX_VALUE);
+        } else {
+            frame = Arrays.binarySearch(mSampleStarts, 0, mFrameCount + 1, sample);
+            if (frame < 0) {
+                frame = -frame - 2;
+            }
+        }
+        return Math.min(frame, mFrameCount - 1);
+    }
+}
@@ -0,0 +1,106 @@
+package com.example.mediacodec.core.adts;
+
+import com.example.mediacodec.core.pipeline.SampleSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 按{@link AdtsIndex}从ADTS文件中读取一个时间区间内的帧，供解码器使用。
+ * 直接定位到区间起点之前{@link #PRIMING_FRAMES}帧处开始读：AAC的MDCT与前一帧重叠相加，
+ * seek后解码器的第一帧输出不完整，多解码的几帧只用于填充解码器状态，其输出由调用方按时间戳丢弃
+ * （见{@link com.example.mediacodec.core.pcm.PcmRangeClipper}）。
+ * <p>
+ * 读出的样本是去掉ADTS头部的AAC数据，解码器用{@link AdtsHeader#writeAudioSpecificConfig}作为csd-0配置。
+ */
+public class AdtsRangeSource implements SampleSource {
+    public static final int PRIMING_FRAMES = 2;
+
+    private final FileChannel mChannel;
+    private final AdtsIndex mIndex;
+    private final ByteBuffer mHeaderBuffer = ByteBuffer.allocate(AdtsHeader.HEADER_SIZE_WITH_CRC);
+    private final int mFirstFrame;
+    private final int mEndFrame;
+    private int mFrame;
+
+    /**
+     * @param startUs 区间起点（包含）
+     * @param endUs 区间终点（不包含），超过时长时读到文件末尾
+     */
+    public AdtsRangeSource(FileChannel channel, AdtsIndex index, long startUs, long endUs) {
+        if (startUs < 0 || endUs <= startUs) {
+            throw new IllegalArgumentException("invalid range: " + startUs + ".." + endUs);
+        }
+        this.mChannel = channel;
+        this.mIndex = index;
+        this.mFirstFrame = Math.max(0, index.findFrame(startUs) - PRIMING_FRAMES);
+        this.mEndFrame = endUs >= index.getDurationUs() ? index.getFrameCount() : index.findFrame(endUs - 1) + 1;
+        this.mFrame = mFirstFrame;
+    }
+
+    public int getFirstFrame() {
+        return mFirstFrame;
+    }
+
+    public int getEndFrame() {
+        return mEndFrame;
+    }
+
+    /**
+     * 当前帧的序号
+     */
+    public int getFrame() {
+        return mFrame;
+    }
+
+    @Override
+    public int readSampleData(ByteBuffer dst) throws IOException {
+        if (mFrame >= mEndFrame) {
+            return -1;
+        }
+        long offset = mIndex.getFrameOffset(mFrame);
+        mHeaderBuffer.clear();
+        readFully(mHeaderBuffer, offset);
+        mHeaderBuffer.flip();
+        int frameLength = AdtsFrameScanner.parseFrameLength(mHeaderBuffer, 0, mHeaderBuffer.limit());
+        if (frameLength < 0) {
+            throw new IOException("no ADTS frame at " + offset + ", index is stale");
+        }
+        int headerLength = (mHeaderBuffer.get(1) & 1) == 1 ? AdtsHeader.HEADER_SIZE : AdtsHeader.HEADER_SIZE_WITH_CRC;
+        int size = frameLength - headerLength;
+        if (dst.remaining() < size) {
+            throw new IllegalArgumentException("buffer too small for frame " + mFrame + ": " + size);
+        }
+        ByteBuffer payload = dst.duplicate();
+        payload.limit(payload.position() + size);
+        readFully(payload, offset + headerLength);
+        return size;
+    }
+
+    @Override
+    public long getSampleTime() {
+        return mFrame < mEndFrame ? mIndex.getFrameTimeUs(mFrame) : -1;
+    }
+
+    @Override
+    public boolean advance() {
+        if (mFrame < mEndFrame) {
+            mFrame++;
+        }
+        return mFrame < mEndFrame;
+    }
+
+    private void readFully(ByteBuffer dst, long position) throws IOException {
+        while (dst.hasRemaining()) {
+            int count = mChannel.read(dst, position);
+            if (count < 0) {
+                break;
+            }
+            position += count;
+        }
+        if (dst.hasRemaining()) {
+            throw new IOException("unexpected end of file at " + position);
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.mediacodec.core.adts;
+
+import com.example.mediacodec.core.io.AacSink;
+import com.example.mediacodec.core.io.DataSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 输出ADTS裸流：每帧加上7字节头部后写入DataSink。
+ * 头部参数先按配置的格式生成，收到编码器的AudioSpecificConfig后以它为准。
+ */
+public class AdtsSink implements AacSink {
+    private final DataSink mSink;
+    private AdtsWriter mWriter;
+
+    public AdtsSink(DataSink sink, AdtsHeader header) {
+        this.mSink = sink;
+        this.mWriter = new AdtsWriter(header);
+    }
+
+    public AdtsHeader getHeader() {
+        return mWriter.getHeader();
+    }
+
+    @Override
+    public void setAudioSpecificConfig(ByteBuffer config) {
+        AdtsHeader header = AdtsHeader.fromAudioSpecificConfig(config);
+        if (!header.equals(mWriter.getHeader())) {
+            mWriter = new AdtsWriter(header);
+        }
+    }
+
+    @Override
+    public void writeFrame(ByteBuffer frame, long presentationTimeUs) throws IOException {
+        mWriter.write(mSink, frame);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mSink.close();
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.mediacodec.core.adts;
+
+import com.example.mediacodec.core.io.DataSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+
+/**
+ * 给AAC裸流加上ADTS头部后写出。头部写入一个复用的direct buffer，不需要为每一帧分配新数组。
+ * 非线程安全，每路输出使用一个实例。
+ */
+public class AdtsWriter {
+    private final AdtsHeader mHeader;
+    private final ByteBuffer mHeaderBuffer = ByteBuffer.allocateDirect(AdtsHeader.HEADER_SIZE);
+    private final ByteBuffer[] mGather = new ByteBuffer[2];
+
+    public AdtsWriter(AdtsHeader header) {
+        this.mHeader = header;
+        mGather[0] = mHeaderBuffer;
+    }
+
+    public AdtsHeader getHeader() {
+        return mHeader;
+    }
+
+    /**
+     * 生成payloadSize字节AAC数据对应的头部
+     * @return 复用的头部buffer，可读区间为7字节头部，下次调用前有效
+     */
+    public ByteBuffer header(int payloadSize) {
+        mHeaderBuffer.clear();
+        mHeader.write(mHeaderBuffer, payloadSize + AdtsHeader.HEADER_SIZE);
+        mHeaderBuffer.flip();
+        return mHeaderBuffer;
+    }
+
+    /**
+     * 把头部和payload（position到limit）写入sink
+     */
+    public void write(DataSink sink, ByteBuffer payload) throws IOException {
+        sink.write(header(payload.remaining()));
+        sink.write(payload);
+    }
+
+    /**
+     * 通过scatter-gather一次写入头部和payload（position到limit）
+     * @return 写入的总字节数
+     */
+    public long write(GatheringByteChannel channel, ByteBuffer payload) throws IOException {
+        mGather[1] = payload;
+        header(payload.remaining());
+        long total = 0;
+        try {
+            while (payload.hasRemaining() || mHeaderBuffer.hasRemaining()) {
+                total += channel.write(mGather);
+            }
+        } finally {
+            mGather[1] = null;
+        }
+        return total;
+    }
+}
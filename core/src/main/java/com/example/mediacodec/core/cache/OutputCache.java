@@ -0,0 +1,275 @@
+package com.example.mediacodec.core.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 按内容寻址的输出缓存：键是输入文件内容和处理参数的SHA-256（见{@link #key}），
+ * 同样的输入用同样的参数再处理一次时直接复制缓存的结果。
+ * <p>
+ * 每个条目是目录下以键命名的一个文件，先写入临时文件，sync后改名，不会出现写了一半的条目。
+ * 总大小超过上限时按最近最少使用的顺序删除条目；使用时间记录在文件的修改时间上，重新打开缓存后仍然有效。
+ * 线程安全。
+ */
+public class OutputCache {
+    private static final String TEMP_SUFFIX = ".tmp";
+    private static final int HASH_BUFFER_SIZE = 64 * 1024;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final File mDir;
+    private final long mMaxBytes;
+    // 按访问顺序排列，最久未用的在前；值为文件大小
+    private final LinkedHashMap<String, Long> mEntries = new LinkedHashMap<>(16, 0.75f, true);
+    private long mTotalBytes;
+
+    /**
+     * 打开dir下的缓存，删除上次留下的临时文件，已有的条目按修改时间排序
+     * @param maxBytes 所有条目的总大小上限
+     */
+    public OutputCache(File dir, long maxBytes) throws IOException {
+        if (maxBytes <= 0) {
+            throw new IllegalArgumentException("maxBytes must be positive: " + maxBytes);
+        }
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("cannot create cache dir: " + dir);
+        }
+        this.mDir = dir;
+        this.mMaxBytes = maxBytes;
+        File[] files = dir.listFiles();
+        if (files == null) {
+            throw new IOException("cannot list cache dir: " + dir);
+        }
+        List<File> entries = new ArrayList<>();
+        for (File file : files) {
+            if (file.getName().endsWith(TEMP_SUFFIX)) {
+                file.delete();
+            } else if (file.isFile() && isValidKey(file.getName())) {
+                entries.add(file);
+            }
+        }
+        Collections.sort(entries, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long ta = a.lastModified();
+                long tb = b.lastModified();
+                return ta < tb ? -1 : (ta == tb ? a.getName().compareTo(b.getName()) : 1);
+            }
+        });
+        for (File file : entries) {
+            mEntries.put(file.getName(), file.length());
+            mTotalBytes += file.length();
+        }
+        evict();
+    }
+
+    /**
+     * 输入文件内容和参数的SHA-256（十六进制）。需要读完整个文件，比编码快得多，但对很大的文件也不是零开销
+     * @param params 影响输出内容的全部参数，例如{@link com.example.mediacodec.core.codec.EncodeProfile#toKey()}
+     */
+    public static String key(File input, String params) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+        digest.update(params.getBytes("UTF-8"));
+        // 分隔参数和内容，避免参数的结尾和内容的开头拼出同样的字节
+        digest.update((byte) 0);
+        FileChannel channel = new FileInputStream(input).getChannel();
+        try {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(HASH_BUFFER_SIZE);
+            while (channel.read(buffer) >= 0) {
+                buffer.flip();
+                digest.update(buffer);
+                buffer.clear();
+            }
+        } finally {
+            channel.close();
+        }
+        byte[] hash = digest.digest();
+        char[] hex = new char[hash.length * 2];
+        for (int i = 0; i < hash.length; i++) {
+            hex[i * 2] = HEX[(hash[i] >> 4) & 0xF];
+            hex[i * 2 + 1] = HEX[hash[i] & 0xF];
+        }
+        return new String(hex);
+    }
+
+    private static boolean isValidKey(String key) {
+        if (key.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (!(c >= '0' && c <= '9' || c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c == '-' || c == '_')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void checkKey(String key) {
+        if (!isValidKey(key)) {
+            throw new IllegalArgumentException("invalid cache key: " + key);
+        }
+    }
+
+    /**
+     * 键对应的缓存文件，没有时返回null。命中的条目成为最近使用的条目
+     */
+    public synchronized File get(String key) {
+        checkKey(key);
+        if (mEntries.get(key) == null) {
+            return null;
+        }
+        File file = new File(mDir, key);
+        if (!file.isFile()) {
+            // 被外部删除
+            mTotalBytes -= mEntries.remove(key);
+            return null;
+        }
+        file.setLastModified(System.currentTimeMillis());
+        return file;
+    }
+
+    /**
+     * 把键对应的缓存文件复制到target：先写入target旁的临时文件，sync后改名，
+     * target要么不变，要么是完整的缓存内容
+     * @return 没有缓存时返回false，target不变
+     */
+    public boolean copyTo(String key, File target) throws IOException {
+        File file = get(key);
+        if (file == null) {
+            return false;
+        }
+        File temp = File.createTempFile("copy_" + target.getName(), TEMP_SUFFIX,
+                target.getAbsoluteFile().getParentFile());
+        try {
+            try {
+                copy(file, temp);
+            } catch (IOException e) {
+                // 复制期间条目可能被淘汰
+                if (!file.isFile()) {
+                    return false;
+                }
+                throw e;
+            }
+            if (!temp.renameTo(target)) {
+                throw new IOException("rename failed: " + target);
+            }
+        } finally {
+            temp.delete();
+        }
+        return true;
+    }
+
+    /**
+     * 把source的内容存为键对应的条目（source不变），之后按总大小上限淘汰最久未用的条目，新条目本身不会被淘汰
+     * @return 缓存中的文件
+     */
+    public File put(String key, File source) throws IOException {
+        checkKey(key);
+        // 复制时不持有锁；同时存入同一个键时，后完成的覆盖先完成的
+        File temp = File.createTempFile("put_" + key, TEMP_SUFFIX, mDir);
+        File file = new File(mDir, key);
+        try {
+            copy(source, temp);
+            synchronized (this) {
+                if (!temp.renameTo(file)) {
+                    throw new IOException("rename failed: " + file);
+                }
+                Long old = mEntries.remove(key);
+                if (old != null) {
+                    mTotalBytes -= old;
+                }
+                mEntries.put(key, file.length());
+                mTotalBytes += file.length();
+                evict();
+            }
+        } finally {
+            temp.delete();
+        }
+        return file;
+    }
+
+    /**
+     * 删除键对应的条目
+     */
+    public synchronized boolean remove(String key) {
+        checkKey(key);
+        Long size = mEntries.remove(key);
+        if (size == null) {
+            return false;
+        }
+        mTotalBytes -= size;
+        new File(mDir, key).delete();
+        return true;
+    }
+
+    public synchronized long getTotalBytes() {
+        return mTotalBytes;
+    }
+
+    public long getMaxBytes() {
+        return mMaxBytes;
+    }
+
+    public synchronized int size() {
+        return mEntries.size();
+    }
+
+    /**
+     * 按使用顺序（最久未用的在前）列出所有键
+     */
+    public synchronized List<String> keys() {
+        return new ArrayList<>(mEntries.keySet());
+    }
+
+    private void evict() {
+        Iterator<Map.Entry<String, Long>> it = mEntries.entrySet().iterator();
+        while (mTotalBytes > mMaxBytes && mEntries.size() > 1) {
+            Map.Entry<String, Long> eldest = it.next();
+            new File(mDir, eldest.getKey()).delete();
+            mTotalBytes -= eldest.getValue();
+            it.remove();
+        }
+    }
+
+    /**
+     * 复制文件内容并sync
+     */
+    private static void copy(File source, File target) throws IOException {
+        FileChannel in = new FileInputStream(source).getChannel();
+        try {
+            RandomAccessFile out = new RandomAccessFile(target, "rw");
+            try {
+                FileChannel channel = out.getChannel();
+                channel.truncate(0);
+                long size = in.size();
+                long position = 0;
+                while (position < size) {
+                    position += in.transferTo(position, size - position, channel);
+                }
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
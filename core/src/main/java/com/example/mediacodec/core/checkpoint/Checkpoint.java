@@ -0,0 +1,114 @@
+package com.example.mediacodec.core.checkpoint;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.zip.CRC32;
+
+/**
+ * 转码任务的检查点：输入续接位置、此时已写入输出的字节数，以及任务的配置。
+ * 输入位置的单位由任务决定（PCM帧或微秒），配置相同时才能从检查点续接。
+ * <p>
+ * 序列化格式：magic、version、输入位置、输出字节数、配置（UTF-8，2字节长度），末尾是前面所有字节的CRC32，
+ * 写了一半或损坏的检查点读取时被识别出来。
+ */
+public final class Checkpoint {
+    private static final int MAGIC = 0x434B5054; // "CKPT"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 4 + 4 + 8 + 8 + 2;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    private final long mInputPosition;
+    private final long mOutputBytes;
+    private final String mConfig;
+
+    public Checkpoint(long inputPosition, long outputBytes, String config) {
+        if (inputPosition < 0 || outputBytes < 0) {
+            throw new IllegalArgumentException("inputPosition=" + inputPosition + ", outputBytes=" + outputBytes);
+        }
+        this.mInputPosition = inputPosition;
+        this.mOutputBytes = outputBytes;
+        this.mConfig = config;
+    }
+
+    public long getInputPosition() {
+        return mInputPosition;
+    }
+
+    public long getOutputBytes() {
+        return mOutputBytes;
+    }
+
+    public String getConfig() {
+        return mConfig;
+    }
+
+    public byte[] toByteArray() {
+        byte[] config = mConfig.getBytes(UTF_8);
+        if (config.length > 0xFFFF) {
+            throw new IllegalArgumentException("config too long: " + config.length);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + config.length + 4);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(mInputPosition);
+        buffer.putLong(mOutputBytes);
+        buffer.putShort((short) config.length);
+        buffer.put(config);
+        CRC32 crc = new CRC32();
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.putInt((int) crc.getValue());
+        return buffer.array();
+    }
+
+    /**
+     * @return 数据不完整、校验失败或版本不同时返回null
+     */
+    public static Checkpoint fromByteArray(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+                return null;
+            }
+            long inputPosition = buffer.getLong();
+            long outputBytes = buffer.getLong();
+            int length = buffer.getShort() & 0xFFFF;
+            if (data.length != HEADER_SIZE + length + 4) {
+                return null;
+            }
+            CRC32 crc = new CRC32();
+            crc.update(data, 0, HEADER_SIZE + length);
+            if (ByteBuffer.wrap(data, HEADER_SIZE + length, 4).getInt() != (int) crc.getValue()
+                    || inputPosition < 0 || outputBytes < 0) {
+                return null;
+            }
+            return new Checkpoint(inputPosition, outputBytes, new String(data, HEADER_SIZE, length, UTF_8));
+        } catch (BufferUnderflowException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Checkpoint)) {
+            return false;
+        }
+        Checkpoint that = (Checkpoint) o;
+        return mInputPosition == that.mInputPosition && mOutputBytes == that.mOutputBytes
+                && mConfig.equals(that.mConfig);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (int) (mInputPosition ^ (mInputPosition >>> 32))
+                + (int) (mOutputBytes ^ (mOutputBytes >>> 32))) + mConfig.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "Checkpoint{input=" + mInputPosition + ", output=" + mOutputBytes + ", config=" + mConfig + "}";
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.mediacodec.core.checkpoint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * 把检查点保存在一个文件中。先写临时文件并sync，再改名覆盖，
+ * 进程在任何时候被杀，文件中都是上一个或这一个完整的检查点。
+ */
+public class CheckpointStore {
+    public static final String TEMP_SUFFIX = ".tmp";
+    // 检查点只有几十字节，超过这个大小的文件不是检查点
+    private static final int MAX_SIZE = 64 * 1024;
+
+    private final File mFile;
+
+    public CheckpointStore(File file) {
+        this.mFile = file;
+    }
+
+    public File getFile() {
+        return mFile;
+    }
+
+    public void save(Checkpoint checkpoint) throws IOException {
+        File temp = new File(mFile.getPath() + TEMP_SUFFIX);
+        boolean saved = false;
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(checkpoint.toByteArray());
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            saved = temp.renameTo(mFile);
+            if (!saved) {
+                throw new IOException("rename failed: " + mFile);
+            }
+        } finally {
+            if (!saved) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * @return 没有检查点、读取失败或检查点损坏时返回null
+     */
+    public Checkpoint load() {
+        if (!mFile.isFile() || mFile.length() > MAX_SIZE) {
+            return null;
+        }
+        try {
+            FileInputStream in = new FileInputStream(mFile);
+            try {
+                ByteArrayOutputStream data = new ByteArrayOutputStream((int) mFile.length());
+                byte[] buffer = new byte[1024];
+                int n;
+                while ((n = in.read(buffer)) > 0) {
+                    data.write(buffer, 0, n);
+                }
+                return Checkpoint.fromByteArray(data.toByteArray());
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 删除检查点和可能残留的临时文件
+     */
+    public void delete() {
+        mFile.delete();
+        new File(mFile.getPath() + TEMP_SUFFIX).delete();
+    }
+}
@@ -0,0 +1,181 @@
+package com.example.mediacodec.core.checkpoint;
+
+import com.example.mediacodec.core.io.DataSink;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+
+/**
+ * 可续接的输出文件。数据先写入目标文件旁的{@link #PART_SUFFIX}文件，完成后{@link #commit}改名为目标文件，
+ * 目标文件要么不存在（或是以前的完整结果），要么是这次完整的结果，不会是写了一半的文件。
+ * <p>
+ * 写入期间调用{@link #checkpoint}记录续接点：先force把已写入的数据刷到存储，再保存检查点，
+ * 所以检查点记录的字节一定已经在part文件中。任务取消或进程被杀后再次{@link #open}：
+ * 检查点有效（配置相同，part文件不短于记录的字节数）时把part文件截断到检查点的字节数，
+ * 丢弃检查点之后写了一半的数据，调用方从{@link #getResumePoint()}的输入位置继续写；否则从头开始。
+ * <p>
+ * 任务取消时工作线程处于中断状态（见{@link com.example.mediacodec.core.job.JobHandle#cancel}），
+ * 而FileChannel在中断状态下的IO会关闭channel并失败。{@link #flush}和{@link #checkpoint}期间清除中断状态，
+ * 完成后恢复，取消时仍能记下已写入的位置。
+ */
+public class ResumableOutput implements Closeable {
+    public static final String PART_SUFFIX = ".part";
+    public static final String CHECKPOINT_SUFFIX = ".ckpt";
+
+    private final File mTarget;
+    private final File mPartFile;
+    private final String mConfig;
+    private final CheckpointStore mStore;
+    private final FileChannel mChannel;
+    private Checkpoint mResumePoint;
+
+    private ResumableOutput(File target, String config, FileChannel channel, Checkpoint resumePoint) {
+        this.mTarget = target;
+        this.mPartFile = partFile(target);
+        this.mConfig = config;
+        this.mStore = new CheckpointStore(checkpointFile(target));
+        this.mChannel = channel;
+        this.mResumePoint = resumePoint;
+    }
+
+    public static File partFile(File target) {
+        return new File(target.getPath() + PART_SUFFIX);
+    }
+
+    public static File checkpointFile(File target) {
+        return new File(target.getPath() + CHECKPOINT_SUFFIX);
+    }
+
+    /**
+     * 打开target的part文件，有有效的检查点时定位到检查点的位置，否则清空
+     * @param config 任务的配置（输入文件、编码参数等），与检查点中的不同时从头开始
+     */
+    public static ResumableOutput open(File target, String config) throws IOException {
+        CheckpointStore store = new CheckpointStore(checkpointFile(target));
+        Checkpoint checkpoint = store.load();
+        FileChannel channel = new RandomAccessFile(partFile(target), "rw").getChannel();
+        try {
+            if (checkpoint == null || !checkpoint.getConfig().equals(config)
+                    || channel.size() < checkpoint.getOutputBytes()) {
+                checkpoint = null;
+                store.delete();
+            }
+            long position = checkpoint != null ? checkpoint.getOutputBytes() : 0;
+            channel.truncate(position);
+            channel.position(position);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+        return new ResumableOutput(target, config, channel, checkpoint);
+    }
+
+    /**
+     * 续接的检查点，从头开始时为null
+     */
+    public Checkpoint getResumePoint() {
+        return mResumePoint;
+    }
+
+    /**
+     * part文件的channel，已定位到续接的位置
+     */
+    public FileChannel getChannel() {
+        return mChannel;
+    }
+
+    public File getPartFile() {
+        return mPartFile;
+    }
+
+    public File getTarget() {
+        return mTarget;
+    }
+
+    /**
+     * 放弃续接，清空part文件和检查点，例如调用方发现检查点的输入位置不可用
+     */
+    public void restart() throws IOException {
+        mStore.delete();
+        mChannel.truncate(0);
+        mChannel.position(0);
+        mResumePoint = null;
+    }
+
+    /**
+     * 把sink中暂存的数据写入channel，sink最终写入的应是{@link #getChannel}
+     * @return 写入后channel的位置，即part文件中已写入的字节数
+     */
+    public long flush(DataSink sink) throws IOException {
+        boolean interrupted = Thread.interrupted();
+        try {
+            sink.flush();
+            return mChannel.position();
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 记录续接点：channel当前位置之前的数据已全部写入，之后从inputPosition继续。
+     * 调用前需要把缓冲的数据写入channel（见{@link #flush}）
+     */
+    public void checkpoint(long inputPosition) throws IOException {
+        boolean interrupted = Thread.interrupted();
+        try {
+            mChannel.force(false);
+            mStore.save(new Checkpoint(inputPosition, mChannel.position(), mConfig));
+        } finally {
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 全部写完：part文件sync后改名为目标文件，删除检查点。channel可以已经由调用方关闭
+     */
+    public void commit() throws IOException {
+        if (mChannel.isOpen()) {
+            mChannel.force(true);
+            mChannel.close();
+        } else {
+            RandomAccessFile file = new RandomAccessFile(mPartFile, "rw");
+            try {
+                file.getFD().sync();
+            } finally {
+                file.close();
+            }
+        }
+        if (!mPartFile.renameTo(mTarget)) {
+            throw new IOException("rename failed: " + mTarget);
+        }
+        mStore.delete();
+    }
+
+    /**
+     * 放弃输出，删除part文件和检查点
+     */
+    public void discard() {
+        try {
+            mChannel.close();
+        } catch (IOException e) {
+            //已经要删除
+        }
+        mPartFile.delete();
+        mStore.delete();
+    }
+
+    /**
+     * 关闭channel，保留part文件和检查点供下次续接
+     */
+    @Override
+    public void close() throws IOException {
+        mChannel.close();
+    }
+}
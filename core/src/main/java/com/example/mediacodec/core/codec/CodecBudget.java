@@ -0,0 +1,72 @@
+package com.example.mediacodec.core.codec;
+
+import com.example.mediacodec.core.job.JobContext;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 设备上可同时存在的编解码器实例数（例如MediaCodecInfo.CodecCapabilities.getMaxSupportedInstances）。
+ * 所有任务共用一个实例，每创建一个编解码器之前取得一个名额，释放编解码器之后归还；
+ * 一个任务同时使用多个编解码器时（分段编码的各段、多音轨解码的各音轨）按实际个数取得名额，
+ * 总数不会超过设备的限制。名额按请求顺序分配，一次要多个名额的任务不会被单个名额的请求饿死。线程安全。
+ */
+public class CodecBudget {
+    // 等待名额时检查取消的间隔
+    private static final long CHECK_INTERVAL_MS = 10;
+
+    private final int mCapacity;
+    private final Semaphore mPermits;
+
+    public CodecBudget(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        this.mCapacity = capacity;
+        this.mPermits = new Semaphore(capacity, true);
+    }
+
+    /**
+     * 总名额，即最多同时存在的编解码器实例数
+     */
+    public int getCapacity() {
+        return mCapacity;
+    }
+
+    /**
+     * 当前空闲的名额
+     */
+    public int getAvailable() {
+        return mPermits.availablePermits();
+    }
+
+    /**
+     * 取得permits个名额，不够时等待。等待期间context被取消时放弃
+     * @param context 可以为null
+     * @return 取得了名额返回true，被取消时返回false（没有取得任何名额）
+     * @throws IllegalArgumentException permits不在1到{@link #getCapacity()}之间
+     */
+    public boolean acquire(int permits, JobContext context) throws InterruptedException {
+        if (permits <= 0 || permits > mCapacity) {
+            throw new IllegalArgumentException("permits " + permits + " not in [1, " + mCapacity + "]");
+        }
+        while (!mPermits.tryAcquire(permits, CHECK_INTERVAL_MS, TimeUnit.MILLISECONDS)) {
+            if (context != null && context.isCancelled()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 归还acquire取得的名额
+     */
+    public void release(int permits) {
+        mPermits.release(permits);
+    }
+
+    @Override
+    public String toString() {
+        return "CodecBudget{" + getAvailable() + "/" + mCapacity + "}";
+    }
+}
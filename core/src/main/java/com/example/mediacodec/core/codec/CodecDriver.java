@@ -0,0 +1,38 @@
+package com.example.mediacodec.core.codec;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 编解码器驱动。编解码任务只通过事件和buffer索引与编解码器交互，
+ * 因此可以在轮询（dequeueInputBuffer/dequeueOutputBuffer）和回调（MediaCodec.setCallback）两种模式间切换，
+ * 测试时也可以换成假的编解码器。
+ */
+public interface CodecDriver {
+    /**
+     * 与MediaCodec.BUFFER_FLAG_*的取值一致
+     */
+    int FLAG_CODEC_CONFIG = 2;
+    int FLAG_END_OF_STREAM = 4;
+
+    void start();
+
+    /**
+     * 等待下一个事件
+     * @param timeoutUs 最长等待时间（微秒），小于0表示一直等待
+     * @return 超时返回false
+     */
+    boolean nextEvent(CodecEvent event, long timeoutUs) throws InterruptedException;
+
+    ByteBuffer getInputBuffer(int index);
+
+    ByteBuffer getOutputBuffer(int index);
+
+    void queueInputBuffer(int index, int offset, int size, long presentationTimeUs, int flags);
+
+    void releaseOutputBuffer(int index);
+
+    /**
+     * 停止并释放编解码器
+     */
+    void release();
+}
@@ -0,0 +1,75 @@
+package com.example.mediacodec.core.codec;
+
+/**
+ * 编解码器事件，由{@link CodecDriver#nextEvent}填充，可以重复使用同一个实例
+ */
+public final class CodecEvent {
+    public static final int NONE = 0;
+    // 有可用的输入buffer，index有效
+    public static final int INPUT_AVAILABLE = 1;
+    // 有可用的输出buffer，index、offset、size、presentationTimeUs、flags有效
+    public static final int OUTPUT_AVAILABLE = 2;
+    // 输出格式改变
+    public static final int FORMAT_CHANGED = 3;
+    // 编解码器出错，errorCode有效
+    public static final int ERROR = 4;
+
+    public int type;
+    public int index;
+    public int offset;
+    public int size;
+    public long presentationTimeUs;
+    public int flags;
+    public int errorCode;
+
+    public void setInputAvailable(int index) {
+        set(INPUT_AVAILABLE, index, 0, 0, 0, 0);
+    }
+
+    public void setOutputAvailable(int index, int offset, int size, long presentationTimeUs, int flags) {
+        set(OUTPUT_AVAILABLE, index, offset, size, presentationTimeUs, flags);
+    }
+
+    public void setFormatChanged() {
+        set(FORMAT_CHANGED, -1, 0, 0, 0, 0);
+    }
+
+    public void setError(int errorCode) {
+        set(ERROR, errorCode, 0, 0, 0, 0);
+    }
+
+    void set(int type, int index, int offset, int size, long presentationTimeUs, int flags) {
+        this.type = type;
+        this.index = index;
+        this.offset = offset;
+        this.size = size;
+        this.presentationTimeUs = presentationTimeUs;
+        this.flags = flags;
+        this.errorCode = type == ERROR ? index : 0;
+    }
+
+    public boolean isEndOfStream() {
+        return (flags & CodecDriver.FLAG_END_OF_STREAM) != 0;
+    }
+
+    public boolean isCodecConfig() {
+        return (flags & CodecDriver.FLAG_CODEC_CONFIG) != 0;
+    }
+
+    @Override
+    public String toString() {
+        switch (type) {
+            case INPUT_AVAILABLE:
+                return "INPUT_AVAILABLE(" + index + ")";
+            case OUTPUT_AVAILABLE:
+                return "OUTPUT_AVAILABLE(" + index + ", size=" + size + ", pts=" + presentationTimeUs
+                        + ", flags=" + flags + ")";
+            case FORMAT_CHANGED:
+                return "FORMAT_CHANGED";
+            case ERROR:
+                return "ERROR(" + errorCode + ")";
+            default:
+                return "NONE";
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package com.example.mediacodec.core.codec;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 回调模式下编解码器事件的队列：回调线程写入，编解码任务线程阻塞读取，没有事件时不占用CPU。
+ * 事件字段保存在基本类型数组中，稳态下不分配内存；事件数超过容量时扩容。
+ */
+public class CodecEventQueue {
+    private static final int DEFAULT_CAPACITY = 64;
+
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mNotEmpty = mLock.newCondition();
+    private int[] mTypes;
+    private int[] mIndexes;
+    private int[] mOffsets;
+    private int[] mSizes;
+    private long[] mTimes;
+    private int[] mFlags;
+    private int mHead;
+    private int mCount;
+
+    public CodecEventQueue() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public CodecEventQueue(int capacity) {
+        allocate(capacity);
+    }
+
+    public void offerInput(int index) {
+        offer(CodecEvent.INPUT_AVAILABLE, index, 0, 0, 0, 0);
+    }
+
+    public void offerOutput(int index, int offset, int size, long presentationTimeUs, int flags) {
+        offer(CodecEvent.OUTPUT_AVAILABLE, index, offset, size, presentationTimeUs, flags);
+    }
+
+    public void offerFormatChanged() {
+        offer(CodecEvent.FORMAT_CHANGED, -1, 0, 0, 0, 0);
+    }
+
+    public void offerError(int errorCode) {
+        offer(CodecEvent.ERROR, errorCode, 0, 0, 0, 0);
+    }
+
+    /**
+     * 取出最早的事件
+     * @param timeoutUs 最长等待时间（微秒），小于0表示一直等待
+     * @return 超时返回false
+     */
+    public boolean poll(CodecEvent event, long timeoutUs) throws InterruptedException {
+        mLock.lockInterruptibly();
+        try {
+            long nanos = TimeUnit.MICROSECONDS.toNanos(timeoutUs);
+            while (mCount == 0) {
+                if (timeoutUs < 0) {
+                    mNotEmpty.await();
+                } else {
+                    if (nanos <= 0) {
+                        return false;
+                    }
+                    nanos = mNotEmpty.awaitNanos(nanos);
+                }
+            }
+            int i = mHead;
+            event.set(mTypes[i], mIndexes[i], mOffsets[i], mSizes[i], mTimes[i], mFlags[i]);
+            mHead = (mHead + 1) % mTypes.length;
+            mCount--;
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    public int size() {
+        mLock.lock();
+        try {
+            return mCount;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 丢弃所有事件，例如flush编解码器之后
+     */
+    public void clear() {
+        mLock.lock();
+        try {
+            mHead = 0;
+            mCount = 0;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private void offer(int type, int index, int offset, int size, long presentationTimeUs, int flags) {
+        mLock.lock();
+        try {
+            if (mCount == mTypes.length) {
+                grow();
+            }
+            int i = (mHead + mCount) % mTypes.length;
+            mTypes[i] = type;
+            mIndexes[i] = index;
+            mOffsets[i] = offset;
+            mSizes[i] = size;
+            mTimes[i] = presentationTimeUs;
+            mFlags[i] = flags;
+            mCount++;
+            mNotEmpty.signal();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    private void allocate(int capacity) {
+        mTypes = new int[capacity];
+        mIndexes = new int[capacity];
+        mOffsets = new int[capacity];
+        mSizes = new int[capacity];
+        mTimes = new long[capacity];
+        mFlags = new int[capacity];
+    }
+
+    private void grow() {
+        int[] types = mTypes;
+        int[] indexes = mIndexes;
+        int[] offsets = mOffsets;
+        int[] sizes = mSizes;
+        long[] times = mTimes;
+        int[] flags = mFlags;
+        allocate(types.length * 2);
+        for (int n = 0; n < mCount; n++) {
+            int i = (mHead + n) % types.length;
+            mTypes[n] = types[i];
+            mIndexes[n] = indexes[i];
+            mOffsets[n] = offsets[i];
+            mSizes[n] = sizes[i];
+            mTimes[n] = times[i];
+            mFlags[n] = flags[i];
+        }
+        mHead = 0;
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.mediacodec.core.codec;
+
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import java.util.Locale;
+
+/**
+ * AAC编码参数：采样率、声道数、码率、AAC profile、单次输入的最大字节数和编码器的选择。
+ * 不可变，用{@link Builder}创建。
+ */
+public final class EncodeProfile {
+    /**
+     * 与MediaCodecInfo.CodecProfileLevel.AACObjectLC/AACObjectHE/AACObjectHE_PS的取值一致
+     */
+    public static final int AAC_LC = 2;
+    public static final int AAC_HE = 5;
+    public static final int AAC_HE_PS = 29;
+
+    /**
+     * 编码器的选择：系统默认的编码器、优先硬件编码器、优先软件编码器
+     */
+    public static final int CODEC_DEFAULT = 0;
+    public static final int CODEC_HARDWARE = 1;
+    public static final int CODEC_SOFTWARE = 2;
+
+    public static final EncodeProfile DEFAULT = new Builder().build();
+
+    private final int mSampleRate;
+    private final int mChannelCount;
+    private final int mBitRate;
+    private final int mAacProfile;
+    private final int mMaxInputSize;
+    private final int mCodecPreference;
+    private final String mCodecName;
+    private final boolean mRealtime;
+
+    private EncodeProfile(Builder builder) {
+        this.mSampleRate = builder.mSampleRate;
+        this.mChannelCount = builder.mChannelCount;
+        this.mBitRate = builder.mBitRate;
+        this.mAacProfile = builder.mAacProfile;
+        this.mMaxInputSize = builder.mMaxInputSize;
+        this.mCodecPreference = builder.mCodecPreference;
+        this.mCodecName = builder.mCodecName;
+        this.mRealtime = builder.mRealtime;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    /**
+     * 输入PCM的格式，即编码的采样率和声道数
+     */
+    public PcmFormat getPcmFormat() {
+        return new PcmFormat(mSampleRate, mChannelCount);
+    }
+
+    public int getBitRate() {
+        return mBitRate;
+    }
+
+    public int getAacProfile() {
+        return mAacProfile;
+    }
+
+    public int getMaxInputSize() {
+        return mMaxInputSize;
+    }
+
+    public int getCodecPreference() {
+        return mCodecPreference;
+    }
+
+    /**
+     * 指定的编码器名称（MediaCodecInfo.getName()），未指定时为null，按{@link #getCodecPreference()}选择
+     */
+    public String getCodecName() {
+        return mCodecName;
+    }
+
+    /**
+     * 是否按实时优先级编码（MediaFormat.KEY_PRIORITY为0），默认false，批量编码尽快完成但让位于实时任务
+     */
+    public boolean isRealtime() {
+        return mRealtime;
+    }
+
+    /**
+     * 决定输出内容的参数组成的字符串，参数相同的两次编码输出相同，用作输出缓存和检查点的键。
+     * 编码优先级只影响速度，不包括在内
+     */
+    public String toKey() {
+        return String.format(Locale.US, "aac:%d:%d:%d:%d:%d:%d:%s", mSampleRate, mChannelCount, mBitRate,
+                mAacProfile, mMaxInputSize, mCodecPreference, mCodecName != null ? mCodecName : "");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof EncodeProfile)) {
+            return false;
+        }
+        EncodeProfile other = (EncodeProfile) o;
+        return toKey().equals(other.toKey()) && mRealtime == other.mRealtime;
+    }
+
+    @Override
+    public int hashCode() {
+        return toKey().hashCode() * 31 + (mRealtime ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "EncodeProfile[" + mSampleRate + "Hz/" + mChannelCount + "ch, " + mBitRate + "bps, profile "
+                + mAacProfile + ", codec " + (mCodecName != null ? mCodecName : mCodecPreference)
+                + (mRealtime ? ", realtime" : "") + "]";
+    }
+
+    public static final class Builder {
+        private int mSampleRate = 44100;
+        private int mChannelCount = 2;
+        private int mBitRate = 96000;
+        private int mAacProfile = AAC_LC;
+        private int mMaxInputSize = 500 * 1024;
+        private int mCodecPreference = CODEC_DEFAULT;
+        private String mCodecName;
+        private boolean mRealtime;
+
+        public Builder() {
+        }
+
+        public Builder(EncodeProfile profile) {
+            this.mSampleRate = profile.mSampleRate;
+            this.mChannelCount = profile.mChannelCount;
+            this.mBitRate = profile.mBitRate;
+            this.mAacProfile = profile.mAacProfile;
+            this.mMaxInputSize = profile.mMaxInputSize;
+            this.mCodecPreference = profile.mCodecPreference;
+            this.mCodecName = profile.mCodecName;
+            this.mRealtime = profile.mRealtime;
+        }
+
+        public Builder setSampleRate(int sampleRate) {
+            this.mSampleRate = sampleRate;
+            return this;
+        }
+
+        public Builder setChannelCount(int channelCount) {
+            this.mChannelCount = channelCount;
+            return this;
+        }
+
+        public Builder setBitRate(int bitRate) {
+            this.mBitRate = bitRate;
+            return this;
+        }
+
+        /**
+         * @param aacProfile {@link #AAC_LC}、{@link #AAC_HE}或{@link #AAC_HE_PS}
+         */
+        public Builder setAacProfile(int aacProfile) {
+            this.mAacProfile = aacProfile;
+            return this;
+        }
+
+        public Builder setMaxInputSize(int maxInputSize) {
+            this.mMaxInputSize = maxInputSize;
+            return this;
+        }
+
+        /**
+         * @param preference {@link #CODEC_DEFAULT}、{@link #CODEC_HARDWARE}或{@link #CODEC_SOFTWARE}
+         */
+        public Builder setCodecPreference(int preference) {
+            this.mCodecPreference = preference;
+            return this;
+        }
+
+        /**
+         * 指定编码器名称，优先于{@link #setCodecPreference}
+         */
+        public Builder setCodecName(String codecName) {
+            this.mCodecName = codecName;
+            return this;
+        }
+
+        public Builder setRealtime(boolean realtime) {
+            this.mRealtime = realtime;
+            return this;
+        }
+
+        public EncodeProfile build() {
+            if (mSampleRate <= 0 || mChannelCount <= 0) {
+                throw new IllegalArgumentException("invalid format: " + mSampleRate + "Hz, " + mChannelCount + "ch");
+            }
+            if (mBitRate <= 0) {
+                throw new IllegalArgumentException("invalid bit rate: " + mBitRate);
+            }
+            if (mAacProfile != AAC_LC && mAacProfile != AAC_HE && mAacProfile != AAC_HE_PS) {
+                throw new IllegalArgumentException("unsupported aac profile: " + mAacProfile);
+            }
+            if (mMaxInputSize < mChannelCount * PcmFormat.BYTES_PER_SAMPLE) {
+                throw new IllegalArgumentException("max input size too small: " + mMaxInputSize);
+            }
+            if (mCodecPreference < CODEC_DEFAULT || mCodecPreference > CODEC_SOFTWARE) {
+                throw new IllegalArgumentException("invalid codec preference: " + mCodecPreference);
+            }
+            return new EncodeProfile(this);
+        }
+    }
+}
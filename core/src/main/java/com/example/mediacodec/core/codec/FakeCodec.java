@@ -0,0 +1,102 @@
+package com.example.mediacodec.core.codec;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * 模拟回调模式的编解码器：在自己的线程里把输入原样拷贝到输出，通过CodecEventQueue通知调用方。
+ * 不依赖Android，解码、编码流程和benchmark可以在普通JVM上用它代替MediaCodec运行
+ */
+public class FakeCodec implements CodecDriver {
+    private final CodecEventQueue mEvents = new CodecEventQueue(4);
+    private final ByteBuffer[] mInputs;
+    private final ByteBuffer[] mOutputs;
+    private final BlockingQueue<int[]> mQueued = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Integer> mFreeOutputs = new LinkedBlockingQueue<>();
+    private final long[] mInputTimes;
+    private final long mProcessNanos;
+    private Thread mThread;
+
+    /**
+     * @param bufferSize 每个输入输出buffer的字节数
+     * @param processNanos 处理每个输入的模拟耗时，0表示不等待
+     */
+    public FakeCodec(int bufferCount, int bufferSize, long processNanos) {
+        mInputs = new ByteBuffer[bufferCount];
+        mOutputs = new ByteBuffer[bufferCount];
+        mInputTimes = new long[bufferCount];
+        for (int i = 0; i < bufferCount; i++) {
+            mInputs[i] = ByteBuffer.allocate(bufferSize);
+            mOutputs[i] = ByteBuffer.allocate(bufferSize);
+            mFreeOutputs.add(i);
+        }
+        mProcessNanos = processNanos;
+    }
+
+    @Override
+    public void start() {
+        mThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    mEvents.offerFormatChanged();
+                    for (int i = 0; i < mInputs.length; i++) {
+                        mEvents.offerInput(i);
+                    }
+                    while (true) {
+                        int[] queued = mQueued.take();
+                        int input = queued[0];
+                        int flags = queued[2];
+                        int output = mFreeOutputs.take();
+                        if (mProcessNanos > 0) {
+                            Thread.sleep(mProcessNanos / 1000000, (int) (mProcessNanos % 1000000));
+                        }
+                        ByteBuffer in = mInputs[input];
+                        in.position(0).limit(queued[1]);
+                        mOutputs[output].clear();
+                        mOutputs[output].put(in);
+                        mEvents.offerOutput(output, 0, queued[1], mInputTimes[input], flags);
+                        if ((flags & FLAG_END_OF_STREAM) != 0) {
+                            return;
+                        }
+                        mEvents.offerInput(input);
+                    }
+                } catch (InterruptedException ignored) {
+                }
+            }
+        }, "fake-codec");
+        mThread.start();
+    }
+
+    @Override
+    public boolean nextEvent(CodecEvent event, long timeoutUs) throws InterruptedException {
+        return mEvents.poll(event, timeoutUs);
+    }
+
+    @Override
+    public ByteBuffer getInputBuffer(int index) {
+        return mInputs[index];
+    }
+
+    @Override
+    public ByteBuffer getOutputBuffer(int index) {
+        return mOutputs[index];
+    }
+
+    @Override
+    public void queueInputBuffer(int index, int offset, int size, long presentationTimeUs, int flags) {
+        mInputTimes[index] = presentationTimeUs;
+        mQueued.add(new int[]{index, size, flags});
+    }
+
+    @Override
+    public void releaseOutputBuffer(int index) {
+        mFreeOutputs.add(index);
+    }
+
+    @Override
+    public void release() {
+        mThread.interrupt();
+    }
+}
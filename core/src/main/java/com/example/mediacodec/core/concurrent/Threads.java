@@ -0,0 +1,78 @@
+package com.example.mediacodec.core.concurrent;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 各处共用的线程工具：按名字前缀编号的线程工厂、固定大小的线程池，以及不响应中断的等待。
+ * <p>
+ * 线程池中的任务还在使用共享资源（池中的buffer、编解码器、sink）时，调用方即使被中断（例如任务取消）
+ * 也要等它们结束才能释放资源，所以等待期间忽略中断，结束后恢复中断状态。
+ */
+public final class Threads {
+    private Threads() {
+    }
+
+    /**
+     * 创建的线程依次命名为prefix-1、prefix-2……
+     */
+    public static ThreadFactory namedFactory(final String prefix) {
+        return new ThreadFactory() {
+            private final AtomicInteger mCount = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable r) {
+                return new Thread(r, prefix + "-" + mCount.incrementAndGet());
+            }
+        };
+    }
+
+    /**
+     * threads个线程的线程池，任务队列不限长度，线程按{@link #namedFactory}命名
+     */
+    public static ExecutorService newFixedThreadPool(int threads, String prefix) {
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<Runnable>(), namedFactory(prefix));
+    }
+
+    /**
+     * 等待线程池中的线程全部结束（调用方应先shutdown）。被中断时继续等待，结束后恢复中断状态
+     */
+    public static void awaitTerminationUninterruptibly(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * 等待thread结束。被中断时继续等待，结束后恢复中断状态
+     */
+    public static void joinUninterruptibly(Thread thread) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                thread.join();
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
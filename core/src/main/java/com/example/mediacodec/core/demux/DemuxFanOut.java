@@ -0,0 +1,385 @@
+package com.example.mediacodec.core.demux;
+
+import com.example.mediacodec.core.codec.CodecBudget;
+import com.example.mediacodec.core.codec.CodecDriver;
+import com.example.mediacodec.core.concurrent.Threads;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.pipeline.BufferPool;
+import com.example.mediacodec.core.pipeline.MediaBuffer;
+import com.example.mediacodec.core.pipeline.SampleSource;
+import com.example.mediacodec.core.pipeline.SpscQueue;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 只读一遍容器，把选中的各条轨道的样本分发给并发的解码器。
+ * <p>
+ * 读取在调用{@link #run}的线程中进行，每条轨道一个解码线程，调用{@link TrackDecoder}并把该轨道的样本作为
+ * {@link SampleSource}交给它。两者之间是每轨道一个{@link BufferPool}和{@link SpscQueue}：读取线程是唯一的生产者，
+ * 该轨道的解码线程是唯一的消费者，样本只复制一次（从容器到池中的buffer）。
+ * 某条轨道的队列满时读取线程等待，因此各轨道的解码进度相差不超过队列容量；
+ * 某条轨道的解码器提前返回后，它的样本直接丢弃。
+ * <p>
+ * 每条轨道的进度单独报告（见{@link Listener}），只增不减，context收到各轨道之和。
+ * 任何一条轨道失败时取消其余轨道，run抛出第一个错误。不论正常结束、失败还是被中断，run返回时各解码线程都已结束。
+ * <p>
+ * 设置了{@link CodecBudget}时每条轨道占一个名额，开始读取之前一次取得全部名额：
+ * 若逐个取得，等待名额的轨道会让它的队列填满、读取线程停住，已经开始的轨道也无法继续。
+ */
+public class DemuxFanOut {
+    public static final int DEFAULT_QUEUE_CAPACITY = 16;
+    // 阻塞在队列上时检查状态的间隔
+    private static final long CHECK_INTERVAL_NANOS = 10000000L;
+
+    public interface Listener {
+        /**
+         * track的解码进度，在该轨道的解码线程中调用
+         */
+        void onTrackProgress(TrackInfo track, long done, long total);
+    }
+
+    private final DemuxSource mSource;
+    private final TrackDecoder mDecoder;
+    private final int mQueueCapacity;
+    private final int mMaxSampleSize;
+    private final DirectBufferPool mPool;
+    private Listener mListener;
+    private CodecBudget mBudget;
+
+    // 以下字段由mProgressLock保护
+    private final Object mProgressLock = new Object();
+    private long[] mProgressDone;
+    private long[] mProgressTotal;
+
+    private volatile boolean mFailed;
+
+    /**
+     * @param queueCapacity 每条轨道读取线程可以领先解码器的样本数
+     * @param maxSampleSize 单个样本的最大字节数
+     * @param pool 不为null时各轨道队列中的buffer从中借用，{@link #run}结束时归还
+     */
+    public DemuxFanOut(DemuxSource source, TrackDecoder decoder, int queueCapacity, int maxSampleSize,
+                       DirectBufferPool pool) {
+        if (queueCapacity <= 0 || maxSampleSize <= 0) {
+            throw new IllegalArgumentException("queueCapacity=" + queueCapacity + ", maxSampleSize=" + maxSampleSize);
+        }
+        this.mSource = source;
+        this.mDecoder = decoder;
+        this.mQueueCapacity = queueCapacity;
+        this.mMaxSampleSize = maxSampleSize;
+        this.mPool = pool;
+    }
+
+    public void setListener(Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * 与其他任务共用的编解码器名额，为null时不限制
+     */
+    public void setCodecBudget(CodecBudget budget) {
+        this.mBudget = budget;
+    }
+
+    /**
+     * 容器中的全部轨道
+     */
+    public List<TrackInfo> getTracks() {
+        List<TrackInfo> tracks = new ArrayList<>();
+        for (int i = 0; i < mSource.getTrackCount(); i++) {
+            tracks.add(mSource.getTrackInfo(i));
+        }
+        return tracks;
+    }
+
+    /**
+     * 按selector选择轨道并解码。选中的轨道多于编解码器总名额时只解码前面的轨道
+     * @return 实际解码的轨道
+     * @throws IOException 没有选中任何轨道
+     */
+    public List<TrackInfo> run(TrackSelector selector, JobContext context) throws Exception {
+        List<TrackInfo> tracks = getTracks();
+        int[] selected = selector.select(tracks);
+        if (selected.length == 0) {
+            throw new IOException("no track selected by " + selector + " in " + tracks);
+        }
+        CodecBudget budget = mBudget;
+        if (budget != null && selected.length > budget.getCapacity()) {
+            selected = Arrays.copyOf(selected, budget.getCapacity());
+        }
+        List<TrackInfo> result = new ArrayList<>();
+        for (int index : selected) {
+            result.add(tracks.get(index));
+        }
+        run(selected, context);
+        return result;
+    }
+
+    /**
+     * 选中tracks中的轨道，读完容器并等待各轨道解码结束。取消时尽快返回，不抛出异常
+     * @throws IllegalArgumentException 设置了编解码器名额且tracks多于总名额
+     */
+    public void run(int[] tracks, JobContext context) throws Exception {
+        CodecBudget budget = mBudget;
+        if (budget == null) {
+            decode(tracks, context);
+            return;
+        }
+        if (!budget.acquire(tracks.length, context)) {
+            return;
+        }
+        try {
+            decode(tracks, context);
+        } finally {
+            budget.release(tracks.length);
+        }
+    }
+
+    private void decode(int[] tracks, final JobContext context) throws Exception {
+        int trackCount = mSource.getTrackCount();
+        final TrackChannel[] channels = new TrackChannel[trackCount];
+        List<TrackChannel> selected = new ArrayList<>();
+        mFailed = false;
+        synchronized (mProgressLock) {
+            mProgressDone = new long[tracks.length];
+            mProgressTotal = new long[tracks.length];
+        }
+        ExecutorService executor = null;
+        try {
+            for (int i = 0; i < tracks.length; i++) {
+                int index = tracks[i];
+                if (index < 0 || index >= trackCount || channels[index] != null) {
+                    throw new IllegalArgumentException("invalid track " + index + " of " + trackCount);
+                }
+                channels[index] = new TrackChannel(mSource.getTrackInfo(index), i, context);
+                selected.add(channels[index]);
+                mSource.selectTrack(index);
+            }
+            executor = Threads.newFixedThreadPool(tracks.length, "demux-decode");
+            List<Future<?>> futures = new ArrayList<>();
+            for (final TrackChannel channel : selected) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            if (!channel.isCancelled()) {
+                                mDecoder.decode(channel.mTrack, channel, channel);
+                            }
+                            return null;
+                        } catch (Exception e) {
+                            mFailed = true;
+                            throw e;
+                        } finally {
+                            channel.mClosed = true;
+                        }
+                    }
+                }));
+            }
+            Exception error = null;
+            try {
+                demux(channels, selected, context);
+            } catch (Exception e) {
+                mFailed = true;
+                error = e;
+            }
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (error == null && e.getCause() instanceof Exception) {
+                        error = (Exception) e.getCause();
+                    } else if (error == null) {
+                        throw new RuntimeException(e.getCause());
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+        } finally {
+            mFailed = true;
+            if (executor != null) {
+                executor.shutdownNow();
+                //解码线程可能还在读取池中的buffer、使用解码器，全部结束后才能归还buffer
+                Threads.awaitTerminationUninterruptibly(executor);
+            }
+            for (TrackChannel channel : selected) {
+                channel.mBuffers.close();
+            }
+        }
+    }
+
+    private boolean isStopped(JobContext context) {
+        return mFailed || context.isCancelled();
+    }
+
+    /**
+     * 读取线程：按容器中的顺序把样本放入所属轨道的队列，读完后给每条轨道放入结束标志
+     */
+    private void demux(TrackChannel[] channels, List<TrackChannel> selected, JobContext context)
+            throws IOException, InterruptedException {
+        while (!isStopped(context)) {
+            int index = mSource.getSampleTrackIndex();
+            if (index < 0) {
+                break;
+            }
+            TrackChannel channel = index < channels.length ? channels[index] : null;
+            if (channel != null && !channel.mClosed) {
+                MediaBuffer buffer = channel.acquire(context);
+                if (buffer != null) {
+                    int size = mSource.readSampleData(buffer.data);
+                    if (size < 0) {
+                        break;
+                    }
+                    buffer.data.limit(buffer.data.position() + size);
+                    buffer.presentationTimeUs = mSource.getSampleTime();
+                    channel.put(buffer, context);
+                }
+            }
+            if (!mSource.advance()) {
+                break;
+            }
+        }
+        for (TrackChannel channel : selected) {
+            MediaBuffer buffer = channel.acquire(context);
+            if (buffer != null) {
+                buffer.data.limit(buffer.data.position());
+                buffer.flags = CodecDriver.FLAG_END_OF_STREAM;
+                channel.put(buffer, context);
+            }
+        }
+    }
+
+    private void updateProgress(TrackChannel channel, long done, long total, JobContext context) {
+        long allDone = 0;
+        long allTotal = 0;
+        synchronized (mProgressLock) {
+            //结束标志的输出时间戳可能为0，进度只增不减
+            done = Math.max(done, mProgressDone[channel.mSlot]);
+            mProgressDone[channel.mSlot] = done;
+            mProgressTotal[channel.mSlot] = total;
+            for (int i = 0; i < mProgressDone.length; i++) {
+                allDone += Math.min(mProgressDone[i], mProgressTotal[i]);
+                allTotal += mProgressTotal[i];
+            }
+        }
+        context.setProgress(allDone, allTotal);
+        Listener listener = mListener;
+        if (listener != null) {
+            listener.onTrackProgress(channel.mTrack, done, total);
+        }
+    }
+
+    /**
+     * 一条轨道的队列。对解码器来说是只包含该轨道样本的SampleSource，也是它的JobContext
+     */
+    private final class TrackChannel implements SampleSource, JobContext {
+        final TrackInfo mTrack;
+        final int mSlot;
+        final JobContext mContext;
+        final BufferPool mBuffers;
+        final SpscQueue<MediaBuffer> mQueue;
+        // 解码器已返回，之后的样本丢弃
+        volatile boolean mClosed;
+        // 解码线程当前的样本
+        MediaBuffer mCurrent;
+
+        TrackChannel(TrackInfo track, int slot, JobContext context) {
+            this.mTrack = track;
+            this.mSlot = slot;
+            this.mContext = context;
+            //多一个buffer用于结束标志和解码器持有的当前样本
+            this.mBuffers = new BufferPool(mQueueCapacity + 1, mMaxSampleSize, mPool);
+            this.mQueue = new SpscQueue<>(mQueueCapacity + 1);
+        }
+
+        /**
+         * 读取线程取一个空闲buffer
+         * @return 停止或解码器已返回时返回null
+         */
+        MediaBuffer acquire(JobContext context) throws InterruptedException {
+            MediaBuffer buffer;
+            while ((buffer = mBuffers.acquire(CHECK_INTERVAL_NANOS)) == null) {
+                if (isStopped(context) || mClosed) {
+                    return null;
+                }
+            }
+            return buffer;
+        }
+
+        /**
+         * 读取线程放入样本，停止或解码器已返回时丢弃（池在run结束时整体归还）
+         */
+        void put(MediaBuffer buffer, JobContext context) throws InterruptedException {
+            while (!mQueue.put(buffer, CHECK_INTERVAL_NANOS)) {
+                if (isStopped(context) || mClosed) {
+                    return;
+                }
+            }
+        }
+
+        @Override
+        public int readSampleData(ByteBuffer dst) throws IOException {
+            if (mCurrent == null) {
+                try {
+                    while ((mCurrent = mQueue.take(CHECK_INTERVAL_NANOS)) == null) {
+                        if (isCancelled()) {
+                            return -1;
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    throw new InterruptedIOException("interrupted waiting for " + mTrack);
+                }
+            }
+            if (mCurrent.isEndOfStream()) {
+                return -1;
+            }
+            int position = dst.position();
+            int size = mCurrent.data.remaining();
+            dst.put(mCurrent.data.duplicate());
+            dst.position(position);
+            return size;
+        }
+
+        @Override
+        public long getSampleTime() {
+            return mCurrent != null ? mCurrent.presentationTimeUs : -1;
+        }
+
+        @Override
+        public boolean advance() {
+            if (mCurrent == null || mCurrent.isEndOfStream()) {
+                return false;
+            }
+            mBuffers.release(mCurrent);
+            mCurrent = null;
+            return true;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            return isStopped(mContext);
+        }
+
+        @Override
+        public void setProgress(long done, long total) {
+            updateProgress(this, done, total, mContext);
+        }
+
+        @Override
+        public void setMetrics(TranscodeMetrics metrics) {
+            // 各轨道的指标分别登记，任务的context只有汇总的进度
+        }
+    }
+}
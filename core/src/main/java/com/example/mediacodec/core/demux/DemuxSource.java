@@ -0,0 +1,43 @@
+package com.example.mediacodec.core.demux;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 多轨道容器的读取，按MediaExtractor的方式：选中若干轨道后，按文件中的顺序逐个读取这些轨道的样本。
+ * 与{@link com.example.mediacodec.core.pipeline.SampleSource}不同，每个样本带有所属的轨道，
+ * 由{@link DemuxFanOut}分发给各轨道的解码器
+ */
+public interface DemuxSource {
+
+    int getTrackCount();
+
+    TrackInfo getTrackInfo(int track);
+
+    /**
+     * 选中轨道，之后读取的样本包括该轨道的样本。应在读取之前调用
+     */
+    void selectTrack(int track);
+
+    /**
+     * 当前样本所属的轨道，没有更多样本时返回-1
+     */
+    int getSampleTrackIndex();
+
+    /**
+     * 把当前样本读入dst，从dst的position开始写入，不改变position
+     * @return 样本的字节数，没有更多样本时返回-1
+     */
+    int readSampleData(ByteBuffer dst) throws IOException;
+
+    /**
+     * 当前样本的时间戳（微秒）
+     */
+    long getSampleTime();
+
+    /**
+     * 前进到下一个样本
+     * @return 没有更多样本时返回false
+     */
+    boolean advance();
+}
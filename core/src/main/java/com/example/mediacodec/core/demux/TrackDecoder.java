@@ -0,0 +1,16 @@
+package com.example.mediacodec.core.demux;
+
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.pipeline.SampleSource;
+
+/**
+ * 解码一条轨道，由{@link DemuxFanOut}在每条选中的轨道各自的线程上调用，每次调用使用独立的解码器实例和输出
+ */
+public interface TrackDecoder {
+    /**
+     * 从source读取track的样本并解码，直到source结束或取消。
+     * 提前返回（例如只需要一部分）时该轨道之后的样本被丢弃，不影响其他轨道
+     * @param context 取消时应尽快返回；进度按该轨道的时长报告
+     */
+    void decode(TrackInfo track, SampleSource source, JobContext context) throws Exception;
+}
@@ -0,0 +1,65 @@
+package com.example.mediacodec.core.demux;
+
+/**
+ * 容器中一条轨道的基本信息，由平台的轨道格式（例如MediaFormat）转换而来，供{@link TrackSelector}选择。不可变
+ */
+public final class TrackInfo {
+    private final int mIndex;
+    private final String mMime;
+    private final int mSampleRate;
+    private final int mChannelCount;
+    private final long mDurationUs;
+    private final String mLanguage;
+
+    /**
+     * @param sampleRate 非音轨时为0
+     * @param channelCount 非音轨时为0
+     * @param durationUs 未知时为0
+     * @param language ISO 639语言代码，未知时为null
+     */
+    public TrackInfo(int index, String mime, int sampleRate, int channelCount, long durationUs, String language) {
+        this.mIndex = index;
+        this.mMime = mime;
+        this.mSampleRate = sampleRate;
+        this.mChannelCount = channelCount;
+        this.mDurationUs = durationUs;
+        this.mLanguage = language;
+    }
+
+    /**
+     * 在容器中的轨道序号
+     */
+    public int getIndex() {
+        return mIndex;
+    }
+
+    public String getMime() {
+        return mMime;
+    }
+
+    public boolean isAudio() {
+        return mMime != null && mMime.startsWith("audio/");
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    public long getDurationUs() {
+        return mDurationUs;
+    }
+
+    public String getLanguage() {
+        return mLanguage;
+    }
+
+    @Override
+    public String toString() {
+        return "Track#" + mIndex + "[" + mMime + (isAudio() ? ", " + mSampleRate + "Hz/" + mChannelCount + "ch" : "")
+                + (mLanguage != null ? ", " + mLanguage : "") + ", " + mDurationUs + "us]";
+    }
+}
@@ -0,0 +1,14 @@
+package com.example.mediacodec.core.demux;
+
+import java.util.List;
+
+/**
+ * 从容器的全部轨道中选出要解码的轨道，常用的策略见{@link TrackSelectors}
+ */
+public interface TrackSelector {
+    /**
+     * @param tracks 容器中的全部轨道，按序号排列
+     * @return 选中的轨道序号，按解码器的顺序排列，不能重复；没有合适的轨道时返回空数组
+     */
+    int[] select(List<TrackInfo> tracks);
+}
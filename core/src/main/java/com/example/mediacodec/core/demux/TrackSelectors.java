@@ -0,0 +1,123 @@
+package com.example.mediacodec.core.demux;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * 常用的轨道选择策略
+ */
+public final class TrackSelectors {
+
+    private TrackSelectors() {
+    }
+
+    /**
+     * 第一条音轨，与单轨解码的行为相同
+     */
+    public static TrackSelector firstAudio() {
+        return new TrackSelector() {
+            @Override
+            public int[] select(List<TrackInfo> tracks) {
+                for (TrackInfo track : tracks) {
+                    if (track.isAudio()) {
+                        return new int[]{track.getIndex()};
+                    }
+                }
+                return new int[0];
+            }
+
+            @Override
+            public String toString() {
+                return "firstAudio";
+            }
+        };
+    }
+
+    /**
+     * 全部音轨，按序号排列
+     */
+    public static TrackSelector allAudio() {
+        return new TrackSelector() {
+            @Override
+            public int[] select(List<TrackInfo> tracks) {
+                int[] selected = new int[tracks.size()];
+                int count = 0;
+                for (TrackInfo track : tracks) {
+                    if (track.isAudio()) {
+                        selected[count++] = track.getIndex();
+                    }
+                }
+                return Arrays.copyOf(selected, count);
+            }
+
+            @Override
+            public String toString() {
+                return "allAudio";
+            }
+        };
+    }
+
+    /**
+     * 语言为languages之一的音轨（不区分大小写），按languages的顺序排列，同一语言按序号排列。
+     * 一条都没有时退回第一条音轨
+     */
+    public static TrackSelector audioLanguages(final String... languages) {
+        return new TrackSelector() {
+            @Override
+            public int[] select(List<TrackInfo> tracks) {
+                int[] selected = new int[tracks.size()];
+                int count = 0;
+                for (String language : languages) {
+                    for (TrackInfo track : tracks) {
+                        if (track.isAudio() && track.getLanguage() != null
+                                && track.getLanguage().toLowerCase(Locale.US).equals(language.toLowerCase(Locale.US))
+                                && indexOf(selected, count, track.getIndex()) < 0) {
+                            selected[count++] = track.getIndex();
+                        }
+                    }
+                }
+                return count > 0 ? Arrays.copyOf(selected, count) : firstAudio().select(tracks);
+            }
+
+            @Override
+            public String toString() {
+                return "audioLanguages" + Arrays.toString(languages);
+            }
+        };
+    }
+
+    /**
+     * 指定序号的轨道，忽略不存在的和不是音轨的序号
+     */
+    public static TrackSelector indices(final int... indices) {
+        return new TrackSelector() {
+            @Override
+            public int[] select(List<TrackInfo> tracks) {
+                int[] selected = new int[indices.length];
+                int count = 0;
+                for (int index : indices) {
+                    if (index >= 0 && index < tracks.size() && tracks.get(index).isAudio()
+                            && indexOf(selected, count, index) < 0) {
+                        selected[count++] = index;
+                    }
+                }
+                return Arrays.copyOf(selected, count);
+            }
+
+            @Override
+            public String toString() {
+                return "indices" + Arrays.toString(indices);
+            }
+        };
+    }
+
+    private static int indexOf(int[] array, int count, int value) {
+        for (int i = 0; i < count; i++) {
+            if (array[i] == value) {
+                return i;
+            }
+        }
+        return -1;
+    }
+}
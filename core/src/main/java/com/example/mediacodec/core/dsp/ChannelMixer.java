@@ -0,0 +1,148 @@
+package com.example.mediacodec.core.dsp;
+
+/**
+ * 交错float采样的声道混合：输出的每个声道是输入各声道的加权和。
+ * 默认矩阵：单声道复制到左右声道；多声道按Android的声道顺序（FL FR FC LFE BL BR ...）
+ * 以ITU-R BS.775的系数下混到立体声并归一化避免削波；立体声到单声道取平均。
+ */
+public class ChannelMixer {
+    private static final float CENTER_GAIN = 0.7071f;
+
+    private final int mInChannels;
+    private final int mOutChannels;
+    // mMatrix[o * mInChannels + i]：输入声道i对输出声道o的系数
+    private final float[] mMatrix;
+    // 一帧的输出，原地处理时先算完整帧再写回
+    private final float[] mFrame;
+
+    public ChannelMixer(int inChannels, int outChannels) {
+        this(inChannels, outChannels, defaultMatrix(inChannels, outChannels));
+    }
+
+    /**
+     * @param matrix outChannels * inChannels个系数，matrix[o * inChannels + i]为输入声道i对输出声道o的系数
+     */
+    public ChannelMixer(int inChannels, int outChannels, float[] matrix) {
+        if (inChannels <= 0 || outChannels <= 0 || matrix.length != inChannels * outChannels) {
+            throw new IllegalArgumentException(inChannels + " -> " + outChannels + ", matrix " + matrix.length);
+        }
+        this.mInChannels = inChannels;
+        this.mOutChannels = outChannels;
+        this.mMatrix = matrix.clone();
+        this.mFrame = new float[outChannels];
+    }
+
+    public int getInChannels() {
+        return mInChannels;
+    }
+
+    public int getOutChannels() {
+        return mOutChannels;
+    }
+
+    /**
+     * 混合frames帧。src和dst可以是同一个数组（原地处理），此时数组长度须容纳较多声道一侧的数据
+     */
+    public void process(float[] src, float[] dst, int frames) {
+        int in = mInChannels;
+        int out = mOutChannels;
+        float[] matrix = mMatrix;
+        float[] frame = mFrame;
+        if (out <= in) {
+            // 输出不比输入长，从前往后写不会覆盖还没读的输入
+            for (int f = 0; f < frames; f++) {
+                mixFrame(src, f * in, frame, matrix, in, out);
+                System.arraycopy(frame, 0, dst, f * out, out);
+            }
+        } else {
+            for (int f = frames - 1; f >= 0; f--) {
+                mixFrame(src, f * in, frame, matrix, in, out);
+                System.arraycopy(frame, 0, dst, f * out, out);
+            }
+        }
+    }
+
+    private static void mixFrame(float[] src, int base, float[] frame, float[] matrix, int in, int out) {
+        for (int o = 0; o < out; o++) {
+            float sum = 0;
+            int row = o * in;
+            for (int i = 0; i < in; i++) {
+                sum += matrix[row + i] * src[base + i];
+            }
+            frame[o] = sum;
+        }
+    }
+
+    static float[] defaultMatrix(int in, int out) {
+        float[] matrix = new float[in * out];
+        if (in == out) {
+            for (int c = 0; c < in; c++) {
+                matrix[c * in + c] = 1f;
+            }
+            return matrix;
+        }
+        if (in == 1) {
+            // 单声道放到前左、前右（out为1以外时至少有两个声道）
+            matrix[0] = 1f;
+            matrix[1] = 1f;
+            return matrix;
+        }
+        float[] stereo = stereoDownmix(in);
+        if (out == 1) {
+            for (int i = 0; i < in; i++) {
+                matrix[i] = (stereo[i] + stereo[in + i]) * 0.5f;
+            }
+            return matrix;
+        }
+        if (out == 2) {
+            return stereo;
+        }
+        if (in == 2) {
+            // 立体声放到前左、前右，其余声道静音
+            matrix[0] = 1f;
+            matrix[in + 1] = 1f;
+            return matrix;
+        }
+        // 其他多声道之间：相同位置的声道直接对应
+        for (int c = 0; c < Math.min(in, out); c++) {
+            matrix[c * in + c] = 1f;
+        }
+        return matrix;
+    }
+
+    /**
+     * in声道到立体声的矩阵（2 * in），左右声道的系数和归一化为1
+     */
+    private static float[] stereoDownmix(int in) {
+        float[] matrix = new float[2 * in];
+        if (in == 2) {
+            matrix[0] = 1f;
+            matrix[3] = 1f;
+            return matrix;
+        }
+        // 4声道为FL FR BL BR，3声道和5声道及以上带中置，6声道及以上的第4个声道为LFE
+        boolean hasCenter = in == 3 || in >= 5;
+        boolean hasLfe = in >= 6;
+        int firstSurround = 2 + (hasCenter ? 1 : 0) + (hasLfe ? 1 : 0);
+        matrix[0] = 1f;
+        matrix[in + 1] = 1f;
+        if (hasCenter) {
+            matrix[2] = CENTER_GAIN;
+            matrix[in + 2] = CENTER_GAIN;
+        }
+        for (int i = firstSurround; i < in; i++) {
+            // 环绕声道左右交替
+            matrix[((i - firstSurround) % 2 == 0 ? 0 : in) + i] = CENTER_GAIN;
+        }
+        for (int o = 0; o < 2; o++) {
+            float sum = 0;
+            for (int i = 0; i < in; i++) {
+                sum += matrix[o * in + i];
+            }
+            for (int i = 0; i < in; i++) {
+                matrix[o * in + i] /= sum;
+            }
+        }
+        return matrix;
+    }
+}
@@ -0,0 +1,184 @@
+package com.example.mediacodec.core.dsp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 把PCM从一种格式（采样率、声道数、16位/float）转换成另一种。
+ * 数据按{@link #BLOCK_FRAMES}帧一块处理：转成float、混合声道、重采样、再转回目标采样格式，
+ * 所有工作数组在构造时分配，输入多大都不再分配内存。
+ * 声道数减少时先混合再重采样，增加时先重采样再混合，重采样只处理较少的声道。
+ * <p>
+ * 重采样滤波器的延迟已经补偿：开头丢弃{@link PolyphaseResampler#getOutputDelayFrames()}帧，
+ * {@link #flush}只补到与输入等长的帧数，输出与输入对齐，总帧数为round(输入帧数 * outRate / inRate)。
+ */
+public class PcmConverter implements PcmTransform {
+    public static final int BLOCK_FRAMES = 1024;
+
+    private final int mInRate;
+    private final int mInChannels;
+    private final int mInEncoding;
+    private final int mOutRate;
+    private final int mOutChannels;
+    private final int mOutEncoding;
+    private final int mInFrameSize;
+    private final int mOutFrameSize;
+    private final ChannelMixer mMixer;
+    private final PolyphaseResampler mResampler;
+    private final float[] mInput;
+    private final float[] mResampled;
+    private final float[] mOutput;
+    // 开头还要丢弃的输出帧数（滤波器延迟）
+    private int mPrimingFrames;
+    // 自reset以来的输入帧数和已输出的帧数，flush时据此截齐长度
+    private long mInputFrames;
+    private long mOutputFrames;
+
+    public PcmConverter(int inRate, int inChannels, int inEncoding, int outRate, int outChannels, int outEncoding) {
+        this.mInRate = inRate;
+        this.mInChannels = inChannels;
+        this.mInEncoding = inEncoding;
+        this.mOutRate = outRate;
+        this.mOutChannels = outChannels;
+        this.mOutEncoding = outEncoding;
+        this.mInFrameSize = inChannels * SampleConverter.bytesPerSample(inEncoding);
+        this.mOutFrameSize = outChannels * SampleConverter.bytesPerSample(outEncoding);
+        this.mMixer = inChannels != outChannels ? new ChannelMixer(inChannels, outChannels) : null;
+        this.mResampler = inRate != outRate
+                ? new PolyphaseResampler(inRate, outRate, Math.min(inChannels, outChannels)) : null;
+        int maxChannels = Math.max(inChannels, outChannels);
+        int maxFrames = mResampler != null ? mResampler.maxOutputFrames(BLOCK_FRAMES) : BLOCK_FRAMES;
+        this.mInput = new float[BLOCK_FRAMES * maxChannels];
+        this.mResampled = new float[maxFrames * maxChannels];
+        this.mOutput = new float[maxFrames * maxChannels];
+        reset();
+    }
+
+    /**
+     * 16位PCM之间只转换采样率和声道数
+     */
+    public PcmConverter(int inRate, int inChannels, int outRate, int outChannels) {
+        this(inRate, inChannels, SampleConverter.ENCODING_PCM_16BIT,
+                outRate, outChannels, SampleConverter.ENCODING_PCM_16BIT);
+    }
+
+    /**
+     * 输入输出格式相同，不需要转换
+     */
+    public boolean isIdentity() {
+        return mInRate == mOutRate && mInChannels == mOutChannels && mInEncoding == mOutEncoding;
+    }
+
+    public int getInFrameSize() {
+        return mInFrameSize;
+    }
+
+    public int getOutFrameSize() {
+        return mOutFrameSize;
+    }
+
+    @Override
+    public int maxOutputSize(int inputSize) {
+        int frames = inputSize / mInFrameSize;
+        if (mResampler == null) {
+            return frames * mOutFrameSize;
+        }
+        // 每块最多多出一帧，另加flush的输出
+        int blocks = (frames + BLOCK_FRAMES - 1) / BLOCK_FRAMES;
+        return (mResampler.maxOutputFrames(frames) + blocks
+                + mResampler.maxOutputFrames(mResampler.getDelayFrames())) * mOutFrameSize;
+    }
+
+    @Override
+    public void process(ByteBuffer src, ByteBuffer dst) {
+        int size = src.remaining();
+        if (size % mInFrameSize != 0) {
+            throw new IllegalArgumentException("not a whole number of frames: " + size);
+        }
+        if (dst.remaining() < maxOutputSize(size)) {
+            throw new IllegalArgumentException("dst too small: " + dst.remaining() + " < " + maxOutputSize(size));
+        }
+        int position = src.position();
+        int end = src.limit();
+        while (position < end) {
+            int frames = Math.min(BLOCK_FRAMES, (end - position) / mInFrameSize);
+            SampleConverter.toFloat(src, position, mInEncoding, mInput, 0, frames * mInChannels);
+            position += frames * mInFrameSize;
+            mInputFrames += frames;
+            writeOutput(dst, convertBlock(frames), Integer.MAX_VALUE);
+        }
+        src.position(end);
+    }
+
+    /**
+     * 转换mInput中的frames帧，结果在mOutput中
+     * @return 输出帧数
+     */
+    private int convertBlock(int frames) {
+        float[] data = mInput;
+        if (mMixer != null && mOutChannels < mInChannels) {
+            mMixer.process(data, data, frames);
+        }
+        if (mResampler != null) {
+            frames = mResampler.process(data, frames, mResampled);
+            data = mResampled;
+        }
+        if (mMixer != null && mOutChannels > mInChannels) {
+            mMixer.process(data, mOutput, frames);
+            data = mOutput;
+        }
+        if (data != mOutput) {
+            System.arraycopy(data, 0, mOutput, 0, frames * mOutChannels);
+        }
+        return frames;
+    }
+
+    /**
+     * 把mOutput中的frames帧写入dst，先丢弃开头的延迟部分，最多写入limit帧
+     */
+    private void writeOutput(ByteBuffer dst, int frames, long limit) {
+        int skip = Math.min(mPrimingFrames, frames);
+        mPrimingFrames -= skip;
+        int count = (int) Math.min(frames - skip, limit);
+        if (count <= 0) {
+            return;
+        }
+        SampleConverter.fromFloat(mOutput, skip * mOutChannels, count * mOutChannels,
+                dst, dst.position(), mOutEncoding);
+        dst.position(dst.position() + count * mOutFrameSize);
+        mOutputFrames += count;
+    }
+
+    @Override
+    public void flush(ByteBuffer dst) {
+        if (mResampler == null) {
+            return;
+        }
+        int frames = mResampler.flush(mInput, mResampled);
+        float[] data = mResampled;
+        if (mMixer != null && mOutChannels > mInChannels) {
+            mMixer.process(data, mOutput, frames);
+            data = mOutput;
+        }
+        if (data != mOutput) {
+            System.arraycopy(data, 0, mOutput, 0, frames * mOutChannels);
+        }
+        // 冲出的尾部比延迟略长，截到与输入等长
+        writeOutput(dst, frames, mResampler.outputFramesFor(mInputFrames) - mOutputFrames);
+    }
+
+    @Override
+    public void reset() {
+        if (mResampler != null) {
+            mResampler.reset();
+            mPrimingFrames = mResampler.getOutputDelayFrames();
+        }
+        mInputFrames = 0;
+        mOutputFrames = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "PcmConverter{" + mInRate + "Hz " + mInChannels + "ch enc" + mInEncoding
+                + " -> " + mOutRate + "Hz " + mOutChannels + "ch enc" + mOutEncoding + "}";
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.mediacodec.core.dsp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 16位小端PCM的固定增益，原地处理并限幅，例如编码前按两遍响度测量的结果调整音量。
+ * 与buffer的字节序设置无关，总是按小端（PCM文件和MediaCodec buffer的格式）读写。
+ */
+public final class PcmGain {
+    private PcmGain() {
+    }
+
+    /**
+     * 线性增益，例如dB值10为3.16
+     */
+    public static float fromDb(double db) {
+        return (float) Math.pow(10, db / 20);
+    }
+
+    /**
+     * 把buffer中[index, index + size)的采样乘以gain，四舍五入并限幅到[-32768, 32767]，不改变position和limit
+     */
+    public static void apply(ByteBuffer buffer, int index, int size, float gain) {
+        int end = index + (size & ~1);
+        for (int i = index; i < end; i += 2) {
+            int sample = (short) ((buffer.get(i) & 0xFF) | (buffer.get(i + 1) << 8));
+            float scaled = sample * gain;
+            int value = scaled >= 0 ? (int) (scaled + 0.5f) : (int) (scaled - 0.5f);
+            if (value > Short.MAX_VALUE) {
+                value = Short.MAX_VALUE;
+            } else if (value < Short.MIN_VALUE) {
+                value = Short.MIN_VALUE;
+            }
+            buffer.put(i, (byte) value);
+            buffer.put(i + 1, (byte) (value >> 8));
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.mediacodec.core.dsp;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 流式PCM处理阶段，位于解码器和写入端之间，例如重采样、声道混合、采样格式转换。
+ * 实现类在构造时分配好全部工作缓冲区，处理每块数据时不再分配内存。非线程安全。
+ */
+public interface PcmTransform {
+    /**
+     * 处理src中position到limit的全部数据（必须是整帧），结果从dst的position开始写入，两者的position都前移
+     * @throws IllegalArgumentException src不是整帧，或dst剩余空间小于{@link #maxOutputSize}
+     */
+    void process(ByteBuffer src, ByteBuffer dst);
+
+    /**
+     * 处理inputSize字节的输入时最多输出的字节数，也足够容纳{@link #flush}的输出
+     */
+    int maxOutputSize(int inputSize);
+
+    /**
+     * 输入结束，输出内部缓存的剩余数据（例如重采样滤波器的延迟部分）
+     */
+    void flush(ByteBuffer dst);
+
+    /**
+     * 清除内部状态，之后的输入作为新的流处理（例如seek之后）
+     */
+    void reset();
+}
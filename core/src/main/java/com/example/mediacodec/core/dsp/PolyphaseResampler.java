@@ -0,0 +1,224 @@
+package com.example.mediacodec.core.dsp;
+
+import java.util.Arrays;
+
+/**
+ * 有理数比例的多相滤波重采样：outRate/inRate约分为L/M，等效于插L-1个零、低通滤波、每M个取一个，
+ * 只计算实际输出的点。原型滤波器是Kaiser窗的sinc，截止频率取两个采样率中较低者的一半，
+ * 每个输出采样需要taps次乘加。
+ * <p>
+ * 流式处理：保留上一块末尾taps-1帧作为历史，块与块之间的输出与整段一次处理完全一致。
+ * 输出相对输入有约taps/2个输入帧的延迟，{@link #flush}补零把它冲出来。
+ */
+public class PolyphaseResampler {
+    public static final int DEFAULT_TAPS = 32;
+    // L过大时滤波器表太大（例如44100到44101），不支持
+    public static final int MAX_PHASES = 4096;
+    private static final double KAISER_BETA = 8.0;
+    // 截止频率略低于奈奎斯特频率，留出过渡带
+    private static final double ROLLOFF = 0.94;
+
+    private final int mInRate;
+    private final int mOutRate;
+    private final int mChannels;
+    private final int mTaps;
+    private final int mL;
+    private final int mM;
+    // 按相位存放的系数，每个相位mTaps个，顺序与历史数据从旧到新对应
+    private final float[] mCoefficients;
+    // 历史加本块输入，交错存放
+    private float[] mBuffer;
+    // mBuffer中的有效帧数
+    private int mBufferFrames;
+    // 下一个输出对应的最新输入帧在mBuffer中的位置和相位
+    private int mPosition;
+    private int mPhase;
+
+    public PolyphaseResampler(int inRate, int outRate, int channels) {
+        this(inRate, outRate, channels, DEFAULT_TAPS);
+    }
+
+    /**
+     * @param taps 每个相位的系数个数，越大阻带衰减越好，计算量成正比
+     */
+    public PolyphaseResampler(int inRate, int outRate, int channels, int taps) {
+        if (inRate <= 0 || outRate <= 0 || channels <= 0 || taps <= 0) {
+            throw new IllegalArgumentException(inRate + " -> " + outRate + ", " + channels + "ch, taps " + taps);
+        }
+        int gcd = gcd(inRate, outRate);
+        this.mL = outRate / gcd;
+        this.mM = inRate / gcd;
+        if (mL > MAX_PHASES) {
+            throw new IllegalArgumentException("unsupported ratio " + inRate + " -> " + outRate);
+        }
+        this.mInRate = inRate;
+        this.mOutRate = outRate;
+        this.mChannels = channels;
+        this.mTaps = mL == mM ? 1 : taps;
+        this.mCoefficients = mL == mM ? new float[]{1f} : design(mL, mM, taps);
+        this.mBuffer = new float[(mTaps - 1 + 1024) * channels];
+        reset();
+    }
+
+    private static int gcd(int a, int b) {
+        while (b != 0) {
+            int t = a % b;
+            a = b;
+            b = t;
+        }
+        return a;
+    }
+
+    /**
+     * 设计L*taps长的原型低通滤波器并拆成L个相位，每个相位归一化为单位直流增益
+     */
+    private static float[] design(int l, int m, int taps) {
+        int length = l * taps;
+        double cutoff = ROLLOFF * 0.5 / Math.max(l, m);
+        double center = (length - 1) / 2.0;
+        double[] prototype = new double[length];
+        double i0Beta = besselI0(KAISER_BETA);
+        for (int j = 0; j < length; j++) {
+            double x = j - center;
+            double sinc = x == 0 ? 2 * cutoff : Math.sin(2 * Math.PI * cutoff * x) / (Math.PI * x);
+            double r = 2 * x / (length - 1);
+            double window = besselI0(KAISER_BETA * Math.sqrt(Math.max(0, 1 - r * r))) / i0Beta;
+            prototype[j] = sinc * window;
+        }
+        float[] coefficients = new float[length];
+        for (int p = 0; p < l; p++) {
+            double sum = 0;
+            for (int k = 0; k < taps; k++) {
+                sum += prototype[p + k * l];
+            }
+            for (int k = 0; k < taps; k++) {
+                // 第k个系数乘以x[n - k]，存放时倒序，与从旧到新的历史数据对应
+                coefficients[p * taps + taps - 1 - k] = (float) (prototype[p + k * l] / sum);
+            }
+        }
+        return coefficients;
+    }
+
+    private static double besselI0(double x) {
+        double sum = 1;
+        double term = 1;
+        double half = x / 2;
+        for (int k = 1; k < 50; k++) {
+            term *= (half / k) * (half / k);
+            sum += term;
+            if (term < sum * 1e-12) {
+                break;
+            }
+        }
+        return sum;
+    }
+
+    public int getInRate() {
+        return mInRate;
+    }
+
+    public int getOutRate() {
+        return mOutRate;
+    }
+
+    public int getChannels() {
+        return mChannels;
+    }
+
+    /**
+     * 输出相对输入的延迟（输入帧）
+     */
+    public int getDelayFrames() {
+        return mTaps / 2;
+    }
+
+    /**
+     * 输出相对输入的延迟换算成输出帧，四舍五入。原型滤波器长L*taps，群延迟为(L*taps-1)/2个插零后的采样
+     */
+    public int getOutputDelayFrames() {
+        return (int) Math.round((mTaps * (double) mL - 1) / (2.0 * mM));
+    }
+
+    /**
+     * inFrames帧输入对应的输出帧数，四舍五入
+     */
+    public long outputFramesFor(long inFrames) {
+        return (inFrames * mL * 2 + mM) / (2L * mM);
+    }
+
+    /**
+     * inFrames帧输入最多产生的输出帧数
+     */
+    public int maxOutputFrames(int inFrames) {
+        return (int) (((long) inFrames * mL + mM - 1) / mM) + 1;
+    }
+
+    public void reset() {
+        // 历史初始为静音
+        Arrays.fill(mBuffer, 0f);
+        mBufferFrames = mTaps - 1;
+        mPosition = mTaps - 1;
+        mPhase = 0;
+    }
+
+    /**
+     * 处理inFrames帧交错输入，输出写入out（从0开始），out的长度至少为maxOutputFrames(inFrames) * channels
+     * @return 输出的帧数
+     */
+    public int process(float[] in, int inFrames, float[] out) {
+        int channels = mChannels;
+        int needed = (mBufferFrames + inFrames) * channels;
+        if (needed > mBuffer.length) {
+            // 只在输入块比以往都大时扩容
+            mBuffer = Arrays.copyOf(mBuffer, needed);
+        }
+        System.arraycopy(in, 0, mBuffer, mBufferFrames * channels, inFrames * channels);
+        mBufferFrames += inFrames;
+
+        float[] buffer = mBuffer;
+        float[] coefficients = mCoefficients;
+        int taps = mTaps;
+        int l = mL;
+        int m = mM;
+        int position = mPosition;
+        int phase = mPhase;
+        int outFrames = 0;
+        while (position < mBufferFrames) {
+            int coefficientBase = phase * taps;
+            int inputBase = (position - taps + 1) * channels;
+            int outBase = outFrames * channels;
+            for (int c = 0; c < channels; c++) {
+                float sum = 0;
+                int index = inputBase + c;
+                for (int k = 0; k < taps; k++) {
+                    sum += coefficients[coefficientBase + k] * buffer[index];
+                    index += channels;
+                }
+                out[outBase + c] = sum;
+            }
+            outFrames++;
+            phase += m;
+            position += phase / l;
+            phase %= l;
+        }
+        // 保留最后taps-1帧作为下一块的历史
+        int keep = taps - 1;
+        int drop = mBufferFrames - keep;
+        System.arraycopy(buffer, drop * channels, buffer, 0, keep * channels);
+        mBufferFrames = keep;
+        mPosition = position - drop;
+        mPhase = phase;
+        return outFrames;
+    }
+
+    /**
+     * 补充getDelayFrames()帧静音，把滤波器中剩余的输出冲出来
+     * @param scratch 至少getDelayFrames() * channels个元素的临时数组，内容会被清零
+     * @return 输出的帧数
+     */
+    public int flush(float[] scratch, float[] out) {
+        int frames = getDelayFrames();
+        Arrays.fill(scratch, 0, frames * mChannels, 0f);
+        return process(scratch, frames, out);
+    }
+}
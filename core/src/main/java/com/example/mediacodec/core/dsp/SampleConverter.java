@@ -0,0 +1,79 @@
+package com.example.mediacodec.core.dsp;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 交错PCM采样在字节数据和float数组之间的转换。字节数据一律按小端序（Android的PCM格式）读写，
+ * 与ByteBuffer自身的order无关；使用绝对位置读写，不改变buffer的position，也不创建视图对象。
+ */
+public final class SampleConverter {
+    /**
+     * 采样格式，数值与AudioFormat.ENCODING_PCM_16BIT/ENCODING_PCM_FLOAT一致
+     */
+    public static final int ENCODING_PCM_16BIT = 2;
+    public static final int ENCODING_PCM_FLOAT = 4;
+
+    private static final float SHORT_SCALE = 1f / 32768f;
+
+    private SampleConverter() {
+    }
+
+    public static int bytesPerSample(int encoding) {
+        switch (encoding) {
+            case ENCODING_PCM_16BIT:
+                return 2;
+            case ENCODING_PCM_FLOAT:
+                return 4;
+            default:
+                throw new IllegalArgumentException("unsupported encoding: " + encoding);
+        }
+    }
+
+    /**
+     * 从src的index处读取samples个采样，转换为[-1, 1)的float
+     */
+    public static void toFloat(ByteBuffer src, int index, int encoding, float[] dst, int offset, int samples) {
+        boolean little = src.order() == ByteOrder.LITTLE_ENDIAN;
+        if (encoding == ENCODING_PCM_16BIT) {
+            for (int i = 0; i < samples; i++) {
+                short value = src.getShort(index + i * 2);
+                dst[offset + i] = (little ? value : Short.reverseBytes(value)) * SHORT_SCALE;
+            }
+        } else if (encoding == ENCODING_PCM_FLOAT) {
+            for (int i = 0; i < samples; i++) {
+                int bits = src.getInt(index + i * 4);
+                dst[offset + i] = Float.intBitsToFloat(little ? bits : Integer.reverseBytes(bits));
+            }
+        } else {
+            throw new IllegalArgumentException("unsupported encoding: " + encoding);
+        }
+    }
+
+    /**
+     * 把samples个float采样写入dst的index处；16位时四舍五入并限幅到[-32768, 32767]
+     */
+    public static void fromFloat(float[] src, int offset, int samples, ByteBuffer dst, int index, int encoding) {
+        boolean little = dst.order() == ByteOrder.LITTLE_ENDIAN;
+        if (encoding == ENCODING_PCM_16BIT) {
+            for (int i = 0; i < samples; i++) {
+                float scaled = src[offset + i] * 32768f;
+                int value = scaled >= 0 ? (int) (scaled + 0.5f) : (int) (scaled - 0.5f);
+                if (value > Short.MAX_VALUE) {
+                    value = Short.MAX_VALUE;
+                } else if (value < Short.MIN_VALUE) {
+                    value = Short.MIN_VALUE;
+                }
+                short s = (short) value;
+                dst.putShort(index + i * 2, little ? s : Short.reverseBytes(s));
+            }
+        } else if (encoding == ENCODING_PCM_FLOAT) {
+            for (int i = 0; i < samples; i++) {
+                int bits = Float.floatToRawIntBits(src[offset + i]);
+                dst.putInt(index + i * 4, little ? bits : Integer.reverseBytes(bits));
+            }
+        } else {
+            throw new IllegalArgumentException("unsupported encoding: " + encoding);
+        }
+    }
+}
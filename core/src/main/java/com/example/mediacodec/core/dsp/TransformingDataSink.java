@@ -0,0 +1,116 @@
+package com.example.mediacodec.core.dsp;
+
+import com.example.mediacodec.core.io.DataSink;
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.memory.PooledBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * 写入的PCM先经过{@link PcmTransform}再交给下游的DataSink。
+ * 输出写入一个复用的direct buffer，只在输入块比以往都大时重新分配（指定了{@link DirectBufferPool}时从池中借用）。
+ * 关闭时先把变换中缓存的剩余数据写出再关闭下游。
+ */
+public class TransformingDataSink implements DataSink {
+    private final DataSink mSink;
+    private PcmTransform mTransform;
+    private final DirectBufferPool mPool;
+    private ByteBuffer mOutput;
+    private PooledBuffer mLease;
+    private ByteOrder mOrder = ByteOrder.nativeOrder();
+
+    /**
+     * @param transform 为null时直接透传
+     */
+    public TransformingDataSink(DataSink sink, PcmTransform transform) {
+        this(sink, transform, null);
+    }
+
+    /**
+     * @param pool 不为null时输出buffer从池中借用，close时归还
+     */
+    public TransformingDataSink(DataSink sink, PcmTransform transform, DirectBufferPool pool) {
+        this.mSink = sink;
+        this.mTransform = transform;
+        this.mPool = pool;
+    }
+
+    /**
+     * 更换变换，例如解码器的输出格式改变时。旧变换中缓存的数据先写出
+     */
+    public void setTransform(PcmTransform transform) throws IOException {
+        drainTransform();
+        mTransform = transform;
+    }
+
+    public PcmTransform getTransform() {
+        return mTransform;
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        if (mTransform == null) {
+            mSink.write(src);
+            return;
+        }
+        ByteBuffer output = output(mTransform.maxOutputSize(src.remaining()));
+        //输出与输入的字节序相同（MediaCodec的buffer是本机字节序，新分配的buffer是大端）
+        mOrder = src.order();
+        output.order(mOrder);
+        mTransform.process(src, output);
+        output.flip();
+        mSink.write(output);
+    }
+
+    private ByteBuffer output(int size) {
+        if (mOutput == null || mOutput.capacity() < size) {
+            if (mPool != null) {
+                releaseOutput();
+                mLease = mPool.lease(size);
+                mOutput = mLease.buffer();
+            } else {
+                mOutput = ByteBuffer.allocateDirect(size);
+            }
+        }
+        mOutput.clear();
+        return mOutput;
+    }
+
+    private void drainTransform() throws IOException {
+        if (mTransform == null) {
+            return;
+        }
+        ByteBuffer output = output(mTransform.maxOutputSize(0));
+        output.order(mOrder);
+        mTransform.flush(output);
+        output.flip();
+        if (output.hasRemaining()) {
+            mSink.write(output);
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        mSink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            drainTransform();
+        } finally {
+            releaseOutput();
+            mSink.close();
+        }
+    }
+
+    private void releaseOutput() {
+        if (mLease != null) {
+            mLease.release();
+            mLease = null;
+            mOutput = null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.mediacodec.core.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * AAC编码输出的写入端：ADTS裸流或MP4/M4A容器。
+ * close时写完容器需要的收尾数据（例如MP4的moov）并关闭底层输出。
+ */
+public interface AacSink extends Closeable {
+    /**
+     * 编码器给出的AudioSpecificConfig（csd-0，带BUFFER_FLAG_CODEC_CONFIG的输出），在第一帧之前调用
+     */
+    void setAudioSpecificConfig(ByteBuffer config) throws IOException;
+
+    /**
+     * 写入一帧AAC数据（position到limit）
+     * @param presentationTimeUs 该帧的时间戳（微秒），单调递增
+     */
+    void writeFrame(ByteBuffer frame, long presentationTimeUs) throws IOException;
+}
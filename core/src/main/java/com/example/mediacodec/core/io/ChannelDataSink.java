@@ -0,0 +1,115 @@
+package com.example.mediacodec.core.io;
+
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.memory.PooledBuffer;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 基于{@link WritableByteChannel}的DataSink。
+ * 小块数据先拷贝到一个复用的direct暂存区，暂存区写满（达到flushThreshold）或flush/close时才写入channel；
+ * 暂存区为空且数据块不小于flushThreshold时直接写入channel，不经过暂存区。
+ * 整个过程不在Java堆上分配内存，也不做堆内拷贝。
+ * 暂存区可以从{@link DirectBufferPool}借用，close时归还。
+ */
+public class ChannelDataSink implements DataSink {
+    public static final int DEFAULT_FLUSH_THRESHOLD = 256 * 1024;
+
+    private final WritableByteChannel mChannel;
+    private final ByteBuffer mStaging;
+    private PooledBuffer mLease;
+    // 写入的总字节数
+    private long mBytesWritten;
+    // 调用channel.write的次数，近似于系统调用次数
+    private long mChannelWrites;
+
+    public ChannelDataSink(WritableByteChannel channel) {
+        this(channel, DEFAULT_FLUSH_THRESHOLD);
+    }
+
+    public ChannelDataSink(WritableByteChannel channel, int flushThreshold) {
+        this(channel, flushThreshold, null);
+    }
+
+    /**
+     * @param pool 不为null时暂存区从池中借用
+     */
+    public ChannelDataSink(WritableByteChannel channel, int flushThreshold, DirectBufferPool pool) {
+        if (flushThreshold <= 0) {
+            throw new IllegalArgumentException("flushThreshold must be positive: " + flushThreshold);
+        }
+        this.mChannel = channel;
+        if (pool != null) {
+            mLease = pool.lease(flushThreshold);
+            //池中的buffer可能比flushThreshold大，只用前flushThreshold字节
+            this.mStaging = mLease.buffer().slice();
+        } else {
+            this.mStaging = ByteBuffer.allocateDirect(flushThreshold);
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        int length = src.remaining();
+        while (src.hasRemaining()) {
+            if (mStaging.position() == 0 && src.remaining() >= mStaging.capacity()) {
+                //大块数据直接写入，避免多一次拷贝
+                writeFully(src);
+                break;
+            }
+            int count = Math.min(src.remaining(), mStaging.remaining());
+            int limit = src.limit();
+            src.limit(src.position() + count);
+            mStaging.put(src);
+            src.limit(limit);
+            if (!mStaging.hasRemaining()) {
+                drain();
+            }
+        }
+        mBytesWritten += length;
+    }
+
+    @Override
+    public void flush() throws IOException {
+        drain();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+        } finally {
+            if (mLease != null) {
+                mLease.release();
+                mLease = null;
+            }
+            mChannel.close();
+        }
+    }
+
+    public long getBytesWritten() {
+        return mBytesWritten;
+    }
+
+    public long getChannelWrites() {
+        return mChannelWrites;
+    }
+
+    private void drain() throws IOException {
+        if (mStaging.position() == 0) {
+            return;
+        }
+        mStaging.flip();
+        writeFully(mStaging);
+        mStaging.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            mChannel.write(buffer);
+            mChannelWrites++;
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.mediacodec.core.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 编解码输出数据的写入端，例如解码得到的PCM数据。
+ * 不依赖Android，可以在JVM单元测试中直接用构造的ByteBuffer驱动。
+ */
+public interface DataSink extends Closeable {
+    /**
+     * 写入src中position到limit之间的全部数据，返回时src.position()等于src.limit()
+     */
+    void write(ByteBuffer src) throws IOException;
+
+    /**
+     * 把暂存的数据全部写出
+     */
+    void flush() throws IOException;
+}
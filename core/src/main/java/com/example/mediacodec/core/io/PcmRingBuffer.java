@@ -0,0 +1,194 @@
+package com.example.mediacodec.core.io;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 有界环形缓冲区，用于解码线程（生产者）和播放线程（消费者）之间传递PCM数据。
+ * 缓冲区满时生产者阻塞，从而对解码器形成背压；缓冲区空时消费者阻塞。
+ */
+public class PcmRingBuffer {
+    private final byte[] mData;
+    private final ReentrantLock mLock = new ReentrantLock();
+    private final Condition mNotFull = mLock.newCondition();
+    private final Condition mNotEmpty = mLock.newCondition();
+    private int mReadPos;
+    private int mWritePos;
+    private int mSize;
+    // 生产者已写完全部数据
+    private boolean mFinished;
+    // 消费者已放弃读取
+    private boolean mCancelled;
+
+    public PcmRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        mData = new byte[capacity];
+    }
+
+    public int capacity() {
+        return mData.length;
+    }
+
+    /**
+     * 写入src中剩余的全部数据，空间不足时阻塞等待消费者读取
+     * @return 消费者已取消时返回false，src中未写入的数据被丢弃
+     */
+    public boolean write(ByteBuffer src) throws InterruptedException {
+        mLock.lockInterruptibly();
+        try {
+            if (mFinished) {
+                throw new IllegalStateException("write after finish");
+            }
+            while (src.hasRemaining()) {
+                while (mSize == mData.length && !mCancelled) {
+                    mNotFull.await();
+                }
+                if (mCancelled) {
+                    src.position(src.limit());
+                    return false;
+                }
+                int count = Math.min(src.remaining(),
+                        Math.min(mData.length - mSize, mData.length - mWritePos));
+                src.get(mData, mWritePos, count);
+                mWritePos = (mWritePos + count) % mData.length;
+                mSize += count;
+                mNotEmpty.signalAll();
+            }
+            return true;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 读取数据，没有数据时阻塞等待
+     * @return 读取的字节数，数据已全部读完或已取消时返回-1
+     */
+    public int read(byte[] dst, int offset, int length) throws InterruptedException {
+        if (length == 0) {
+            return 0;
+        }
+        mLock.lockInterruptibly();
+        try {
+            while (mSize == 0 && !mFinished && !mCancelled) {
+                mNotEmpty.await();
+            }
+            if (mCancelled || mSize == 0) {
+                return -1;
+            }
+            int count = Math.min(length, Math.min(mSize, mData.length - mReadPos));
+            System.arraycopy(mData, mReadPos, dst, offset, count);
+            mReadPos = (mReadPos + count) % mData.length;
+            mSize -= count;
+            mNotFull.signalAll();
+            return count;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 读取数据到dst，最多dst.remaining()字节，没有数据时阻塞等待
+     * @return 读取的字节数，数据已全部读完或已取消时返回-1
+     */
+    public int read(ByteBuffer dst) throws InterruptedException {
+        if (!dst.hasRemaining()) {
+            return 0;
+        }
+        mLock.lockInterruptibly();
+        try {
+            while (mSize == 0 && !mFinished && !mCancelled) {
+                mNotEmpty.await();
+            }
+            if (mCancelled || mSize == 0) {
+                return -1;
+            }
+            int count = Math.min(dst.remaining(), Math.min(mSize, mData.length - mReadPos));
+            dst.put(mData, mReadPos, count);
+            mReadPos = (mReadPos + count) % mData.length;
+            mSize -= count;
+            mNotFull.signalAll();
+            return count;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 等待缓冲区中至少有bytes字节数据（超过容量时按容量计算），用于播放前的预缓冲
+     * @return 数据足够或生产者已结束时返回true，已取消时返回false
+     */
+    public boolean awaitReadable(int bytes) throws InterruptedException {
+        int target = Math.min(bytes, mData.length);
+        mLock.lockInterruptibly();
+        try {
+            while (mSize < target && !mFinished && !mCancelled) {
+                mNotEmpty.await();
+            }
+            return !mCancelled;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    public int available() {
+        mLock.lock();
+        try {
+            return mSize;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 生产者调用，表示不会再写入数据
+     */
+    public void finish() {
+        mLock.lock();
+        try {
+            mFinished = true;
+            mNotEmpty.signalAll();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 生产者已调用{@link #finish}，缓冲区中剩余的数据读完后不会再有新数据
+     */
+    public boolean isFinished() {
+        mLock.lock();
+        try {
+            return mFinished;
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    /**
+     * 消费者调用，放弃剩余数据并唤醒阻塞中的生产者
+     */
+    public void cancel() {
+        mLock.lock();
+        try {
+            mCancelled = true;
+            mSize = 0;
+            mNotFull.signalAll();
+            mNotEmpty.signalAll();
+        } finally {
+            mLock.unlock();
+        }
+    }
+
+    public boolean isCancelled() {
+        mLock.lock();
+        try {
+            return mCancelled;
+        } finally {
+            mLock.unlock();
+        }
+    }
+}
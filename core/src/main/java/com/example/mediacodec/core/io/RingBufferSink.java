@@ -0,0 +1,41 @@
+package com.example.mediacodec.core.io;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+
+/**
+ * 把数据写入{@link PcmRingBuffer}的DataSink，close时通知消费者数据已结束。
+ * 缓冲区满时write阻塞，消费者取消后write抛出{@link ClosedChannelException}。
+ */
+public class RingBufferSink implements DataSink {
+    private final PcmRingBuffer mRingBuffer;
+
+    public RingBufferSink(PcmRingBuffer ringBuffer) {
+        this.mRingBuffer = ringBuffer;
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        boolean accepted;
+        try {
+            accepted = mRingBuffer.write(src);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+        if (!accepted) {
+            throw new ClosedChannelException();
+        }
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void close() {
+        mRingBuffer.finish();
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.mediacodec.core.job;
+
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+
+/**
+ * 任务执行时与调度器交互的接口
+ */
+public interface JobContext {
+    boolean isCancelled();
+
+    /**
+     * 报告进度，total未知时传0
+     */
+    void setProgress(long done, long total);
+
+    /**
+     * 任务的指标。调度器在回调进度时从中采样媒体时间、帧数和写入的字节数（见{@link JobProgress}），
+     * 不设置时进度回调只有done/total和剩余时间
+     */
+    void setMetrics(TranscodeMetrics metrics);
+}
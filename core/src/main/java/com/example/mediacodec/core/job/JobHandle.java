@@ -0,0 +1,172 @@
+package com.example.mediacodec.core.job;
+
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 已提交的任务，可以查询状态或取消。按优先级从高到低、同优先级按提交顺序执行。
+ */
+public final class JobHandle implements Runnable, Comparable<JobHandle>, JobContext {
+    public static final int PENDING = 0;
+    public static final int RUNNING = 1;
+    public static final int FINISHED = 2;
+    public static final int FAILED = 3;
+    public static final int CANCELLED = 4;
+
+    private final JobScheduler mScheduler;
+    private final long mId;
+    private final String mName;
+    private final int mPriority;
+    private final TranscodeJob mJob;
+    private final JobListener mListener;
+    // 状态的转换和mRunner、mCancelled的修改都在synchronized (this)中进行，读取状态不加锁
+    private final AtomicInteger mState = new AtomicInteger(PENDING);
+    private volatile boolean mCancelled;
+    private Thread mRunner;
+    private final ProgressSampler mProgress;
+    private volatile JobProgress mLastProgress;
+    // 同一时间最多只有一个待执行的进度回调，因此可以重复投递同一个Runnable
+    private final Runnable mProgressCallback = new Runnable() {
+        @Override
+        public void run() {
+            JobProgress progress = mProgress.sample(System.nanoTime());
+            mLastProgress = progress;
+            if (mListener != null && !isDone()) {
+                mListener.onProgress(JobHandle.this, progress);
+            }
+        }
+    };
+
+    JobHandle(JobScheduler scheduler, long id, String name, int priority, TranscodeJob job, JobListener listener,
+              long progressIntervalNanos) {
+        this.mScheduler = scheduler;
+        this.mId = id;
+        this.mName = name;
+        this.mPriority = priority;
+        this.mJob = job;
+        this.mListener = listener;
+        this.mProgress = new ProgressSampler(progressIntervalNanos);
+    }
+
+    public long getId() {
+        return mId;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public int getPriority() {
+        return mPriority;
+    }
+
+    public int getState() {
+        return mState.get();
+    }
+
+    public TranscodeJob getJob() {
+        return mJob;
+    }
+
+    /**
+     * 最近一次回调的进度，还没有回调过时为null
+     */
+    public JobProgress getProgress() {
+        return mLastProgress;
+    }
+
+    public boolean isDone() {
+        return mState.get() >= FINISHED;
+    }
+
+    /**
+     * 取消任务：未开始的任务从队列中移除，正在执行的任务会被中断。
+     * 任务已经返回（不论结果是否已回调）之后调用不起作用，结果不会从FINISHED变成CANCELLED
+     */
+    public void cancel() {
+        synchronized (this) {
+            int state = mState.get();
+            if (state == RUNNING) {
+                mCancelled = true;
+                mRunner.interrupt();
+                return;
+            }
+            if (state != PENDING) {
+                return;
+            }
+            mCancelled = true;
+            mState.set(CANCELLED);
+        }
+        mScheduler.remove(this);
+        mScheduler.notifyCancel(this, mListener);
+    }
+
+    @Override
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    /**
+     * 只记下最新的进度，按调度器限定的频率投递回调，可以在热路径上频繁调用
+     */
+    @Override
+    public void setProgress(long done, long total) {
+        if (mProgress.update(done, total, System.nanoTime())) {
+            mScheduler.notifyProgress(mProgressCallback);
+        }
+    }
+
+    @Override
+    public void setMetrics(TranscodeMetrics metrics) {
+        mProgress.setMetrics(metrics);
+    }
+
+    @Override
+    public void run() {
+        synchronized (this) {
+            if (!mState.compareAndSet(PENDING, RUNNING)) {
+                return;
+            }
+            mRunner = Thread.currentThread();
+        }
+        mProgress.start(System.nanoTime());
+        Throwable error = null;
+        try {
+            if (!mCancelled) {
+                mJob.run(this);
+            }
+        } catch (Throwable t) {
+            error = t;
+        }
+        int state;
+        synchronized (this) {
+            mRunner = null;
+            // 清除cancel时设置的中断状态，避免影响线程池中的下一个任务
+            Thread.interrupted();
+            // 任务返回之前收到的取消可能让它中途放弃，视为取消；离开RUNNING之后cancel不再改变结果
+            state = mCancelled ? CANCELLED : (error != null ? FAILED : FINISHED);
+            mState.set(state);
+        }
+        if (state == CANCELLED) {
+            mScheduler.notifyCancel(this, mListener);
+        } else if (state == FAILED) {
+            mScheduler.notifyFail(this, mListener, error);
+        } else {
+            mScheduler.notifyFinish(this, mListener);
+        }
+    }
+
+    @Override
+    public int compareTo(JobHandle other) {
+        if (mPriority != other.mPriority) {
+            return mPriority > other.mPriority ? -1 : 1;
+        }
+        return mId < other.mId ? -1 : (mId == other.mId ? 0 : 1);
+    }
+
+    @Override
+    public String toString() {
+        return "Job#" + mId + "(" + mName + ")";
+    }
+}
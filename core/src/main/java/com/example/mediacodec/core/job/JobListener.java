@@ -0,0 +1,19 @@
+package com.example.mediacodec.core.job;
+
+/**
+ * 任务状态回调，在创建JobScheduler时指定的回调线程上执行。
+ * onFinish、onFail、onCancel三者只会回调其中一个。
+ */
+public interface JobListener {
+    /**
+     * 进度回调的频率不超过调度器的限制（见{@link JobScheduler#DEFAULT_PROGRESS_INTERVAL_MS}），
+     * 任务报告得更频繁时合并为一次，回调时给出最新的进度
+     */
+    void onProgress(JobHandle job, JobProgress progress);
+
+    void onFinish(JobHandle job);
+
+    void onFail(JobHandle job, Throwable error);
+
+    void onCancel(JobHandle job);
+}
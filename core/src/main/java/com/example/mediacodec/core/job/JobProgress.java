@@ -0,0 +1,101 @@
+package com.example.mediacodec.core.job;
+
+/**
+ * 任务进度的一次采样，由调度器在回调线程上生成（见{@link JobListener#onProgress}）。不可变。
+ * <p>
+ * done/total是任务报告的进度，单位由任务决定（解码为微秒，编码为PCM帧或段数）；
+ * 媒体时间、帧数和字节数来自任务设置的指标（见{@link JobContext#setMetrics}），没有指标时为-1。
+ * 吞吐量和剩余时间按最近几次采样之间的变化平滑计算，任务刚开始或不知道total时剩余时间为-1。
+ */
+public final class JobProgress {
+    private final long mDone;
+    private final long mTotal;
+    private final long mPositionUs;
+    private final long mFrames;
+    private final long mBytes;
+    private final long mElapsedMs;
+    private final double mBytesPerSecond;
+    private final long mEtaMs;
+
+    JobProgress(long done, long total, long positionUs, long frames, long bytes, long elapsedMs,
+                double bytesPerSecond, long etaMs) {
+        this.mDone = done;
+        this.mTotal = total;
+        this.mPositionUs = positionUs;
+        this.mFrames = frames;
+        this.mBytes = bytes;
+        this.mElapsedMs = elapsedMs;
+        this.mBytesPerSecond = bytesPerSecond;
+        this.mEtaMs = etaMs;
+    }
+
+    public long getDone() {
+        return mDone;
+    }
+
+    /**
+     * 未知时为0
+     */
+    public long getTotal() {
+        return mTotal;
+    }
+
+    /**
+     * 完成的比例（0到1），不知道total时为-1
+     */
+    public double getFraction() {
+        return mTotal > 0 ? Math.max(0, Math.min(1, (double) mDone / mTotal)) : -1;
+    }
+
+    /**
+     * 已处理到的媒体时间（微秒）
+     */
+    public long getPositionUs() {
+        return mPositionUs;
+    }
+
+    /**
+     * 编解码器输出的帧数
+     */
+    public long getFrames() {
+        return mFrames;
+    }
+
+    /**
+     * 写入输出的字节数
+     */
+    public long getBytes() {
+        return mBytes;
+    }
+
+    /**
+     * 任务开始执行以来的时间
+     */
+    public long getElapsedMs() {
+        return mElapsedMs;
+    }
+
+    /**
+     * 写入输出的速度，没有指标时为-1
+     */
+    public double getBytesPerSecond() {
+        return mBytesPerSecond;
+    }
+
+    /**
+     * 预计剩余时间，无法估计时为-1
+     */
+    public long getEtaMs() {
+        return mEtaMs;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(96).append(mDone).append('/').append(mTotal);
+        if (mPositionUs >= 0) {
+            sb.append(", ").append(mPositionUs / 1000).append("ms, ").append(mFrames).append(" frames, ")
+                    .append((long) mBytesPerSecond / 1024).append("KB/s");
+        }
+        return sb.append(", elapsed ").append(mElapsedMs).append("ms, eta ").append(mEtaMs).append("ms").toString();
+    }
+}
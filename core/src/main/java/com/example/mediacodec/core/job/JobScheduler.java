@@ -0,0 +1,149 @@
+package com.example.mediacodec.core.job;
+
+import com.example.mediacodec.core.concurrent.Threads;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 编解码任务调度器：固定大小的工作线程池（一般取可同时创建的编解码器实例数），
+ * 等待中的任务按优先级排序，支持取消和进度回调。
+ * 进度回调按最小间隔合并，转码再快也不会占满回调线程（例如主线程）的消息队列。
+ */
+public class JobScheduler {
+    public static final int PRIORITY_LOW = -10;
+    public static final int PRIORITY_NORMAL = 0;
+    public static final int PRIORITY_HIGH = 10;
+    // 每个任务的进度回调最多每秒10次
+    public static final long DEFAULT_PROGRESS_INTERVAL_MS = 100;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final Executor mCallbackExecutor;
+    private final long mProgressIntervalNanos;
+    private final AtomicLong mNextId = new AtomicLong();
+    private final List<JobHandle> mActive = new ArrayList<>();
+
+    /**
+     * @param poolSize 同时执行的任务数
+     * @param callbackExecutor 执行JobListener回调的线程，例如主线程
+     */
+    public JobScheduler(int poolSize, Executor callbackExecutor) {
+        this(poolSize, callbackExecutor, DEFAULT_PROGRESS_INTERVAL_MS);
+    }
+
+    /**
+     * @param progressIntervalMs 同一任务两次进度回调之间的最小间隔
+     */
+    public JobScheduler(int poolSize, Executor callbackExecutor, long progressIntervalMs) {
+        if (poolSize <= 0 || progressIntervalMs < 0) {
+            throw new IllegalArgumentException("poolSize=" + poolSize + ", progressIntervalMs=" + progressIntervalMs);
+        }
+        this.mCallbackExecutor = callbackExecutor;
+        this.mProgressIntervalNanos = TimeUnit.MILLISECONDS.toNanos(progressIntervalMs);
+        mExecutor = new ThreadPoolExecutor(poolSize, poolSize, 0L, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<Runnable>(), Threads.namedFactory("transcode"));
+    }
+
+    public int getPoolSize() {
+        return mExecutor.getMaximumPoolSize();
+    }
+
+    public JobHandle submit(String name, TranscodeJob job, JobListener listener) {
+        return submit(name, job, PRIORITY_NORMAL, listener);
+    }
+
+    public JobHandle submit(String name, TranscodeJob job, int priority, JobListener listener) {
+        JobHandle handle = new JobHandle(this, mNextId.incrementAndGet(), name, priority, job, listener,
+                mProgressIntervalNanos);
+        synchronized (mActive) {
+            mActive.add(handle);
+        }
+        mExecutor.execute(handle);
+        return handle;
+    }
+
+    /**
+     * 未完成（等待中或执行中）的任务
+     */
+    public List<JobHandle> getActiveJobs() {
+        synchronized (mActive) {
+            return new ArrayList<>(mActive);
+        }
+    }
+
+    public void cancelAll() {
+        for (JobHandle handle : getActiveJobs()) {
+            handle.cancel();
+        }
+    }
+
+    /**
+     * 取消所有任务并停止工作线程，之后不能再提交任务
+     */
+    public void shutdown() {
+        cancelAll();
+        mExecutor.shutdown();
+    }
+
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return mExecutor.awaitTermination(timeout, unit);
+    }
+
+    void remove(JobHandle handle) {
+        mExecutor.remove(handle);
+    }
+
+    void notifyProgress(Runnable callback) {
+        mCallbackExecutor.execute(callback);
+    }
+
+    void notifyFinish(final JobHandle handle, final JobListener listener) {
+        complete(handle);
+        if (listener == null) {
+            return;
+        }
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFinish(handle);
+            }
+        });
+    }
+
+    void notifyFail(final JobHandle handle, final JobListener listener, final Throwable error) {
+        complete(handle);
+        if (listener == null) {
+            return;
+        }
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onFail(handle, error);
+            }
+        });
+    }
+
+    void notifyCancel(final JobHandle handle, final JobListener listener) {
+        complete(handle);
+        if (listener == null) {
+            return;
+        }
+        mCallbackExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                listener.onCancel(handle);
+            }
+        });
+    }
+
+    private void complete(JobHandle handle) {
+        synchronized (mActive) {
+            mActive.remove(handle);
+        }
+    }
+}
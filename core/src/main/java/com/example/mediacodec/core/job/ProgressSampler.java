@@ -0,0 +1,122 @@
+package com.example.mediacodec.core.job;
+
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 限制进度回调频率的采样器。工作线程每次报告进度只记下最新的done/total，
+ * 距上次投递不少于最小间隔、且上次投递的回调已经执行时才返回true，由调用方向回调线程投递一次；
+ * 回调执行时再调用{@link #sample}读取最新的值和指标。因此不论任务报告得多频繁，
+ * 回调线程上最多只有一个待执行的进度回调，回调次数不超过运行时间除以最小间隔再加一。
+ * <p>
+ * {@link #update}可以由多个线程调用（例如多音轨解码的各解码线程），{@link #sample}只在回调线程上调用。
+ * 时间由调用方传入，便于测试。
+ */
+final class ProgressSampler {
+    // 吞吐量和进度速度的指数平滑系数，越大越跟随最近的变化
+    private static final double SMOOTHING = 0.3;
+
+    private final long mMinIntervalNanos;
+    private final AtomicBoolean mPending = new AtomicBoolean();
+    private volatile TranscodeMetrics mMetrics;
+    private volatile long mStartNanos;
+    private volatile long mDone;
+    private volatile long mTotal;
+    private volatile long mLastPostNanos;
+    // 上一次回调给出的进度，没有变化时不再投递
+    private volatile long mSampledDone = -1;
+    private volatile long mSampledTotal = -1;
+
+    // 以下字段只在回调线程上访问
+    private boolean mSampled;
+    private long mLastSampleNanos;
+    private long mLastSampleBytes;
+    private double mLastSampleFraction;
+    private double mBytesPerNano = -1;
+    private double mFractionPerNano = -1;
+
+    ProgressSampler(long minIntervalNanos) {
+        if (minIntervalNanos < 0) {
+            throw new IllegalArgumentException("negative interval: " + minIntervalNanos);
+        }
+        this.mMinIntervalNanos = minIntervalNanos;
+    }
+
+    void start(long nowNanos) {
+        mStartNanos = nowNanos;
+        mLastPostNanos = nowNanos - mMinIntervalNanos;
+    }
+
+    void setMetrics(TranscodeMetrics metrics) {
+        this.mMetrics = metrics;
+    }
+
+    /**
+     * 记下最新的进度
+     * @return 是否应该投递一次回调，返回true后必须投递，回调中调用{@link #sample}
+     */
+    boolean update(long done, long total, long nowNanos) {
+        mDone = done;
+        mTotal = total;
+        if (nowNanos - mLastPostNanos < mMinIntervalNanos || (done == mSampledDone && total == mSampledTotal)) {
+            return false;
+        }
+        if (!mPending.compareAndSet(false, true)) {
+            return false;
+        }
+        //与其他线程竞争时，对方可能刚刚投递过
+        if (nowNanos - mLastPostNanos < mMinIntervalNanos) {
+            mPending.set(false);
+            return false;
+        }
+        mLastPostNanos = nowNanos;
+        return true;
+    }
+
+    /**
+     * 在回调线程上读取最新的进度，之后才允许投递下一次回调
+     */
+    JobProgress sample(long nowNanos) {
+        mPending.set(false);
+        long done = mDone;
+        long total = mTotal;
+        mSampledDone = done;
+        mSampledTotal = total;
+        TranscodeMetrics metrics = mMetrics;
+        long positionUs = -1;
+        long frames = -1;
+        long bytes = -1;
+        if (metrics != null) {
+            positionUs = metrics.getMediaTimeUs();
+            frames = metrics.framesOut.get();
+            bytes = metrics.bytesWritten.get();
+        }
+        double fraction = total > 0 ? Math.max(0, Math.min(1, (double) done / total)) : 0;
+        long start = mStartNanos;
+        long elapsed = nowNanos - start;
+        if (!mSampled) {
+            //第一次按开始以来的平均速度
+            if (elapsed > 0) {
+                mBytesPerNano = bytes >= 0 ? (double) bytes / elapsed : -1;
+                mFractionPerNano = fraction / elapsed;
+            }
+        } else if (nowNanos > mLastSampleNanos) {
+            long interval = nowNanos - mLastSampleNanos;
+            if (bytes >= 0) {
+                double rate = (double) (bytes - mLastSampleBytes) / interval;
+                mBytesPerNano = mBytesPerNano < 0 ? rate : mBytesPerNano + SMOOTHING * (rate - mBytesPerNano);
+            }
+            double speed = (fraction - mLastSampleFraction) / interval;
+            mFractionPerNano = mFractionPerNano < 0 ? speed : mFractionPerNano + SMOOTHING * (speed - mFractionPerNano);
+        }
+        mSampled = true;
+        mLastSampleNanos = nowNanos;
+        mLastSampleBytes = bytes;
+        mLastSampleFraction = fraction;
+        long etaMs = total > 0 && mFractionPerNano > 0
+                ? (long) ((1 - fraction) / mFractionPerNano / 1000000) : -1;
+        return new JobProgress(done, total, positionUs, frames, bytes, Math.max(0, elapsed) / 1000000,
+                mBytesPerNano >= 0 ? mBytesPerNano * 1e9 : -1, etaMs);
+    }
+}
@@ -0,0 +1,12 @@
+package com.example.mediacodec.core.job;
+
+/**
+ * 一个编解码任务，在{@link JobScheduler}的工作线程上执行
+ */
+public interface TranscodeJob {
+    /**
+     * 执行任务。应定期检查{@link JobContext#isCancelled()}，取消时尽快返回；
+     * 取消时工作线程也会被中断。抛出异常表示任务失败。
+     */
+    void run(JobContext context) throws Exception;
+}
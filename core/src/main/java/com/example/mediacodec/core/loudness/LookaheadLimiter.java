@@ -0,0 +1,157 @@
+package com.example.mediacodec.core.loudness;
+
+import java.util.Arrays;
+
+/**
+ * 前视限幅器：输出延迟lookahead帧，在峰值到达之前就把增益降下来，输出的采样峰值不超过ceiling。
+ * <p>
+ * 每帧需要的增益r = min(1, ceiling / 帧内最大绝对值)。先对r取长度为lookahead的滑动最小值（单调队列），
+ * 再经释放（增益只能以释放时间常数回升，不能高于滑动最小值），最后取长度为lookahead的滑动平均作为输出增益。
+ * 滑动平均窗口内的每个值都不大于窗口末尾那一帧需要的增益，所以平均值也不会超过，增益在lookahead帧内
+ * 线性下降而没有突变。浮点误差之外的部分最后再硬限幅一次。
+ * <p>
+ * 输入输出为交错的float采样，所有缓冲区在构造时分配，不分配对象。非线程安全。
+ */
+public class LookaheadLimiter {
+    private final int mChannels;
+    private final int mLookahead;
+    private final float mCeiling;
+    private final double mReleaseCoefficient;
+
+    // 最近mLookahead帧输入，环形
+    private final float[] mDelay;
+    // 滑动最小值的单调队列：帧序号和需要的增益，环形
+    private final long[] mQueueFrames;
+    private final float[] mQueueGains;
+    private int mQueueHead;
+    private int mQueueSize;
+    // 最近mLookahead个释放后的增益，环形，以及它们的和
+    private final float[] mAverage;
+    private double mAverageSum;
+    private float mReleased;
+    private long mFrames;
+    // 开头还要丢弃的输出帧数（延迟线中的初始静音）
+    private int mPrimingFrames;
+
+    /**
+     * @param ceiling 输出采样绝对值的上限（线性，满幅为1）
+     * @param lookaheadFrames 前视的帧数，也是输出的延迟
+     * @param releaseFrames 增益回升的时间常数（帧）
+     */
+    public LookaheadLimiter(int channels, float ceiling, int lookaheadFrames, int releaseFrames) {
+        if (channels <= 0 || lookaheadFrames <= 0 || releaseFrames <= 0 || !(ceiling > 0)) {
+            throw new IllegalArgumentException("invalid limiter: " + channels + "ch, ceiling " + ceiling
+                    + ", lookahead " + lookaheadFrames + ", release " + releaseFrames);
+        }
+        this.mChannels = channels;
+        this.mLookahead = lookaheadFrames;
+        this.mCeiling = ceiling;
+        this.mReleaseCoefficient = 1 - Math.exp(-1.0 / releaseFrames);
+        this.mDelay = new float[lookaheadFrames * channels];
+        this.mQueueFrames = new long[lookaheadFrames];
+        this.mQueueGains = new float[lookaheadFrames];
+        this.mAverage = new float[lookaheadFrames];
+        reset();
+    }
+
+    /**
+     * 输出相对输入的延迟（帧）。开头的延迟部分不输出，{@link #flush}补齐，输入输出的帧数相同
+     */
+    public int getLatencyFrames() {
+        return mLookahead - 1;
+    }
+
+    /**
+     * 处理frames帧，结果写入dst。src和dst可以是同一个数组（原地处理）
+     * @return 输出的帧数：开头的getLatencyFrames()帧之后与输入相同
+     */
+    public int process(float[] src, int srcOffset, float[] dst, int dstOffset, int frames) {
+        int out = 0;
+        for (int f = 0; f < frames; f++) {
+            if (step(src, srcOffset + f * mChannels, dst, dstOffset + out * mChannels)) {
+                out++;
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 输入结束，输出延迟线中剩余的帧，dst至少容纳getLatencyFrames()帧。之后的输入作为新的流处理
+     * @return 输出的帧数
+     */
+    public int flush(float[] dst, int dstOffset) {
+        int out = 0;
+        for (int f = getLatencyFrames(); f > 0; f--) {
+            if (step(null, 0, dst, dstOffset + out * mChannels)) {
+                out++;
+            }
+        }
+        reset();
+        return out;
+    }
+
+    /**
+     * 输入一帧（src为null时为静音），输出延迟getLatencyFrames()帧之前的一帧
+     * @return 是否输出了一帧
+     */
+    private boolean step(float[] src, int srcIndex, float[] dst, int dstIndex) {
+        int channels = mChannels;
+        int slot = (int) (mFrames % mLookahead);
+        int delayIndex = slot * channels;
+        // 环形延迟线中最旧的一帧就是要输出的帧，先取出再写入新帧
+        int outIndex = (int) ((mFrames + 1) % mLookahead) * channels;
+        float peak = 0;
+        for (int c = 0; c < channels; c++) {
+            float x = src != null ? src[srcIndex + c] : 0;
+            mDelay[delayIndex + c] = x;
+            float abs = Math.abs(x);
+            if (abs > peak) {
+                peak = abs;
+            }
+        }
+        float required = peak > mCeiling ? mCeiling / peak : 1f;
+
+        // 滑动最小值：队尾不小于新值的都不会再成为最小值
+        while (mQueueSize > 0 && mQueueGains[(mQueueHead + mQueueSize - 1) % mLookahead] >= required) {
+            mQueueSize--;
+        }
+        int tail = (mQueueHead + mQueueSize) % mLookahead;
+        mQueueFrames[tail] = mFrames;
+        mQueueGains[tail] = required;
+        mQueueSize++;
+        if (mQueueFrames[mQueueHead] <= mFrames - mLookahead) {
+            mQueueHead = (mQueueHead + 1) % mLookahead;
+            mQueueSize--;
+        }
+        float windowMin = mQueueGains[mQueueHead];
+
+        float released = (float) (mReleased + (1 - mReleased) * mReleaseCoefficient);
+        mReleased = Math.min(windowMin, released);
+        mAverageSum += mReleased - mAverage[slot];
+        mAverage[slot] = mReleased;
+        float gain = (float) (mAverageSum / mLookahead);
+        mFrames++;
+
+        if (mPrimingFrames > 0) {
+            mPrimingFrames--;
+            return false;
+        }
+        float ceiling = mCeiling;
+        for (int c = 0; c < channels; c++) {
+            float y = mDelay[outIndex + c] * gain;
+            dst[dstIndex + c] = y > ceiling ? ceiling : (y < -ceiling ? -ceiling : y);
+        }
+        return true;
+    }
+
+    public void reset() {
+        Arrays.fill(mDelay, 0);
+        Arrays.fill(mAverage, 1f);
+        mAverageSum = mLookahead;
+        mReleased = 1f;
+        mQueueHead = 0;
+        mQueueSize = 0;
+        mFrames = 0;
+        mPrimingFrames = getLatencyFrames();
+    }
+}
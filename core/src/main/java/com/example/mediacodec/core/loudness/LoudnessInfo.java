@@ -0,0 +1,160 @@
+package com.example.mediacodec.core.loudness;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Locale;
+
+/**
+ * 一段音频的响度测量结果：积分响度和真峰值，由{@link LoudnessMeter}得到。
+ * 两遍处理时第一遍（解码）测量后保存到PCM文件旁的sidecar文件（{@link #SIDECAR_SUFFIX}），
+ * 第二遍（编码）读取后按{@link #gainDb}算出的固定增益处理整段PCM。文件的大小或修改时间变化后sidecar失效。
+ */
+public final class LoudnessInfo {
+    public static final String SIDECAR_SUFFIX = ".loudness";
+
+    private static final int MAGIC = 0x4C4F5544; // "LOUD"
+    private static final int VERSION = 1;
+    // magic、version、源文件大小、修改时间、积分响度、真峰值
+    private static final int SIDECAR_SIZE = 4 + 4 + 8 + 8 + 8 + 8;
+
+    private final double mIntegratedLoudness;
+    private final double mTruePeak;
+
+    /**
+     * @param integratedLoudness 积分响度（LUFS），静音时为负无穷
+     * @param truePeak 真峰值（dBTP），静音时为负无穷
+     */
+    public LoudnessInfo(double integratedLoudness, double truePeak) {
+        this.mIntegratedLoudness = integratedLoudness;
+        this.mTruePeak = truePeak;
+    }
+
+    public double getIntegratedLoudness() {
+        return mIntegratedLoudness;
+    }
+
+    public double getTruePeak() {
+        return mTruePeak;
+    }
+
+    /**
+     * 把积分响度调整到targetLufs的增益（dB），同时保证调整后的真峰值不超过ceilingDbtp，
+     * 即两者中较小的一个。静音（积分响度为负无穷）时为0
+     */
+    public double gainDb(double targetLufs, double ceilingDbtp) {
+        if (Double.isInfinite(mIntegratedLoudness)) {
+            return 0;
+        }
+        double gain = targetLufs - mIntegratedLoudness;
+        if (!Double.isInfinite(mTruePeak)) {
+            gain = Math.min(gain, ceilingDbtp - mTruePeak);
+        }
+        return gain;
+    }
+
+    public static File sidecarFile(File pcm) {
+        return new File(pcm.getPath() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * 读取pcm对应的sidecar
+     * @return sidecar不存在、已过期或损坏时返回null
+     */
+    public static LoudnessInfo load(File pcm) {
+        File sidecar = sidecarFile(pcm);
+        if (!sidecar.isFile()) {
+            return null;
+        }
+        try {
+            FileInputStream in = new FileInputStream(sidecar);
+            try {
+                return readFrom(in.getChannel(), pcm.length(), pcm.lastModified());
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 写入pcm对应的sidecar文件。先写临时文件再改名，读取方不会看到写了一半的数据
+     */
+    public void save(File pcm) throws IOException {
+        File sidecar = sidecarFile(pcm);
+        File temp = new File(sidecar.getPath() + ".tmp");
+        boolean saved = false;
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                writeTo(out.getChannel(), pcm.length(), pcm.lastModified());
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            saved = temp.renameTo(sidecar);
+            if (!saved) {
+                throw new IOException("rename failed: " + sidecar);
+            }
+        } finally {
+            if (!saved) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * @param sourceLength 源文件大小，读取时用于判断是否过期
+     * @param sourceModified 源文件修改时间
+     */
+    public void writeTo(WritableByteChannel channel, long sourceLength, long sourceModified) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SIDECAR_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(sourceLength);
+        buffer.putLong(sourceModified);
+        buffer.putDouble(mIntegratedLoudness);
+        buffer.putDouble(mTruePeak);
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * @return 源文件的大小或修改时间与记录的不一致时返回null
+     * @throws IOException 读取失败或数据不完整
+     */
+    public static LoudnessInfo readFrom(ReadableByteChannel channel, long sourceLength, long sourceModified)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(SIDECAR_SIZE);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("truncated loudness info");
+            }
+        }
+        buffer.flip();
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        if (buffer.getLong() != sourceLength || buffer.getLong() != sourceModified) {
+            return null;
+        }
+        double integrated = buffer.getDouble();
+        double truePeak = buffer.getDouble();
+        if (Double.isNaN(integrated) || Double.isNaN(truePeak)) {
+            throw new IOException("invalid loudness info");
+        }
+        return new LoudnessInfo(integrated, truePeak);
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "%.1f LUFS, %.1f dBTP", mIntegratedLoudness, mTruePeak);
+    }
+}
@@ -0,0 +1,289 @@
+package com.example.mediacodec.core.loudness;
+
+import com.example.mediacodec.core.dsp.SampleConverter;
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 流式的EBU R128 / ITU-R BS.1770-4响度测量：K加权滤波（高架预滤波加RLB高通，两个双二阶节）后按声道加权求均方，
+ * 400ms的块每100ms一个（重叠75%），积分响度先按-70 LUFS绝对门限、再按比均值低10 LU的相对门限选块。
+ * 同时给出瞬时响度（最近400ms）、短期响度（最近3s）和真峰值（见{@link TruePeakMeter}）。
+ * <p>
+ * 不保存全部块：通过绝对门限的块按响度记入0.01 LU一格的直方图（每格块数和能量和），
+ * 相对门限只在格的边界上取舍，与逐块计算的差别远小于0.1 LU，而内存与时长无关。
+ * 所有数组在构造时分配，{@link #process}和{@link #accept}不分配对象。非线程安全。
+ */
+public class LoudnessMeter {
+    public static final double ABSOLUTE_GATE_LUFS = -70;
+    public static final double RELATIVE_GATE_LU = -10;
+    private static final int MOMENTARY_SUB_BLOCKS = 4;
+    private static final int SHORT_TERM_SUB_BLOCKS = 30;
+    // 直方图覆盖[-70, +30) LUFS，每格0.01 LU
+    private static final int HISTOGRAM_BINS_PER_LU = 100;
+    private static final int HISTOGRAM_BINS = 100 * HISTOGRAM_BINS_PER_LU;
+    private static final int BLOCK_FRAMES = 1024;
+
+    private final PcmFormat mFormat;
+    private final int mChannels;
+    private final double[] mWeights;
+    // K加权两级双二阶节的系数，b0 b1 b2 a1 a2
+    private final double[] mShelf;
+    private final double[] mHighPass;
+    // 每声道的滤波器状态（转置直接II型），每级两个
+    private final double[] mState;
+    private final int mSubBlockFrames;
+    private final TruePeakMeter mTruePeak;
+    private final float[] mBlock;
+
+    // 当前100ms子块每声道的平方和
+    private final double[] mChannelSums;
+    private int mSubBlockPosition;
+    // 最近SHORT_TERM_SUB_BLOCKS个子块的加权均方，环形
+    private final double[] mSubBlocks = new double[SHORT_TERM_SUB_BLOCKS];
+    private long mSubBlockCount;
+
+    private final int[] mHistogramCounts = new int[HISTOGRAM_BINS];
+    private final double[] mHistogramEnergy = new double[HISTOGRAM_BINS];
+    private long mGatedBlocks;
+    private double mGatedEnergy;
+
+    public LoudnessMeter(PcmFormat format) {
+        this.mFormat = format;
+        this.mChannels = format.getChannelCount();
+        this.mWeights = channelWeights(mChannels);
+        double rate = format.getSampleRate();
+        this.mShelf = shelfCoefficients(rate);
+        this.mHighPass = highPassCoefficients(rate);
+        this.mState = new double[mChannels * 4];
+        this.mSubBlockFrames = (int) Math.max(1, Math.round(rate / 10));
+        this.mTruePeak = new TruePeakMeter(mChannels);
+        this.mBlock = new float[BLOCK_FRAMES * mChannels];
+        this.mChannelSums = new double[mChannels];
+    }
+
+    /**
+     * BS.1770的声道权重：按Android的声道顺序（FL FR FC LFE BL BR ...），6声道及以上时LFE不计，环绕声道为1.41，
+     * 其余为1
+     */
+    static double[] channelWeights(int channels) {
+        double[] weights = new double[channels];
+        Arrays.fill(weights, 1.0);
+        if (channels >= 6) {
+            weights[3] = 0;
+            for (int c = 4; c < channels; c++) {
+                weights[c] = 1.41;
+            }
+        }
+        return weights;
+    }
+
+    /**
+     * 第一级：约1682Hz、+4dB的高架滤波，按采样率用双线性变换计算（参数与BS.1770在48kHz下的系数一致）
+     */
+    private static double[] shelfCoefficients(double rate) {
+        double f0 = 1681.974450955533;
+        double gain = 3.999843853973347;
+        double q = 0.7071752369554196;
+        double k = Math.tan(Math.PI * f0 / rate);
+        double vh = Math.pow(10, gain / 20);
+        double vb = Math.pow(vh, 0.4996667741545416);
+        double a0 = 1 + k / q + k * k;
+        return new double[]{
+                (vh + vb * k / q + k * k) / a0,
+                2 * (k * k - vh) / a0,
+                (vh - vb * k / q + k * k) / a0,
+                2 * (k * k - 1) / a0,
+                (1 - k / q + k * k) / a0};
+    }
+
+    /**
+     * 第二级：约38Hz的RLB高通
+     */
+    private static double[] highPassCoefficients(double rate) {
+        double f0 = 38.13547087602444;
+        double q = 0.5003270373238773;
+        double k = Math.tan(Math.PI * f0 / rate);
+        double a0 = 1 + k / q + k * k;
+        return new double[]{1, -2, 1, 2 * (k * k - 1) / a0, (1 - k / q + k * k) / a0};
+    }
+
+    public PcmFormat getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * 测量src中position到limit之间的16位PCM（必须是整帧），不改变src的position
+     */
+    public void accept(ByteBuffer src) {
+        int frameSize = mFormat.getBytesPerFrame();
+        int frames = src.remaining() / frameSize;
+        int index = src.position();
+        while (frames > 0) {
+            int n = Math.min(frames, BLOCK_FRAMES);
+            SampleConverter.toFloat(src, index, SampleConverter.ENCODING_PCM_16BIT, mBlock, 0, n * mChannels);
+            process(mBlock, 0, n);
+            index += n * frameSize;
+            frames -= n;
+        }
+    }
+
+    /**
+     * 测量samples中从offset开始的frames帧交错float采样（满幅为1）
+     */
+    public void process(float[] samples, int offset, int frames) {
+        mTruePeak.process(samples, offset, frames);
+        int channels = mChannels;
+        while (frames > 0) {
+            int n = Math.min(frames, mSubBlockFrames - mSubBlockPosition);
+            for (int c = 0; c < channels; c++) {
+                mChannelSums[c] += filter(samples, offset + c, channels, n, c);
+            }
+            offset += n * channels;
+            frames -= n;
+            mSubBlockPosition += n;
+            if (mSubBlockPosition == mSubBlockFrames) {
+                endSubBlock();
+            }
+        }
+    }
+
+    /**
+     * 一个声道的frames个采样经K加权滤波，返回平方和
+     */
+    private double filter(float[] samples, int index, int stride, int frames, int channel) {
+        double[] s = mShelf;
+        double[] h = mHighPass;
+        int state = channel * 4;
+        double z1 = mState[state];
+        double z2 = mState[state + 1];
+        double z3 = mState[state + 2];
+        double z4 = mState[state + 3];
+        double sum = 0;
+        for (int i = 0; i < frames; i++, index += stride) {
+            double x = samples[index];
+            double y = s[0] * x + z1;
+            z1 = s[1] * x - s[3] * y + z2;
+            z2 = s[2] * x - s[4] * y;
+            double w = h[0] * y + z3;
+            z3 = h[1] * y - h[3] * w + z4;
+            z4 = h[2] * y - h[4] * w;
+            sum += w * w;
+        }
+        mState[state] = z1;
+        mState[state + 1] = z2;
+        mState[state + 2] = z3;
+        mState[state + 3] = z4;
+        return sum;
+    }
+
+    private void endSubBlock() {
+        double energy = 0;
+        for (int c = 0; c < mChannels; c++) {
+            energy += mWeights[c] * mChannelSums[c] / mSubBlockFrames;
+            mChannelSums[c] = 0;
+        }
+        mSubBlockPosition = 0;
+        mSubBlocks[(int) (mSubBlockCount % SHORT_TERM_SUB_BLOCKS)] = energy;
+        mSubBlockCount++;
+        if (mSubBlockCount >= MOMENTARY_SUB_BLOCKS) {
+            addGatingBlock(meanEnergy(MOMENTARY_SUB_BLOCKS));
+        }
+    }
+
+    /**
+     * 最近count个子块的平均能量，即长度count * 100ms的块的加权均方
+     */
+    private double meanEnergy(int count) {
+        double sum = 0;
+        for (int i = 1; i <= count; i++) {
+            sum += mSubBlocks[(int) ((mSubBlockCount - i) % SHORT_TERM_SUB_BLOCKS)];
+        }
+        return sum / count;
+    }
+
+    private void addGatingBlock(double energy) {
+        double loudness = toLufs(energy);
+        if (!(loudness > ABSOLUTE_GATE_LUFS)) {
+            return;
+        }
+        int bin = (int) Math.min(HISTOGRAM_BINS - 1, (loudness - ABSOLUTE_GATE_LUFS) * HISTOGRAM_BINS_PER_LU);
+        mHistogramCounts[bin]++;
+        mHistogramEnergy[bin] += energy;
+        mGatedBlocks++;
+        mGatedEnergy += energy;
+    }
+
+    static double toLufs(double energy) {
+        return -0.691 + 10 * Math.log10(energy);
+    }
+
+    /**
+     * 积分响度（LUFS），还没有通过门限的块时为负无穷
+     */
+    public double getIntegratedLoudness() {
+        if (mGatedBlocks == 0) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        double threshold = toLufs(mGatedEnergy / mGatedBlocks) + RELATIVE_GATE_LU;
+        int first = (int) Math.max(0, Math.ceil((threshold - ABSOLUTE_GATE_LUFS) * HISTOGRAM_BINS_PER_LU));
+        long count = 0;
+        double energy = 0;
+        for (int bin = first; bin < HISTOGRAM_BINS; bin++) {
+            count += mHistogramCounts[bin];
+            energy += mHistogramEnergy[bin];
+        }
+        return count == 0 ? Double.NEGATIVE_INFINITY : toLufs(energy / count);
+    }
+
+    /**
+     * 瞬时响度（最近400ms，LUFS），不足400ms时为负无穷
+     */
+    public double getMomentaryLoudness() {
+        return mSubBlockCount < MOMENTARY_SUB_BLOCKS ? Double.NEGATIVE_INFINITY
+                : toLufs(meanEnergy(MOMENTARY_SUB_BLOCKS));
+    }
+
+    /**
+     * 短期响度（最近3s，LUFS），不足3s时按已有的部分计算
+     */
+    public double getShortTermLoudness() {
+        int count = (int) Math.min(mSubBlockCount, SHORT_TERM_SUB_BLOCKS);
+        return count == 0 ? Double.NEGATIVE_INFINITY : toLufs(meanEnergy(count));
+    }
+
+    /**
+     * 真峰值（dBTP），没有非零输入时为负无穷
+     */
+    public double getTruePeak() {
+        return mTruePeak.getPeakDb();
+    }
+
+    /**
+     * 已测量的完整100ms子块数
+     */
+    public long getSubBlockCount() {
+        return mSubBlockCount;
+    }
+
+    /**
+     * 当前的测量结果
+     */
+    public LoudnessInfo getInfo() {
+        return new LoudnessInfo(getIntegratedLoudness(), getTruePeak());
+    }
+
+    public void reset() {
+        Arrays.fill(mState, 0);
+        Arrays.fill(mChannelSums, 0);
+        Arrays.fill(mSubBlocks, 0);
+        Arrays.fill(mHistogramCounts, 0);
+        Arrays.fill(mHistogramEnergy, 0);
+        mSubBlockPosition = 0;
+        mSubBlockCount = 0;
+        mGatedBlocks = 0;
+        mGatedEnergy = 0;
+        mTruePeak.reset();
+    }
+}
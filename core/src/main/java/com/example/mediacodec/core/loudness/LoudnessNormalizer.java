@@ -0,0 +1,149 @@
+package com.example.mediacodec.core.loudness;
+
+import com.example.mediacodec.core.dsp.PcmTransform;
+import com.example.mediacodec.core.dsp.SampleConverter;
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 单遍的响度归一化，用于事先没有测量结果的场合（例如边解码边播放）：
+ * 测量到目前为止的积分响度，增益按目标响度与它的差值缓慢变化（每秒不超过{@link #SLEW_DB_PER_SECOND}），
+ * 再经{@link LookaheadLimiter}保证采样峰值不超过上限。开头几秒积分响度还不稳定，增益从0dB起逐渐调整，
+ * 能事先测量时应使用两遍处理（{@link LoudnessInfo}）。
+ * <p>
+ * 输入输出为同一格式的16位PCM，按{@link #BLOCK_FRAMES}帧一块在float数组上处理，不分配对象。
+ * 输出延迟{@link #getLatencyFrames()}帧，{@link #flush}补齐，总帧数与输入相同。
+ */
+public class LoudnessNormalizer implements PcmTransform {
+    public static final int BLOCK_FRAMES = 1024;
+    public static final double SLEW_DB_PER_SECOND = 6;
+    // 增益的范围，避免把接近静音的部分放大成噪声
+    public static final double MAX_GAIN_DB = 20;
+    public static final double MIN_GAIN_DB = -30;
+    private static final int LOOKAHEAD_MS = 5;
+    private static final int RELEASE_MS = 100;
+
+    private final PcmFormat mFormat;
+    private final int mChannels;
+    private final int mFrameSize;
+    private final double mTargetLufs;
+    private final double mMaxStepDb;
+    private final LoudnessMeter mMeter;
+    private final LookaheadLimiter mLimiter;
+    private final float[] mBlock;
+    private double mGainDb;
+
+    /**
+     * @param targetLufs 目标积分响度
+     * @param ceilingDbtp 输出峰值上限（dBFS）。限幅器按采样峰值限制，采样之间的峰值可能略高，上限应留出余量
+     */
+    public LoudnessNormalizer(PcmFormat format, double targetLufs, double ceilingDbtp) {
+        this.mFormat = format;
+        this.mChannels = format.getChannelCount();
+        this.mFrameSize = format.getBytesPerFrame();
+        this.mTargetLufs = targetLufs;
+        this.mMaxStepDb = SLEW_DB_PER_SECOND * BLOCK_FRAMES / format.getSampleRate();
+        this.mMeter = new LoudnessMeter(format);
+        int rate = format.getSampleRate();
+        this.mLimiter = new LookaheadLimiter(mChannels, (float) Math.pow(10, ceilingDbtp / 20),
+                Math.max(1, rate * LOOKAHEAD_MS / 1000), Math.max(1, rate * RELEASE_MS / 1000));
+        this.mBlock = new float[Math.max(BLOCK_FRAMES, mLimiter.getLatencyFrames()) * mChannels];
+    }
+
+    public PcmFormat getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * 输入的测量结果（归一化之前）
+     */
+    public LoudnessMeter getMeter() {
+        return mMeter;
+    }
+
+    /**
+     * 当前的增益（dB），不含限幅
+     */
+    public double getGainDb() {
+        return mGainDb;
+    }
+
+    public int getLatencyFrames() {
+        return mLimiter.getLatencyFrames();
+    }
+
+    @Override
+    public void process(ByteBuffer src, ByteBuffer dst) {
+        int size = src.remaining();
+        if (size % mFrameSize != 0) {
+            throw new IllegalArgumentException("not a whole number of frames: " + size);
+        }
+        if (dst.remaining() < maxOutputSize(size)) {
+            throw new IllegalArgumentException("dst too small: " + dst.remaining() + " < " + maxOutputSize(size));
+        }
+        int position = src.position();
+        int end = src.limit();
+        while (position < end) {
+            int frames = Math.min(BLOCK_FRAMES, (end - position) / mFrameSize);
+            SampleConverter.toFloat(src, position, SampleConverter.ENCODING_PCM_16BIT, mBlock, 0, frames * mChannels);
+            position += frames * mFrameSize;
+            mMeter.process(mBlock, 0, frames);
+            applyGain(frames);
+            writeOutput(dst, mLimiter.process(mBlock, 0, mBlock, 0, frames));
+        }
+        src.position(end);
+    }
+
+    /**
+     * 按块末尾的测量结果更新增益，块内从原增益线性过渡到新增益
+     */
+    private void applyGain(int frames) {
+        double startGain = Math.pow(10, mGainDb / 20);
+        double integrated = mMeter.getIntegratedLoudness();
+        if (!Double.isInfinite(integrated)) {
+            double desired = Math.max(MIN_GAIN_DB, Math.min(MAX_GAIN_DB, mTargetLufs - integrated));
+            double step = mMaxStepDb * frames / BLOCK_FRAMES;
+            mGainDb += Math.max(-step, Math.min(step, desired - mGainDb));
+        }
+        double endGain = Math.pow(10, mGainDb / 20);
+        float[] block = mBlock;
+        int channels = mChannels;
+        double delta = (endGain - startGain) / frames;
+        for (int f = 0; f < frames; f++) {
+            float gain = (float) (startGain + delta * (f + 1));
+            int base = f * channels;
+            for (int c = 0; c < channels; c++) {
+                block[base + c] *= gain;
+            }
+        }
+    }
+
+    private void writeOutput(ByteBuffer dst, int frames) {
+        SampleConverter.fromFloat(mBlock, 0, frames * mChannels, dst, dst.position(),
+                SampleConverter.ENCODING_PCM_16BIT);
+        dst.position(dst.position() + frames * mFrameSize);
+    }
+
+    @Override
+    public int maxOutputSize(int inputSize) {
+        return inputSize + mLimiter.getLatencyFrames() * mFrameSize;
+    }
+
+    @Override
+    public void flush(ByteBuffer dst) {
+        writeOutput(dst, mLimiter.flush(mBlock, 0));
+    }
+
+    @Override
+    public void reset() {
+        mMeter.reset();
+        mLimiter.reset();
+        mGainDb = 0;
+    }
+
+    @Override
+    public String toString() {
+        return "LoudnessNormalizer{" + mFormat + " -> " + mTargetLufs + " LUFS}";
+    }
+}
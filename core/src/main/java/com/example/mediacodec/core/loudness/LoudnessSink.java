@@ -0,0 +1,39 @@
+package com.example.mediacodec.core.loudness;
+
+import com.example.mediacodec.core.io.DataSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 把写入的16位PCM交给{@link LoudnessMeter}测量后原样写入下游的DataSink，解码的同时完成两遍处理中的第一遍
+ */
+public class LoudnessSink implements DataSink {
+    private final DataSink mSink;
+    private final LoudnessMeter mMeter;
+
+    public LoudnessSink(DataSink sink, LoudnessMeter meter) {
+        this.mSink = sink;
+        this.mMeter = meter;
+    }
+
+    public LoudnessMeter getMeter() {
+        return mMeter;
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        mMeter.accept(src);
+        mSink.write(src);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        mSink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mSink.close();
+    }
+}
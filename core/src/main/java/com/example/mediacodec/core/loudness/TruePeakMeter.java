@@ -0,0 +1,110 @@
+package com.example.mediacodec.core.loudness;
+
+import java.util.Arrays;
+
+/**
+ * ITU-R BS.1770 附件2的真峰值测量：4倍过采样后取绝对值的最大值，能测出采样点之间超过采样峰值的部分
+ * （例如编码或重采样之后才出现的削波）。
+ * <p>
+ * 过采样用48抽头（每相12抽头）的Hann窗sinc插值滤波器，系数在构造时按相归一化；
+ * 第0相就是原采样，只计算另外3相。输入为交错的float采样（满幅为1），不分配对象。非线程安全。
+ */
+public class TruePeakMeter {
+    public static final int OVERSAMPLING = 4;
+    static final int TAPS_PER_PHASE = 12;
+    // 插值点在最新输入之前的采样数，即滤波器的延迟
+    private static final int DELAY = TAPS_PER_PHASE / 2;
+
+    private final int mChannels;
+    // mCoefficients[(phase - 1) * TAPS_PER_PHASE + j]：第phase相对x[n - j]的系数
+    private final float[] mCoefficients;
+    // 每声道最近TAPS_PER_PHASE个采样，存两份以免取模：x[n - j]在mHistory[base + mPosition + j]
+    private final float[] mHistory;
+    private int mPosition;
+    private float mPeak;
+
+    public TruePeakMeter(int channels) {
+        if (channels <= 0) {
+            throw new IllegalArgumentException("invalid channel count: " + channels);
+        }
+        this.mChannels = channels;
+        this.mCoefficients = new float[(OVERSAMPLING - 1) * TAPS_PER_PHASE];
+        for (int phase = 1; phase < OVERSAMPLING; phase++) {
+            double sum = 0;
+            double[] taps = new double[TAPS_PER_PHASE];
+            for (int j = 0; j < TAPS_PER_PHASE; j++) {
+                // 插值点t = n - DELAY + phase / 4与采样点n - j的距离
+                double u = DELAY - j - (double) phase / OVERSAMPLING;
+                double window = 0.5 + 0.5 * Math.cos(Math.PI * u / (DELAY + 0.5));
+                taps[j] = sinc(u) * window;
+                sum += taps[j];
+            }
+            for (int j = 0; j < TAPS_PER_PHASE; j++) {
+                mCoefficients[(phase - 1) * TAPS_PER_PHASE + j] = (float) (taps[j] / sum);
+            }
+        }
+        this.mHistory = new float[channels * TAPS_PER_PHASE * 2];
+    }
+
+    private static double sinc(double x) {
+        return x == 0 ? 1 : Math.sin(Math.PI * x) / (Math.PI * x);
+    }
+
+    /**
+     * 测量samples中从offset开始的frames帧交错采样
+     */
+    public void process(float[] samples, int offset, int frames) {
+        int channels = mChannels;
+        float[] history = mHistory;
+        float[] coefficients = mCoefficients;
+        int stride = TAPS_PER_PHASE * 2;
+        float peak = mPeak;
+        int position = mPosition;
+        for (int f = 0; f < frames; f++) {
+            position = position == 0 ? TAPS_PER_PHASE - 1 : position - 1;
+            for (int c = 0; c < channels; c++) {
+                float x = samples[offset + f * channels + c];
+                int base = c * stride + position;
+                history[base] = x;
+                history[base + TAPS_PER_PHASE] = x;
+                float abs = Math.abs(x);
+                if (abs > peak) {
+                    peak = abs;
+                }
+                for (int p = 0; p < OVERSAMPLING - 1; p++) {
+                    int k = p * TAPS_PER_PHASE;
+                    float y = 0;
+                    for (int j = 0; j < TAPS_PER_PHASE; j++) {
+                        y += coefficients[k + j] * history[base + j];
+                    }
+                    abs = Math.abs(y);
+                    if (abs > peak) {
+                        peak = abs;
+                    }
+                }
+            }
+        }
+        mPosition = position;
+        mPeak = peak;
+    }
+
+    /**
+     * 目前为止的真峰值（线性，满幅为1）
+     */
+    public float getPeak() {
+        return mPeak;
+    }
+
+    /**
+     * 目前为止的真峰值（dBTP），没有非零输入时为负无穷
+     */
+    public double getPeakDb() {
+        return 20 * Math.log10(mPeak);
+    }
+
+    public void reset() {
+        Arrays.fill(mHistory, 0);
+        mPosition = 0;
+        mPeak = 0;
+    }
+}
@@ -0,0 +1,301 @@
+package com.example.mediacodec.core.memory;
+
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * 按大小分级的direct ByteBuffer池，供解码、编码、播放等任务共用，任务反复执行时不再分配direct内存。
+ * direct内存只在对应的ByteBuffer对象被GC时才释放，批量转码时每个任务各自分配很容易堆积。
+ * <p>
+ * 大小级别是{@link #MIN_SIZE}到{@link #MAX_SIZE}之间的2的幂，申请的大小向上取整到所在级别；
+ * 超过MAX_SIZE的直接分配，release后不回收。
+ * <p>
+ * 没有全局锁：每个线程有一个小缓存（每级cacheSize个），借出和归还优先走缓存，不需要同步；
+ * 缓存为空或已满时使用该级别的共享空闲表。共享空闲表是固定槽数的{@link AtomicReferenceArray}，
+ * 归还时CAS把空槽换成buffer，借出时getAndSet把非空槽换成null，所以不会有链表式无锁栈的ABA问题。
+ * 共享表也满了时buffer直接丢弃交给GC，因此池保留的内存有上限。
+ * 一个线程借出、另一个线程归还（例如流水线的相邻阶段）时，buffer经共享表回到借出的线程。
+ * 线程结束时它缓存中的buffer随线程一起被回收。
+ * <p>
+ * 开启泄漏检测时（调试版本）每次借出都记录调用栈，借出的{@link PooledBuffer}没有release就被GC回收时，
+ * 在之后的借出或{@link #checkLeaks}中通过{@link LeakListener}报告。检测本身每次借出都要分配对象，发布版本应关闭。
+ */
+public final class DirectBufferPool {
+    public static final int MIN_SIZE = 1024;
+    public static final int MAX_SIZE = 4 * 1024 * 1024;
+    public static final int DEFAULT_CACHE_SIZE = 4;
+    // 每个级别的共享空闲表最多保留的字节数
+    public static final int DEFAULT_SHARED_BYTES = 4 * 1024 * 1024;
+    private static final int MIN_SHIFT = 10;
+    private static final int CLASS_COUNT = 13;
+    // 共享空闲表的槽数范围
+    private static final int MIN_SLOTS = 2;
+    private static final int MAX_SLOTS = 256;
+
+    /**
+     * 泄漏报告，在调用lease或checkLeaks的线程中回调
+     */
+    public interface LeakListener {
+        /**
+         * @param capacity 泄漏的buffer的大小
+         * @param leasedAt 借出时的调用栈
+         */
+        void onLeak(int capacity, Throwable leasedAt);
+    }
+
+    private final int mCacheSize;
+    private final SharedFreeList[] mShared = new SharedFreeList[CLASS_COUNT];
+    private final ThreadLocal<ThreadCache> mCaches = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            return new ThreadCache(mCacheSize);
+        }
+    };
+    private final AtomicLong mAllocations = new AtomicLong();
+    private final AtomicLong mLeaks = new AtomicLong();
+
+    private final boolean mLeakDetection;
+    private final ReferenceQueue<PooledBuffer> mLeakQueue;
+    private final Set<LeakRecord> mLiveRecords;
+    private volatile LeakListener mLeakListener;
+
+    public DirectBufferPool() {
+        this(DEFAULT_CACHE_SIZE, DEFAULT_SHARED_BYTES, false);
+    }
+
+    /**
+     * @param cacheSize 每个线程每个级别缓存的buffer数，0表示不使用线程缓存
+     * @param sharedBytes 每个级别的共享空闲表最多保留的字节数（至少保留2个buffer）
+     * @param leakDetection 是否检测泄漏
+     */
+    public DirectBufferPool(int cacheSize, int sharedBytes, boolean leakDetection) {
+        if (cacheSize < 0 || sharedBytes < 0) {
+            throw new IllegalArgumentException("cacheSize=" + cacheSize + ", sharedBytes=" + sharedBytes);
+        }
+        this.mCacheSize = cacheSize;
+        for (int i = 0; i < CLASS_COUNT; i++) {
+            int slots = Math.max(MIN_SLOTS, Math.min(MAX_SLOTS, sharedBytes / classSize(i)));
+            mShared[i] = new SharedFreeList(slots);
+        }
+        this.mLeakDetection = leakDetection;
+        this.mLeakQueue = leakDetection ? new ReferenceQueue<PooledBuffer>() : null;
+        this.mLiveRecords = leakDetection
+                ? Collections.newSetFromMap(new ConcurrentHashMap<LeakRecord, Boolean>()) : null;
+    }
+
+    public void setLeakListener(LeakListener listener) {
+        this.mLeakListener = listener;
+    }
+
+    public boolean isLeakDetectionEnabled() {
+        return mLeakDetection;
+    }
+
+    /**
+     * size所在级别的buffer大小，超过MAX_SIZE时返回size本身
+     */
+    public static int capacityFor(int size) {
+        int sizeClass = sizeClass(size);
+        return sizeClass >= 0 ? classSize(sizeClass) : size;
+    }
+
+    private static int sizeClass(int size) {
+        if (size > MAX_SIZE) {
+            return -1;
+        }
+        if (size <= MIN_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(size - 1) - MIN_SHIFT;
+    }
+
+    private static int classSize(int sizeClass) {
+        return MIN_SIZE << sizeClass;
+    }
+
+    /**
+     * 借出至少size字节的direct buffer
+     */
+    public PooledBuffer lease(int size) {
+        if (size <= 0) {
+            throw new IllegalArgumentException("size must be positive: " + size);
+        }
+        if (mLeakDetection) {
+            checkLeaks();
+        }
+        int sizeClass = sizeClass(size);
+        PooledBuffer buffer = null;
+        if (sizeClass >= 0) {
+            buffer = mCaches.get().poll(sizeClass);
+            if (buffer == null) {
+                buffer = mShared[sizeClass].poll();
+            }
+        }
+        if (buffer == null) {
+            int capacity = sizeClass >= 0 ? classSize(sizeClass) : size;
+            buffer = new PooledBuffer(this, ByteBuffer.allocateDirect(capacity), sizeClass);
+            mAllocations.incrementAndGet();
+        }
+        buffer.onLease(size, mLeakDetection ? track(buffer) : null);
+        return buffer;
+    }
+
+    /**
+     * 由PooledBuffer.release调用
+     */
+    void recycle(PooledBuffer buffer) {
+        LeakRecord record = buffer.mRecord;
+        if (record != null) {
+            buffer.mRecord = null;
+            record.clear();
+            mLiveRecords.remove(record);
+        }
+        if (buffer.mSizeClass < 0) {
+            return;
+        }
+        if (!mCaches.get().offer(buffer)) {
+            //共享表已满时丢弃
+            mShared[buffer.mSizeClass].offer(buffer);
+        }
+    }
+
+    /**
+     * 至今实际分配direct内存的次数，稳态下不再增长
+     */
+    public long getAllocationCount() {
+        return mAllocations.get();
+    }
+
+    /**
+     * 至今发现的泄漏次数，未开启泄漏检测时为0
+     */
+    public long getLeakCount() {
+        return mLeaks.get();
+    }
+
+    /**
+     * 报告已被GC回收、但没有release的buffer。未开启泄漏检测时不做任何事
+     */
+    public void checkLeaks() {
+        if (!mLeakDetection) {
+            return;
+        }
+        LeakRecord record;
+        while ((record = (LeakRecord) mLeakQueue.poll()) != null) {
+            //release时已移除的记录不算泄漏
+            if (mLiveRecords.remove(record)) {
+                mLeaks.incrementAndGet();
+                LeakListener listener = mLeakListener;
+                if (listener != null) {
+                    listener.onLeak(record.mCapacity, record.mLeasedAt);
+                }
+            }
+        }
+    }
+
+    private LeakRecord track(PooledBuffer buffer) {
+        LeakRecord record = new LeakRecord(buffer, mLeakQueue,
+                new Throwable("leased " + buffer.capacity() + " bytes"));
+        mLiveRecords.add(record);
+        return record;
+    }
+
+    /**
+     * 一次借出的记录，弱引用借出的PooledBuffer，本身由mLiveRecords持有直到release或被报告
+     */
+    static final class LeakRecord extends WeakReference<PooledBuffer> {
+        private final int mCapacity;
+        private final Throwable mLeasedAt;
+
+        LeakRecord(PooledBuffer buffer, ReferenceQueue<PooledBuffer> queue, Throwable leasedAt) {
+            super(buffer, queue);
+            this.mCapacity = buffer.capacity();
+            this.mLeasedAt = leasedAt;
+        }
+    }
+
+    /**
+     * 一个线程的缓存，只由该线程访问
+     */
+    private static final class ThreadCache {
+        private final PooledBuffer[][] mBuffers;
+        private final int[] mCounts = new int[CLASS_COUNT];
+
+        ThreadCache(int size) {
+            mBuffers = new PooledBuffer[CLASS_COUNT][size];
+        }
+
+        PooledBuffer poll(int sizeClass) {
+            int count = mCounts[sizeClass];
+            if (count == 0) {
+                return null;
+            }
+            PooledBuffer[] buffers = mBuffers[sizeClass];
+            PooledBuffer buffer = buffers[--count];
+            buffers[count] = null;
+            mCounts[sizeClass] = count;
+            return buffer;
+        }
+
+        boolean offer(PooledBuffer buffer) {
+            int sizeClass = buffer.mSizeClass;
+            PooledBuffer[] buffers = mBuffers[sizeClass];
+            int count = mCounts[sizeClass];
+            if (count == buffers.length) {
+                return false;
+            }
+            buffers[count] = buffer;
+            mCounts[sizeClass] = count + 1;
+            return true;
+        }
+    }
+
+    /**
+     * 一个级别的共享空闲表。每个buffer占一个槽，借出时getAndSet取走，同一个buffer不会被两个线程同时取到。
+     * mSize只是近似的计数，用来在表空或表满时跳过扫描，正确性只依赖槽上的原子操作
+     */
+    private static final class SharedFreeList {
+        private final AtomicReferenceArray<PooledBuffer> mSlots;
+        private final AtomicInteger mSize = new AtomicInteger();
+
+        SharedFreeList(int slots) {
+            mSlots = new AtomicReferenceArray<>(slots);
+        }
+
+        PooledBuffer poll() {
+            if (mSize.get() <= 0) {
+                return null;
+            }
+            for (int i = 0; i < mSlots.length(); i++) {
+                if (mSlots.get(i) != null) {
+                    PooledBuffer buffer = mSlots.getAndSet(i, null);
+                    if (buffer != null) {
+                        mSize.decrementAndGet();
+                        return buffer;
+                    }
+                }
+            }
+            return null;
+        }
+
+        boolean offer(PooledBuffer buffer) {
+            if (mSize.get() >= mSlots.length()) {
+                return false;
+            }
+            for (int i = 0; i < mSlots.length(); i++) {
+                if (mSlots.get(i) == null && mSlots.compareAndSet(i, null, buffer)) {
+                    mSize.incrementAndGet();
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
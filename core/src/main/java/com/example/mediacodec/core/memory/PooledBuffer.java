@@ -0,0 +1,65 @@
+package com.example.mediacodec.core.memory;
+
+import java.io.Closeable;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 从{@link DirectBufferPool}借出的一个direct buffer，用完后必须{@link #release}。
+ * 对象本身随buffer一起复用，release之后不能再使用它或它的buffer。
+ */
+public final class PooledBuffer implements Closeable {
+    private final DirectBufferPool mPool;
+    private final ByteBuffer mBuffer;
+    // 所在的大小级别，超过DirectBufferPool.MAX_SIZE的为-1，不回收
+    final int mSizeClass;
+    private final AtomicBoolean mLeased = new AtomicBoolean();
+    // 开启泄漏检测时本次借出的记录
+    DirectBufferPool.LeakRecord mRecord;
+
+    PooledBuffer(DirectBufferPool pool, ByteBuffer buffer, int sizeClass) {
+        this.mPool = pool;
+        this.mBuffer = buffer;
+        this.mSizeClass = sizeClass;
+    }
+
+    void onLease(int size, DirectBufferPool.LeakRecord record) {
+        mLeased.set(true);
+        mRecord = record;
+        mBuffer.clear();
+        mBuffer.limit(size);
+        mBuffer.order(ByteOrder.BIG_ENDIAN);
+    }
+
+    /**
+     * 借出时position为0，limit为申请的大小；capacity是所在级别的大小，可能大于申请的大小
+     * @throws IllegalStateException 已经release
+     */
+    public ByteBuffer buffer() {
+        if (!mLeased.get()) {
+            throw new IllegalStateException("buffer already released");
+        }
+        return mBuffer;
+    }
+
+    public int capacity() {
+        return mBuffer.capacity();
+    }
+
+    /**
+     * 还给池
+     * @throws IllegalStateException 重复release
+     */
+    public void release() {
+        if (!mLeased.compareAndSet(true, false)) {
+            throw new IllegalStateException("buffer released twice");
+        }
+        mPool.recycle(this);
+    }
+
+    @Override
+    public void close() {
+        release();
+    }
+}
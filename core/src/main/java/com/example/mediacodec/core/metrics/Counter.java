@@ -0,0 +1,22 @@
+package com.example.mediacodec.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 单调递增的计数器，可以在多个线程中更新
+ */
+public final class Counter {
+    private final AtomicLong mValue = new AtomicLong();
+
+    public void increment() {
+        mValue.incrementAndGet();
+    }
+
+    public void add(long delta) {
+        mValue.addAndGet(delta);
+    }
+
+    public long get() {
+        return mValue.get();
+    }
+}
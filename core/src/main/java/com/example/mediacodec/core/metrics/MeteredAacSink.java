@@ -0,0 +1,38 @@
+package com.example.mediacodec.core.metrics;
+
+import com.example.mediacodec.core.io.AacSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 记录写入字节数和每帧写入耗时的AacSink
+ */
+public class MeteredAacSink implements AacSink {
+    private final AacSink mSink;
+    private final TranscodeMetrics mMetrics;
+
+    public MeteredAacSink(AacSink sink, TranscodeMetrics metrics) {
+        this.mSink = sink;
+        this.mMetrics = metrics;
+    }
+
+    @Override
+    public void setAudioSpecificConfig(ByteBuffer config) throws IOException {
+        mSink.setAudioSpecificConfig(config);
+    }
+
+    @Override
+    public void writeFrame(ByteBuffer frame, long presentationTimeUs) throws IOException {
+        int size = frame.remaining();
+        long start = System.nanoTime();
+        mSink.writeFrame(frame, presentationTimeUs);
+        mMetrics.writeLatency.record(System.nanoTime() - start);
+        mMetrics.bytesWritten.add(size);
+    }
+
+    @Override
+    public void close() throws IOException {
+        mSink.close();
+    }
+}
@@ -0,0 +1,38 @@
+package com.example.mediacodec.core.metrics;
+
+import com.example.mediacodec.core.io.DataSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 记录写入字节数和每次写入耗时的DataSink
+ */
+public class MeteredDataSink implements DataSink {
+    private final DataSink mSink;
+    private final TranscodeMetrics mMetrics;
+
+    public MeteredDataSink(DataSink sink, TranscodeMetrics metrics) {
+        this.mSink = sink;
+        this.mMetrics = metrics;
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        int size = src.remaining();
+        long start = System.nanoTime();
+        mSink.write(src);
+        mMetrics.writeLatency.record(System.nanoTime() - start);
+        mMetrics.bytesWritten.add(size);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        mSink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mSink.close();
+    }
+}
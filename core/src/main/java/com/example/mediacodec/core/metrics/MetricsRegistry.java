@@ -0,0 +1,65 @@
+package com.example.mediacodec.core.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 当前所有任务的指标。任务开始时注册、结束时移除，界面或调试接口可以随时取得快照，
+ * 也可以设置一个Writer，把每个任务结束时的快照按JSON lines格式（每行一个JSON对象）追加写入。
+ */
+public class MetricsRegistry {
+    private final List<TranscodeMetrics> mActive = new CopyOnWriteArrayList<>();
+    private Writer mJsonLines;
+
+    public TranscodeMetrics register(String name) {
+        TranscodeMetrics metrics = new TranscodeMetrics(name);
+        mActive.add(metrics);
+        metrics.start();
+        return metrics;
+    }
+
+    /**
+     * 结束并移除任务的指标，设置了JSON lines输出时写入最终快照
+     */
+    public void unregister(TranscodeMetrics metrics) {
+        metrics.stop();
+        mActive.remove(metrics);
+        dump(metrics.snapshot());
+    }
+
+    public List<MetricsSnapshot> snapshotAll() {
+        List<MetricsSnapshot> snapshots = new ArrayList<>();
+        for (TranscodeMetrics metrics : mActive) {
+            snapshots.add(metrics.snapshot());
+        }
+        return snapshots;
+    }
+
+    /**
+     * @param writer 为null时不输出
+     */
+    public synchronized void setJsonLinesWriter(Writer writer) {
+        this.mJsonLines = writer;
+    }
+
+    /**
+     * 把快照作为一行JSON写入输出
+     */
+    public synchronized void dump(MetricsSnapshot snapshot) {
+        if (mJsonLines == null) {
+            return;
+        }
+        try {
+            mJsonLines.write(snapshot.toJson());
+            mJsonLines.write('\n');
+            mJsonLines.flush();
+        } catch (IOException e) {
+            //指标输出失败不影响任务本身
+            e.printStackTrace();
+            mJsonLines = null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.mediacodec.core.metrics;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 一组指标在某一时刻的值，可以转换成一行JSON
+ */
+public final class MetricsSnapshot {
+    private final String mName;
+    private final long mTimeMillis;
+    private final Map<String, Object> mValues = new LinkedHashMap<>();
+
+    public MetricsSnapshot(String name, long timeMillis) {
+        this.mName = name;
+        this.mTimeMillis = timeMillis;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public long getTimeMillis() {
+        return mTimeMillis;
+    }
+
+    public MetricsSnapshot put(String key, long value) {
+        mValues.put(key, value);
+        return this;
+    }
+
+    public MetricsSnapshot put(String key, double value) {
+        mValues.put(key, value);
+        return this;
+    }
+
+    public MetricsSnapshot put(String key, Histogram.Snapshot value) {
+        mValues.put(key, value);
+        return this;
+    }
+
+    /**
+     * @return Long、Double或{@link Histogram.Snapshot}，不存在时返回null
+     */
+    public Object get(String key) {
+        return mValues.get(key);
+    }
+
+    public long getLong(String key) {
+        return ((Number) mValues.get(key)).longValue();
+    }
+
+    public Map<String, Object> getValues() {
+        return Collections.unmodifiableMap(mValues);
+    }
+
+    /**
+     * 转换成不含换行的JSON对象，直方图展开为count、mean、p50、p90、p99和max
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("{\"name\":");
+        appendString(sb, mName);
+        sb.append(",\"time\":").append(mTimeMillis);
+        for (Map.Entry<String, Object> entry : mValues.entrySet()) {
+            sb.append(',');
+            appendString(sb, entry.getKey());
+            sb.append(':');
+            Object value = entry.getValue();
+            if (value instanceof Histogram.Snapshot) {
+                Histogram.Snapshot histogram = (Histogram.Snapshot) value;
+                sb.append("{\"count\":").append(histogram.getCount())
+                        .append(",\"mean\":").append(Math.round(histogram.getMean()))
+                        .append(",\"p50\":").append(histogram.getPercentile(50))
+                        .append(",\"p90\":").append(histogram.getPercentile(90))
+                        .append(",\"p99\":").append(histogram.getPercentile(99))
+                        .append(",\"max\":").append(histogram.getMax())
+                        .append('}');
+            } else if (value instanceof Double) {
+                double d = (Double) value;
+                if (Double.isNaN(d) || Double.isInfinite(d)) {
+                    sb.append("null");
+                } else {
+                    sb.append(Math.round(d * 1000) / 1000.0);
+                }
+            } else {
+                sb.append(value);
+            }
+        }
+        return sb.append('}').toString();
+    }
+
+    private static void appendString(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            switch (c) {
+                case '"':
+                    sb.append("\\\"");
+                    break;
+                case '\\':
+                    sb.append("\\\\");
+                    break;
+                case '\n':
+                    sb.append("\\n");
+                    break;
+                case '\r':
+                    sb.append("\\r");
+                    break;
+                case '\t':
+                    sb.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                    break;
+            }
+        }
+        sb.append('"');
+    }
+
+    @Override
+    public String toString() {
+        return toJson();
+    }
+}
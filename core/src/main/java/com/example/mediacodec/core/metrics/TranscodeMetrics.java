@@ -0,0 +1,95 @@
+package com.example.mediacodec.core.metrics;
+
+/**
+ * 一个编解码或播放任务的指标：输入输出的帧数和字节数、等待编解码器输入/输出buffer的时间、
+ * 写入延迟、播放的输出延迟和AudioTrack欠载次数，以及实时倍率（处理的媒体时长 / 实际耗时）。
+ * <p>
+ * 热路径上只有原子计数和System.nanoTime，可以一直开启；任务线程写入，其他线程随时调用{@link #snapshot()}。
+ */
+public class TranscodeMetrics {
+    private final String mName;
+    public final Counter framesIn = new Counter();
+    public final Counter framesOut = new Counter();
+    public final Counter bytesIn = new Counter();
+    public final Counter bytesWritten = new Counter();
+    public final Counter underruns = new Counter();
+    // 等待编解码器给出输入buffer的时间（纳秒）
+    public final Histogram inputWait = new Histogram();
+    // 等待编解码器给出输出buffer的时间（纳秒）
+    public final Histogram outputWait = new Histogram();
+    // 单次写入sink或AudioTrack的耗时（纳秒）
+    public final Histogram writeLatency = new Histogram();
+    // 播放时写入的数据到被听到的延迟（纳秒），定期采样
+    public final Histogram outputLatency = new Histogram();
+    private volatile long mStartNanos;
+    private volatile long mEndNanos;
+    private volatile long mMediaTimeUs;
+
+    public TranscodeMetrics(String name) {
+        this.mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public void start() {
+        mStartNanos = System.nanoTime();
+        mEndNanos = 0;
+    }
+
+    public void stop() {
+        mEndNanos = System.nanoTime();
+    }
+
+    /**
+     * 已处理到的媒体时间（微秒），用于计算实时倍率
+     */
+    public void setMediaTimeUs(long timeUs) {
+        mMediaTimeUs = timeUs;
+    }
+
+    public long getMediaTimeUs() {
+        return mMediaTimeUs;
+    }
+
+    /**
+     * 按编解码器事件等待的结果记录等待时间：得到输入buffer计入inputWait，其余计入outputWait
+     */
+    public void recordWait(boolean input, long nanos) {
+        (input ? inputWait : outputWait).record(nanos);
+    }
+
+    public long getElapsedNanos() {
+        long start = mStartNanos;
+        if (start == 0) {
+            return 0;
+        }
+        long end = mEndNanos;
+        return (end != 0 ? end : System.nanoTime()) - start;
+    }
+
+    /**
+     * 实时倍率，大于1表示处理得比播放快
+     */
+    public double getRealtimeFactor() {
+        long elapsed = getElapsedNanos();
+        return elapsed == 0 ? 0 : mMediaTimeUs * 1000.0 / elapsed;
+    }
+
+    public MetricsSnapshot snapshot() {
+        return new MetricsSnapshot(mName, System.currentTimeMillis())
+                .put("frames_in", framesIn.get())
+                .put("frames_out", framesOut.get())
+                .put("bytes_in", bytesIn.get())
+                .put("bytes_written", bytesWritten.get())
+                .put("underruns", underruns.get())
+                .put("elapsed_ms", getElapsedNanos() / 1000000)
+                .put("media_ms", mMediaTimeUs / 1000)
+                .put("realtime_factor", getRealtimeFactor())
+                .put("input_wait_ns", inputWait.snapshot())
+                .put("output_wait_ns", outputWait.snapshot())
+                .put("write_latency_ns", writeLatency.snapshot())
+                .put("output_latency_ns", outputLatency.snapshot());
+    }
+}
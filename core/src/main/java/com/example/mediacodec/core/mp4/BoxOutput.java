@@ -0,0 +1,157 @@
+package com.example.mediacodec.core.mp4;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+/**
+ * 流式写出MP4 box。box头部的大小必须在写内容之前确定，因此同一段写box的代码执行两遍：
+ * 第一遍不输出（measure），只按startBox的顺序记录每个box的大小；第二遍输出时依次取用这些大小。
+ * 数据经过一个固定大小的buffer写入channel，与box的总大小无关。
+ */
+final class BoxOutput {
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private long[] mSizes;
+    private int mBoxCount;
+    private long[] mStarts = new long[16];
+    private int[] mOpen = new int[16];
+    private int mDepth;
+    private long mPosition;
+
+    /**
+     * 只计算大小，不输出
+     */
+    BoxOutput() {
+        mChannel = null;
+        mBuffer = null;
+        mSizes = new long[32];
+    }
+
+    /**
+     * @param measured 同一段代码用measure模式执行后的结果
+     */
+    BoxOutput(WritableByteChannel channel, BoxOutput measured) {
+        mChannel = channel;
+        mBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        mSizes = measured.mSizes;
+    }
+
+    /**
+     * 已写入（或measure模式下将会写入）的字节数
+     */
+    long position() {
+        return mPosition;
+    }
+
+    void startBox(String type) throws IOException {
+        int index = mBoxCount++;
+        if (mChannel == null) {
+            if (index == mSizes.length) {
+                mSizes = Arrays.copyOf(mSizes, index * 2);
+            }
+            if (mDepth == mStarts.length) {
+                mStarts = Arrays.copyOf(mStarts, mDepth * 2);
+                mOpen = Arrays.copyOf(mOpen, mDepth * 2);
+            }
+            mStarts[mDepth] = mPosition;
+            mOpen[mDepth++] = index;
+        } else if (mSizes[index] > 0xFFFFFFFFL) {
+            throw new IOException("box too large: " + type);
+        }
+        putInt((int) (mChannel == null ? 0 : mSizes[index]));
+        putFourCC(type);
+    }
+
+    void startFullBox(String type, int version, int flags) throws IOException {
+        startBox(type);
+        putInt((version << 24) | flags);
+    }
+
+    void endBox() {
+        if (mChannel == null) {
+            mDepth--;
+            mSizes[mOpen[mDepth]] = mPosition - mStarts[mDepth];
+        }
+    }
+
+    void putFourCC(String type) throws IOException {
+        for (int i = 0; i < 4; i++) {
+            putByte(type.charAt(i));
+        }
+    }
+
+    void putByte(int value) throws IOException {
+        ensure(1);
+        if (mBuffer != null) {
+            mBuffer.put((byte) value);
+        }
+        mPosition += 1;
+    }
+
+    void putShort(int value) throws IOException {
+        ensure(2);
+        if (mBuffer != null) {
+            mBuffer.putShort((short) value);
+        }
+        mPosition += 2;
+    }
+
+    void putInt(int value) throws IOException {
+        ensure(4);
+        if (mBuffer != null) {
+            mBuffer.putInt(value);
+        }
+        mPosition += 4;
+    }
+
+    void putLong(long value) throws IOException {
+        ensure(8);
+        if (mBuffer != null) {
+            mBuffer.putLong(value);
+        }
+        mPosition += 8;
+    }
+
+    void putZeros(int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            putByte(0);
+        }
+    }
+
+    void put(ByteBuffer src) throws IOException {
+        while (src.hasRemaining()) {
+            ensure(1);
+            int count = mBuffer != null ? Math.min(src.remaining(), mBuffer.remaining()) : src.remaining();
+            if (mBuffer != null) {
+                int limit = src.limit();
+                src.limit(src.position() + count);
+                mBuffer.put(src);
+                src.limit(limit);
+            } else {
+                src.position(src.position() + count);
+            }
+            mPosition += count;
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (mBuffer != null && mBuffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    void flush() throws IOException {
+        if (mBuffer == null) {
+            return;
+        }
+        mBuffer.flip();
+        while (mBuffer.hasRemaining()) {
+            mChannel.write(mBuffer);
+        }
+        mBuffer.clear();
+    }
+}
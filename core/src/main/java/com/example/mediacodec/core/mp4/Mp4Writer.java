@@ -0,0 +1,376 @@
+package com.example.mediacodec.core.mp4;
+
+import com.example.mediacodec.core.adts.AdtsHeader;
+import com.example.mediacodec.core.io.AacSink;
+import com.example.mediacodec.core.io.ChannelDataSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 把AAC帧写成只有一条音轨的MP4/M4A文件。
+ * 帧数据边编码边写入mdat，sample table（stsz/stts/stsc/stco）在{@link SampleTable}中逐帧累积，
+ * close时流式写出moov，内存占用只与帧数成正比（每帧4字节），与文件大小无关。
+ * <p>
+ * 两种布局：
+ * <ul>
+ * <li>moov在末尾：ftyp | mdat | moov，数据直接写入输出文件，close时回填mdat的大小。</li>
+ * <li>faststart：ftyp | moov | mdat，播放器不需要读到文件末尾就能开始播放。
+ * 编码期间mdat的数据写入临时文件，close时先写moov，再用transferTo把数据复制到输出文件。</li>
+ * </ul>
+ * 非线程安全。
+ */
+public class Mp4Writer implements AacSink {
+    // 每个chunk的帧数，44100Hz时约1秒
+    public static final int SAMPLES_PER_CHUNK = 43;
+    private static final int MOVIE_TIMESCALE = 1000;
+    // mdat使用64位大小：size=1、类型、largesize
+    private static final int MDAT_HEADER_SIZE = 16;
+    private static final String HANDLER_NAME = "SoundHandler";
+
+    private final FileChannel mOutput;
+    private final FileChannel mScratch;
+    private final ChannelDataSink mData;
+    private final int mSampleRate;
+    private final int mChannelCount;
+    private final SampleTable mTable = new SampleTable(SAMPLES_PER_CHUNK);
+    private final long mStart;
+    private ByteBuffer mConfig;
+    private boolean mClosed;
+
+    /**
+     * moov写在文件末尾，从output的当前位置开始写
+     */
+    public Mp4Writer(FileChannel output, int sampleRate, int channelCount) throws IOException {
+        this(output, null, sampleRate, channelCount);
+    }
+
+    /**
+     * @param scratch 不为null时使用faststart布局，编码期间mdat的数据暂存在这里，从scratch的当前位置开始写
+     */
+    public Mp4Writer(FileChannel output, FileChannel scratch, int sampleRate, int channelCount) throws IOException {
+        if (sampleRate <= 0 || channelCount <= 0) {
+            throw new IllegalArgumentException(sampleRate + "Hz, " + channelCount + "ch");
+        }
+        this.mOutput = output;
+        this.mScratch = scratch;
+        this.mSampleRate = sampleRate;
+        this.mChannelCount = channelCount;
+        if (scratch == null) {
+            mStart = output.position();
+            //先写ftyp和mdat头部，mdat的大小在close时回填
+            BoxOutput measured = new BoxOutput();
+            writeHeader(measured, 0);
+            BoxOutput out = new BoxOutput(output, measured);
+            writeHeader(out, 0);
+            out.flush();
+            mData = new ChannelDataSink(output);
+        } else {
+            mStart = scratch.position();
+            mData = new ChannelDataSink(scratch);
+        }
+    }
+
+    @Override
+    public void setAudioSpecificConfig(ByteBuffer config) {
+        mConfig = ByteBuffer.allocate(config.remaining());
+        mConfig.put(config.duplicate()).flip();
+    }
+
+    @Override
+    public void writeFrame(ByteBuffer frame, long presentationTimeUs) throws IOException {
+        if (mClosed) {
+            throw new IllegalStateException("closed");
+        }
+        int size = frame.remaining();
+        mData.write(frame);
+        mTable.add(size, (presentationTimeUs * mSampleRate + 500000) / 1000000);
+    }
+
+    public int getFrameCount() {
+        return mTable.getSampleCount();
+    }
+
+    /**
+     * 写完moov并关闭输出文件（以及临时文件）
+     */
+    @Override
+    public void close() throws IOException {
+        if (mClosed) {
+            return;
+        }
+        mClosed = true;
+        try {
+            int lastDelta = mTable.lastDelta();
+            mTable.finish(lastDelta > 0 ? lastDelta : AdtsHeader.SAMPLES_PER_FRAME);
+            mData.flush();
+            if (mScratch == null) {
+                finishMoovAtEnd();
+            } else {
+                finishFastStart();
+            }
+        } finally {
+            mOutput.close();
+            if (mScratch != null) {
+                mScratch.close();
+            }
+        }
+    }
+
+    private void finishMoovAtEnd() throws IOException {
+        BoxOutput header = new BoxOutput();
+        writeHeader(header, 0);
+        long dataStart = mStart + header.position();
+        //回填mdat的64位大小
+        ByteBuffer size = ByteBuffer.allocate(8);
+        size.putLong(MDAT_HEADER_SIZE + mTable.getDataSize()).flip();
+        long sizePosition = dataStart - 8;
+        while (size.hasRemaining()) {
+            sizePosition += mOutput.write(size, sizePosition);
+        }
+        mOutput.position(dataStart + mTable.getDataSize());
+        boolean co64 = dataStart + mTable.getDataSize() > 0xFFFFFFFFL;
+        BoxOutput measured = new BoxOutput();
+        writeMoov(measured, dataStart, co64);
+        BoxOutput out = new BoxOutput(mOutput, measured);
+        writeMoov(out, dataStart, co64);
+        out.flush();
+    }
+
+    private void finishFastStart() throws IOException {
+        boolean co64 = false;
+        BoxOutput measured;
+        long dataStart;
+        while (true) {
+            measured = new BoxOutput();
+            writeFtyp(measured);
+            writeMoov(measured, 0, co64);
+            dataStart = mOutput.position() + measured.position() + MDAT_HEADER_SIZE;
+            if (co64 || dataStart + mTable.getDataSize() <= 0xFFFFFFFFL) {
+                break;
+            }
+            co64 = true;
+        }
+        BoxOutput out = new BoxOutput(mOutput, measured);
+        writeFtyp(out);
+        writeMoov(out, dataStart, co64);
+        out.putInt(1);
+        out.putFourCC("mdat");
+        out.putLong(MDAT_HEADER_SIZE + mTable.getDataSize());
+        out.flush();
+        long position = mStart;
+        long end = mStart + mTable.getDataSize();
+        while (position < end) {
+            position += mScratch.transferTo(position, end - position, mOutput);
+        }
+    }
+
+    private void writeHeader(BoxOutput out, long mdatSize) throws IOException {
+        writeFtyp(out);
+        out.putInt(1);
+        out.putFourCC("mdat");
+        out.putLong(mdatSize);
+    }
+
+    private static void writeFtyp(BoxOutput out) throws IOException {
+        out.startBox("ftyp");
+        out.putFourCC("M4A ");
+        out.putInt(0);
+        out.putFourCC("M4A ");
+        out.putFourCC("mp42");
+        out.putFourCC("isom");
+        out.endBox();
+    }
+
+    private void writeMoov(BoxOutput out, long dataStart, boolean co64) throws IOException {
+        long mediaDuration = mTable.getDuration();
+        long movieDuration = mediaDuration * MOVIE_TIMESCALE / mSampleRate;
+        out.startBox("moov");
+
+        out.startFullBox("mvhd", 0, 0);
+        out.putInt(0);
+        out.putInt(0);
+        out.putInt(MOVIE_TIMESCALE);
+        out.putInt((int) movieDuration);
+        out.putInt(0x00010000);
+        out.putShort(0x0100);
+        out.putZeros(10);
+        writeMatrix(out);
+        out.putZeros(24);
+        out.putInt(2);
+        out.endBox();
+
+        out.startBox("trak");
+        // track_enabled | track_in_movie | track_in_preview
+        out.startFullBox("tkhd", 0, 7);
+        out.putInt(0);
+        out.putInt(0);
+        out.putInt(1);
+        out.putInt(0);
+        out.putInt((int) movieDuration);
+        out.putZeros(8);
+        out.putShort(0);
+        out.putShort(0);
+        out.putShort(0x0100);
+        out.putShort(0);
+        writeMatrix(out);
+        out.putInt(0);
+        out.putInt(0);
+        out.endBox();
+
+        out.startBox("mdia");
+        out.startFullBox("mdhd", 0, 0);
+        out.putInt(0);
+        out.putInt(0);
+        out.putInt(mSampleRate);
+        out.putInt((int) mediaDuration);
+        // 语言und
+        out.putShort(0x55C4);
+        out.putShort(0);
+        out.endBox();
+
+        out.startFullBox("hdlr", 0, 0);
+        out.putInt(0);
+        out.putFourCC("soun");
+        out.putZeros(12);
+        for (int i = 0; i < HANDLER_NAME.length(); i++) {
+            out.putByte(HANDLER_NAME.charAt(i));
+        }
+        out.putByte(0);
+        out.endBox();
+
+        out.startBox("minf");
+        out.startFullBox("smhd", 0, 0);
+        out.putInt(0);
+        out.endBox();
+        out.startBox("dinf");
+        out.startFullBox("dref", 0, 0);
+        out.putInt(1);
+        // 数据在同一文件中
+        out.startFullBox("url ", 0, 1);
+        out.endBox();
+        out.endBox();
+        out.endBox();
+        writeStbl(out, dataStart, co64);
+        out.endBox();
+        out.endBox();
+        out.endBox();
+        out.endBox();
+    }
+
+    private void writeStbl(BoxOutput out, long dataStart, boolean co64) throws IOException {
+        SampleTable table = mTable;
+        out.startBox("stbl");
+
+        out.startFullBox("stsd", 0, 0);
+        out.putInt(1);
+        out.startBox("mp4a");
+        out.putZeros(6);
+        out.putShort(1);
+        out.putZeros(8);
+        out.putShort(mChannelCount);
+        out.putShort(16);
+        out.putZeros(4);
+        out.putInt(Math.min(mSampleRate, 0xFFFF) << 16);
+        writeEsds(out);
+        out.endBox();
+        out.endBox();
+
+        out.startFullBox("stts", 0, 0);
+        out.putInt(table.getSttsRuns());
+        for (int i = 0; i < table.getSttsRuns(); i++) {
+            out.putInt(table.getSttsCount(i));
+            out.putInt(table.getSttsDelta(i));
+        }
+        out.endBox();
+
+        out.startFullBox("stsc", 0, 0);
+        int chunks = table.getChunkCount();
+        int last = table.getLastChunkSamples();
+        boolean partialLast = chunks > 0 && last != table.getSamplesPerChunk();
+        int runs = chunks == 0 ? 0 : (partialLast && chunks > 1 ? 2 : 1);
+        out.putInt(runs);
+        if (runs > 0) {
+            out.putInt(1);
+            out.putInt(chunks == 1 ? last : table.getSamplesPerChunk());
+            out.putInt(1);
+        }
+        if (runs == 2) {
+            out.putInt(chunks);
+            out.putInt(last);
+            out.putInt(1);
+        }
+        out.endBox();
+
+        out.startFullBox("stsz", 0, 0);
+        out.putInt(0);
+        out.putInt(table.getSampleCount());
+        for (int i = 0; i < table.getSampleCount(); i++) {
+            out.putInt(table.getSampleSize(i));
+        }
+        out.endBox();
+
+        out.startFullBox(co64 ? "co64" : "stco", 0, 0);
+        out.putInt(chunks);
+        for (int i = 0; i < chunks; i++) {
+            long offset = dataStart + table.getChunkOffset(i);
+            if (co64) {
+                out.putLong(offset);
+            } else {
+                out.putInt((int) offset);
+            }
+        }
+        out.endBox();
+
+        out.endBox();
+    }
+
+    /**
+     * ES_Descriptor：DecoderConfigDescriptor（MPEG-4 Audio）中包含AudioSpecificConfig
+     */
+    private void writeEsds(BoxOutput out) throws IOException {
+        ByteBuffer config = mConfig;
+        if (config == null) {
+            config = ByteBuffer.allocate(2);
+            AdtsHeader.of(mSampleRate, mChannelCount, AdtsHeader.OBJECT_LC).writeAudioSpecificConfig(config);
+            config.flip();
+        }
+        int configSize = config.remaining();
+        long seconds = Math.max(1, mTable.getDuration() / mSampleRate);
+        int avgBitrate = (int) (mTable.getDataSize() * 8 / seconds);
+        int maxBitrate = (int) ((long) mTable.getMaxSampleSize() * 8 * mSampleRate / AdtsHeader.SAMPLES_PER_FRAME);
+
+        out.startFullBox("esds", 0, 0);
+        out.putByte(0x03);
+        out.putByte(23 + configSize);
+        out.putShort(0);
+        out.putByte(0);
+
+        out.putByte(0x04);
+        out.putByte(15 + configSize);
+        // MPEG-4 Audio，音频流
+        out.putByte(0x40);
+        out.putByte(0x15);
+        out.putByte(mTable.getMaxSampleSize() >> 16);
+        out.putShort(mTable.getMaxSampleSize());
+        out.putInt(Math.max(maxBitrate, avgBitrate));
+        out.putInt(avgBitrate);
+
+        out.putByte(0x05);
+        out.putByte(configSize);
+        out.put(config.duplicate());
+
+        out.putByte(0x06);
+        out.putByte(1);
+        out.putByte(0x02);
+        out.endBox();
+    }
+
+    private static void writeMatrix(BoxOutput out) throws IOException {
+        int[] matrix = {0x00010000, 0, 0, 0, 0x00010000, 0, 0, 0, 0x40000000};
+        for (int value : matrix) {
+            out.putInt(value);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.example.mediacodec.core.mp4;
+
+import java.util.Arrays;
+
+/**
+ * 编码过程中逐帧累积的sample table，全部保存在基本类型数组中：
+ * 每帧的大小（stsz）、时长的游程编码（stts）、chunk的偏移（stco/co64）和每个chunk的帧数的游程编码（stsc）。
+ * 帧在mdat中连续存放，每samplesPerChunk帧开始一个新chunk，偏移相对于mdat数据的起点。
+ */
+final class SampleTable {
+    private final int mSamplesPerChunk;
+    private int[] mSizes = new int[1024];
+    private int mSampleCount;
+    // stts：每个游程的帧数和时长
+    private int[] mSttsCounts = new int[8];
+    private int[] mSttsDeltas = new int[8];
+    private int mSttsRuns;
+    private long[] mChunkOffsets = new long[64];
+    private int mChunkCount;
+    private long mDataSize;
+    private int mMaxSize;
+    // 上一帧的时间（timescale单位），它的时长在下一帧到来时才能确定
+    private long mLastTime = -1;
+    private long mDuration;
+
+    SampleTable(int samplesPerChunk) {
+        this.mSamplesPerChunk = samplesPerChunk;
+    }
+
+    /**
+     * @param time 帧的时间戳（timescale单位）
+     */
+    void add(int size, long time) {
+        if (mSampleCount % mSamplesPerChunk == 0) {
+            if (mChunkCount == mChunkOffsets.length) {
+                mChunkOffsets = Arrays.copyOf(mChunkOffsets, mChunkCount * 2);
+            }
+            mChunkOffsets[mChunkCount++] = mDataSize;
+        }
+        if (mSampleCount == mSizes.length) {
+            mSizes = Arrays.copyOf(mSizes, mSampleCount * 2);
+        }
+        mSizes[mSampleCount++] = size;
+        mDataSize += size;
+        mMaxSize = Math.max(mMaxSize, size);
+        if (mLastTime >= 0) {
+            addDelta((int) Math.max(0, time - mLastTime));
+        }
+        mLastTime = time;
+    }
+
+    /**
+     * 结束时补上最后一帧的时长
+     */
+    void finish(int lastDelta) {
+        if (mLastTime >= 0) {
+            addDelta(lastDelta);
+            mLastTime = -1;
+        }
+    }
+
+    private void addDelta(int delta) {
+        mDuration += delta;
+        if (mSttsRuns > 0 && mSttsDeltas[mSttsRuns - 1] == delta) {
+            mSttsCounts[mSttsRuns - 1]++;
+            return;
+        }
+        if (mSttsRuns == mSttsCounts.length) {
+            mSttsCounts = Arrays.copyOf(mSttsCounts, mSttsRuns * 2);
+            mSttsDeltas = Arrays.copyOf(mSttsDeltas, mSttsRuns * 2);
+        }
+        mSttsCounts[mSttsRuns] = 1;
+        mSttsDeltas[mSttsRuns++] = delta;
+    }
+
+    /**
+     * 最近一帧相对上一帧的时长，还没有时返回-1
+     */
+    int lastDelta() {
+        return mSttsRuns == 0 ? -1 : mSttsDeltas[mSttsRuns - 1];
+    }
+
+    int getSampleCount() {
+        return mSampleCount;
+    }
+
+    int getSampleSize(int index) {
+        return mSizes[index];
+    }
+
+    int getSttsRuns() {
+        return mSttsRuns;
+    }
+
+    int getSttsCount(int run) {
+        return mSttsCounts[run];
+    }
+
+    int getSttsDelta(int run) {
+        return mSttsDeltas[run];
+    }
+
+    int getChunkCount() {
+        return mChunkCount;
+    }
+
+    long getChunkOffset(int chunk) {
+        return mChunkOffsets[chunk];
+    }
+
+    int getSamplesPerChunk() {
+        return mSamplesPerChunk;
+    }
+
+    /**
+     * 最后一个chunk的帧数，可能少于samplesPerChunk
+     */
+    int getLastChunkSamples() {
+        return mSampleCount - (mChunkCount - 1) * mSamplesPerChunk;
+    }
+
+    long getDataSize() {
+        return mDataSize;
+    }
+
+    int getMaxSampleSize() {
+        return mMaxSize;
+    }
+
+    /**
+     * 所有帧的总时长（timescale单位）
+     */
+    long getDuration() {
+        return mDuration;
+    }
+}
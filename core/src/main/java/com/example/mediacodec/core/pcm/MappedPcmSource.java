@@ -0,0 +1,145 @@
+package com.example.mediacodec.core.pcm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * 基于内存映射的PCM数据源。文件按窗口映射，读到窗口之外时重新映射下一段，因此可以读取大于地址窗口的文件；
+ * seekToFrame只修改读取位置，O(1)完成。
+ * <p>
+ * Java没有madvise，顺序预读的提示通过提前访问后续数据所在的页来实现：
+ * 每次next都会把读取位置之后prefetchBytes字节内尚未访问的页各读一个字节，
+ * 使缺页按顺序提前发生，内核的顺序预读可以尽早开始，读取返回的数据时不再等待IO。
+ */
+public class MappedPcmSource implements PcmSource {
+    // 默认映射窗口大小，44.1kHz双声道约47秒
+    public static final int DEFAULT_WINDOW_SIZE = 8 * 1024 * 1024;
+    // 默认提前访问的字节数
+    public static final int DEFAULT_PREFETCH_SIZE = 256 * 1024;
+    private static final int PAGE_SIZE = 4096;
+
+    private final FileChannel mChannel;
+    private final PcmFormat mFormat;
+    private final int mFrameSize;
+    private final long mSize;
+    private final int mWindowSize;
+    private final int mPrefetchSize;
+    private MappedByteBuffer mWindow;
+    // mWindow在文件中的起始位置
+    private long mWindowStart;
+    // 下一次读取的文件位置
+    private long mPosition;
+    // 已提前访问到的文件位置（窗口内）
+    private long mPrefetched;
+    private int mRemaps;
+    // 防止JIT把提前访问的读操作优化掉
+    private int mPrefetchSink;
+
+    public MappedPcmSource(FileChannel channel, PcmFormat format) throws IOException {
+        this(channel, format, DEFAULT_WINDOW_SIZE, DEFAULT_PREFETCH_SIZE);
+    }
+
+    /**
+     * @param windowSize 每次映射的最大字节数，会向下对齐到整帧
+     * @param prefetchSize 读取位置之后提前访问的字节数，0表示不提前访问
+     */
+    public MappedPcmSource(FileChannel channel, PcmFormat format, int windowSize, int prefetchSize) throws IOException {
+        mFrameSize = format.getBytesPerFrame();
+        if (windowSize < mFrameSize || prefetchSize < 0) {
+            throw new IllegalArgumentException("windowSize=" + windowSize + ", prefetchSize=" + prefetchSize);
+        }
+        this.mChannel = channel;
+        this.mFormat = format;
+        this.mWindowSize = windowSize / mFrameSize * mFrameSize;
+        this.mPrefetchSize = prefetchSize;
+        this.mSize = channel.size() / mFrameSize * mFrameSize;
+    }
+
+    @Override
+    public PcmFormat getFormat() {
+        return mFormat;
+    }
+
+    @Override
+    public long getFrameCount() {
+        return mSize / mFrameSize;
+    }
+
+    @Override
+    public long getFramePosition() {
+        return mPosition / mFrameSize;
+    }
+
+    @Override
+    public void seekToFrame(long frame) {
+        if (frame < 0) {
+            throw new IllegalArgumentException("frame=" + frame);
+        }
+        mPosition = Math.min(frame * mFrameSize, mSize);
+    }
+
+    @Override
+    public ByteBuffer next(int maxBytes) throws IOException {
+        if (mPosition >= mSize) {
+            return null;
+        }
+        int length = maxBytes / mFrameSize * mFrameSize;
+        if (length <= 0) {
+            throw new IllegalArgumentException("maxBytes smaller than one frame: " + maxBytes);
+        }
+        if (mWindow == null || mPosition < mWindowStart || mPosition >= mWindowStart + mWindow.capacity()) {
+            remap();
+        }
+        int offset = (int) (mPosition - mWindowStart);
+        length = Math.min(length, mWindow.capacity() - offset);
+        mPosition += length;
+        prefetch();
+        ByteBuffer view = mWindow.duplicate();
+        view.limit(offset + length);
+        view.position(offset);
+        return view;
+    }
+
+    /**
+     * 重新映射包含当前读取位置的窗口，窗口起点是窗口大小的整数倍，因此不会把一帧切开
+     */
+    private void remap() throws IOException {
+        mWindowStart = mPosition / mWindowSize * mWindowSize;
+        long length = Math.min(mWindowSize, mSize - mWindowStart);
+        mWindow = mChannel.map(FileChannel.MapMode.READ_ONLY, mWindowStart, length);
+        mPrefetched = mWindowStart;
+        mRemaps++;
+    }
+
+    private void prefetch() {
+        if (mPrefetchSize == 0) {
+            return;
+        }
+        long end = Math.min(mPosition + mPrefetchSize, mWindowStart + mWindow.capacity());
+        long page = Math.max(mPrefetched, mPosition);
+        int sink = mPrefetchSink;
+        for (; page < end; page += PAGE_SIZE) {
+            sink += mWindow.get((int) (page - mWindowStart));
+        }
+        mPrefetchSink = sink;
+        mPrefetched = Math.max(mPrefetched, page);
+    }
+
+    /**
+     * 映射过的窗口数，用于测试和统计
+     */
+    public int getRemapCount() {
+        return mRemaps;
+    }
+
+    /**
+     * 关闭文件。已映射的窗口没有显式解除映射的接口，由GC回收。
+     */
+    @Override
+    public void close() throws IOException {
+        mWindow = null;
+        mChannel.close();
+    }
+}
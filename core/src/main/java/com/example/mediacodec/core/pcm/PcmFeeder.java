@@ -0,0 +1,123 @@
+package com.example.mediacodec.core.pcm;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+/**
+ * 编码器的输入阶段：把PCM数据按整帧直接读入编码器的输入buffer，并根据已读取的帧数计算时间戳。
+ * <pre>
+ * int size = feeder.fill(inputBuffer, inputBuffer.capacity());
+ * if (size &lt; 0) {
+ *     // 结束，用feeder.getPresentationTimeUs()作为END_OF_STREAM的时间戳
+ * } else {
+ *     codec.queueInputBuffer(index, 0, size, feeder.getChunkTimeUs(), 0);
+ * }
+ * </pre>
+ * 数据可以来自ReadableByteChannel，也可以来自{@link PcmSource}；后者从映射的文件直接复制到输入buffer，并且支持seek。
+ */
+public class PcmFeeder {
+    private final ReadableByteChannel mSource;
+    private final PcmSource mPcmSource;
+    private final PcmFormat mFormat;
+    // 已读入的完整帧数，从PcmSource读取时为读取位置
+    private long mFrames;
+    // 最近一次fill读到的数据块的起始帧
+    private long mChunkFrame;
+    // 文件末尾不足一帧而被丢弃的字节数
+    private int mDroppedBytes;
+    private boolean mEof;
+
+    public PcmFeeder(ReadableByteChannel source, PcmFormat format) {
+        this.mSource = source;
+        this.mPcmSource = null;
+        this.mFormat = format;
+    }
+
+    public PcmFeeder(PcmSource source) {
+        this.mSource = null;
+        this.mPcmSource = source;
+        this.mFormat = source.getFormat();
+    }
+
+    /**
+     * 从dst的position开始读入数据，最多maxChunkSize字节并按整帧对齐。
+     * 返回时dst的position不变，limit为数据末尾。
+     * @return 读入的字节数，已读完时返回-1
+     */
+    public int fill(ByteBuffer dst, int maxChunkSize) throws IOException {
+        if (mEof) {
+            return -1;
+        }
+        int frameSize = mFormat.getBytesPerFrame();
+        int chunkSize = Math.min(dst.remaining(), maxChunkSize) / frameSize * frameSize;
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("buffer smaller than one frame: " + dst.remaining());
+        }
+        if (mPcmSource != null) {
+            return fillFromSource(dst, chunkSize);
+        }
+        int start = dst.position();
+        dst.limit(start + chunkSize);
+        while (dst.hasRemaining()) {
+            if (mSource.read(dst) < 0) {
+                mEof = true;
+                break;
+            }
+        }
+        int count = dst.position() - start;
+        int aligned = count / frameSize * frameSize;
+        mDroppedBytes += count - aligned;
+        dst.limit(start + aligned);
+        dst.position(start);
+        if (aligned == 0 && mEof) {
+            return -1;
+        }
+        mChunkFrame = mFrames;
+        mFrames += aligned / frameSize;
+        return aligned;
+    }
+
+    private int fillFromSource(ByteBuffer dst, int chunkSize) throws IOException {
+        long frame = mPcmSource.getFramePosition();
+        ByteBuffer data = mPcmSource.next(chunkSize);
+        if (data == null) {
+            mEof = true;
+            return -1;
+        }
+        int start = dst.position();
+        int size = data.remaining();
+        dst.put(data);
+        dst.limit(start + size);
+        dst.position(start);
+        mChunkFrame = frame;
+        mFrames = frame + size / mFormat.getBytesPerFrame();
+        return size;
+    }
+
+    /**
+     * 最近一次fill读到的数据块的时间戳（微秒）
+     */
+    public long getChunkTimeUs() {
+        return mFormat.framesToUs(mChunkFrame);
+    }
+
+    /**
+     * 已读入数据的总时长（微秒），即下一块数据的时间戳
+     */
+    public long getPresentationTimeUs() {
+        return mFormat.framesToUs(mFrames);
+    }
+
+    public long getFramesRead() {
+        return mFrames;
+    }
+
+    public int getDroppedBytes() {
+        return mDroppedBytes;
+    }
+
+    public PcmFormat getFormat() {
+        return mFormat;
+    }
+}
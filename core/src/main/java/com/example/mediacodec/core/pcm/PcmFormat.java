@@ -0,0 +1,70 @@
+package com.example.mediacodec.core.pcm;
+
+/**
+ * 16位交错PCM数据的格式：采样率和声道数
+ */
+public final class PcmFormat {
+    public static final int BYTES_PER_SAMPLE = 2;
+
+    private final int mSampleRate;
+    private final int mChannelCount;
+
+    public PcmFormat(int sampleRate, int channelCount) {
+        if (sampleRate <= 0 || channelCount <= 0) {
+            throw new IllegalArgumentException("invalid pcm format: " + sampleRate + "Hz, " + channelCount + "ch");
+        }
+        this.mSampleRate = sampleRate;
+        this.mChannelCount = channelCount;
+    }
+
+    public int getSampleRate() {
+        return mSampleRate;
+    }
+
+    public int getChannelCount() {
+        return mChannelCount;
+    }
+
+    /**
+     * 一帧（所有声道各一个采样）的字节数
+     */
+    public int getBytesPerFrame() {
+        return mChannelCount * BYTES_PER_SAMPLE;
+    }
+
+    /**
+     * frames帧数据对应的时长（微秒）
+     */
+    public long framesToUs(long frames) {
+        return frames * 1000000L / mSampleRate;
+    }
+
+    /**
+     * 时间（微秒）对应的帧数，向下取整
+     */
+    public long usToFrames(long timeUs) {
+        return timeUs * mSampleRate / 1000000L;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof PcmFormat)) {
+            return false;
+        }
+        PcmFormat other = (PcmFormat) o;
+        return mSampleRate == other.mSampleRate && mChannelCount == other.mChannelCount;
+    }
+
+    @Override
+    public int hashCode() {
+        return mSampleRate * 31 + mChannelCount;
+    }
+
+    @Override
+    public String toString() {
+        return mSampleRate + "Hz/" + mChannelCount + "ch/16bit";
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.mediacodec.core.pcm;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 把解码输出裁剪到一个时间区间：按时间戳精确到帧，丢弃区间之外的数据。
+ * 配合从区间起点之前开始解码（预热解码器）使用，输出与完整解码时同一区间的数据一致。
+ */
+public class PcmRangeClipper {
+    private final PcmFormat mFormat;
+    private final long mStartFrame;
+    private final long mEndFrame;
+
+    /**
+     * @param startUs 区间起点（包含）
+     * @param endUs 区间终点（不包含）
+     */
+    public PcmRangeClipper(PcmFormat format, long startUs, long endUs) {
+        this.mFormat = format;
+        this.mStartFrame = toFrame(format, startUs);
+        this.mEndFrame = toFrame(format, endUs);
+    }
+
+    /**
+     * 时间戳由帧数向下取整得到，这里四舍五入换算回帧数才不会差一帧
+     */
+    private static long toFrame(PcmFormat format, long timeUs) {
+        return (timeUs * format.getSampleRate() + 500000) / 1000000L;
+    }
+
+    /**
+     * 调整pcm的position和limit，只保留区间内的数据
+     * @param presentationTimeUs pcm第一帧的时间戳
+     * @return 没有区间内的数据时返回false
+     */
+    public boolean clip(ByteBuffer pcm, long presentationTimeUs) {
+        int frameSize = mFormat.getBytesPerFrame();
+        long first = toFrame(mFormat, presentationTimeUs);
+        long end = first + pcm.remaining() / frameSize;
+        long from = Math.max(first, mStartFrame);
+        long to = Math.min(end, mEndFrame);
+        if (from >= to) {
+            return false;
+        }
+        int position = pcm.position();
+        pcm.limit(position + (int) (to - first) * frameSize);
+        pcm.position(position + (int) (from - first) * frameSize);
+        return true;
+    }
+
+    /**
+     * 时间戳为presentationTimeUs的数据已经在区间之后，可以停止解码
+     */
+    public boolean isPastEnd(long presentationTimeUs) {
+        return toFrame(mFormat, presentationTimeUs) >= mEndFrame;
+    }
+
+    public PcmFormat getFormat() {
+        return mFormat;
+    }
+}
@@ -0,0 +1,36 @@
+package com.example.mediacodec.core.pcm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 按帧读取的PCM数据源，读取的数据以只读视图返回，不复制。
+ * 播放时可直接交给AudioTrack.write(ByteBuffer, ...)，编码时由{@link PcmFeeder}放入编码器的输入buffer。
+ */
+public interface PcmSource extends Closeable {
+
+    PcmFormat getFormat();
+
+    /**
+     * 数据源的总帧数，末尾不足一帧的字节不计算在内
+     */
+    long getFrameCount();
+
+    /**
+     * 下一次{@link #next(int)}读取的起始帧
+     */
+    long getFramePosition();
+
+    /**
+     * 移动到第frame帧，下一次{@link #next(int)}从这里开始读取
+     */
+    void seekToFrame(long frame) throws IOException;
+
+    /**
+     * 从当前位置读取最多maxBytes字节（按整帧对齐）并前移当前位置。
+     * 返回的buffer只在下一次调用next、seekToFrame或close之前有效，position到limit之间为数据。
+     * @return 数据视图，已读完时返回null
+     */
+    ByteBuffer next(int maxBytes) throws IOException;
+}
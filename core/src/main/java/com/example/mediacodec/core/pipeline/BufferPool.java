@@ -0,0 +1,111 @@
+package com.example.mediacodec.core.pipeline;
+
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.memory.PooledBuffer;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 固定数量、固定大小的{@link MediaBuffer}池，在两个相邻的流水线阶段之间循环使用。
+ * 空闲的buffer保存在{@link SpscQueue}中，因此只允许一个线程acquire（上游阶段）、一个线程release（下游阶段）。
+ * buffer用完时acquire阻塞，从而对上游形成背压。
+ * buffer可以从{@link DirectBufferPool}借用，{@link #close}时归还。
+ */
+public class BufferPool {
+    private final SpscQueue<MediaBuffer> mFree;
+    private final int mCount;
+    private final int mBufferSize;
+    // 从DirectBufferPool借用时的各个buffer
+    private PooledBuffer[] mLeases;
+
+    /**
+     * @param count buffer个数
+     * @param bufferSize 每个buffer的字节数，使用direct buffer
+     */
+    public BufferPool(int count, int bufferSize) {
+        this(count, bufferSize, null);
+    }
+
+    /**
+     * @param pool 不为null时buffer从池中借用，用完后必须调用{@link #close}
+     */
+    public BufferPool(int count, int bufferSize, DirectBufferPool pool) {
+        if (count <= 0 || bufferSize <= 0) {
+            throw new IllegalArgumentException("count=" + count + ", bufferSize=" + bufferSize);
+        }
+        mFree = new SpscQueue<>(count);
+        mCount = count;
+        mBufferSize = bufferSize;
+        if (pool != null) {
+            mLeases = new PooledBuffer[count];
+        }
+        for (int i = 0; i < count; i++) {
+            ByteBuffer data;
+            if (pool != null) {
+                mLeases[i] = pool.lease(bufferSize);
+                data = mLeases[i].buffer().slice();
+            } else {
+                data = ByteBuffer.allocateDirect(bufferSize);
+            }
+            mFree.offer(new MediaBuffer(data));
+        }
+    }
+
+    /**
+     * 把借用的buffer还给DirectBufferPool。调用前所有使用这些buffer的线程都必须已经结束，之后不能再使用本对象
+     */
+    public void close() {
+        if (mLeases == null) {
+            return;
+        }
+        for (PooledBuffer lease : mLeases) {
+            lease.release();
+        }
+        mLeases = null;
+    }
+
+    public int getCount() {
+        return mCount;
+    }
+
+    public int getBufferSize() {
+        return mBufferSize;
+    }
+
+    /**
+     * 当前空闲的buffer数
+     */
+    public int available() {
+        return mFree.size();
+    }
+
+    /**
+     * @return 没有空闲buffer时返回null
+     */
+    public MediaBuffer tryAcquire() {
+        MediaBuffer buffer = mFree.poll();
+        if (buffer != null) {
+            buffer.reset();
+        }
+        return buffer;
+    }
+
+    /**
+     * 等待空闲的buffer
+     * @param timeoutNanos 最长等待时间，小于0表示一直等待
+     * @return 超时返回null
+     */
+    public MediaBuffer acquire(long timeoutNanos) throws InterruptedException {
+        MediaBuffer buffer = mFree.take(timeoutNanos);
+        if (buffer != null) {
+            buffer.reset();
+        }
+        return buffer;
+    }
+
+    public void release(MediaBuffer buffer) {
+        if (buffer.data.capacity() != mBufferSize || !mFree.offer(buffer)) {
+            throw new IllegalStateException("buffer does not belong to this pool");
+        }
+    }
+}
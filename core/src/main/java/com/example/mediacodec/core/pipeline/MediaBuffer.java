@@ -0,0 +1,28 @@
+package com.example.mediacodec.core.pipeline;
+
+import com.example.mediacodec.core.codec.CodecDriver;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 流水线各阶段之间传递的数据块：一段压缩或解码后的数据及其时间戳和标志位
+ */
+public final class MediaBuffer {
+    public final ByteBuffer data;
+    public long presentationTimeUs;
+    public int flags;
+
+    public MediaBuffer(ByteBuffer data) {
+        this.data = data;
+    }
+
+    public boolean isEndOfStream() {
+        return (flags & CodecDriver.FLAG_END_OF_STREAM) != 0;
+    }
+
+    void reset() {
+        data.clear();
+        presentationTimeUs = 0;
+        flags = 0;
+    }
+}
@@ -0,0 +1,371 @@
+package com.example.mediacodec.core.pipeline;
+
+import com.example.mediacodec.core.codec.CodecDriver;
+import com.example.mediacodec.core.codec.CodecEvent;
+import com.example.mediacodec.core.concurrent.Threads;
+import com.example.mediacodec.core.io.DataSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 三级流水线解码：读取（demux）→ 编解码器 → 写入（sink），各占一个线程，
+ * 相邻两级之间用{@link SpscQueue}传递{@link BufferPool}中的buffer。
+ * 写入卡顿时只要输出池还有空闲buffer，编解码器就可以继续工作；读取也提前于编解码器进行。
+ * <p>
+ * 编解码器阶段在调用{@link #run(JobContext)}的线程中执行，另外两级各启动一个线程。
+ * 任何一级出错都会结束整个流水线，并在run中抛出该异常。
+ * <p>
+ * {@link SerialDecoder.Listener}的两个回调都在写入阶段调用，与写入的数据保持顺序：
+ * 输出格式改变时，之前的输出都已写入sink，之后的输出还没有写入，可以在回调中更换sink中的格式转换。
+ */
+public class PipelinedDecoder {
+    public static final int DEFAULT_BUFFER_COUNT = 16;
+    // 等待编解码器事件的超时时间（微秒）
+    private static final long EVENT_TIMEOUT_US = 10000;
+    // 有空闲的输入buffer但读取阶段还没有数据时，等待编解码器事件的超时时间（微秒）
+    private static final long STARVED_TIMEOUT_US = 1000;
+    // 阻塞在队列上时检查流水线状态的间隔
+    private static final long CHECK_INTERVAL_NANOS = 10000000L;
+    // 输出队列中表示输出格式改变的空buffer的标志位，不会与编解码器的标志位冲突
+    private static final int FLAG_FORMAT_CHANGED = 1 << 16;
+
+    private final SampleSource mSource;
+    private final CodecDriver mDriver;
+    private final DataSink mSink;
+    private final BufferPool mInputPool;
+    private final BufferPool mOutputPool;
+    private final SpscQueue<MediaBuffer> mInputQueue;
+    private final SpscQueue<MediaBuffer> mOutputQueue;
+    private final StageStats mDemuxStats = new StageStats("demux");
+    private final StageStats mCodecStats = new StageStats("codec");
+    private final StageStats mSinkStats = new StageStats("sink");
+    private long mDurationUs;
+    private TranscodeMetrics mMetrics;
+    private SerialDecoder.Listener mListener;
+    private volatile Throwable mFailure;
+    private volatile boolean mStopped;
+
+    /**
+     * @param inputBufferSize 单个压缩样本的最大字节数
+     * @param outputBufferSize 输出池中每个buffer的字节数，编解码器的输出更大时拆成多个buffer
+     */
+    public PipelinedDecoder(SampleSource source, CodecDriver driver, DataSink sink,
+                            int bufferCount, int inputBufferSize, int outputBufferSize) {
+        this(source, driver, sink, bufferCount, inputBufferSize, outputBufferSize, null);
+    }
+
+    /**
+     * @param pool 不为null时输入输出池的buffer从中借用，{@link #run}结束时归还，因此run只能调用一次
+     */
+    public PipelinedDecoder(SampleSource source, CodecDriver driver, DataSink sink,
+                            int bufferCount, int inputBufferSize, int outputBufferSize, DirectBufferPool pool) {
+        this.mSource = source;
+        this.mDriver = driver;
+        this.mSink = sink;
+        mInputPool = new BufferPool(bufferCount, inputBufferSize, pool);
+        mOutputPool = new BufferPool(bufferCount, outputBufferSize, pool);
+        mInputQueue = new SpscQueue<>(bufferCount);
+        mOutputQueue = new SpscQueue<>(bufferCount);
+    }
+
+    /**
+     * 设置总时长，用于按输出时间戳报告进度
+     */
+    public void setDurationUs(long durationUs) {
+        this.mDurationUs = durationUs;
+    }
+
+    /**
+     * 在编解码器阶段记录输入输出帧数、等待编解码器的时间和媒体时间
+     */
+    public void setMetrics(TranscodeMetrics metrics) {
+        this.mMetrics = metrics;
+    }
+
+    /**
+     * 在写入阶段通知输出格式改变和输出已写入，为null时不通知
+     */
+    public void setListener(SerialDecoder.Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * 依次为读取、编解码器、写入三级的计数器
+     */
+    public StageStats[] getStats() {
+        return new StageStats[]{mDemuxStats, mCodecStats, mSinkStats};
+    }
+
+    /**
+     * 启动编解码器并运行流水线，直到全部数据写入sink、取消或出错。sink不会被关闭。
+     * 返回或抛出异常时另外两级的线程都已结束，之后可以在调用线程中继续使用sink（例如取消后记录检查点）。
+     * 写入阶段的线程不会被中断，避免中断关闭正在写入的FileChannel。
+     * @param context 用于检查取消和报告进度，可以为null
+     */
+    public void run(JobContext context) throws Exception {
+        Thread demux = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    demux();
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            }
+        }, "decode-demux");
+        Thread sink = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    drain();
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            }
+        }, "decode-sink");
+        mDriver.start();
+        demux.start();
+        sink.start();
+        try {
+            decode(context);
+            //等待写入阶段写完最后的数据
+            sink.join();
+            checkState(context);
+        } finally {
+            mStopped = true;
+            demux.interrupt();
+            //调用线程可能已被中断（例如任务取消），仍要等两级线程结束才能归还buffer
+            Threads.joinUninterruptibly(demux);
+            Threads.joinUninterruptibly(sink);
+            mInputPool.close();
+            mOutputPool.close();
+        }
+    }
+
+    private void fail(Throwable t) {
+        if (!mStopped && mFailure == null) {
+            mFailure = t;
+        }
+        mStopped = true;
+    }
+
+    private void checkState(JobContext context) throws Exception {
+        Throwable failure = mFailure;
+        if (failure instanceof Exception) {
+            throw (Exception) failure;
+        } else if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+        if (mStopped || (context != null && context.isCancelled())) {
+            throw new InterruptedIOException("pipeline stopped");
+        }
+    }
+
+    /**
+     * 读取阶段：把样本读入输入池的buffer，交给编解码器阶段
+     */
+    private void demux() throws IOException, InterruptedException {
+        while (!mStopped) {
+            long start = System.nanoTime();
+            MediaBuffer buffer;
+            while ((buffer = mInputPool.acquire(CHECK_INTERVAL_NANOS)) == null) {
+                if (mStopped) {
+                    return;
+                }
+            }
+            long acquired = System.nanoTime();
+            mDemuxStats.addBlocked(acquired - start);
+            int size = mSource.readSampleData(buffer.data);
+            if (size < 0) {
+                buffer.data.limit(buffer.data.position());
+                buffer.flags = CodecDriver.FLAG_END_OF_STREAM;
+            } else {
+                buffer.data.limit(buffer.data.position() + size);
+                buffer.presentationTimeUs = mSource.getSampleTime();
+                mSource.advance();
+            }
+            long read = System.nanoTime();
+            mDemuxStats.addItem(Math.max(size, 0), read - acquired);
+            while (!mInputQueue.put(buffer, CHECK_INTERVAL_NANOS)) {
+                if (mStopped) {
+                    return;
+                }
+            }
+            mDemuxStats.addBlocked(System.nanoTime() - read);
+            if (size < 0) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 编解码器阶段：把输入队列中的样本送入编解码器，把输出复制到输出池的buffer后立即还给编解码器
+     */
+    private void decode(JobContext context) throws Exception {
+        CodecEvent event = new CodecEvent();
+        //编解码器已给出但还没有填入数据的输入buffer索引
+        int[] freeInputs = new int[8];
+        int freeCount = 0;
+        boolean inputDone = false;
+        boolean outputDone = false;
+        while (!outputDone) {
+            checkState(context);
+            //先用读取阶段已准备好的样本填满空闲的输入buffer
+            while (freeCount > 0 && !inputDone) {
+                MediaBuffer sample = mInputQueue.poll();
+                if (sample == null) {
+                    break;
+                }
+                long start = System.nanoTime();
+                int index = freeInputs[--freeCount];
+                ByteBuffer input = mDriver.getInputBuffer(index);
+                input.clear();
+                int size = sample.data.remaining();
+                input.put(sample.data);
+                mDriver.queueInputBuffer(index, 0, size, sample.presentationTimeUs, sample.flags);
+                inputDone = sample.isEndOfStream();
+                mInputPool.release(sample);
+                if (mMetrics != null && !inputDone) {
+                    mMetrics.framesIn.increment();
+                    mMetrics.bytesIn.add(size);
+                }
+                mCodecStats.addBusy(System.nanoTime() - start);
+            }
+            boolean starved = freeCount > 0 && !inputDone;
+            long waitStart = System.nanoTime();
+            boolean hasEvent = mDriver.nextEvent(event, starved ? STARVED_TIMEOUT_US : EVENT_TIMEOUT_US);
+            long waited = System.nanoTime() - waitStart;
+            if (starved) {
+                mCodecStats.addStarved(waited);
+            }
+            if (mMetrics != null) {
+                mMetrics.recordWait(hasEvent ? event.type == CodecEvent.INPUT_AVAILABLE : !inputDone, waited);
+            }
+            if (!hasEvent) {
+                continue;
+            }
+            switch (event.type) {
+                case CodecEvent.INPUT_AVAILABLE:
+                    if (inputDone) {
+                        break;
+                    }
+                    if (freeCount == freeInputs.length) {
+                        freeInputs = Arrays.copyOf(freeInputs, freeCount * 2);
+                    }
+                    freeInputs[freeCount++] = event.index;
+                    break;
+                case CodecEvent.OUTPUT_AVAILABLE:
+                    ByteBuffer output = mDriver.getOutputBuffer(event.index);
+                    output.limit(event.offset + event.size);
+                    output.position(event.offset);
+                    emit(output, event.presentationTimeUs, event.flags);
+                    mDriver.releaseOutputBuffer(event.index);
+                    outputDone = event.isEndOfStream();
+                    if (mMetrics != null) {
+                        mMetrics.framesOut.increment();
+                        mMetrics.setMediaTimeUs(event.presentationTimeUs);
+                    }
+                    if (context != null && mDurationUs > 0) {
+                        context.setProgress(event.presentationTimeUs, mDurationUs);
+                    }
+                    break;
+                case CodecEvent.FORMAT_CHANGED:
+                    if (mListener != null) {
+                        //通过输出队列按顺序交给写入阶段
+                        emitFormatChanged();
+                    }
+                    break;
+                case CodecEvent.ERROR:
+                    throw new IOException("解码器出错：" + event.errorCode);
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * 把编解码器的一个输出复制到输出池的buffer中交给写入阶段，超过buffer大小时拆分，结束标志只放在最后一块上
+     */
+    private void emit(ByteBuffer output, long presentationTimeUs, int flags) throws Exception {
+        do {
+            long start = System.nanoTime();
+            MediaBuffer buffer;
+            while ((buffer = mOutputPool.acquire(CHECK_INTERVAL_NANOS)) == null) {
+                checkState(null);
+            }
+            long acquired = System.nanoTime();
+            mCodecStats.addBlocked(acquired - start);
+            int count = Math.min(output.remaining(), buffer.data.capacity());
+            int limit = output.limit();
+            output.limit(output.position() + count);
+            buffer.data.put(output);
+            output.limit(limit);
+            buffer.data.flip();
+            buffer.presentationTimeUs = presentationTimeUs;
+            buffer.flags = output.hasRemaining() ? flags & ~CodecDriver.FLAG_END_OF_STREAM : flags;
+            long copied = System.nanoTime();
+            mCodecStats.addItem(count, copied - acquired);
+            while (!mOutputQueue.put(buffer, CHECK_INTERVAL_NANOS)) {
+                checkState(null);
+            }
+            mCodecStats.addBlocked(System.nanoTime() - copied);
+        } while (output.hasRemaining());
+    }
+
+    private void emitFormatChanged() throws Exception {
+        MediaBuffer buffer;
+        while ((buffer = mOutputPool.acquire(CHECK_INTERVAL_NANOS)) == null) {
+            checkState(null);
+        }
+        buffer.data.flip();
+        buffer.flags = FLAG_FORMAT_CHANGED;
+        while (!mOutputQueue.put(buffer, CHECK_INTERVAL_NANOS)) {
+            checkState(null);
+        }
+    }
+
+    /**
+     * 写入阶段：把输出队列中的数据写入sink，buffer还给输出池
+     */
+    private void drain() throws IOException, InterruptedException {
+        while (!mStopped) {
+            long start = System.nanoTime();
+            MediaBuffer buffer;
+            while ((buffer = mOutputQueue.take(CHECK_INTERVAL_NANOS)) == null) {
+                if (mStopped) {
+                    return;
+                }
+            }
+            long taken = System.nanoTime();
+            mSinkStats.addStarved(taken - start);
+            int size = buffer.data.remaining();
+            boolean endOfStream = buffer.isEndOfStream();
+            if ((buffer.flags & FLAG_FORMAT_CHANGED) != 0) {
+                mOutputPool.release(buffer);
+                mListener.onOutputFormatChanged();
+                continue;
+            }
+            if (size > 0) {
+                mSink.write(buffer.data);
+            }
+            if (endOfStream) {
+                mSink.flush();
+            }
+            long presentationTimeUs = buffer.presentationTimeUs;
+            mOutputPool.release(buffer);
+            if (mListener != null) {
+                mListener.onOutputWritten(presentationTimeUs);
+            }
+            mSinkStats.addItem(size, System.nanoTime() - taken);
+            if (endOfStream) {
+                return;
+            }
+        }
+    }
+}
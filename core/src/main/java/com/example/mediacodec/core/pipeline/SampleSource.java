@@ -0,0 +1,27 @@
+package com.example.mediacodec.core.pipeline;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 压缩数据的来源，按MediaExtractor的方式逐个读取样本（例如一帧AAC）
+ */
+public interface SampleSource {
+
+    /**
+     * 把当前样本读入dst，从dst的position开始写入，不改变position
+     * @return 样本的字节数，没有更多样本时返回-1
+     */
+    int readSampleData(ByteBuffer dst) throws IOException;
+
+    /**
+     * 当前样本的时间戳（微秒）
+     */
+    long getSampleTime();
+
+    /**
+     * 前进到下一个样本
+     * @return 没有更多样本时返回false
+     */
+    boolean advance();
+}
@@ -0,0 +1,166 @@
+package com.example.mediacodec.core.pipeline;
+
+import com.example.mediacodec.core.codec.CodecDriver;
+import com.example.mediacodec.core.codec.CodecEvent;
+import com.example.mediacodec.core.io.DataSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.pcm.PcmRangeClipper;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 在调用者的线程中驱动解码：读取样本送入编解码器，输出直接从编解码器的buffer写入sink。
+ * 与{@link PipelinedDecoder}相比没有额外的线程和复制，输出可以在写入前裁剪到一个区间，
+ * 输出格式改变时调用方可以更换裁剪器和sink中的格式转换。
+ */
+public class SerialDecoder {
+    //等待编解码器事件的超时时间（微秒）
+    public static final long DEFAULT_TIMEOUT_US = 10000;
+
+    public interface Listener {
+        /**
+         * 编解码器报告了新的输出格式，之后的输出按新格式处理
+         */
+        void onOutputFormatChanged() throws IOException;
+
+        /**
+         * 时间戳为presentationTimeUs的一块输出已写入sink（或裁剪后没有数据），例如用于定期记录检查点
+         */
+        void onOutputWritten(long presentationTimeUs) throws IOException;
+    }
+
+    private final SampleSource mSource;
+    private final CodecDriver mDriver;
+    private final DataSink mSink;
+    private PcmRangeClipper mClipper;
+    private long mInputEndUs = Long.MAX_VALUE;
+    private long mProgressStartUs;
+    private long mProgressTotalUs;
+    private TranscodeMetrics mMetrics;
+    private Listener mListener;
+
+    public SerialDecoder(SampleSource source, CodecDriver driver, DataSink sink) {
+        this.mSource = source;
+        this.mDriver = driver;
+        this.mSink = sink;
+    }
+
+    /**
+     * 写入前把输出裁剪到clipper的区间，为null时不裁剪。解码期间（例如输出格式改变时）也可以更换
+     */
+    public void setClipper(PcmRangeClipper clipper) {
+        this.mClipper = clipper;
+    }
+
+    /**
+     * 时间戳不小于inputEndUs的样本不再送入编解码器，默认读到source结束
+     */
+    public void setInputEndUs(long inputEndUs) {
+        this.mInputEndUs = inputEndUs;
+    }
+
+    /**
+     * 按输出时间戳报告进度：done为时间戳减去startUs，total为totalUs
+     */
+    public void setProgressRange(long startUs, long totalUs) {
+        this.mProgressStartUs = startUs;
+        this.mProgressTotalUs = totalUs;
+    }
+
+    /**
+     * 记录输入输出帧数、等待编解码器的时间和媒体时间
+     */
+    public void setMetrics(TranscodeMetrics metrics) {
+        this.mMetrics = metrics;
+    }
+
+    public void setListener(Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * 启动编解码器并解码，直到输出结束或取消。不关闭sink，也不释放编解码器。
+     * 取消时被中断（见{@link com.example.mediacodec.core.job.JobHandle#cancel}）按取消正常返回，保留中断状态，
+     * 调用方可以在返回后记录检查点
+     */
+    public void run(JobContext context) throws IOException, InterruptedException {
+        mDriver.start();
+        CodecEvent event = new CodecEvent();
+        boolean finish = false;
+        //整体输入结束标记
+        boolean inputDone = false;
+        while (!finish && !context.isCancelled()) {
+            //等待编解码器的下一个事件：有可用的输入buffer、有解码好的输出buffer、输出格式改变或出错
+            long waitStart = System.nanoTime();
+            boolean hasEvent;
+            try {
+                hasEvent = mDriver.nextEvent(event, DEFAULT_TIMEOUT_US);
+            } catch (InterruptedException e) {
+                if (!context.isCancelled()) {
+                    throw e;
+                }
+                Thread.currentThread().interrupt();
+                return;
+            }
+            if (mMetrics != null) {
+                mMetrics.recordWait(hasEvent ? event.type == CodecEvent.INPUT_AVAILABLE : !inputDone,
+                        System.nanoTime() - waitStart);
+            }
+            if (!hasEvent) {
+                continue;
+            }
+            switch (event.type) {
+                case CodecEvent.INPUT_AVAILABLE:
+                    if (inputDone) {
+                        break;
+                    }
+                    ByteBuffer inputBuffer = mDriver.getInputBuffer(event.index);
+                    inputBuffer.clear();
+                    //读取一帧数据到inputBuffer
+                    int sampleSize = mSource.readSampleData(inputBuffer);
+                    if (sampleSize < 0 || mSource.getSampleTime() >= mInputEndUs) {
+                        inputDone = true;
+                        mDriver.queueInputBuffer(event.index, 0, 0, 0L, CodecDriver.FLAG_END_OF_STREAM);
+                    } else {
+                        mDriver.queueInputBuffer(event.index, 0, sampleSize, mSource.getSampleTime(), 0);
+                        if (mMetrics != null) {
+                            mMetrics.framesIn.increment();
+                            mMetrics.bytesIn.add(sampleSize);
+                        }
+                        mSource.advance();
+                    }
+                    break;
+                case CodecEvent.OUTPUT_AVAILABLE:
+                    ByteBuffer outputBuffer = mDriver.getOutputBuffer(event.index);
+                    outputBuffer.position(event.offset);
+                    outputBuffer.limit(event.offset + event.size);
+                    if (mClipper == null || mClipper.clip(outputBuffer, event.presentationTimeUs)) {
+                        mSink.write(outputBuffer);
+                    }
+                    outputBuffer.clear();
+                    mDriver.releaseOutputBuffer(event.index);
+                    finish = event.isEndOfStream();
+                    if (mMetrics != null) {
+                        mMetrics.framesOut.increment();
+                        mMetrics.setMediaTimeUs(event.presentationTimeUs);
+                    }
+                    context.setProgress(Math.max(0, event.presentationTimeUs - mProgressStartUs), mProgressTotalUs);
+                    if (mListener != null) {
+                        mListener.onOutputWritten(event.presentationTimeUs);
+                    }
+                    break;
+                case CodecEvent.FORMAT_CHANGED:
+                    if (mListener != null) {
+                        mListener.onOutputFormatChanged();
+                    }
+                    break;
+                case CodecEvent.ERROR:
+                    throw new IOException("解码器出错：" + event.errorCode);
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.example.mediacodec.core.pipeline;
+
+import com.example.mediacodec.core.codec.CodecDriver;
+import com.example.mediacodec.core.codec.CodecEvent;
+import com.example.mediacodec.core.dsp.PcmGain;
+import com.example.mediacodec.core.io.AacSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.pcm.PcmFeeder;
+import com.example.mediacodec.core.pcm.PcmFormat;
+import com.example.mediacodec.core.pcm.PcmSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 在调用者的线程中用一个编码器实例编码PCM：按编码器inputBuffer的容量从source读取整帧送入编码器，
+ * 时间戳由读取位置计算；编码器的csd（AudioSpecificConfig）和输出帧写入sink。
+ */
+public class SerialEncoder {
+    //等待编解码器事件的超时时间（微秒）
+    public static final long DEFAULT_TIMEOUT_US = 10000;
+
+    private final PcmSource mSource;
+    private final CodecDriver mDriver;
+    private final AacSink mSink;
+    private long mStartFrame;
+    private long mEndFrame = -1;
+    private int mMaxInputSize = Integer.MAX_VALUE;
+    private TranscodeMetrics mMetrics;
+    private boolean mReportProgress = true;
+    private float mGain = 1f;
+
+    public SerialEncoder(PcmSource source, CodecDriver driver, AacSink sink) {
+        this.mSource = source;
+        this.mDriver = driver;
+        this.mSink = sink;
+    }
+
+    /**
+     * 只编码[startFrame, endFrame)的PCM帧，默认编码整个source
+     */
+    public void setRange(long startFrame, long endFrame) {
+        if (startFrame < 0 || endFrame < startFrame) {
+            throw new IllegalArgumentException("invalid range: " + startFrame + ".." + endFrame);
+        }
+        this.mStartFrame = startFrame;
+        this.mEndFrame = endFrame;
+    }
+
+    /**
+     * 每次送入编码器的最大字节数，与配置编码器时的KEY_MAX_INPUT_SIZE一致
+     */
+    public void setMaxInputSize(int maxInputSize) {
+        this.mMaxInputSize = maxInputSize;
+    }
+
+    /**
+     * 记录输入输出帧数、等待编解码器的时间和媒体时间
+     */
+    public void setMetrics(TranscodeMetrics metrics) {
+        this.mMetrics = metrics;
+    }
+
+    /**
+     * 是否更新进度和媒体时间，默认为true。分段编码时由SegmentedEncoder统一报告
+     */
+    public void setReportProgress(boolean reportProgress) {
+        this.mReportProgress = reportProgress;
+    }
+
+    /**
+     * 送入编码器前对PCM乘以的线性增益（见{@link PcmGain}），默认为1。增益固定，分段编码时各段的结果可以直接拼接
+     */
+    public void setGain(float gain) {
+        this.mGain = gain;
+    }
+
+    /**
+     * 启动编解码器并编码，直到输出结束或取消。不关闭sink，也不释放编解码器
+     */
+    public void run(JobContext context) throws IOException, InterruptedException {
+        long endFrame = mEndFrame < 0 ? mSource.getFrameCount() : mEndFrame;
+        mSource.seekToFrame(mStartFrame);
+        PcmFeeder feeder = new PcmFeeder(mSource);
+        PcmFormat pcmFormat = mSource.getFormat();
+        mDriver.start();
+
+        CodecEvent event = new CodecEvent();
+        boolean inputDone = false;
+        boolean outputDone = false;
+        while (!outputDone && !context.isCancelled()) {
+            long waitStart = System.nanoTime();
+            boolean hasEvent = mDriver.nextEvent(event, DEFAULT_TIMEOUT_US);
+            if (mMetrics != null) {
+                mMetrics.recordWait(hasEvent ? event.type == CodecEvent.INPUT_AVAILABLE : !inputDone,
+                        System.nanoTime() - waitStart);
+            }
+            if (!hasEvent) {
+                continue;
+            }
+            switch (event.type) {
+                case CodecEvent.INPUT_AVAILABLE:
+                    if (inputDone) {
+                        break;
+                    }
+                    ByteBuffer inputBuffer = mDriver.getInputBuffer(event.index);
+                    inputBuffer.clear();
+                    //读取的大小取编码器inputBuffer的容量，即编码器期望的输入大小，且不超过endFrame
+                    long remaining = (endFrame - mSource.getFramePosition()) * pcmFormat.getBytesPerFrame();
+                    int size = remaining <= 0 ? -1 : feeder.fill(inputBuffer,
+                            (int) Math.min(remaining, Math.min(inputBuffer.capacity(), mMaxInputSize)));
+                    if (size < 0) {
+                        mDriver.queueInputBuffer(event.index, 0, 0,
+                                pcmFormat.framesToUs(mSource.getFramePosition()), CodecDriver.FLAG_END_OF_STREAM);
+                        inputDone = true;
+                    } else {
+                        if (mGain != 1f) {
+                            PcmGain.apply(inputBuffer, inputBuffer.position(), size, mGain);
+                        }
+                        //在指定索引处填充输入buffer后，使用queueInputBuffer将buffer提交给组件
+                        mDriver.queueInputBuffer(event.index, 0, size, feeder.getChunkTimeUs(), 0);
+                        if (mMetrics != null) {
+                            mMetrics.framesIn.add(size / pcmFormat.getBytesPerFrame());
+                            mMetrics.bytesIn.add(size);
+                        }
+                    }
+                    break;
+                case CodecEvent.OUTPUT_AVAILABLE:
+                    ByteBuffer outputBuffer = mDriver.getOutputBuffer(event.index);
+                    outputBuffer.position(event.offset);
+                    outputBuffer.limit(event.offset + event.size);
+                    if (event.isCodecConfig()) {
+                        //csd（AudioSpecificConfig）不是音频帧：MP4写入esds，ADTS据此生成头部
+                        mSink.setAudioSpecificConfig(outputBuffer);
+                    } else if (event.size > 0) {
+                        mSink.writeFrame(outputBuffer, event.presentationTimeUs);
+                    }
+                    outputBuffer.clear();
+                    mDriver.releaseOutputBuffer(event.index);
+                    outputDone = event.isEndOfStream();
+                    if (mMetrics != null) {
+                        mMetrics.framesOut.increment();
+                    }
+                    if (mReportProgress) {
+                        if (mMetrics != null) {
+                            mMetrics.setMediaTimeUs(event.presentationTimeUs);
+                        }
+                        context.setProgress(mSource.getFramePosition() - mStartFrame, endFrame - mStartFrame);
+                    }
+                    break;
+                case CodecEvent.ERROR:
+                    throw new IOException("编码器出错：" + event.errorCode);
+                default:
+                    break;
+            }
+        }
+    }
+}
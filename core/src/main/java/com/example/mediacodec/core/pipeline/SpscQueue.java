@@ -0,0 +1,174 @@
+package com.example.mediacodec.core.pipeline;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 有界无锁单生产者单消费者队列：只允许一个线程offer/put，一个线程poll/take。
+ * 生产者和消费者各自缓存对方的索引，只有看起来满或空时才读取对方的volatile索引；
+ * 发布索引用lazySet，不需要完整的内存屏障。
+ * <p>
+ * 阻塞版本的put/take在队列满或空时登记当前线程并park，对方操作后unpark它；
+ * park带有上限，即使错过唤醒也只会多等待{@link #MAX_PARK_NANOS}。
+ */
+public final class SpscQueue<E> {
+    static final long MAX_PARK_NANOS = 1000000L;
+
+    private final AtomicReferenceArray<E> mBuffer;
+    private final int mMask;
+    // 下一个poll的位置，只由消费者写入
+    private final AtomicLong mHead = new AtomicLong();
+    // 下一个offer的位置，只由生产者写入
+    private final AtomicLong mTail = new AtomicLong();
+    // 生产者缓存的mHead
+    private long mHeadCache;
+    // 消费者缓存的mTail
+    private long mTailCache;
+    private volatile Thread mWaitingProducer;
+    private volatile Thread mWaitingConsumer;
+
+    /**
+     * @param capacity 队列容量，向上取整为2的幂
+     */
+    public SpscQueue(int capacity) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("capacity=" + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        mBuffer = new AtomicReferenceArray<>(size);
+        mMask = size - 1;
+    }
+
+    public int capacity() {
+        return mMask + 1;
+    }
+
+    /**
+     * 队列中元素的个数，其他线程读取时只是近似值
+     */
+    public int size() {
+        return (int) (mTail.get() - mHead.get());
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * 只能由生产者调用
+     * @return 队列已满时返回false
+     */
+    public boolean offer(E e) {
+        if (e == null) {
+            throw new NullPointerException();
+        }
+        long tail = mTail.get();
+        if (tail - mHeadCache > mMask) {
+            mHeadCache = mHead.get();
+            if (tail - mHeadCache > mMask) {
+                return false;
+            }
+        }
+        mBuffer.lazySet((int) tail & mMask, e);
+        mTail.lazySet(tail + 1);
+        Thread consumer = mWaitingConsumer;
+        if (consumer != null) {
+            LockSupport.unpark(consumer);
+        }
+        return true;
+    }
+
+    /**
+     * 只能由消费者调用
+     * @return 队列为空时返回null
+     */
+    public E poll() {
+        long head = mHead.get();
+        if (head >= mTailCache) {
+            mTailCache = mTail.get();
+            if (head >= mTailCache) {
+                return null;
+            }
+        }
+        int index = (int) head & mMask;
+        E e = mBuffer.get(index);
+        mBuffer.lazySet(index, null);
+        mHead.lazySet(head + 1);
+        Thread producer = mWaitingProducer;
+        if (producer != null) {
+            LockSupport.unpark(producer);
+        }
+        return e;
+    }
+
+    /**
+     * 队列满时阻塞等待，只能由生产者调用
+     * @param timeoutNanos 最长等待时间，小于0表示一直等待
+     * @return 超时返回false
+     */
+    public boolean put(E e, long timeoutNanos) throws InterruptedException {
+        if (offer(e)) {
+            return true;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        Thread current = Thread.currentThread();
+        mWaitingProducer = current;
+        try {
+            while (!offer(e)) {
+                long wait = MAX_PARK_NANOS;
+                if (timeoutNanos >= 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return false;
+                    }
+                    wait = Math.min(wait, remaining);
+                }
+                LockSupport.parkNanos(this, wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return true;
+        } finally {
+            mWaitingProducer = null;
+        }
+    }
+
+    /**
+     * 队列空时阻塞等待，只能由消费者调用
+     * @param timeoutNanos 最长等待时间，小于0表示一直等待
+     * @return 超时返回null
+     */
+    public E take(long timeoutNanos) throws InterruptedException {
+        E e = poll();
+        if (e != null) {
+            return e;
+        }
+        long deadline = System.nanoTime() + timeoutNanos;
+        Thread current = Thread.currentThread();
+        mWaitingConsumer = current;
+        try {
+            while ((e = poll()) == null) {
+                long wait = MAX_PARK_NANOS;
+                if (timeoutNanos >= 0) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        return null;
+                    }
+                    wait = Math.min(wait, remaining);
+                }
+                LockSupport.parkNanos(this, wait);
+                if (Thread.interrupted()) {
+                    throw new InterruptedException();
+                }
+            }
+            return e;
+        } finally {
+            mWaitingConsumer = null;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.mediacodec.core.pipeline;
+
+/**
+ * 流水线单个阶段的计数器：处理的数据块数和字节数、工作时间、
+ * 等待上游数据的时间（starved）和等待下游空间的时间（blocked）。
+ * 只由该阶段的线程写入，其他线程可以随时读取。
+ */
+public final class StageStats {
+    private final String mName;
+    private volatile long mItems;
+    private volatile long mBytes;
+    private volatile long mBusyNanos;
+    private volatile long mStarvedNanos;
+    private volatile long mBlockedNanos;
+
+    public StageStats(String name) {
+        this.mName = name;
+    }
+
+    public String getName() {
+        return mName;
+    }
+
+    public void addItem(int bytes, long busyNanos) {
+        mItems++;
+        mBytes += bytes;
+        mBusyNanos += busyNanos;
+    }
+
+    public void addBusy(long busyNanos) {
+        mBusyNanos += busyNanos;
+    }
+
+    public void addStarved(long nanos) {
+        mStarvedNanos += nanos;
+    }
+
+    public void addBlocked(long nanos) {
+        mBlockedNanos += nanos;
+    }
+
+    public long getItems() {
+        return mItems;
+    }
+
+    public long getBytes() {
+        return mBytes;
+    }
+
+    public long getBusyNanos() {
+        return mBusyNanos;
+    }
+
+    public long getStarvedNanos() {
+        return mStarvedNanos;
+    }
+
+    public long getBlockedNanos() {
+        return mBlockedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return mName + "{items=" + mItems + ", bytes=" + mBytes
+                + ", busyMs=" + mBusyNanos / 1000000
+                + ", starvedMs=" + mStarvedNanos / 1000000
+                + ", blockedMs=" + mBlockedNanos / 1000000 + "}";
+    }
+}
@@ -0,0 +1,229 @@
+package com.example.mediacodec.core.playback;
+
+import com.example.mediacodec.core.io.PcmRingBuffer;
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把播放列表中的各项首尾相接写入同一个输出缓冲区，播放端只需要一个AudioTrack。
+ * <p>
+ * 每一项有自己的环形缓冲区（容量即预取量）：开始输出第i项时就启动第i+1项，
+ * 下一项在当前项播放期间解码，切换时数据已经就绪。拼接按字节进行，
+ * 每一项开头丢弃{@link PlaylistItem#getDelayFrames()}帧，末尾留住{@link PlaylistItem#getPaddingFrames()}帧不输出，
+ * 项与项之间不插入也不丢失任何采样。
+ * <p>
+ * 准备失败或中途出错的项被跳过。{@link #run}在调用者的线程中执行到列表结束，之后调用输出的finish()。
+ */
+public class GaplessPlaylist implements Runnable {
+    private static final int CHUNK_SIZE = 16 * 1024;
+
+    public interface Listener {
+        /**
+         * 第index项的第一帧已写入输出，startFrame是它在输出中的帧位置。在播放列表的线程中调用
+         */
+        void onItemStarted(int index, PlaylistItem item, long startFrame);
+
+        /**
+         * 第index项准备失败或中途出错，已跳过。error为null时表示生产者取消了数据
+         */
+        void onItemFailed(int index, PlaylistItem item, Throwable error);
+    }
+
+    private final PcmFormat mFormat;
+    private final PcmRingBuffer mOutput;
+    private final int mPrefetchBytes;
+    private final List<PlaylistItem> mItems = new ArrayList<>();
+    // 已启动还未输出完的项的缓冲区
+    private final Map<Integer, PcmRingBuffer> mBuffers = new HashMap<>();
+    private final Map<Integer, IOException> mErrors = new HashMap<>();
+    private final Map<Integer, Long> mStartFrames = new HashMap<>();
+    // 已启动的最大下标
+    private int mStarted = -1;
+    private Listener mListener;
+    private volatile boolean mCancelled;
+    private long mBytesOut;
+
+    /**
+     * @param format 所有项的PCM格式
+     * @param output 拼接后的输出，通常由{@link PcmRingBuffer}的消费者播放
+     * @param prefetchBytes 每一项缓冲区的容量，即预取的数据量
+     */
+    public GaplessPlaylist(PcmFormat format, PcmRingBuffer output, int prefetchBytes) {
+        if (prefetchBytes < format.getBytesPerFrame()) {
+            throw new IllegalArgumentException("prefetchBytes too small: " + prefetchBytes);
+        }
+        this.mFormat = format;
+        this.mOutput = output;
+        this.mPrefetchBytes = prefetchBytes;
+    }
+
+    public void setListener(Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * 添加到列表末尾，播放中也可以添加
+     */
+    public synchronized void add(PlaylistItem item) {
+        mItems.add(item);
+    }
+
+    public synchronized int size() {
+        return mItems.size();
+    }
+
+    public synchronized PlaylistItem get(int index) {
+        return mItems.get(index);
+    }
+
+    /**
+     * 第index项在输出中的起始帧，还没有开始输出（或被跳过）时返回-1
+     */
+    public synchronized long getStartFrame(int index) {
+        Long frame = mStartFrames.get(index);
+        return frame != null ? frame : -1;
+    }
+
+    /**
+     * 停止拼接，取消输出和所有已启动项的缓冲区，生产者随之停止
+     */
+    public void cancel() {
+        mCancelled = true;
+        mOutput.cancel();
+        synchronized (this) {
+            for (PcmRingBuffer buffer : mBuffers.values()) {
+                buffer.cancel();
+            }
+            mBuffers.clear();
+        }
+    }
+
+    public boolean isCancelled() {
+        return mCancelled;
+    }
+
+    @Override
+    public void run() {
+        try {
+            for (int index = 0; !mCancelled; index++) {
+                PcmRingBuffer buffer = prepare(index);
+                if (buffer == null) {
+                    break;
+                }
+                try {
+                    copy(index, buffer);
+                } finally {
+                    synchronized (this) {
+                        mBuffers.remove(index);
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            cancel();
+        } finally {
+            if (!mCancelled) {
+                mOutput.finish();
+            }
+        }
+    }
+
+    /**
+     * 启动第index项（已启动时直接返回它的缓冲区）
+     * @return 列表中没有这一项或已取消时返回null
+     */
+    private PcmRingBuffer prepare(int index) {
+        PlaylistItem item;
+        PcmRingBuffer buffer;
+        synchronized (this) {
+            if (index <= mStarted) {
+                //已启动；被取消后缓冲区已移除，返回null
+                return mBuffers.get(index);
+            }
+            if (index >= mItems.size() || mCancelled) {
+                return null;
+            }
+            item = mItems.get(index);
+            buffer = new PcmRingBuffer(mPrefetchBytes);
+            mBuffers.put(index, buffer);
+            mStarted = index;
+        }
+        try {
+            item.start(buffer);
+        } catch (IOException e) {
+            synchronized (this) {
+                mErrors.put(index, e);
+            }
+            buffer.cancel();
+        }
+        return buffer;
+    }
+
+    /**
+     * 把第index项去掉延迟和填充后写入输出，期间启动下一项
+     */
+    private void copy(int index, PcmRingBuffer input) throws InterruptedException {
+        PlaylistItem item = get(index);
+        int frameSize = mFormat.getBytesPerFrame();
+        long skip = 0;
+        int hold = 0;
+        if (!input.isCancelled()) {
+            skip = (long) Math.max(0, item.getDelayFrames()) * frameSize;
+            hold = Math.max(0, item.getPaddingFrames()) * frameSize;
+        }
+        // 末尾hold字节要等后面还有数据才能确定不是填充，留在buffer中
+        ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE + hold);
+        boolean started = false;
+        while (!mCancelled) {
+            prepare(index + 1);
+            if (input.read(buffer) < 0) {
+                break;
+            }
+            buffer.flip();
+            if (skip > 0) {
+                int n = (int) Math.min(skip, buffer.remaining());
+                buffer.position(buffer.position() + n);
+                skip -= n;
+            }
+            int forward = buffer.remaining() - hold;
+            if (forward > 0) {
+                if (!started) {
+                    started = true;
+                    onItemStarted(index, item);
+                }
+                int limit = buffer.limit();
+                buffer.limit(buffer.position() + forward);
+                if (!mOutput.write(buffer)) {
+                    //输出被消费者取消，停止全部生产者
+                    cancel();
+                    return;
+                }
+                mBytesOut += forward;
+                buffer.limit(limit);
+            }
+            buffer.compact();
+        }
+        if (!mCancelled && input.isCancelled() && mListener != null) {
+            IOException error;
+            synchronized (this) {
+                error = mErrors.remove(index);
+            }
+            mListener.onItemFailed(index, item, error);
+        }
+    }
+
+    private void onItemStarted(int index, PlaylistItem item) {
+        long startFrame = mBytesOut / mFormat.getBytesPerFrame();
+        synchronized (this) {
+            mStartFrames.put(index, startFrame);
+        }
+        if (mListener != null) {
+            mListener.onItemStarted(index, item, startFrame);
+        }
+    }
+}
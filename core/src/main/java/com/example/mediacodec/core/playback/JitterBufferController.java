@@ -0,0 +1,140 @@
+package com.example.mediacodec.core.playback;
+
+/**
+ * 播放缓冲（抖动缓冲）大小的控制器：欠载后增大，稳定一段时间后减小，在延迟和欠载之间自动取舍。
+ * 目标以帧为单位，总是burst（音频硬件一次取走的帧数）的整数倍，并在[min, max]之间。
+ * <p>
+ * 增大：每次欠载增大max(1个burst, 当前目标的一半)。增大后在新目标对应的时长内再发生的欠载只计数、不再增大，
+ * 因为缓冲还没来得及重新填满，同一次供数停顿往往连续造成几次欠载。
+ * <p>
+ * 减小：每个观察窗口（{@link #STABLE_NANOS}）内没有欠载时，看窗口内缓冲的最低水位，
+ * 比一个burst高出多少就最多减小多少（每次不超过当前目标的1/4）。
+ * 周期性的停顿会让最低水位接近0，这时不会减小，避免“减小-欠载-增大”的反复。
+ * <p>
+ * 不依赖Android，时间由调用方传入，测试中可以使用模拟的时钟。只能由一个线程调用。
+ */
+public class JitterBufferController {
+    // 观察窗口的长度
+    public static final long STABLE_NANOS = 2000000000L;
+
+    private final int mSampleRate;
+    private final int mBurstFrames;
+    private final int mMinFrames;
+    private final int mMaxFrames;
+    private int mTargetFrames;
+    private int mUnderrunCount;
+    private boolean mGrown;
+    private long mHoldoffEndNanos;
+    private boolean mWindowStarted;
+    private long mWindowStartNanos;
+    private int mLowWaterFrames = Integer.MAX_VALUE;
+
+    /**
+     * @param burstFrames 音频硬件一次取走的帧数，目标按它取整
+     * @param minFrames 目标的下限，至少一个burst
+     * @param maxFrames 目标的上限，通常是AudioTrack缓冲的容量
+     */
+    public JitterBufferController(int sampleRate, int burstFrames, int minFrames, int maxFrames) {
+        if (sampleRate <= 0 || burstFrames <= 0 || maxFrames < minFrames) {
+            throw new IllegalArgumentException(sampleRate + "Hz, burst " + burstFrames
+                    + ", min " + minFrames + ", max " + maxFrames);
+        }
+        this.mSampleRate = sampleRate;
+        this.mBurstFrames = burstFrames;
+        this.mMinFrames = Math.max(burstFrames, roundUp(minFrames));
+        this.mMaxFrames = Math.max(mMinFrames, maxFrames / burstFrames * burstFrames);
+        this.mTargetFrames = mMinFrames;
+    }
+
+    private int roundUp(int frames) {
+        return (frames + mBurstFrames - 1) / mBurstFrames * mBurstFrames;
+    }
+
+    private int clamp(int frames) {
+        return Math.max(mMinFrames, Math.min(mMaxFrames, roundUp(frames)));
+    }
+
+    public int getBurstFrames() {
+        return mBurstFrames;
+    }
+
+    public int getMinFrames() {
+        return mMinFrames;
+    }
+
+    public int getMaxFrames() {
+        return mMaxFrames;
+    }
+
+    /**
+     * 当前的目标缓冲帧数
+     */
+    public int getTargetFrames() {
+        return mTargetFrames;
+    }
+
+    /**
+     * 设置初始目标，按burst取整并限制在[min, max]之间
+     */
+    public void setTargetFrames(int frames) {
+        mTargetFrames = clamp(frames);
+    }
+
+    public int getUnderrunCount() {
+        return mUnderrunCount;
+    }
+
+    /**
+     * 发生了一次欠载
+     * @return 目标是否改变
+     */
+    public boolean onUnderrun(long nowNanos) {
+        mUnderrunCount++;
+        //欠载后重新开始观察窗口
+        mWindowStarted = true;
+        mWindowStartNanos = nowNanos;
+        mLowWaterFrames = Integer.MAX_VALUE;
+        if (mGrown && nowNanos - mHoldoffEndNanos < 0) {
+            return false;
+        }
+        int target = clamp(mTargetFrames + Math.max(mBurstFrames, mTargetFrames / 2));
+        mGrown = true;
+        mHoldoffEndNanos = nowNanos + target * 1000000000L / mSampleRate;
+        if (target == mTargetFrames) {
+            return false;
+        }
+        mTargetFrames = target;
+        return true;
+    }
+
+    /**
+     * 报告当前缓冲中的帧数，在每次补充数据之前（缓冲最空的时候）调用
+     * @return 目标是否改变
+     */
+    public boolean update(long nowNanos, int bufferedFrames) {
+        if (!mWindowStarted) {
+            mWindowStarted = true;
+            mWindowStartNanos = nowNanos;
+        }
+        mLowWaterFrames = Math.min(mLowWaterFrames, bufferedFrames);
+        if (nowNanos - mWindowStartNanos < STABLE_NANOS) {
+            return false;
+        }
+        int headroom = mLowWaterFrames - mBurstFrames;
+        mWindowStartNanos = nowNanos;
+        mLowWaterFrames = Integer.MAX_VALUE;
+        int shrink = Math.min(headroom, Math.max(mBurstFrames, mTargetFrames / 4)) / mBurstFrames * mBurstFrames;
+        if (shrink <= 0 || mTargetFrames == mMinFrames) {
+            return false;
+        }
+        mTargetFrames = Math.max(mMinFrames, mTargetFrames - shrink);
+        return true;
+    }
+
+    /**
+     * 目标对应的时长（微秒）
+     */
+    public long getTargetUs() {
+        return mTargetFrames * 1000000L / mSampleRate;
+    }
+}
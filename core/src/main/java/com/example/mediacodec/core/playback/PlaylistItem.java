@@ -0,0 +1,30 @@
+package com.example.mediacodec.core.playback;
+
+import com.example.mediacodec.core.io.PcmRingBuffer;
+
+import java.io.IOException;
+
+/**
+ * 播放列表中的一项。{@link GaplessPlaylist}在前一项还在播放时就调用{@link #start}开始准备数据，
+ * 数据写入有界的环形缓冲区，缓冲区满时生产者阻塞，预取占用的内存不超过缓冲区容量。
+ */
+public interface PlaylistItem {
+
+    String getName();
+
+    /**
+     * 开始把PCM数据（播放列表的格式）写入target，不等待数据写完。
+     * 写完后调用target.finish()，出错时调用target.cancel()；target被取消后生产者应尽快停止
+     */
+    void start(PcmRingBuffer target) throws IOException;
+
+    /**
+     * 开头要丢弃的帧数（编码器延迟），在start之后调用
+     */
+    int getDelayFrames();
+
+    /**
+     * 末尾要丢弃的帧数（编码器填充），在start之后调用
+     */
+    int getPaddingFrames();
+}
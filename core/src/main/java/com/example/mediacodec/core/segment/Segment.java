@@ -0,0 +1,63 @@
+package com.example.mediacodec.core.segment;
+
+/**
+ * 分段编码中的一段。输入是PCM中[inputStartFrame, inputEndFrame)的帧，
+ * 开头的{@link #getSkipFrames()}个AAC帧是与前一段重叠的预热部分，只用于建立编码器状态，拼接时丢弃。
+ */
+public final class Segment {
+    private final int mIndex;
+    private final long mInputStartFrame;
+    private final long mInputEndFrame;
+    private final int mSkipFrames;
+    private final long mKeepFrames;
+
+    Segment(int index, long inputStartFrame, long inputEndFrame, int skipFrames, long keepFrames) {
+        this.mIndex = index;
+        this.mInputStartFrame = inputStartFrame;
+        this.mInputEndFrame = inputEndFrame;
+        this.mSkipFrames = skipFrames;
+        this.mKeepFrames = keepFrames;
+    }
+
+    public int getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * 输入的第一个PCM帧（包括预热部分），是每个AAC帧采样数的整数倍
+     */
+    public long getInputStartFrame() {
+        return mInputStartFrame;
+    }
+
+    /**
+     * 输入结束的PCM帧（不包含）
+     */
+    public long getInputEndFrame() {
+        return mInputEndFrame;
+    }
+
+    /**
+     * 输出开头要丢弃的AAC帧数
+     */
+    public int getSkipFrames() {
+        return mSkipFrames;
+    }
+
+    /**
+     * 丢弃预热部分之后保留的AAC帧数，最后一段为-1，保留全部输出（包括编码器结束时冲出的帧）
+     */
+    public long getKeepFrames() {
+        return mKeepFrames;
+    }
+
+    public boolean isLast() {
+        return mKeepFrames < 0;
+    }
+
+    @Override
+    public String toString() {
+        return "Segment#" + mIndex + "[" + mInputStartFrame + ".." + mInputEndFrame
+                + ", skip=" + mSkipFrames + ", keep=" + mKeepFrames + "]";
+    }
+}
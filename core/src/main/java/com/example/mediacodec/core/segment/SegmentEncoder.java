@@ -0,0 +1,16 @@
+package com.example.mediacodec.core.segment;
+
+import com.example.mediacodec.core.io.AacSink;
+import com.example.mediacodec.core.job.JobContext;
+
+/**
+ * 编码一段PCM，由{@link SegmentedEncoder}在多个线程上并发调用，每次调用使用独立的编码器实例
+ */
+public interface SegmentEncoder {
+    /**
+     * 编码segment的输入范围（包括预热部分），每个输出帧依次交给output，不需要关闭output。
+     * 时间戳按PCM帧在整个文件中的位置计算
+     * @param context 取消时应尽快返回
+     */
+    void encode(Segment segment, AacSink output, JobContext context) throws Exception;
+}
@@ -0,0 +1,51 @@
+package com.example.mediacodec.core.segment;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把PCM输入按AAC帧对齐切分成若干段。
+ * <p>
+ * 各段的边界都在全局AAC帧网格上（采样数的整数倍），所以每段编码器输出的第k帧与整个文件一次编码时的
+ * 第(段起点/帧采样数 + k)帧对应同一段输入。每段从所属区间之前primingFrames个AAC帧处开始编码，
+ * 这几帧的输出用来让编码器的MDCT重叠和码率控制状态收敛，拼接时丢弃；
+ * 所属区间结束后的帧由下一段负责，编码器末尾冲出的帧也丢弃，只有最后一段保留全部输出。
+ */
+public final class SegmentPlanner {
+    public static final int DEFAULT_PRIMING_FRAMES = 4;
+
+    private SegmentPlanner() {
+    }
+
+    /**
+     * @param totalFrames PCM帧数
+     * @param segmentFrames 每段大约包含的PCM帧数，向上对齐到AAC帧
+     * @param samplesPerFrame 每个AAC帧的采样数，一般为1024
+     * @param primingFrames 每段开头重叠的AAC帧数
+     */
+    public static List<Segment> plan(long totalFrames, long segmentFrames, int samplesPerFrame, int primingFrames) {
+        if (totalFrames < 0 || segmentFrames <= 0 || samplesPerFrame <= 0 || primingFrames < 0) {
+            throw new IllegalArgumentException("totalFrames=" + totalFrames + ", segmentFrames=" + segmentFrames
+                    + ", samplesPerFrame=" + samplesPerFrame + ", primingFrames=" + primingFrames);
+        }
+        long aacFrames = (totalFrames + samplesPerFrame - 1) / samplesPerFrame;
+        long perSegment = (segmentFrames + samplesPerFrame - 1) / samplesPerFrame;
+        // 少于两倍预热长度的分段不划算，合并到整段编码
+        perSegment = Math.max(perSegment, 2L * primingFrames);
+        List<Segment> segments = new ArrayList<>();
+        long start = 0;
+        do {
+            long end = Math.min(aacFrames, start + perSegment);
+            // 最后剩下的一小段并入当前段
+            if (aacFrames - end < perSegment / 2) {
+                end = aacFrames;
+            }
+            long inputStart = Math.max(0, start - primingFrames);
+            boolean last = end == aacFrames;
+            segments.add(new Segment(segments.size(), inputStart * samplesPerFrame,
+                    last ? totalFrames : end * samplesPerFrame, (int) (start - inputStart), last ? -1 : end - start));
+            start = end;
+        } while (start < aacFrames);
+        return segments;
+    }
+}
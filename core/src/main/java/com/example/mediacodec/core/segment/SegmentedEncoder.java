@@ -0,0 +1,332 @@
+package com.example.mediacodec.core.segment;
+
+import com.example.mediacodec.core.codec.CodecBudget;
+import com.example.mediacodec.core.concurrent.Threads;
+import com.example.mediacodec.core.io.AacSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 在多个编码器实例上并发编码各段，再按顺序拼接成一路输出。
+ * <p>
+ * 各段按序号提交给parallelism个线程。序号最小的未完成段（head）的输出直接写入sink，
+ * 其余段的输出暂存在内存中，轮到它时一次写出；因此暂存的数据量约为parallelism段的输出。
+ * 每段开头的预热帧和末尾超出所属区间的帧在这里丢弃（见{@link SegmentPlanner}）。
+ * 第一段的AudioSpecificConfig传给sink，其余段的忽略。
+ * segments可以是完整计划的一部分（例如从检查点续接时的剩余各段），输出是完整编码时对应部分的输出。
+ * <p>
+ * 任何一段失败时取消其余各段，等它们都结束后run抛出第一个错误。
+ * <p>
+ * 设置了{@link CodecBudget}时每段编码前取得一个编码器名额、编码完归还，
+ * 同时存在的编码器实例数不超过设备的限制，与其他任务共用。
+ */
+public class SegmentedEncoder {
+
+    public interface Listener {
+        /**
+         * segment的输出已全部写入sink，之前各段也已写入。在持有内部锁时调用，期间不会有数据写入sink
+         */
+        void onSegmentWritten(Segment segment) throws IOException;
+    }
+
+    private final SegmentEncoder mEncoder;
+    private final int mParallelism;
+    private final Object mLock = new Object();
+    private Listener mListener;
+    private CodecBudget mBudget;
+
+    // 以下字段由mLock保护
+    private AacSink mSink;
+    private SegmentOutput[] mOutputs;
+    private int mHead;
+    private long mFramesWritten;
+    private IOException mSinkError;
+
+    private volatile boolean mFailed;
+
+    public SegmentedEncoder(SegmentEncoder encoder, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism must be positive: " + parallelism);
+        }
+        this.mEncoder = encoder;
+        this.mParallelism = parallelism;
+    }
+
+    public int getParallelism() {
+        return mParallelism;
+    }
+
+    public void setListener(Listener listener) {
+        this.mListener = listener;
+    }
+
+    /**
+     * 编码器实例的名额，为null（默认）时只受parallelism限制
+     */
+    public void setCodecBudget(CodecBudget budget) {
+        this.mBudget = budget;
+    }
+
+    /**
+     * 编码全部分段并按顺序写入sink，不关闭sink。
+     * 进度按已写入sink的段数报告给context
+     */
+    public void run(List<Segment> segments, AacSink sink, final JobContext context) throws Exception {
+        synchronized (mLock) {
+            mSink = sink;
+            mOutputs = new SegmentOutput[segments.size()];
+            for (int i = 0; i < mOutputs.length; i++) {
+                mOutputs[i] = new SegmentOutput(segments.get(i), i);
+            }
+            mHead = 0;
+            mFramesWritten = 0;
+            mSinkError = null;
+        }
+        mFailed = false;
+        final JobContext segmentContext = new JobContext() {
+            @Override
+            public boolean isCancelled() {
+                return mFailed || context.isCancelled();
+            }
+
+            @Override
+            public void setProgress(long done, long total) {
+                // 进度按拼接完成的段数计算
+            }
+
+            @Override
+            public void setMetrics(TranscodeMetrics metrics) {
+                // 各段共用调用方的指标
+            }
+        };
+        ExecutorService executor = Threads.newFixedThreadPool(mParallelism, "segment-encode");
+        List<Future<?>> futures = new ArrayList<>();
+        try {
+            for (final SegmentOutput output : mOutputs) {
+                futures.add(executor.submit(new Callable<Void>() {
+                    @Override
+                    public Void call() throws Exception {
+                        try {
+                            if (!segmentContext.isCancelled()) {
+                                encode(output, segmentContext);
+                            }
+                            output.finish(context);
+                            return null;
+                        } catch (Exception e) {
+                            mFailed = true;
+                            throw e;
+                        }
+                    }
+                }));
+            }
+            Exception error = null;
+            for (Future<?> future : futures) {
+                try {
+                    future.get();
+                } catch (ExecutionException e) {
+                    if (error == null && e.getCause() instanceof Exception) {
+                        error = (Exception) e.getCause();
+                    } else if (error == null) {
+                        throw new RuntimeException(e.getCause());
+                    }
+                }
+            }
+            if (error != null) {
+                throw error;
+            }
+            synchronized (mLock) {
+                if (mSinkError != null) {
+                    throw mSinkError;
+                }
+            }
+        } finally {
+            mFailed = true;
+            executor.shutdownNow();
+            //编码线程还可能访问sink和各段的输出，等它们都结束后再清理
+            Threads.awaitTerminationUninterruptibly(executor);
+            synchronized (mLock) {
+                mSink = null;
+                mOutputs = null;
+            }
+        }
+    }
+
+    /**
+     * 取得编码器名额后编码一段，等待名额期间被取消时不编码
+     */
+    private void encode(SegmentOutput output, JobContext segmentContext) throws Exception {
+        CodecBudget budget = mBudget;
+        if (budget == null) {
+            mEncoder.encode(output.mSegment, output, segmentContext);
+            return;
+        }
+        if (!budget.acquire(1, segmentContext)) {
+            return;
+        }
+        try {
+            mEncoder.encode(output.mSegment, output, segmentContext);
+        } finally {
+            budget.release(1);
+        }
+    }
+
+    /**
+     * 已写入sink的帧数
+     */
+    public long getFramesWritten() {
+        synchronized (mLock) {
+            return mFramesWritten;
+        }
+    }
+
+    /**
+     * 写入sink，调用时持有mLock。写入失败后记录错误并取消其余各段
+     */
+    private void writeToSink(ByteBuffer frame, long presentationTimeUs) throws IOException {
+        if (mSinkError != null) {
+            throw mSinkError;
+        }
+        try {
+            mSink.writeFrame(frame, presentationTimeUs);
+            mFramesWritten++;
+        } catch (IOException e) {
+            mSinkError = e;
+            mFailed = true;
+            throw e;
+        }
+    }
+
+    /**
+     * 一段的输出：丢弃预热帧和超出所属区间的帧，是head时直接写入sink，否则暂存
+     */
+    private final class SegmentOutput implements AacSink {
+        private final Segment mSegment;
+        // 在本次run的各段中的位置
+        private final int mPosition;
+        // 编码器输出的帧数（包括丢弃的）
+        private long mSeen;
+        // 暂存的帧：数据连续存放，每帧的大小和时间戳存在数组中
+        private byte[] mData = new byte[0];
+        private int mDataSize;
+        private int[] mSizes = new int[0];
+        private long[] mTimes = new long[0];
+        private int mCount;
+        private boolean mFinished;
+
+        SegmentOutput(Segment segment, int position) {
+            this.mSegment = segment;
+            this.mPosition = position;
+        }
+
+        @Override
+        public void setAudioSpecificConfig(ByteBuffer config) throws IOException {
+            if (mPosition == 0) {
+                synchronized (mLock) {
+                    mSink.setAudioSpecificConfig(config);
+                }
+            }
+        }
+
+        @Override
+        public void writeFrame(ByteBuffer frame, long presentationTimeUs) throws IOException {
+            long index = mSeen++;
+            long keep = mSegment.getKeepFrames();
+            if (index < mSegment.getSkipFrames() || (keep >= 0 && index >= mSegment.getSkipFrames() + keep)) {
+                frame.position(frame.limit());
+                return;
+            }
+            synchronized (mLock) {
+                if (mHead == mPosition) {
+                    writeToSink(frame, presentationTimeUs);
+                } else {
+                    buffer(frame, presentationTimeUs);
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            // 由SegmentedEncoder管理，编码器不需要关闭
+        }
+
+        /**
+         * 复制到暂存区，调用时持有mLock，与head切换时的drain互斥
+         */
+        private void buffer(ByteBuffer frame, long presentationTimeUs) {
+            int size = frame.remaining();
+            if (mDataSize + size > mData.length) {
+                mData = Arrays.copyOf(mData, Math.max(mDataSize + size, mData.length * 2));
+            }
+            if (mCount == mSizes.length) {
+                int capacity = Math.max(64, mCount * 2);
+                mSizes = Arrays.copyOf(mSizes, capacity);
+                mTimes = Arrays.copyOf(mTimes, capacity);
+            }
+            frame.get(mData, mDataSize, size);
+            mDataSize += size;
+            mSizes[mCount] = size;
+            mTimes[mCount] = presentationTimeUs;
+            mCount++;
+        }
+
+        /**
+         * 这一段编码完成：是head时把后面已完成的段依次写出，并让下一个未完成的段成为head
+         */
+        void finish(JobContext context) throws IOException {
+            synchronized (mLock) {
+                mFinished = true;
+                if (mHead != mPosition) {
+                    return;
+                }
+                mHead++;
+                onWritten(mSegment, context);
+                while (mHead < mOutputs.length) {
+                    SegmentOutput next = mOutputs[mHead];
+                    // next的编码线程写入时也持有mLock，drain之后的帧都直接写入sink，顺序不会乱
+                    next.drain();
+                    if (!next.mFinished) {
+                        break;
+                    }
+                    mHead++;
+                    onWritten(next.mSegment, context);
+                }
+                context.setProgress(mHead, mOutputs.length);
+            }
+        }
+
+        /**
+         * 调用时持有mLock。出错或取消后不再通知：取消时编码器提前返回，这一段的输出可能不完整
+         */
+        private void onWritten(Segment segment, JobContext context) throws IOException {
+            if (mListener != null && !mFailed && !context.isCancelled()) {
+                mListener.onSegmentWritten(segment);
+            }
+        }
+
+        /**
+         * 写出暂存的帧，调用时持有mLock
+         */
+        private void drain() throws IOException {
+            ByteBuffer data = ByteBuffer.wrap(mData);
+            int position = 0;
+            for (int i = 0; i < mCount; i++) {
+                data.limit(position + mSizes[i]).position(position);
+                writeToSink(data, mTimes[i]);
+                position += mSizes[i];
+            }
+            mData = new byte[0];
+            mDataSize = 0;
+            mCount = 0;
+        }
+    }
+}
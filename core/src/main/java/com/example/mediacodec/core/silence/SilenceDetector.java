@@ -0,0 +1,159 @@
+package com.example.mediacodec.core.silence;
+
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * 流式的静音检测：按{@link #WINDOW_MS}的窗口计算所有声道的RMS电平，带回差的两个门限判断静音和声音。
+ * 声音中的窗口低于门限时进入静音，静音中的窗口高于门限加回差才回到声音，介于两者之间时保持原状态。
+ * 中间的静音至少持续minSilenceFrames帧才记录；开头和结尾的静音不论长短都记录，是否裁剪由{@link SilenceMap#trim}决定。
+ * <p>
+ * 门限换算成均方值预先算好，{@link #accept}只做整数平方和与比较，不分配对象（记录的静音段数超过容量时数组加倍）。
+ * 非线程安全。
+ */
+public class SilenceDetector {
+    public static final int WINDOW_MS = 10;
+
+    private final PcmFormat mFormat;
+    private final int mChannels;
+    private final int mWindowSamples;
+    private final long mMinSilenceFrames;
+    // 窗口的均方值（16位采样）低于mQuietMeanSquare为静音窗口，高于mLoudMeanSquare为声音窗口
+    private final double mQuietMeanSquare;
+    private final double mLoudMeanSquare;
+
+    private long mWindowSum;
+    private int mWindowPosition;
+    private long mWindowStartFrame;
+    private boolean mSilent;
+    private long mSilenceStart;
+    // 静音段的起止帧，两个一组
+    private long[] mRanges = new long[32];
+    private int mRangeCount;
+
+    /**
+     * @param thresholdDb 进入静音的RMS电平（dBFS，满幅方波为0）
+     * @param hysteresisDb 回到声音需要再高出的电平
+     * @param minSilenceFrames 中间的静音至少持续的帧数
+     */
+    public SilenceDetector(PcmFormat format, double thresholdDb, double hysteresisDb, long minSilenceFrames) {
+        if (!(hysteresisDb >= 0) || minSilenceFrames < 0) {
+            throw new IllegalArgumentException("invalid detector: hysteresis " + hysteresisDb + "dB, min "
+                    + minSilenceFrames + " frames");
+        }
+        this.mFormat = format;
+        this.mChannels = format.getChannelCount();
+        this.mWindowSamples = (int) Math.max(1, (long) format.getSampleRate() * WINDOW_MS / 1000) * mChannels;
+        this.mMinSilenceFrames = minSilenceFrames;
+        this.mQuietMeanSquare = meanSquare(thresholdDb);
+        this.mLoudMeanSquare = meanSquare(thresholdDb + hysteresisDb);
+        reset();
+    }
+
+    private static double meanSquare(double db) {
+        double amplitude = 32768 * Math.pow(10, db / 20);
+        return amplitude * amplitude;
+    }
+
+    public PcmFormat getFormat() {
+        return mFormat;
+    }
+
+    /**
+     * 已检测的帧数
+     */
+    public long getTotalFrames() {
+        return mWindowStartFrame + mWindowPosition / mChannels;
+    }
+
+    /**
+     * 检测src中position到limit之间的16位PCM（按小端序，与src的order无关，必须是整帧），不改变src的position
+     */
+    public void accept(ByteBuffer src) {
+        boolean little = src.order() == ByteOrder.LITTLE_ENDIAN;
+        int index = src.position();
+        int end = src.limit();
+        long sum = mWindowSum;
+        int position = mWindowPosition;
+        int windowSamples = mWindowSamples;
+        while (index < end) {
+            int n = Math.min(windowSamples - position, (end - index) >> 1);
+            for (int i = 0; i < n; i++, index += 2) {
+                short value = src.getShort(index);
+                int sample = little ? value : Short.reverseBytes(value);
+                sum += sample * sample;
+            }
+            position += n;
+            if (position == windowSamples) {
+                endWindow(sum, position);
+                sum = 0;
+                position = 0;
+            }
+        }
+        mWindowSum = sum;
+        mWindowPosition = position;
+    }
+
+    private void endWindow(long sum, int samples) {
+        double meanSquare = (double) sum / samples;
+        if (mSilent) {
+            if (meanSquare > mLoudMeanSquare) {
+                endSilence(mWindowStartFrame, false);
+                mSilent = false;
+            }
+        } else if (meanSquare < mQuietMeanSquare) {
+            mSilent = true;
+            mSilenceStart = mWindowStartFrame;
+        }
+        mWindowStartFrame += samples / mChannels;
+    }
+
+    /**
+     * @param last 是否为结尾的静音
+     */
+    private void endSilence(long end, boolean last) {
+        if (end <= mSilenceStart) {
+            return;
+        }
+        //开头和结尾的静音不受最短时长限制
+        if (mSilenceStart > 0 && !last && end - mSilenceStart < mMinSilenceFrames) {
+            return;
+        }
+        if (mRangeCount * 2 == mRanges.length) {
+            mRanges = Arrays.copyOf(mRanges, mRanges.length * 2);
+        }
+        mRanges[mRangeCount * 2] = mSilenceStart;
+        mRanges[mRangeCount * 2 + 1] = end;
+        mRangeCount++;
+    }
+
+    /**
+     * 输入结束：不足一个窗口的尾部按实际长度判断，返回检测结果，之后可以检测新的流
+     */
+    public SilenceMap finish() {
+        if (mWindowPosition > 0) {
+            endWindow(mWindowSum, mWindowPosition);
+            mWindowSum = 0;
+            mWindowPosition = 0;
+        }
+        if (mSilent) {
+            endSilence(mWindowStartFrame, true);
+        }
+        SilenceMap map = new SilenceMap(mFormat, mWindowStartFrame, Arrays.copyOf(mRanges, mRangeCount * 2));
+        reset();
+        return map;
+    }
+
+    public void reset() {
+        mWindowSum = 0;
+        mWindowPosition = 0;
+        mWindowStartFrame = 0;
+        //开头在出现声音之前都算静音
+        mSilent = true;
+        mSilenceStart = 0;
+        mRangeCount = 0;
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.mediacodec.core.silence;
+
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import java.util.Arrays;
+
+/**
+ * {@link SilenceDetector}的检测结果：PCM的总帧数和按顺序排列、互不重叠的静音段[start, end)。不可变。
+ */
+public final class SilenceMap {
+    private final PcmFormat mFormat;
+    private final long mTotalFrames;
+    // 静音段的起止帧，两个一组
+    private final long[] mRanges;
+
+    SilenceMap(PcmFormat format, long totalFrames, long[] ranges) {
+        this.mFormat = format;
+        this.mTotalFrames = totalFrames;
+        this.mRanges = ranges;
+    }
+
+    public PcmFormat getFormat() {
+        return mFormat;
+    }
+
+    public long getTotalFrames() {
+        return mTotalFrames;
+    }
+
+    public int getRangeCount() {
+        return mRanges.length / 2;
+    }
+
+    public long getStartFrame(int index) {
+        return mRanges[index * 2];
+    }
+
+    public long getEndFrame(int index) {
+        return mRanges[index * 2 + 1];
+    }
+
+    /**
+     * 所有静音段的总帧数
+     */
+    public long getSilentFrames() {
+        long frames = 0;
+        for (int i = 0; i < mRanges.length; i += 2) {
+            frames += mRanges[i + 1] - mRanges[i];
+        }
+        return frames;
+    }
+
+    /**
+     * 按options决定去掉哪些静音：开头和结尾的静音去掉后在声音旁保留padding，
+     * 中间长于maxGap的静音压缩到maxGap（靠近前后声音的部分各保留一半）。全部是静音时只保留开头的padding
+     */
+    public TrimPlan trim(SilenceTrimOptions options) {
+        long padding = SilenceTrimOptions.msToFrames(mFormat, options.getPaddingMs());
+        long maxGap = options.getMaxGapMs() == SilenceTrimOptions.KEEP_GAPS ? -1
+                : SilenceTrimOptions.msToFrames(mFormat, options.getMaxGapMs());
+        long[] removed = new long[mRanges.length];
+        int[] reasons = new int[mRanges.length / 2];
+        int count = 0;
+        for (int i = 0; i < mRanges.length; i += 2) {
+            long start = mRanges[i];
+            long end = mRanges[i + 1];
+            boolean leading = start == 0;
+            boolean trailing = end == mTotalFrames;
+            long cutStart;
+            long cutEnd;
+            int reason;
+            if (leading && trailing) {
+                if (!options.isTrimLeading() && !options.isTrimTrailing()) {
+                    continue;
+                }
+                cutStart = Math.min(padding, end);
+                cutEnd = end;
+                reason = TrimPlan.REASON_ALL;
+            } else if (leading) {
+                if (!options.isTrimLeading()) {
+                    continue;
+                }
+                cutStart = 0;
+                cutEnd = Math.max(0, end - padding);
+                reason = TrimPlan.REASON_LEADING;
+            } else if (trailing) {
+                if (!options.isTrimTrailing()) {
+                    continue;
+                }
+                cutStart = Math.min(end, start + padding);
+                cutEnd = end;
+                reason = TrimPlan.REASON_TRAILING;
+            } else {
+                if (maxGap < 0 || end - start <= maxGap) {
+                    continue;
+                }
+                cutStart = start + maxGap / 2;
+                cutEnd = end - (maxGap - maxGap / 2);
+                reason = TrimPlan.REASON_GAP;
+            }
+            if (cutEnd > cutStart) {
+                removed[count * 2] = cutStart;
+                removed[count * 2 + 1] = cutEnd;
+                reasons[count] = reason;
+                count++;
+            }
+        }
+        return new TrimPlan(mFormat, mTotalFrames, Arrays.copyOf(removed, count * 2), Arrays.copyOf(reasons, count));
+    }
+
+    @Override
+    public String toString() {
+        return "SilenceMap{" + getRangeCount() + " ranges, " + getSilentFrames() + "/" + mTotalFrames + " frames}";
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.mediacodec.core.silence;
+
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import java.util.Locale;
+
+/**
+ * 静音检测和裁剪的参数：检测门限、回差和最短静音时长，是否裁掉开头和结尾的静音，中间的长静音压缩到多长，
+ * 以及裁剪开头结尾时在声音旁边保留多少静音。不可变，用{@link Builder}创建。
+ */
+public final class SilenceTrimOptions {
+    /**
+     * {@link Builder#setMaxGapMs}的取值，表示不压缩中间的静音
+     */
+    public static final long KEEP_GAPS = -1;
+
+    public static final SilenceTrimOptions DEFAULT = new Builder().build();
+
+    private final double mThresholdDb;
+    private final double mHysteresisDb;
+    private final long mMinSilenceMs;
+    private final boolean mTrimLeading;
+    private final boolean mTrimTrailing;
+    private final long mMaxGapMs;
+    private final long mPaddingMs;
+
+    private SilenceTrimOptions(Builder builder) {
+        this.mThresholdDb = builder.mThresholdDb;
+        this.mHysteresisDb = builder.mHysteresisDb;
+        this.mMinSilenceMs = builder.mMinSilenceMs;
+        this.mTrimLeading = builder.mTrimLeading;
+        this.mTrimTrailing = builder.mTrimTrailing;
+        this.mMaxGapMs = builder.mMaxGapMs;
+        this.mPaddingMs = builder.mPaddingMs;
+    }
+
+    public double getThresholdDb() {
+        return mThresholdDb;
+    }
+
+    public double getHysteresisDb() {
+        return mHysteresisDb;
+    }
+
+    public long getMinSilenceMs() {
+        return mMinSilenceMs;
+    }
+
+    public boolean isTrimLeading() {
+        return mTrimLeading;
+    }
+
+    public boolean isTrimTrailing() {
+        return mTrimTrailing;
+    }
+
+    /**
+     * 中间的静音压缩后的最大时长，{@link #KEEP_GAPS}表示不压缩
+     */
+    public long getMaxGapMs() {
+        return mMaxGapMs;
+    }
+
+    public long getPaddingMs() {
+        return mPaddingMs;
+    }
+
+    /**
+     * 按这些参数检测format的PCM
+     */
+    public SilenceDetector newDetector(PcmFormat format) {
+        return new SilenceDetector(format, mThresholdDb, mHysteresisDb, msToFrames(format, mMinSilenceMs));
+    }
+
+    static long msToFrames(PcmFormat format, long ms) {
+        return ms * format.getSampleRate() / 1000;
+    }
+
+    /**
+     * 影响裁剪结果的全部参数，用于缓存的key和检查点的配置
+     */
+    public String toKey() {
+        return String.format(Locale.US, "silence:%.2f:%.2f:%d:%b:%b:%d:%d", mThresholdDb, mHysteresisDb,
+                mMinSilenceMs, mTrimLeading, mTrimTrailing, mMaxGapMs, mPaddingMs);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof SilenceTrimOptions)) {
+            return false;
+        }
+        return toKey().equals(((SilenceTrimOptions) o).toKey());
+    }
+
+    @Override
+    public int hashCode() {
+        return toKey().hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "SilenceTrimOptions[" + mThresholdDb + "dBFS+" + mHysteresisDb + "dB, min " + mMinSilenceMs + "ms"
+                + (mTrimLeading ? ", leading" : "") + (mTrimTrailing ? ", trailing" : "")
+                + (mMaxGapMs != KEEP_GAPS ? ", gaps " + mMaxGapMs + "ms" : "") + ", padding " + mPaddingMs + "ms]";
+    }
+
+    public static final class Builder {
+        private double mThresholdDb = -50;
+        private double mHysteresisDb = 6;
+        private long mMinSilenceMs = 500;
+        private boolean mTrimLeading = true;
+        private boolean mTrimTrailing = true;
+        private long mMaxGapMs = 1000;
+        private long mPaddingMs = 200;
+
+        public Builder() {
+        }
+
+        public Builder(SilenceTrimOptions options) {
+            this.mThresholdDb = options.mThresholdDb;
+            this.mHysteresisDb = options.mHysteresisDb;
+            this.mMinSilenceMs = options.mMinSilenceMs;
+            this.mTrimLeading = options.mTrimLeading;
+            this.mTrimTrailing = options.mTrimTrailing;
+            this.mMaxGapMs = options.mMaxGapMs;
+            this.mPaddingMs = options.mPaddingMs;
+        }
+
+        /**
+         * 10ms窗口的RMS电平（dBFS）低于该值时进入静音，默认-50
+         */
+        public Builder setThresholdDb(double thresholdDb) {
+            this.mThresholdDb = thresholdDb;
+            return this;
+        }
+
+        /**
+         * 静音中的窗口电平高于门限加回差才回到声音，默认6dB，避免在门限附近来回切换
+         */
+        public Builder setHysteresisDb(double hysteresisDb) {
+            this.mHysteresisDb = hysteresisDb;
+            return this;
+        }
+
+        /**
+         * 中间的静音至少持续这么久才记录，默认500ms，词句之间的停顿不算静音。开头和结尾的静音不受限制
+         */
+        public Builder setMinSilenceMs(long minSilenceMs) {
+            this.mMinSilenceMs = minSilenceMs;
+            return this;
+        }
+
+        public Builder setTrimLeading(boolean trimLeading) {
+            this.mTrimLeading = trimLeading;
+            return this;
+        }
+
+        public Builder setTrimTrailing(boolean trimTrailing) {
+            this.mTrimTrailing = trimTrailing;
+            return this;
+        }
+
+        /**
+         * 长于该值的中间静音压缩到该值（前后各保留一半），默认1000ms，{@link #KEEP_GAPS}表示不压缩
+         */
+        public Builder setMaxGapMs(long maxGapMs) {
+            this.mMaxGapMs = maxGapMs;
+            return this;
+        }
+
+        /**
+         * 裁剪开头和结尾时在声音旁保留的静音，默认200ms，避免切掉低于门限的起音和余音
+         */
+        public Builder setPaddingMs(long paddingMs) {
+            this.mPaddingMs = paddingMs;
+            return this;
+        }
+
+        public SilenceTrimOptions build() {
+            if (!(mThresholdDb < 0) || !(mHysteresisDb >= 0) || mThresholdDb + mHysteresisDb > 0) {
+                throw new IllegalArgumentException("invalid threshold: " + mThresholdDb + "dB+" + mHysteresisDb + "dB");
+            }
+            if (mMinSilenceMs < 0 || mPaddingMs < 0) {
+                throw new IllegalArgumentException("invalid duration: min " + mMinSilenceMs + "ms, padding "
+                        + mPaddingMs + "ms");
+            }
+            if (mMaxGapMs < 0 && mMaxGapMs != KEEP_GAPS) {
+                throw new IllegalArgumentException("invalid max gap: " + mMaxGapMs);
+            }
+            return new SilenceTrimOptions(this);
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package com.example.mediacodec.core.silence;
+
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * 裁剪静音的方案：从源PCM中去掉的段和保留的段，以及输出帧与源帧之间的换算。
+ * 保留的段首尾相接就是裁剪后的PCM（见{@link TrimmedPcmSource}）。
+ * {@link #toJson}给出去掉的各段在源和输出中的位置，用于把输出中的时间对应回原始录音。不可变。
+ */
+public final class TrimPlan {
+    static final int REASON_LEADING = 0;
+    static final int REASON_GAP = 1;
+    static final int REASON_TRAILING = 2;
+    static final int REASON_ALL = 3;
+    private static final String[] REASON_NAMES = {"leading", "gap", "trailing", "all"};
+
+    private final PcmFormat mFormat;
+    private final long mSourceFrames;
+    // 去掉的段的起止帧，两个一组，以及原因
+    private final long[] mRemoved;
+    private final int[] mReasons;
+    // 保留的段的起止帧，两个一组，以及每段在输出中的起始帧
+    private final long[] mKept;
+    private final long[] mOutputStarts;
+    private final long mOutputFrames;
+
+    TrimPlan(PcmFormat format, long sourceFrames, long[] removed, int[] reasons) {
+        this.mFormat = format;
+        this.mSourceFrames = sourceFrames;
+        this.mRemoved = removed;
+        this.mReasons = reasons;
+        int removedCount = reasons.length;
+        long[] kept = new long[(removedCount + 1) * 2];
+        long[] outputStarts = new long[removedCount + 1];
+        int count = 0;
+        long position = 0;
+        long output = 0;
+        for (int i = 0; i <= removedCount; i++) {
+            long end = i < removedCount ? removed[i * 2] : sourceFrames;
+            if (end > position) {
+                kept[count * 2] = position;
+                kept[count * 2 + 1] = end;
+                outputStarts[count] = output;
+                output += end - position;
+                count++;
+            }
+            if (i < removedCount) {
+                position = removed[i * 2 + 1];
+            }
+        }
+        this.mKept = Arrays.copyOf(kept, count * 2);
+        this.mOutputStarts = Arrays.copyOf(outputStarts, count);
+        this.mOutputFrames = output;
+    }
+
+    /**
+     * 不裁剪的方案
+     */
+    public static TrimPlan identity(PcmFormat format, long frames) {
+        return new TrimPlan(format, frames, new long[0], new int[0]);
+    }
+
+    public PcmFormat getFormat() {
+        return mFormat;
+    }
+
+    public long getSourceFrames() {
+        return mSourceFrames;
+    }
+
+    public long getOutputFrames() {
+        return mOutputFrames;
+    }
+
+    public long getRemovedFrames() {
+        return mSourceFrames - mOutputFrames;
+    }
+
+    public boolean isIdentity() {
+        return mOutputFrames == mSourceFrames;
+    }
+
+    public int getRemovedCount() {
+        return mReasons.length;
+    }
+
+    public long getRemovedStart(int index) {
+        return mRemoved[index * 2];
+    }
+
+    public long getRemovedEnd(int index) {
+        return mRemoved[index * 2 + 1];
+    }
+
+    public int getKeptCount() {
+        return mOutputStarts.length;
+    }
+
+    public long getKeptStart(int index) {
+        return mKept[index * 2];
+    }
+
+    public long getKeptEnd(int index) {
+        return mKept[index * 2 + 1];
+    }
+
+    /**
+     * 第index个保留段在输出中的起始帧
+     */
+    public long getOutputStart(int index) {
+        return mOutputStarts[index];
+    }
+
+    /**
+     * 包含输出帧outputFrame的保留段，outputFrame等于输出总帧数时返回最后一段
+     */
+    public int findKept(long outputFrame) {
+        int low = 0;
+        int high = mOutputStarts.length - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            if (mOutputStarts[mid] <= outputFrame) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * 输出帧对应的源帧
+     */
+    public long toSourceFrame(long outputFrame) {
+        if (outputFrame < 0 || outputFrame > mOutputFrames) {
+            throw new IllegalArgumentException("output frame out of range: " + outputFrame + "/" + mOutputFrames);
+        }
+        if (mOutputStarts.length == 0) {
+            return 0;
+        }
+        int index = findKept(outputFrame);
+        return mKept[index * 2] + outputFrame - mOutputStarts[index];
+    }
+
+    /**
+     * 源帧在输出中的位置，落在去掉的段中时为该段在输出中的位置（前后两个保留段的拼接处）
+     */
+    public long toOutputFrame(long sourceFrame) {
+        long output = sourceFrame;
+        for (int i = 0; i < mReasons.length && mRemoved[i * 2] < sourceFrame; i++) {
+            output -= Math.min(sourceFrame, mRemoved[i * 2 + 1]) - mRemoved[i * 2];
+        }
+        return output;
+    }
+
+    /**
+     * 不含换行的JSON对象：源和输出的帧数与时长，以及去掉的各段。每段给出原因（leading、gap、trailing或all）、
+     * 在源中的起止帧和时间（微秒），以及在输出中的位置
+     */
+    public String toJson() {
+        StringBuilder sb = new StringBuilder(128 + mReasons.length * 128);
+        sb.append("{\"sampleRate\":").append(mFormat.getSampleRate())
+                .append(",\"channels\":").append(mFormat.getChannelCount())
+                .append(",\"sourceFrames\":").append(mSourceFrames)
+                .append(",\"sourceUs\":").append(mFormat.framesToUs(mSourceFrames))
+                .append(",\"outputFrames\":").append(mOutputFrames)
+                .append(",\"outputUs\":").append(mFormat.framesToUs(mOutputFrames))
+                .append(",\"removed\":[");
+        for (int i = 0; i < mReasons.length; i++) {
+            long start = mRemoved[i * 2];
+            long end = mRemoved[i * 2 + 1];
+            long output = toOutputFrame(start);
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append("{\"reason\":\"").append(REASON_NAMES[mReasons[i]])
+                    .append("\",\"startFrame\":").append(start)
+                    .append(",\"endFrame\":").append(end)
+                    .append(",\"startUs\":").append(mFormat.framesToUs(start))
+                    .append(",\"endUs\":").append(mFormat.framesToUs(end))
+                    .append(",\"outputFrame\":").append(output)
+                    .append(",\"outputUs\":").append(mFormat.framesToUs(output))
+                    .append('}');
+        }
+        return sb.append("]}").toString();
+    }
+
+    /**
+     * 把{@link #toJson}写入file。先写临时文件再改名，读取方不会看到写了一半的数据
+     */
+    public void saveJson(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        boolean saved = false;
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                out.write(toJson().getBytes("UTF-8"));
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            saved = temp.renameTo(file);
+            if (!saved) {
+                throw new IOException("rename failed: " + file);
+            }
+        } finally {
+            if (!saved) {
+                temp.delete();
+            }
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "TrimPlan{" + mSourceFrames + " -> " + mOutputFrames + " frames, " + mReasons.length + " cuts}";
+    }
+}
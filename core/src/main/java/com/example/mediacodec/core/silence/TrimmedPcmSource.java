@@ -0,0 +1,90 @@
+package com.example.mediacodec.core.silence;
+
+import com.example.mediacodec.core.pcm.PcmFormat;
+import com.example.mediacodec.core.pcm.PcmSource;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 按{@link TrimPlan}只读取保留段的PCM数据源：各保留段首尾相接，帧位置和总帧数都按裁剪后的输出计算，
+ * 编码器得到连续的时间戳，分段编码也按裁剪后的帧切分。数据仍是源的视图，不复制。
+ * 每次{@link #next}最多读到当前保留段的末尾，下一次读取前再定位到下一段。
+ */
+public class TrimmedPcmSource implements PcmSource {
+    private final PcmSource mSource;
+    private final TrimPlan mPlan;
+    private final int mFrameSize;
+    // 当前的保留段和输出帧位置
+    private int mIndex;
+    private long mPosition;
+
+    public TrimmedPcmSource(PcmSource source, TrimPlan plan) throws IOException {
+        if (!source.getFormat().equals(plan.getFormat()) || source.getFrameCount() != plan.getSourceFrames()) {
+            throw new IllegalArgumentException("plan " + plan + " does not match source " + source.getFormat()
+                    + ", " + source.getFrameCount() + " frames");
+        }
+        this.mSource = source;
+        this.mPlan = plan;
+        this.mFrameSize = source.getFormat().getBytesPerFrame();
+        seekToFrame(0);
+    }
+
+    public TrimPlan getPlan() {
+        return mPlan;
+    }
+
+    @Override
+    public PcmFormat getFormat() {
+        return mSource.getFormat();
+    }
+
+    @Override
+    public long getFrameCount() {
+        return mPlan.getOutputFrames();
+    }
+
+    @Override
+    public long getFramePosition() {
+        return mPosition;
+    }
+
+    @Override
+    public void seekToFrame(long frame) throws IOException {
+        mPosition = Math.max(0, Math.min(frame, mPlan.getOutputFrames()));
+        if (mPlan.getKeptCount() == 0) {
+            return;
+        }
+        mIndex = mPlan.findKept(mPosition);
+        mSource.seekToFrame(mPlan.toSourceFrame(mPosition));
+    }
+
+    @Override
+    public ByteBuffer next(int maxBytes) throws IOException {
+        if (maxBytes < mFrameSize) {
+            throw new IllegalArgumentException("maxBytes smaller than one frame: " + maxBytes);
+        }
+        if (mPosition >= mPlan.getOutputFrames()) {
+            return null;
+        }
+        long keptEnd = mPlan.getOutputStart(mIndex) + mPlan.getKeptEnd(mIndex) - mPlan.getKeptStart(mIndex);
+        if (mPosition == keptEnd) {
+            //上一次读到了当前段的末尾，返回的视图已经用完，这时才定位到下一段
+            mIndex++;
+            mSource.seekToFrame(mPlan.getKeptStart(mIndex));
+            keptEnd = mPlan.getOutputStart(mIndex) + mPlan.getKeptEnd(mIndex) - mPlan.getKeptStart(mIndex);
+        }
+        long frames = Math.min(maxBytes / mFrameSize, keptEnd - mPosition);
+        ByteBuffer data = mSource.next((int) frames * mFrameSize);
+        if (data == null) {
+            throw new IOException("source ended at output frame " + mPosition + "/" + mPlan.getOutputFrames());
+        }
+        mPosition += data.remaining() / mFrameSize;
+        return data;
+    }
+
+    @Override
+    public void close() throws IOException {
+        mSource.close();
+    }
+}
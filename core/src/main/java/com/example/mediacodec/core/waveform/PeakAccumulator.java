@@ -0,0 +1,226 @@
+package com.example.mediacodec.core.waveform;
+
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 边解码边计算波形的峰值金字塔（见{@link PeakPyramid}）：每收到一块16位交错PCM就累加到当前块，
+ * 第0层每满blockFrames帧得到一个min/max/RMS（所有声道合在一起），每层相邻两块合并成上一层的一块。
+ * <p>
+ * {@link #accept}不分配对象：各层的数组按预计帧数预先分配，超出时才加倍扩容；
+ * {@link #reset}保留数组，同一个实例可以重复使用。不是线程安全的。
+ */
+public class PeakAccumulator {
+    private final PcmFormat mFormat;
+    private final int mBlockFrames;
+    private final int mBlockSamples;
+    private final List<Level> mLevels = new ArrayList<>();
+
+    // 当前第0层块的累加值
+    private int mMin;
+    private int mMax;
+    private long mSumSquares;
+    private int mSamples;
+    private long mTotalFrames;
+
+    /**
+     * @param blockFrames 第0层每块的帧数
+     * @param expectedFrames 预计的总帧数（例如音轨时长换算的帧数），用于预先分配数组，不知道时传0
+     */
+    public PeakAccumulator(PcmFormat format, int blockFrames, long expectedFrames) {
+        if (blockFrames <= 0) {
+            throw new IllegalArgumentException("invalid block frames: " + blockFrames);
+        }
+        this.mFormat = format;
+        this.mBlockFrames = blockFrames;
+        this.mBlockSamples = blockFrames * format.getChannelCount();
+        long blocks = Math.max(1, (expectedFrames + blockFrames - 1) / blockFrames);
+        int capacity = (int) Math.min(blocks, Integer.MAX_VALUE / 2);
+        while (true) {
+            mLevels.add(new Level(capacity));
+            if (capacity == 1) {
+                break;
+            }
+            capacity = (capacity + 1) / 2;
+        }
+        resetBlock();
+    }
+
+    public PcmFormat getFormat() {
+        return mFormat;
+    }
+
+    public int getBlockFrames() {
+        return mBlockFrames;
+    }
+
+    /**
+     * 已累加的帧数
+     */
+    public long getTotalFrames() {
+        return mTotalFrames + mSamples / mFormat.getChannelCount();
+    }
+
+    /**
+     * 累加src中position到limit之间的PCM（按小端序，与src的order无关），不改变src的position、limit和order。
+     * 数据不必按帧对齐
+     */
+    public void accept(ByteBuffer src) {
+        boolean little = src.order() == ByteOrder.LITTLE_ENDIAN;
+        int position = src.position();
+        int end = position + (src.remaining() & ~1);
+        int min = mMin;
+        int max = mMax;
+        long sumSquares = mSumSquares;
+        int samples = mSamples;
+        while (position < end) {
+            int blockEnd = Math.min(end, position + (mBlockSamples - samples) * 2);
+            samples += (blockEnd - position) / 2;
+            for (; position < blockEnd; position += 2) {
+                short value = src.getShort(position);
+                int sample = little ? value : Short.reverseBytes(value);
+                if (sample < min) {
+                    min = sample;
+                }
+                if (sample > max) {
+                    max = sample;
+                }
+                sumSquares += sample * sample;
+            }
+            if (samples == mBlockSamples) {
+                push(0, (short) min, (short) max, rms(sumSquares, samples), mBlockFrames);
+                min = Short.MAX_VALUE;
+                max = Short.MIN_VALUE;
+                sumSquares = 0;
+                samples = 0;
+            }
+        }
+        mMin = min;
+        mMax = max;
+        mSumSquares = sumSquares;
+        mSamples = samples;
+    }
+
+    private static short rms(long sumSquares, int samples) {
+        return (short) Math.min(Short.MAX_VALUE, Math.round(Math.sqrt((double) sumSquares / samples)));
+    }
+
+    private void resetBlock() {
+        mMin = Short.MAX_VALUE;
+        mMax = Short.MIN_VALUE;
+        mSumSquares = 0;
+        mSamples = 0;
+    }
+
+    /**
+     * 在level层追加一块，和同层前一块凑成一对时合并到上一层
+     * @param frames 这一块的帧数，只有最后一块可能不满
+     */
+    private void push(int level, short min, short max, short rms, long frames) {
+        if (level == mLevels.size()) {
+            mLevels.add(new Level(1));
+        }
+        Level l = mLevels.get(level);
+        l.add(min, max, rms, frames);
+        if (level == 0) {
+            mTotalFrames += frames;
+        }
+        if ((l.mCount & 1) == 0) {
+            int first = l.mCount - 2;
+            long fullFrames = (long) mBlockFrames << level;
+            push(level + 1, (short) Math.min(l.mMin[first], min), (short) Math.max(l.mMax[first], max),
+                    mergeRms(l.mRms[first], fullFrames, rms, frames), fullFrames + frames);
+        }
+    }
+
+    private static short mergeRms(short a, long aFrames, short b, long bFrames) {
+        double meanSquare = ((double) a * a * aFrames + (double) b * b * bFrames) / (aFrames + bFrames);
+        return (short) Math.min(Short.MAX_VALUE, Math.round(Math.sqrt(meanSquare)));
+    }
+
+    /**
+     * 结束累加：不满一块的剩余帧作为第0层的最后一块，各层落单的最后一块单独并入上一层，直到顶层只有一块
+     * @return 没有任何数据时返回null
+     */
+    public PeakPyramid finish() {
+        if (mSamples >= mFormat.getChannelCount()) {
+            int frames = mSamples / mFormat.getChannelCount();
+            push(0, (short) mMin, (short) mMax, rms(mSumSquares, mSamples), frames);
+        }
+        resetBlock();
+        if (mLevels.get(0).mCount == 0) {
+            return null;
+        }
+        int levelCount = 0;
+        for (int i = 0; i < mLevels.size(); i++) {
+            Level l = mLevels.get(i);
+            levelCount = i + 1;
+            if (l.mCount == 1) {
+                break;
+            }
+            if ((l.mCount & 1) == 1) {
+                int last = l.mCount - 1;
+                push(i + 1, l.mMin[last], l.mMax[last], l.mRms[last], l.mLastFrames);
+            }
+        }
+        short[][] min = new short[levelCount][];
+        short[][] max = new short[levelCount][];
+        short[][] rms = new short[levelCount][];
+        for (int i = 0; i < levelCount; i++) {
+            Level l = mLevels.get(i);
+            min[i] = Arrays.copyOf(l.mMin, l.mCount);
+            max[i] = Arrays.copyOf(l.mMax, l.mCount);
+            rms[i] = Arrays.copyOf(l.mRms, l.mCount);
+        }
+        return new PeakPyramid(mFormat, mBlockFrames, mTotalFrames, min, max, rms);
+    }
+
+    /**
+     * 清空累加的数据，保留已分配的数组
+     */
+    public void reset() {
+        for (Level level : mLevels) {
+            level.mCount = 0;
+            level.mLastFrames = 0;
+        }
+        mTotalFrames = 0;
+        resetBlock();
+    }
+
+    /**
+     * 一层的块，数组满时加倍
+     */
+    private static final class Level {
+        short[] mMin;
+        short[] mMax;
+        short[] mRms;
+        int mCount;
+        // 最后一块的帧数
+        long mLastFrames;
+
+        Level(int capacity) {
+            mMin = new short[capacity];
+            mMax = new short[capacity];
+            mRms = new short[capacity];
+        }
+
+        void add(short min, short max, short rms, long frames) {
+            if (mCount == mMin.length) {
+                int capacity = mCount * 2;
+                mMin = Arrays.copyOf(mMin, capacity);
+                mMax = Arrays.copyOf(mMax, capacity);
+                mRms = Arrays.copyOf(mRms, capacity);
+            }
+            mMin[mCount] = min;
+            mMax[mCount] = max;
+            mRms[mCount] = rms;
+            mCount++;
+            mLastFrames = frames;
+        }
+    }
+}
@@ -0,0 +1,306 @@
+package com.example.mediacodec.core.waveform;
+
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 音频的波形摘要：多层的min/max/RMS峰值，第0层每块blockFrames帧，第n层每块blockFrames*2^n帧，
+ * 顶层只有一块。由{@link PeakAccumulator}在解码时生成，每层是三个short数组。
+ * <p>
+ * {@link #render}选择每块不超过一个像素的最粗的一层，按像素聚合，耗时只与像素数成正比，
+ * 任意缩放级别都不需要读取PCM。可以保存到音频文件旁的sidecar文件（{@link #SIDECAR_SUFFIX}），
+ * 文件的大小或修改时间变化后sidecar失效。
+ */
+public final class PeakPyramid {
+    public static final String SIDECAR_SUFFIX = ".peaks";
+
+    private static final int MAGIC = 0x5045414B; // "PEAK"
+    private static final int VERSION = 1;
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // sidecar头部：magic、version、源文件大小、修改时间、采样率、声道数、每块帧数、总帧数、层数
+    private static final int SIDECAR_HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4 + 8 + 4;
+    // 层数的上限，第0层一帧一块时也足够表示int范围的块数
+    private static final int MAX_LEVELS = 32;
+
+    private final PcmFormat mFormat;
+    private final int mBlockFrames;
+    private final long mTotalFrames;
+    private final short[][] mMin;
+    private final short[][] mMax;
+    private final short[][] mRms;
+
+    PeakPyramid(PcmFormat format, int blockFrames, long totalFrames, short[][] min, short[][] max, short[][] rms) {
+        this.mFormat = format;
+        this.mBlockFrames = blockFrames;
+        this.mTotalFrames = totalFrames;
+        this.mMin = min;
+        this.mMax = max;
+        this.mRms = rms;
+    }
+
+    public PcmFormat getFormat() {
+        return mFormat;
+    }
+
+    public long getTotalFrames() {
+        return mTotalFrames;
+    }
+
+    public int getLevelCount() {
+        return mMin.length;
+    }
+
+    /**
+     * level层每块的帧数
+     */
+    public long getBlockFrames(int level) {
+        return (long) mBlockFrames << level;
+    }
+
+    public int getBlockCount(int level) {
+        return mMin[level].length;
+    }
+
+    public short getMin(int level, int block) {
+        return mMin[level][block];
+    }
+
+    public short getMax(int level, int block) {
+        return mMax[level][block];
+    }
+
+    public short getRms(int level, int block) {
+        return mRms[level][block];
+    }
+
+    /**
+     * 每块不超过framesPerPixel帧的最粗的一层，framesPerPixel小于第0层的块时为第0层
+     */
+    public int selectLevel(double framesPerPixel) {
+        int level = 0;
+        while (level + 1 < mMin.length && getBlockFrames(level + 1) <= framesPerPixel) {
+            level++;
+        }
+        return level;
+    }
+
+    /**
+     * 把[startFrame, endFrame)区间画成pixels列：第i列是该列帧范围覆盖的各块的min、max和RMS。
+     * 缩放到一列不足一块时相邻几列取同一块；超出音频末尾的列为0。不分配对象
+     * @param outMin 长度不小于pixels，outMax、outRms同样
+     */
+    public void render(long startFrame, long endFrame, int pixels, short[] outMin, short[] outMax, short[] outRms) {
+        if (endFrame <= startFrame || pixels <= 0) {
+            throw new IllegalArgumentException("invalid render range: " + startFrame + ".." + endFrame + ", " + pixels);
+        }
+        long frames = endFrame - startFrame;
+        int level = selectLevel((double) frames / pixels);
+        long blockFrames = getBlockFrames(level);
+        short[] min = mMin[level];
+        short[] max = mMax[level];
+        short[] rms = mRms[level];
+        for (int i = 0; i < pixels; i++) {
+            long from = startFrame + frames * i / pixels;
+            long to = startFrame + frames * (i + 1) / pixels;
+            int first = (int) Math.min(Math.max(0, from) / blockFrames, min.length);
+            // 至少取一块，列的帧范围落在块内部时也有值
+            int last = (int) Math.min(Math.max(first + 1, (Math.max(0, to) + blockFrames - 1) / blockFrames), min.length);
+            int pixelMin = 0;
+            int pixelMax = 0;
+            double sumSquares = 0;
+            if (first < last) {
+                pixelMin = Short.MAX_VALUE;
+                pixelMax = Short.MIN_VALUE;
+                for (int b = first; b < last; b++) {
+                    pixelMin = Math.min(pixelMin, min[b]);
+                    pixelMax = Math.max(pixelMax, max[b]);
+                    sumSquares += (double) rms[b] * rms[b];
+                }
+                sumSquares /= last - first;
+            }
+            outMin[i] = (short) pixelMin;
+            outMax[i] = (short) pixelMax;
+            outRms[i] = (short) Math.round(Math.sqrt(sumSquares));
+        }
+    }
+
+    public static File sidecarFile(File audio) {
+        return new File(audio.getPath() + SIDECAR_SUFFIX);
+    }
+
+    /**
+     * 读取audio对应的sidecar
+     * @return sidecar不存在、已过期或损坏时返回null
+     */
+    public static PeakPyramid load(File audio) {
+        File sidecar = sidecarFile(audio);
+        if (!sidecar.isFile()) {
+            return null;
+        }
+        try {
+            FileInputStream in = new FileInputStream(sidecar);
+            try {
+                return readFrom(in.getChannel(), audio.length(), audio.lastModified());
+            } finally {
+                in.close();
+            }
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 写入audio对应的sidecar文件。先写临时文件再改名，读取方不会看到写了一半的数据
+     */
+    public void save(File audio) throws IOException {
+        File sidecar = sidecarFile(audio);
+        File temp = new File(sidecar.getPath() + ".tmp");
+        boolean saved = false;
+        try {
+            FileOutputStream out = new FileOutputStream(temp);
+            try {
+                writeTo(out.getChannel(), audio.length(), audio.lastModified());
+                out.getFD().sync();
+            } finally {
+                out.close();
+            }
+            saved = temp.renameTo(sidecar);
+            if (!saved) {
+                throw new IOException("rename failed: " + sidecar);
+            }
+        } finally {
+            if (!saved) {
+                temp.delete();
+            }
+        }
+    }
+
+    /**
+     * 按sidecar格式写出：头部之后每层先写块数，再依次写min、max、RMS数组（大端short）
+     * @param sourceLength 源文件大小，读取时用于判断是否过期
+     * @param sourceModified 源文件修改时间
+     */
+    public void writeTo(WritableByteChannel channel, long sourceLength, long sourceModified) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.putInt(MAGIC);
+        buffer.putInt(VERSION);
+        buffer.putLong(sourceLength);
+        buffer.putLong(sourceModified);
+        buffer.putInt(mFormat.getSampleRate());
+        buffer.putInt(mFormat.getChannelCount());
+        buffer.putInt(mBlockFrames);
+        buffer.putLong(mTotalFrames);
+        buffer.putInt(mMin.length);
+        for (int level = 0; level < mMin.length; level++) {
+            if (buffer.remaining() < 4) {
+                drain(channel, buffer);
+            }
+            buffer.putInt(mMin[level].length);
+            writeShorts(channel, buffer, mMin[level]);
+            writeShorts(channel, buffer, mMax[level]);
+            writeShorts(channel, buffer, mRms[level]);
+        }
+        drain(channel, buffer);
+    }
+
+    /**
+     * 读取sidecar格式的数据
+     * @return 源文件的大小或修改时间与记录的不一致时返回null
+     * @throws IOException 读取失败或数据不完整
+     */
+    public static PeakPyramid readFrom(ReadableByteChannel channel, long sourceLength, long sourceModified)
+            throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        buffer.limit(SIDECAR_HEADER_SIZE);
+        fill(channel, buffer);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return null;
+        }
+        if (buffer.getLong() != sourceLength || buffer.getLong() != sourceModified) {
+            return null;
+        }
+        PcmFormat format;
+        try {
+            format = new PcmFormat(buffer.getInt(), buffer.getInt());
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage());
+        }
+        int blockFrames = buffer.getInt();
+        long totalFrames = buffer.getLong();
+        int levelCount = buffer.getInt();
+        if (blockFrames <= 0 || totalFrames <= 0 || levelCount <= 0 || levelCount > MAX_LEVELS) {
+            throw new IOException("invalid peaks header: " + blockFrames + ", " + totalFrames + ", " + levelCount);
+        }
+        short[][] min = new short[levelCount][];
+        short[][] max = new short[levelCount][];
+        short[][] rms = new short[levelCount][];
+        long expected = (totalFrames + blockFrames - 1) / blockFrames;
+        for (int level = 0; level < levelCount; level++) {
+            buffer.clear().limit(4);
+            fill(channel, buffer);
+            int count = buffer.getInt();
+            if (count != expected || (count == 1) != (level == levelCount - 1)) {
+                throw new IOException("invalid block count at level " + level + ": " + count);
+            }
+            min[level] = readShorts(channel, buffer, count);
+            max[level] = readShorts(channel, buffer, count);
+            rms[level] = readShorts(channel, buffer, count);
+            expected = (expected + 1) / 2;
+        }
+        return new PeakPyramid(format, blockFrames, totalFrames, min, max, rms);
+    }
+
+    private static void writeShorts(WritableByteChannel channel, ByteBuffer buffer, short[] values)
+            throws IOException {
+        int offset = 0;
+        while (offset < values.length) {
+            if (buffer.remaining() < 2) {
+                drain(channel, buffer);
+            }
+            int n = Math.min(values.length - offset, buffer.remaining() / 2);
+            buffer.asShortBuffer().put(values, offset, n);
+            buffer.position(buffer.position() + n * 2);
+            offset += n;
+        }
+    }
+
+    private static short[] readShorts(ReadableByteChannel channel, ByteBuffer buffer, int count) throws IOException {
+        short[] values = new short[count];
+        int offset = 0;
+        while (offset < count) {
+            int n = Math.min(count - offset, buffer.capacity() / 2);
+            buffer.clear().limit(n * 2);
+            fill(channel, buffer);
+            buffer.asShortBuffer().get(values, offset, n);
+            offset += n;
+        }
+        return values;
+    }
+
+    /**
+     * 读满buffer的position到limit并flip
+     */
+    private static void fill(ReadableByteChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("truncated peaks");
+            }
+        }
+        buffer.flip();
+    }
+
+    private static void drain(WritableByteChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.mediacodec.core.waveform;
+
+import com.example.mediacodec.core.io.DataSink;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 把写入的16位PCM交给{@link PeakAccumulator}累加后原样写入下游的DataSink，解码的同时生成波形摘要
+ */
+public class PeakSink implements DataSink {
+    private final DataSink mSink;
+    private final PeakAccumulator mAccumulator;
+
+    public PeakSink(DataSink sink, PeakAccumulator accumulator) {
+        this.mSink = sink;
+        this.mAccumulator = accumulator;
+    }
+
+    public PeakAccumulator getAccumulator() {
+        return mAccumulator;
+    }
+
+    @Override
+    public void write(ByteBuffer src) throws IOException {
+        mAccumulator.accept(src);
+        mSink.write(src);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        mSink.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        mSink.close();
+    }
+}
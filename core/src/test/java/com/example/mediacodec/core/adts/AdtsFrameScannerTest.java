@@ -0,0 +1,129 @@
+package com.example.mediacodec.core.adts;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class AdtsFrameScannerTest {
+    private final AdtsWriter mWriter = new AdtsWriter(AdtsHeader.of(48000, 1, AdtsHeader.OBJECT_LC));
+
+    @Test
+    public void scan_findsEveryFrameAcrossBufferBoundaries() throws Exception {
+        Random random = new Random(1);
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        List<Long> offsets = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            byte[] payload = new byte[1 + random.nextInt(1500)];
+            random.nextBytes(payload);
+            offsets.add((long) stream.size());
+            lengths.add(payload.length + AdtsHeader.HEADER_SIZE);
+            appendFrame(stream, payload);
+        }
+
+        AdtsFrameScanner scanner = new AdtsFrameScanner(
+                Channels.newChannel(new java.io.ByteArrayInputStream(stream.toByteArray())),
+                AdtsHeader.MAX_FRAME_LENGTH);
+        int count = 0;
+        while (scanner.next()) {
+            assertEquals(offsets.get(count).longValue(), scanner.frameOffset());
+            assertEquals(lengths.get(count).intValue(), scanner.frameLength());
+            assertEquals(lengths.get(count) - AdtsHeader.HEADER_SIZE, scanner.payload().remaining());
+            assertEquals(AdtsHeader.SAMPLES_PER_FRAME, scanner.frameSamples());
+            count++;
+        }
+        assertEquals(500, count);
+        assertEquals(0, scanner.getSkippedBytes());
+    }
+
+    @Test
+    public void scan_resyncsAfterGarbageAndDropsTruncatedTail() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        stream.write(new byte[]{0x01, (byte) 0xFF, 0x00, 0x42});
+        appendFrame(stream, new byte[]{1, 2, 3});
+        stream.write(new byte[]{(byte) 0xFF});
+        appendFrame(stream, new byte[]{4, 5});
+        byte[] bytes = stream.toByteArray();
+        // 末尾再加一个只有一半的帧
+        ByteArrayOutputStream tail = new ByteArrayOutputStream();
+        appendFrame(tail, new byte[100]);
+        stream.write(tail.toByteArray(), 0, 50);
+
+        AdtsFrameScanner scanner = new AdtsFrameScanner(
+                Channels.newChannel(new java.io.ByteArrayInputStream(stream.toByteArray())));
+        assertTrue(scanner.next());
+        assertEquals(4, scanner.frameOffset());
+        assertTrue(scanner.next());
+        assertEquals(4 + 10 + 1, scanner.frameOffset());
+        ByteBuffer payload = scanner.payload();
+        assertEquals(4, payload.get());
+        assertEquals(5, payload.get());
+        assertFalse(scanner.next());
+        assertEquals(5 + 50, scanner.getSkippedBytes());
+        assertEquals(bytes.length + 50, stream.size());
+    }
+
+    @Test
+    public void scan_randomDataNeverThrows() throws Exception {
+        Random random = new Random(7);
+        for (int round = 0; round < 50; round++) {
+            byte[] data = new byte[random.nextInt(40000)];
+            random.nextBytes(data);
+            // 撒一些同步字，增加误判的机会
+            for (int i = 0; i + 1 < data.length; i += 1 + random.nextInt(200)) {
+                data[i] = (byte) 0xFF;
+                data[i + 1] = (byte) 0xF1;
+            }
+            AdtsFrameScanner scanner = new AdtsFrameScanner(
+                    Channels.newChannel(new java.io.ByteArrayInputStream(data)), AdtsHeader.MAX_FRAME_LENGTH);
+            long covered = 0;
+            while (scanner.next()) {
+                assertTrue(scanner.frameOffset() + scanner.frameLength() <= data.length);
+                covered += scanner.frameLength();
+            }
+            assertEquals(data.length, covered + scanner.getSkippedBytes());
+        }
+    }
+
+    @Test
+    public void gatherWrite_toFileChannel() throws Exception {
+        File file = File.createTempFile("adts", ".aac");
+        try {
+            FileChannel channel = new FileOutputStream(file).getChannel();
+            byte[] payload = {9, 8, 7, 6, 5};
+            assertEquals(12, mWriter.write(channel, ByteBuffer.wrap(payload)));
+            assertEquals(12, mWriter.write(channel, ByteBuffer.wrap(payload)));
+            channel.close();
+
+            RandomAccessFile in = new RandomAccessFile(file, "r");
+            AdtsFrameScanner scanner = new AdtsFrameScanner(in.getChannel());
+            assertTrue(scanner.next());
+            assertEquals(mWriter.getHeader(), AdtsHeader.parse(scanner.frame()));
+            assertTrue(scanner.next());
+            assertEquals(12, scanner.frameOffset());
+            assertFalse(scanner.next());
+            in.close();
+        } finally {
+            file.delete();
+        }
+    }
+
+    private void appendFrame(ByteArrayOutputStream stream, byte[] payload) {
+        ByteBuffer header = mWriter.header(payload.length);
+        byte[] bytes = new byte[header.remaining()];
+        header.get(bytes);
+        stream.write(bytes, 0, bytes.length);
+        stream.write(payload, 0, payload.length);
+    }
+}
@@ -0,0 +1,114 @@
+package com.example.mediacodec.core.adts;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class AdtsHeaderTest {
+
+    @Test
+    public void lcStereo44100_matchesLegacyHeader() {
+        AdtsHeader header = AdtsHeader.of(44100, 2, AdtsHeader.OBJECT_LC);
+        for (int packetLen : new int[]{7, 8, 200, 371, 2047, 2048, 8191}) {
+            byte[] legacy = new byte[7];
+            legacyAddADTStoPacket(legacy, packetLen);
+            ByteBuffer buffer = ByteBuffer.allocate(7);
+            header.write(buffer, packetLen);
+            byte[] actual = buffer.array();
+            // 第二个字节的ID位：旧实现写MPEG-2（0xF9），这里写MPEG-4（0xF1），其余位一致
+            assertEquals(legacy[1] & ~0x08, actual[1]);
+            actual[1] = legacy[1];
+            assertArrayEquals("packetLen=" + packetLen, legacy, actual);
+        }
+    }
+
+    @Test
+    public void sampleRateIndex_coversStandardTable() {
+        int[] rates = {96000, 88200, 64000, 48000, 44100, 32000, 24000, 22050, 16000, 12000, 11025, 8000, 7350};
+        for (int i = 0; i < rates.length; i++) {
+            assertEquals(i, AdtsHeader.sampleRateIndex(rates[i]));
+            assertEquals(rates[i], AdtsHeader.sampleRate(i));
+        }
+        assertEquals(4, AdtsHeader.sampleRateIndex(44000));
+    }
+
+    @Test
+    public void channelConfig_mapsEightChannelsToSevenOne() {
+        for (int channels = 1; channels <= 6; channels++) {
+            assertEquals(channels, AdtsHeader.channelConfig(channels));
+        }
+        assertEquals(7, AdtsHeader.channelConfig(8));
+        assertEquals(8, AdtsHeader.channelCount(7));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void channelConfig_rejectsSevenChannels() {
+        AdtsHeader.channelConfig(7);
+    }
+
+    @Test
+    public void heProfiles_useImplicitSignalling() {
+        AdtsHeader he = AdtsHeader.of(44100, 2, AdtsHeader.OBJECT_HE);
+        assertEquals(AdtsHeader.OBJECT_LC, he.getObjectType());
+        assertEquals(22050, he.getSampleRate());
+        assertEquals(2, he.getChannelConfig());
+
+        AdtsHeader hePs = AdtsHeader.of(48000, 2, AdtsHeader.OBJECT_HE_PS);
+        assertEquals(AdtsHeader.OBJECT_LC, hePs.getObjectType());
+        assertEquals(24000, hePs.getSampleRate());
+        assertEquals(1, hePs.getChannelConfig());
+    }
+
+    @Test
+    public void parse_roundTrips() {
+        for (int objectType = AdtsHeader.OBJECT_MAIN; objectType <= AdtsHeader.OBJECT_LTP; objectType++) {
+            for (int index = 0; index < 13; index++) {
+                for (int config = 0; config <= 7; config++) {
+                    AdtsHeader header = new AdtsHeader(objectType, index, config);
+                    ByteBuffer buffer = ByteBuffer.allocate(7);
+                    header.write(buffer, 1000);
+                    buffer.flip();
+                    assertEquals(header, AdtsHeader.parse(buffer));
+                    assertEquals(1000, AdtsFrameScanner.parseFrameLength(buffer, 0, 7));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void audioSpecificConfig_lcStereo44100() {
+        ByteBuffer buffer = ByteBuffer.allocate(2);
+        AdtsHeader.of(44100, 2, AdtsHeader.OBJECT_LC).writeAudioSpecificConfig(buffer);
+        assertArrayEquals(new byte[]{0x12, 0x10}, buffer.array());
+    }
+
+    @Test
+    public void fromAudioSpecificConfig_roundTripsAndMapsHeToLc() {
+        AdtsHeader header = AdtsHeader.of(48000, 6, AdtsHeader.OBJECT_LC);
+        ByteBuffer config = ByteBuffer.allocate(2);
+        header.writeAudioSpecificConfig(config);
+        config.flip();
+        assertEquals(header, AdtsHeader.fromAudioSpecificConfig(config));
+        assertEquals(0, config.position());
+
+        // HE-AAC显式信令：AOT 5，扩展部分之前是核心的22050Hz立体声
+        ByteBuffer he = ByteBuffer.wrap(new byte[]{0x2B, (byte) 0x92, 0x08, 0x00});
+        assertEquals(AdtsHeader.of(44100, 2, AdtsHeader.OBJECT_HE), AdtsHeader.fromAudioSpecificConfig(he));
+    }
+
+    private static void legacyAddADTStoPacket(byte[] packet, int packetLen) {
+        int profile = 2; // AAC LC
+        int freqIdx = 4; // 44.1KHz
+        int chanCfg = 2; // CPE
+
+        packet[0] = (byte) 0xFF;
+        packet[1] = (byte) 0xF9;
+        packet[2] = (byte) (((profile - 1) << 6) + (freqIdx << 2) + (chanCfg >> 2));
+        packet[3] = (byte) (((chanCfg & 3) << 6) + (packetLen >> 11));
+        packet[4] = (byte) ((packetLen & 0x7FF) >> 3);
+        packet[5] = (byte) (((packetLen & 7) << 5) + 0x1F);
+        packet[6] = (byte) 0xFC;
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.mediacodec.core.adts;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.*;
+
+public class AdtsIndexTest {
+    private static final int FRAME_COUNT = 3000;
+
+    private final AdtsWriter mWriter = new AdtsWriter(AdtsHeader.of(44100, 2, AdtsHeader.OBJECT_LC));
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("adts", ".aac");
+    }
+
+    @After
+    public void tearDown() {
+        AdtsIndex.sidecarFile(mFile).delete();
+        mFile.delete();
+    }
+
+    private static int payloadSize(int frame) {
+        return 50 + frame * 13 % 400;
+    }
+
+    /**
+     * 每帧payload的第一个字节为帧序号的低8位
+     */
+    private byte[] writeStream() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            byte[] payload = new byte[payloadSize(i)];
+            payload[0] = (byte) i;
+            ByteBuffer header = mWriter.header(payload.length);
+            byte[] bytes = new byte[header.remaining()];
+            header.get(bytes);
+            stream.write(bytes, 0, bytes.length);
+            stream.write(payload, 0, payload.length);
+        }
+        byte[] data = stream.toByteArray();
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(data);
+        out.close();
+        return data;
+    }
+
+    private static AdtsIndex build(byte[] data) throws Exception {
+        return AdtsIndex.build(Channels.newChannel(new java.io.ByteArrayInputStream(data)));
+    }
+
+    @Test
+    public void build_mapsFramesToOffsetsAndTimes() throws Exception {
+        byte[] data = writeStream();
+        AdtsIndex index = build(data);
+        assertEquals(FRAME_COUNT, index.getFrameCount());
+        assertEquals(mWriter.getHeader(), index.getHeader());
+        assertEquals(data.length, index.getEndOffset());
+        long offset = 0;
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            assertEquals(offset, index.getFrameOffset(i));
+            assertEquals((long) i * 1024 * 1000000 / 44100, index.getFrameTimeUs(i));
+            offset += AdtsHeader.HEADER_SIZE + payloadSize(i);
+        }
+        assertEquals((long) FRAME_COUNT * 1024 * 1000000 / 44100, index.getDurationUs());
+    }
+
+    @Test
+    public void findFrame_returnsFrameContainingTime() throws Exception {
+        AdtsIndex index = build(writeStream());
+        assertEquals(0, index.findFrame(-5));
+        assertEquals(0, index.findFrame(0));
+        for (int i = 1; i < FRAME_COUNT; i += 97) {
+            long timeUs = index.getFrameTimeUs(i);
+            assertEquals(i, index.findFrame(timeUs + 1));
+            assertEquals(i - 1, index.findFrame(timeUs - 1));
+        }
+        assertEquals(FRAME_COUNT - 1, index.findFrame(Long.MAX_VALUE / 44100));
+    }
+
+    @Test
+    public void build_handlesFramesWithSeveralRawBlocks() throws Exception {
+        ByteArrayOutputStream stream = new ByteArrayOutputStream();
+        int[] blocks = {1, 1, 3, 1, 4, 2};
+        for (int count : blocks) {
+            byte[] frame = new byte[AdtsHeader.HEADER_SIZE + 20];
+            ByteBuffer header = mWriter.header(20);
+            header.get(frame, 0, AdtsHeader.HEADER_SIZE);
+            frame[6] = (byte) ((frame[6] & 0xFC) | (count - 1));
+            stream.write(frame, 0, frame.length);
+        }
+        AdtsIndex index = build(stream.toByteArray());
+        long samples = 0;
+        for (int i = 0; i < blocks.length; i++) {
+            assertEquals(samples, index.getFrameSample(i));
+            assertEquals(i, index.findFrame(index.getFrameTimeUs(i) + 1));
+            samples += blocks[i] * 1024L;
+        }
+        assertEquals(samples, index.getFrameSample(blocks.length));
+
+        ByteArrayOutputStream sidecar = new ByteArrayOutputStream();
+        index.writeTo(Channels.newChannel(sidecar), 1, 2);
+        AdtsIndex read = AdtsIndex.readFrom(
+                Channels.newChannel(new java.io.ByteArrayInputStream(sidecar.toByteArray())), 1, 2);
+        for (int i = 0; i <= blocks.length; i++) {
+            assertEquals(index.getFrameSample(i), read.getFrameSample(i));
+        }
+    }
+
+    @Test
+    public void load_writesSidecarAndReusesIt() throws Exception {
+        writeStream();
+        AdtsIndex built = AdtsIndex.load(mFile);
+        File sidecar = AdtsIndex.sidecarFile(mFile);
+        assertTrue(sidecar.isFile());
+        // 每帧4字节
+        assertTrue(sidecar.length() < 64 + FRAME_COUNT * 4);
+
+        AdtsIndex loaded = AdtsIndex.load(mFile);
+        assertEquals(built.getFrameCount(), loaded.getFrameCount());
+        assertEquals(built.getEndOffset(), loaded.getEndOffset());
+        assertEquals(built.getHeader(), loaded.getHeader());
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            assertEquals(built.getFrameOffset(i), loaded.getFrameOffset(i));
+        }
+    }
+
+    @Test
+    public void load_rebuildsStaleOrCorruptSidecar() throws Exception {
+        writeStream();
+        AdtsIndex.load(mFile);
+        File sidecar = AdtsIndex.sidecarFile(mFile);
+        assertNull(AdtsIndex.readFrom(new RandomAccessFile(sidecar, "r").getChannel(),
+                mFile.length() + 1, mFile.lastModified()));
+
+        RandomAccessFile truncated = new RandomAccessFile(sidecar, "rw");
+        truncated.setLength(sidecar.length() / 2);
+        truncated.close();
+        assertEquals(FRAME_COUNT, AdtsIndex.load(mFile).getFrameCount());
+        // 重新写入了完整的sidecar
+        assertEquals(FRAME_COUNT, AdtsIndex.readFrom(new RandomAccessFile(sidecar, "r").getChannel(),
+                mFile.length(), mFile.lastModified()).getFrameCount());
+    }
+
+    @Test
+    public void rangeSource_startsBeforeRangeForPriming() throws Exception {
+        writeStream();
+        AdtsIndex index = AdtsIndex.load(mFile);
+        long startUs = index.getFrameTimeUs(1000) + 10;
+        long endUs = index.getFrameTimeUs(1200) + 10;
+        FileChannel channel = new RandomAccessFile(mFile, "r").getChannel();
+        AdtsRangeSource source = new AdtsRangeSource(channel, index, startUs, endUs);
+        assertEquals(1000 - AdtsRangeSource.PRIMING_FRAMES, source.getFirstFrame());
+        assertEquals(1201, source.getEndFrame());
+
+        ByteBuffer buffer = ByteBuffer.allocate(1024);
+        int frame = source.getFirstFrame();
+        do {
+            buffer.position(3);
+            int size = source.readSampleData(buffer);
+            assertEquals(3, buffer.position());
+            assertEquals(payloadSize(frame), size);
+            assertEquals((byte) frame, buffer.get(3));
+            assertEquals(index.getFrameTimeUs(frame), source.getSampleTime());
+            frame++;
+        } while (source.advance());
+        assertEquals(1201, frame);
+        assertEquals(-1, source.readSampleData(buffer));
+        assertEquals(-1, source.getSampleTime());
+
+        // 从头开始和到文件末尾的区间
+        source = new AdtsRangeSource(channel, index, 0, Long.MAX_VALUE / 2);
+        assertEquals(0, source.getFirstFrame());
+        assertEquals(FRAME_COUNT, source.getEndFrame());
+        channel.close();
+    }
+}
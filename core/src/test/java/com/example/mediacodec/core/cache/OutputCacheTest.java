@@ -0,0 +1,166 @@
+package com.example.mediacodec.core.cache;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class OutputCacheTest {
+    private File mDir;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("cache", "");
+        mDir.delete();
+        mDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        deleteTree(mDir);
+    }
+
+    private static void deleteTree(File file) {
+        File[] children = file.listFiles();
+        if (children != null) {
+            for (File child : children) {
+                deleteTree(child);
+            }
+        }
+        file.delete();
+    }
+
+    private File write(String name, int size, int seed) throws IOException {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        File file = new File(mDir, name);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+        return file;
+    }
+
+    private static byte[] read(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        FileInputStream in = new FileInputStream(file);
+        try {
+            int n = 0;
+            while (n < data.length) {
+                n += in.read(data, n, data.length - n);
+            }
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    @Test
+    public void key_dependsOnContentAndParams() throws Exception {
+        File a = write("a.pcm", 200000, 1);
+        File sameAsA = write("copy.pcm", 200000, 1);
+        File b = write("b.pcm", 200000, 2);
+        String key = OutputCache.key(a, "aac:96000");
+        assertEquals(64, key.length());
+        assertEquals(key, OutputCache.key(sameAsA, "aac:96000"));
+        assertNotEquals(key, OutputCache.key(b, "aac:96000"));
+        assertNotEquals(key, OutputCache.key(a, "aac:128000"));
+    }
+
+    @Test
+    public void putAndGet_roundTrip() throws Exception {
+        OutputCache cache = new OutputCache(new File(mDir, "cache"), 1000);
+        File result = write("result.m4a", 300, 5);
+        assertNull(cache.get("k1"));
+        cache.put("k1", result);
+        assertTrue(result.isFile());
+        assertArrayEquals(read(result), read(cache.get("k1")));
+
+        File target = new File(mDir, "target.m4a");
+        assertTrue(cache.copyTo("k1", target));
+        assertArrayEquals(read(result), read(target));
+        assertFalse(cache.copyTo("k2", new File(mDir, "other.m4a")));
+        assertFalse(new File(mDir, "other.m4a").exists());
+        assertEquals(300, cache.getTotalBytes());
+    }
+
+    @Test
+    public void copyTo_replacesTargetThroughTempFile() throws Exception {
+        OutputCache cache = new OutputCache(new File(mDir, "cache"), 1000);
+        File result = write("result", 100, 7);
+        cache.put("k1", result);
+        // 已有的target比缓存的内容长，替换后不能留下旧的尾部
+        File target = write("target.m4a", 300, 9);
+        assertTrue(cache.copyTo("k1", target));
+        assertArrayEquals(read(result), read(target));
+        String[] names = mDir.list();
+        assertNotNull(names);
+        for (String name : names) {
+            assertFalse(name, name.endsWith(".tmp"));
+        }
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() throws Exception {
+        OutputCache cache = new OutputCache(new File(mDir, "cache"), 250);
+        cache.put("a", write("a", 100, 1));
+        cache.put("b", write("b", 100, 2));
+        assertNotNull(cache.get("a"));
+        cache.put("c", write("c", 100, 3));
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(200, cache.getTotalBytes());
+        assertFalse(new File(new File(mDir, "cache"), "b").exists());
+
+        // 比上限还大的条目保留，其他条目全部淘汰
+        cache.put("big", write("big", 400, 4));
+        assertEquals(Arrays.asList("big"), cache.keys());
+        assertEquals(400, cache.getTotalBytes());
+    }
+
+    @Test
+    public void reopen_restoresEntriesInUseOrder() throws Exception {
+        File dir = new File(mDir, "cache");
+        OutputCache cache = new OutputCache(dir, 1000);
+        cache.put("old", write("old", 100, 1));
+        cache.put("new", write("new", 100, 2));
+        new File(dir, "old").setLastModified(1000000000L);
+        new File(dir, "new").setLastModified(2000000000L);
+        // 上次写了一半的临时文件
+        write("cache/new123.tmp", 50, 3);
+
+        OutputCache reopened = new OutputCache(dir, 150);
+        assertEquals(Arrays.asList("new"), reopened.keys());
+        assertEquals(100, reopened.getTotalBytes());
+        assertFalse(new File(dir, "new123.tmp").exists());
+        assertFalse(new File(dir, "old").exists());
+    }
+
+    @Test
+    public void get_dropsEntryDeletedOutsideCache() throws Exception {
+        File dir = new File(mDir, "cache");
+        OutputCache cache = new OutputCache(dir, 1000);
+        cache.put("k", write("k", 100, 1));
+        assertTrue(new File(dir, "k").delete());
+        assertNull(cache.get("k"));
+        assertEquals(0, cache.getTotalBytes());
+        assertEquals(0, cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidKey_isRejected() throws Exception {
+        new OutputCache(new File(mDir, "cache"), 1000).get("../escape");
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.mediacodec.core.checkpoint;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class CheckpointStoreTest {
+    private File mFile;
+    private CheckpointStore mStore;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("checkpoint", ".ckpt");
+        mFile.delete();
+        mStore = new CheckpointStore(mFile);
+    }
+
+    @After
+    public void tearDown() {
+        mStore.delete();
+    }
+
+    private static void write(File file, byte[] data) throws Exception {
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    @Test
+    public void saveLoad_roundTrip() throws Exception {
+        assertNull(mStore.load());
+        Checkpoint checkpoint = new Checkpoint(441000, 1764000, "decode 44100x2 源文件");
+        mStore.save(checkpoint);
+        assertEquals(checkpoint, mStore.load());
+        Checkpoint next = new Checkpoint(882000, 3528000, "decode 44100x2 源文件");
+        mStore.save(next);
+        assertEquals(next, mStore.load());
+        assertFalse(new File(mFile.getPath() + CheckpointStore.TEMP_SUFFIX).exists());
+    }
+
+    @Test
+    public void fromByteArray_rejectsEveryCorruptedByte() {
+        byte[] data = new Checkpoint(123456789L, 987654321L, "encode adts").toByteArray();
+        for (int i = 0; i < data.length; i++) {
+            byte[] corrupted = data.clone();
+            corrupted[i] ^= 0x10;
+            assertNull("byte " + i, Checkpoint.fromByteArray(corrupted));
+        }
+    }
+
+    @Test
+    public void fromByteArray_rejectsTruncatedData() {
+        byte[] data = new Checkpoint(1, 2, "config").toByteArray();
+        for (int length = 0; length < data.length; length++) {
+            assertNull("length " + length, Checkpoint.fromByteArray(Arrays.copyOf(data, length)));
+        }
+        assertNull(Checkpoint.fromByteArray(Arrays.copyOf(data, data.length + 1)));
+    }
+
+    @Test
+    public void load_ignoresTornFiles() throws Exception {
+        Checkpoint checkpoint = new Checkpoint(10, 20, "config");
+        mStore.save(checkpoint);
+        // 上一次保存时在改名之前被杀，留下写了一半的临时文件
+        byte[] data = new Checkpoint(30, 40, "config").toByteArray();
+        write(new File(mFile.getPath() + CheckpointStore.TEMP_SUFFIX), Arrays.copyOf(data, data.length / 2));
+        assertEquals(checkpoint, mStore.load());
+        // 残留的临时文件不影响下一次保存
+        mStore.save(new Checkpoint(30, 40, "config"));
+        assertEquals(new Checkpoint(30, 40, "config"), mStore.load());
+
+        // 不支持原子改名的文件系统上检查点本身可能写了一半
+        write(mFile, Arrays.copyOf(data, data.length - 3));
+        assertNull(mStore.load());
+    }
+}
@@ -0,0 +1,370 @@
+package com.example.mediacodec.core.checkpoint;
+
+import com.example.mediacodec.core.codec.FakeCodec;
+import com.example.mediacodec.core.io.ChannelDataSink;
+import com.example.mediacodec.core.io.DataSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.job.JobHandle;
+import com.example.mediacodec.core.job.JobListener;
+import com.example.mediacodec.core.job.JobProgress;
+import com.example.mediacodec.core.job.JobScheduler;
+import com.example.mediacodec.core.job.TranscodeJob;
+import com.example.mediacodec.core.pipeline.SampleSource;
+import com.example.mediacodec.core.pipeline.SerialDecoder;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ResumableOutputTest {
+    private static final int FRAMES = 2000;
+    private static final int CHECKPOINT_INTERVAL = 64;
+    private static final String CONFIG = "fake v1";
+
+    private File mTarget;
+
+    /**
+     * 模拟进程被杀
+     */
+    private static class Killed extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mTarget = File.createTempFile("resumable", ".out");
+        mTarget.delete();
+    }
+
+    @After
+    public void tearDown() {
+        mTarget.delete();
+        ResumableOutput.partFile(mTarget).delete();
+        new CheckpointStore(ResumableOutput.checkpointFile(mTarget)).delete();
+    }
+
+    /**
+     * 第frame帧输入对应的输出，长度不一
+     */
+    private static byte[] frameOutput(int frame) {
+        byte[] data = new byte[1 + frame * 7 % 23];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (frame * 31 + i);
+        }
+        return data;
+    }
+
+    private static byte[] expectedOutput() {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int frame = 0; frame < FRAMES; frame++) {
+            byte[] data = frameOutput(frame);
+            out.write(data, 0, data.length);
+        }
+        return out.toByteArray();
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        FileInputStream in = new FileInputStream(file);
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[4096];
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeAll(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * 模拟一次转码：从检查点续接，数据先攒在缓冲区中（类似ChannelDataSink），每CHECKPOINT_INTERVAL帧写入并记录检查点。
+     * 第killAt步时被杀：缓冲区只有一部分写入了文件，不提交也不删除任何文件
+     * @return 是否完成
+     */
+    private boolean transcode(int killAt, Random random, boolean[] resumed) throws IOException {
+        ResumableOutput output = ResumableOutput.open(mTarget, CONFIG);
+        FileChannel channel = output.getChannel();
+        Checkpoint resume = output.getResumePoint();
+        resumed[0] = resume != null;
+        ByteBuffer pending = ByteBuffer.allocate(1024);
+        int step = 0;
+        try {
+            for (int frame = resume != null ? (int) resume.getInputPosition() : 0; frame < FRAMES; frame++) {
+                if (step++ == killAt) {
+                    throw new Killed();
+                }
+                byte[] data = frameOutput(frame);
+                if (pending.remaining() < data.length) {
+                    writeAll(channel, pending);
+                }
+                pending.put(data);
+                if ((frame + 1) % CHECKPOINT_INTERVAL == 0) {
+                    writeAll(channel, pending);
+                    // 数据已写入但还没有记录检查点
+                    if (step++ == killAt) {
+                        throw new Killed();
+                    }
+                    output.checkpoint(frame + 1);
+                }
+            }
+            writeAll(channel, pending);
+            output.commit();
+            return true;
+        } catch (Killed e) {
+            pending.flip();
+            pending.limit(random.nextInt(pending.limit() + 1));
+            while (pending.hasRemaining()) {
+                channel.write(pending);
+            }
+            channel.close();
+            return false;
+        }
+    }
+
+    @Test
+    public void killedAtArbitraryPoints_resumesToSameOutput() throws Exception {
+        byte[] expected = expectedOutput();
+        int resumes = 0;
+        for (int seed = 0; seed < 30; seed++) {
+            tearDown();
+            Random random = new Random(seed);
+            boolean[] resumed = new boolean[1];
+            boolean done = false;
+            for (int attempt = 0; !done; attempt++) {
+                // 最多被杀20次，之后让它完成
+                int killAt = attempt < 20 ? random.nextInt(FRAMES / 3) : -1;
+                done = transcode(killAt, random, resumed);
+                if (resumed[0]) {
+                    resumes++;
+                }
+                if (!done && random.nextInt(4) == 0) {
+                    // 掉电：最后一个检查点之后未force的数据可能只剩一部分
+                    Checkpoint checkpoint = new CheckpointStore(ResumableOutput.checkpointFile(mTarget)).load();
+                    RandomAccessFile part = new RandomAccessFile(ResumableOutput.partFile(mTarget), "rw");
+                    try {
+                        long keep = checkpoint != null ? checkpoint.getOutputBytes() : 0;
+                        part.setLength(keep + (long) (random.nextDouble() * (part.length() - keep)));
+                    } finally {
+                        part.close();
+                    }
+                }
+            }
+            assertArrayEquals("seed " + seed, expected, readFile(mTarget));
+            assertFalse(ResumableOutput.partFile(mTarget).exists());
+            assertFalse(ResumableOutput.checkpointFile(mTarget).exists());
+        }
+        assertTrue("no run resumed from a checkpoint", resumes > 0);
+    }
+
+    /**
+     * 通过JobScheduler取消：工作线程被中断，多半停在等待编解码器事件处。
+     * 数据都暂存在sink中，没有定期检查点，取消时的检查点必须包括全部已写入sink的数据
+     */
+    @Test
+    public void cancelThroughScheduler_checkpointCoversWrittenData() throws Exception {
+        final int sampleSize = 16;
+        final AtomicLong written = new AtomicLong();
+        final CountDownLatch started = new CountDownLatch(1);
+        final Exception[] jobError = new Exception[1];
+        TranscodeJob job = new TranscodeJob() {
+            @Override
+            public void run(JobContext context) throws Exception {
+                ResumableOutput output = ResumableOutput.open(mTarget, CONFIG);
+                // 每个样本模拟处理5ms
+                FakeCodec codec = new FakeCodec(2, sampleSize, TimeUnit.MILLISECONDS.toNanos(5));
+                final ChannelDataSink data = new ChannelDataSink(output.getChannel(), 1 << 20);
+                try {
+                    SerialDecoder decoder = new SerialDecoder(new SampleSource() {
+                        private long mIndex;
+
+                        @Override
+                        public int readSampleData(ByteBuffer dst) {
+                            dst.put(dst.position(), (byte) mIndex);
+                            return sampleSize;
+                        }
+
+                        @Override
+                        public long getSampleTime() {
+                            return mIndex * 1000;
+                        }
+
+                        @Override
+                        public boolean advance() {
+                            mIndex++;
+                            return true;
+                        }
+                    }, codec, new DataSink() {
+                        @Override
+                        public void write(ByteBuffer src) throws IOException {
+                            written.addAndGet(src.remaining());
+                            data.write(src);
+                            if (written.get() >= sampleSize * 10) {
+                                started.countDown();
+                            }
+                        }
+
+                        @Override
+                        public void flush() throws IOException {
+                            data.flush();
+                        }
+
+                        @Override
+                        public void close() throws IOException {
+                            data.close();
+                        }
+                    });
+                    decoder.run(context);
+                    if (context.isCancelled()) {
+                        long bytes = output.flush(data);
+                        output.checkpoint(bytes / sampleSize);
+                    }
+                } catch (Exception e) {
+                    // JobHandle把取消后抛出的异常也报告为取消，这里单独记下
+                    jobError[0] = e;
+                    throw e;
+                } finally {
+                    codec.release();
+                    output.close();
+                }
+            }
+        };
+        final CountDownLatch ended = new CountDownLatch(1);
+        final AtomicInteger cancelled = new AtomicInteger();
+        JobScheduler scheduler = new JobScheduler(1, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        try {
+            JobHandle handle = scheduler.submit("resumable", job, new JobListener() {
+                @Override
+                public void onProgress(JobHandle job, JobProgress progress) {
+                }
+
+                @Override
+                public void onFinish(JobHandle job) {
+                    ended.countDown();
+                }
+
+                @Override
+                public void onFail(JobHandle job, Throwable error) {
+                    ended.countDown();
+                }
+
+                @Override
+                public void onCancel(JobHandle job) {
+                    cancelled.incrementAndGet();
+                    ended.countDown();
+                }
+            });
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            handle.cancel();
+            assertTrue(ended.await(5, TimeUnit.SECONDS));
+            assertEquals(1, cancelled.get());
+        } finally {
+            scheduler.shutdown();
+            assertTrue(scheduler.awaitTermination(5, TimeUnit.SECONDS));
+        }
+        assertNull(jobError[0]);
+        Checkpoint checkpoint = new CheckpointStore(ResumableOutput.checkpointFile(mTarget)).load();
+        assertNotNull(checkpoint);
+        assertEquals(written.get(), checkpoint.getOutputBytes());
+        assertEquals(written.get() / sampleSize, checkpoint.getInputPosition());
+        assertEquals(written.get(), ResumableOutput.partFile(mTarget).length());
+    }
+
+    @Test
+    public void open_startsOverWhenConfigChanges() throws Exception {
+        ResumableOutput output = ResumableOutput.open(mTarget, CONFIG);
+        output.getChannel().write(ByteBuffer.wrap(new byte[100]));
+        output.checkpoint(10);
+        output.close();
+
+        output = ResumableOutput.open(mTarget, CONFIG);
+        assertEquals(new Checkpoint(10, 100, CONFIG), output.getResumePoint());
+        assertEquals(100, output.getChannel().position());
+        output.close();
+
+        output = ResumableOutput.open(mTarget, "fake v2");
+        assertNull(output.getResumePoint());
+        assertEquals(0, output.getChannel().size());
+        output.close();
+        assertFalse(ResumableOutput.checkpointFile(mTarget).exists());
+    }
+
+    @Test
+    public void open_startsOverWhenPartIsShorterThanCheckpoint() throws Exception {
+        ResumableOutput output = ResumableOutput.open(mTarget, CONFIG);
+        output.getChannel().write(ByteBuffer.wrap(new byte[100]));
+        output.checkpoint(10);
+        output.close();
+        RandomAccessFile part = new RandomAccessFile(output.getPartFile(), "rw");
+        part.setLength(99);
+        part.close();
+
+        output = ResumableOutput.open(mTarget, CONFIG);
+        assertNull(output.getResumePoint());
+        assertEquals(0, output.getChannel().position());
+        output.close();
+    }
+
+    @Test
+    public void commit_replacesPreviousResult() throws Exception {
+        FileOutputStream previous = new FileOutputStream(mTarget);
+        previous.write(new byte[]{9, 9, 9, 9, 9});
+        previous.close();
+
+        ResumableOutput output = ResumableOutput.open(mTarget, CONFIG);
+        output.getChannel().write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        output.checkpoint(1);
+        // 完成前目标文件仍是上一次的结果
+        assertEquals(5, mTarget.length());
+        // 调用方可以先关闭channel（例如关闭写入它的sink）再提交
+        output.getChannel().close();
+        output.commit();
+        assertArrayEquals(new byte[]{1, 2, 3}, readFile(mTarget));
+        assertFalse(output.getPartFile().exists());
+        assertFalse(ResumableOutput.checkpointFile(mTarget).exists());
+    }
+
+    @Test
+    public void restart_clearsPartAndCheckpoint() throws Exception {
+        ResumableOutput output = ResumableOutput.open(mTarget, CONFIG);
+        output.getChannel().write(ByteBuffer.wrap(new byte[50]));
+        output.checkpoint(5);
+        output.restart();
+        assertNull(output.getResumePoint());
+        assertEquals(0, output.getChannel().size());
+        assertFalse(ResumableOutput.checkpointFile(mTarget).exists());
+        output.discard();
+        assertFalse(output.getPartFile().exists());
+    }
+}
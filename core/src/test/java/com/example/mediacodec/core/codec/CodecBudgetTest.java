@@ -0,0 +1,88 @@
+package com.example.mediacodec.core.codec;
+
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class CodecBudgetTest {
+
+    private static class Context implements JobContext {
+        volatile boolean mCancelled;
+
+        @Override
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public void setProgress(long done, long total) {
+        }
+
+        @Override
+        public void setMetrics(TranscodeMetrics metrics) {
+        }
+    }
+
+    @Test
+    public void acquire_waitsUntilReleased() throws Exception {
+        final CodecBudget budget = new CodecBudget(3);
+        assertTrue(budget.acquire(2, null));
+        assertEquals(1, budget.getAvailable());
+        final AtomicBoolean acquired = new AtomicBoolean();
+        final CountDownLatch done = new CountDownLatch(1);
+        new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    acquired.set(budget.acquire(3, null));
+                } catch (InterruptedException ignored) {
+                } finally {
+                    done.countDown();
+                }
+            }
+        }).start();
+        assertFalse(done.await(50, TimeUnit.MILLISECONDS));
+        budget.release(2);
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertTrue(acquired.get());
+        assertEquals(0, budget.getAvailable());
+    }
+
+    @Test
+    public void acquire_givesUpWhenCancelled() throws Exception {
+        final CodecBudget budget = new CodecBudget(1);
+        assertTrue(budget.acquire(1, null));
+        final Context context = new Context();
+        final boolean[] result = {true};
+        Thread waiter = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    result[0] = budget.acquire(1, context);
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        waiter.start();
+        Thread.sleep(30);
+        context.mCancelled = true;
+        waiter.join(5000);
+        assertFalse(waiter.isAlive());
+        assertFalse(result[0]);
+        // 放弃时没有占用名额
+        budget.release(1);
+        assertEquals(1, budget.getAvailable());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void acquire_rejectsMoreThanCapacity() throws Exception {
+        new CodecBudget(2).acquire(3, null);
+    }
+}
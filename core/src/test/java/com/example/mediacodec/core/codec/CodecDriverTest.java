@@ -0,0 +1,99 @@
+package com.example.mediacodec.core.codec;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class CodecDriverTest {
+
+    @Test
+    public void eventLoop_deliversOutputsInInputOrder() throws Exception {
+        FakeCodec codec = new FakeCodec(4, 16, 0);
+        CodecEvent event = new CodecEvent();
+        codec.start();
+        int queued = 0;
+        int received = 0;
+        boolean formatChanged = false;
+        boolean done = false;
+        while (!done) {
+            assertTrue(codec.nextEvent(event, 1000000));
+            switch (event.type) {
+                case CodecEvent.FORMAT_CHANGED:
+                    assertEquals(0, received);
+                    formatChanged = true;
+                    break;
+                case CodecEvent.INPUT_AVAILABLE:
+                    if (queued == 1000) {
+                        // 输入结束后不再使用输入buffer
+                        break;
+                    }
+                    ByteBuffer input = codec.getInputBuffer(event.index);
+                    input.clear();
+                    input.putInt(queued);
+                    codec.queueInputBuffer(event.index, 0, 4, queued * 1000L,
+                            queued == 999 ? CodecDriver.FLAG_END_OF_STREAM : 0);
+                    queued = queued == 999 ? 1000 : queued + 1;
+                    break;
+                case CodecEvent.OUTPUT_AVAILABLE:
+                    assertEquals(received * 1000L, event.presentationTimeUs);
+                    assertEquals(received, codec.getOutputBuffer(event.index).getInt(0));
+                    codec.releaseOutputBuffer(event.index);
+                    done = event.isEndOfStream();
+                    received++;
+                    break;
+                default:
+                    fail("unexpected " + event);
+            }
+        }
+        assertTrue(formatChanged);
+        assertEquals(1000, received);
+        codec.release();
+    }
+
+    @Test
+    public void nextEvent_waitsWithoutSpinning() throws Exception {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        CodecEventQueue queue = new CodecEventQueue();
+        CodecEvent event = new CodecEvent();
+        long cpuBefore = bean.getCurrentThreadCpuTime();
+        long wallBefore = System.nanoTime();
+        assertFalse(queue.poll(event, 300000));
+        long wall = System.nanoTime() - wallBefore;
+        long cpu = bean.getCurrentThreadCpuTime() - cpuBefore;
+        assertTrue("waited " + wall, wall >= 300000000L);
+        // 对比TIMEOUT=0的轮询会占满一个核，这里等待期间几乎不消耗CPU
+        assertTrue("cpu " + cpu, cpu < wall / 10);
+    }
+
+    @Test
+    public void queue_growsAndKeepsFifoOrder() throws Exception {
+        CodecEventQueue queue = new CodecEventQueue(2);
+        CodecEvent event = new CodecEvent();
+        queue.offerInput(0);
+        queue.offerInput(1);
+        assertTrue(queue.poll(event, 0));
+        for (int i = 2; i < 10; i++) {
+            queue.offerOutput(i, 1, 2, i * 10L, 0);
+        }
+        queue.offerError(-5);
+        assertEquals(10, queue.size());
+
+        assertTrue(queue.poll(event, 0));
+        assertEquals(CodecEvent.INPUT_AVAILABLE, event.type);
+        assertEquals(1, event.index);
+        for (int i = 2; i < 10; i++) {
+            assertTrue(queue.poll(event, 0));
+            assertEquals(CodecEvent.OUTPUT_AVAILABLE, event.type);
+            assertEquals(i, event.index);
+            assertEquals(i * 10L, event.presentationTimeUs);
+        }
+        assertTrue(queue.poll(event, 0));
+        assertEquals(CodecEvent.ERROR, event.type);
+        assertEquals(-5, event.errorCode);
+        assertFalse(queue.poll(event, 0));
+    }
+}
@@ -0,0 +1,77 @@
+package com.example.mediacodec.core.concurrent;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class ThreadsTest {
+
+    /**
+     * 不响应中断，忙等待一段时间
+     */
+    private static void spin(long nanos) {
+        long end = System.nanoTime() + nanos;
+        while (System.nanoTime() < end) {
+            Thread.yield();
+        }
+    }
+
+    @Test
+    public void namedFactory_numbersThreads() {
+        Runnable empty = new Runnable() {
+            @Override
+            public void run() {
+            }
+        };
+        assertEquals("worker-1", Threads.namedFactory("worker").newThread(empty).getName());
+        assertEquals("worker-1", Threads.namedFactory("worker").newThread(empty).getName());
+    }
+
+    @Test
+    public void awaitTermination_keepsWaitingWhenInterrupted() throws Exception {
+        final ExecutorService executor = Threads.newFixedThreadPool(2, "await");
+        final CountDownLatch started = new CountDownLatch(2);
+        final AtomicBoolean finished = new AtomicBoolean();
+        for (int i = 0; i < 2; i++) {
+            executor.execute(new Runnable() {
+                @Override
+                public void run() {
+                    started.countDown();
+                    spin(200000000L);
+                    finished.set(true);
+                }
+            });
+        }
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        executor.shutdown();
+        Thread.currentThread().interrupt();
+        Threads.awaitTerminationUninterruptibly(executor);
+        // 恢复了中断状态，同时清除它以免影响其他测试
+        assertTrue(Thread.interrupted());
+        assertTrue(finished.get());
+        assertTrue(executor.isTerminated());
+    }
+
+    @Test
+    public void join_keepsWaitingWhenInterrupted() {
+        final AtomicBoolean finished = new AtomicBoolean();
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                spin(100000000L);
+                finished.set(true);
+            }
+        });
+        thread.start();
+        Thread.currentThread().interrupt();
+        Threads.joinUninterruptibly(thread);
+        assertTrue(Thread.interrupted());
+        assertTrue(finished.get());
+        assertFalse(thread.isAlive());
+    }
+}
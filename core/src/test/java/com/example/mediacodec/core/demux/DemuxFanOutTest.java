@@ -0,0 +1,313 @@
+package com.example.mediacodec.core.demux;
+
+import com.example.mediacodec.core.codec.CodecBudget;
+import com.example.mediacodec.core.codec.FakeCodec;
+import com.example.mediacodec.core.io.DataSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.memory.DirectBufferPool;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.pipeline.SampleSource;
+import com.example.mediacodec.core.pipeline.SerialDecoder;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class DemuxFanOutTest {
+    private static final int SAMPLES = 200;
+
+    private static class Context implements JobContext {
+        volatile boolean mCancelled;
+        volatile long mDone;
+        volatile long mTotal;
+
+        @Override
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public void setProgress(long done, long total) {
+            mDone = done;
+            mTotal = total;
+        }
+
+        @Override
+        public void setMetrics(TranscodeMetrics metrics) {
+        }
+    }
+
+    /**
+     * 每条轨道用一个假的编解码器（原样输出）解码到各自的内存sink
+     */
+    private static class CollectingDecoder implements TrackDecoder {
+        final ConcurrentHashMap<Integer, ByteArrayOutputStream> mOutputs = new ConcurrentHashMap<>();
+
+        @Override
+        public void decode(TrackInfo track, SampleSource source, JobContext context) throws Exception {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            mOutputs.put(track.getIndex(), out);
+            FakeCodec codec = new FakeCodec(4, FakeDemuxSource.SAMPLE_SIZE, 0);
+            try {
+                SerialDecoder decoder = new SerialDecoder(source, codec, new DataSink() {
+                    @Override
+                    public void write(ByteBuffer src) {
+                        while (src.hasRemaining()) {
+                            out.write(src.get());
+                        }
+                    }
+
+                    @Override
+                    public void flush() {
+                    }
+
+                    @Override
+                    public void close() {
+                    }
+                });
+                decoder.setProgressRange(0, track.getDurationUs());
+                decoder.run(context);
+            } finally {
+                codec.release();
+            }
+        }
+    }
+
+    private static byte[] samples(int track, int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            byte[] sample = FakeDemuxSource.sample(track, i);
+            out.write(sample, 0, sample.length);
+        }
+        return out.toByteArray();
+    }
+
+    // 音轨0、视频1、音轨2（比音轨0短）
+    private static FakeDemuxSource newSource() {
+        return new FakeDemuxSource(new TrackInfo[]{
+                FakeDemuxSource.audio(0, "eng", SAMPLES),
+                FakeDemuxSource.video(1, SAMPLES),
+                FakeDemuxSource.audio(2, "jpn", SAMPLES / 2)},
+                new int[]{SAMPLES, SAMPLES, SAMPLES / 2});
+    }
+
+    @Test
+    public void run_eachTrackDecodesItsOwnSamplesFromOneRead() throws Exception {
+        FakeDemuxSource source = newSource();
+        CollectingDecoder decoder = new CollectingDecoder();
+        DemuxFanOut fanOut = new DemuxFanOut(source, decoder, 4, FakeDemuxSource.SAMPLE_SIZE, null);
+        final ConcurrentHashMap<Integer, Long> trackDone = new ConcurrentHashMap<>();
+        fanOut.setListener(new DemuxFanOut.Listener() {
+            @Override
+            public void onTrackProgress(TrackInfo track, long done, long total) {
+                assertEquals(track.getDurationUs(), total);
+                trackDone.put(track.getIndex(), done);
+            }
+        });
+        Context context = new Context();
+
+        assertEquals(2, fanOut.run(TrackSelectors.allAudio(), context).size());
+
+        assertEquals(2, decoder.mOutputs.size());
+        assertArrayEquals(samples(0, SAMPLES), decoder.mOutputs.get(0).toByteArray());
+        assertArrayEquals(samples(2, SAMPLES / 2), decoder.mOutputs.get(2).toByteArray());
+        assertEquals(0, source.getRereadCount());
+        assertTrue(source.readOnlySelected());
+        // 最后一个样本的时间戳
+        assertEquals((SAMPLES - 1) * FakeDemuxSource.SAMPLE_DURATION_US, (long) trackDone.get(0));
+        assertEquals((SAMPLES / 2 - 1) * FakeDemuxSource.SAMPLE_DURATION_US, (long) trackDone.get(2));
+        assertEquals(SAMPLES * 3 / 2 * FakeDemuxSource.SAMPLE_DURATION_US, context.mTotal);
+        assertEquals(context.mDone, trackDone.get(0) + trackDone.get(2));
+    }
+
+    @Test
+    public void run_selectionCappedByCodecBudget() throws Exception {
+        FakeDemuxSource source = new FakeDemuxSource(new TrackInfo[]{
+                FakeDemuxSource.audio(0, "eng", SAMPLES),
+                FakeDemuxSource.audio(1, "fra", SAMPLES),
+                FakeDemuxSource.audio(2, "jpn", SAMPLES)},
+                new int[]{SAMPLES, SAMPLES, SAMPLES});
+        CollectingDecoder decoder = new CollectingDecoder();
+        DemuxFanOut fanOut = new DemuxFanOut(source, decoder, 4, FakeDemuxSource.SAMPLE_SIZE, null);
+        CodecBudget budget = new CodecBudget(2);
+        fanOut.setCodecBudget(budget);
+
+        List<TrackInfo> decoded = fanOut.run(TrackSelectors.allAudio(), new Context());
+
+        assertEquals(2, decoded.size());
+        assertEquals(0, decoded.get(0).getIndex());
+        assertEquals(1, decoded.get(1).getIndex());
+        assertEquals(2, decoder.mOutputs.size());
+        assertFalse(decoder.mOutputs.containsKey(2));
+        assertEquals(2, budget.getAvailable());
+    }
+
+    @Test
+    public void run_waitsForAllTrackPermitsAndGivesUpOnCancel() throws Exception {
+        CollectingDecoder decoder = new CollectingDecoder();
+        DemuxFanOut fanOut = new DemuxFanOut(newSource(), decoder, 4, FakeDemuxSource.SAMPLE_SIZE, null);
+        CodecBudget budget = new CodecBudget(2);
+        fanOut.setCodecBudget(budget);
+        // 另一个任务占着一个名额，两条轨道的名额不够，一条轨道也不能先开始
+        assertTrue(budget.acquire(1, null));
+        final Context context = new Context();
+        Thread canceller = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    Thread.sleep(50);
+                } catch (InterruptedException e) {
+                    return;
+                }
+                context.mCancelled = true;
+            }
+        });
+        canceller.start();
+
+        fanOut.run(new int[]{0, 2}, context);
+
+        canceller.join();
+        assertTrue(decoder.mOutputs.isEmpty());
+        assertEquals(1, budget.getAvailable());
+        budget.release(1);
+    }
+
+    @Test(expected = IOException.class)
+    public void run_noTrackSelected() throws Exception {
+        DemuxFanOut fanOut = new DemuxFanOut(newSource(), new CollectingDecoder(), 4, FakeDemuxSource.SAMPLE_SIZE, null);
+        fanOut.run(TrackSelectors.indices(1), new Context());
+    }
+
+    @Test
+    public void run_failingTrackStopsOthersAndRethrows() throws Exception {
+        final AtomicLong otherSamples = new AtomicLong();
+        TrackDecoder decoder = new TrackDecoder() {
+            @Override
+            public void decode(TrackInfo track, SampleSource source, JobContext context) throws Exception {
+                ByteBuffer buffer = ByteBuffer.allocate(FakeDemuxSource.SAMPLE_SIZE);
+                for (int i = 0; source.readSampleData(buffer) >= 0; i++) {
+                    if (track.getIndex() == 2 && i == 10) {
+                        throw new IOException("track 2 failed");
+                    }
+                    if (track.getIndex() == 0) {
+                        otherSamples.incrementAndGet();
+                    }
+                    source.advance();
+                }
+            }
+        };
+        DemuxFanOut fanOut = new DemuxFanOut(newSource(), decoder, 2, FakeDemuxSource.SAMPLE_SIZE, null);
+        try {
+            fanOut.run(new int[]{0, 2}, new Context());
+            fail();
+        } catch (IOException e) {
+            assertEquals("track 2 failed", e.getMessage());
+        }
+        // 队列容量限制了读取线程的领先量，音轨0没有读完
+        assertTrue(otherSamples.get() < SAMPLES);
+    }
+
+    @Test
+    public void run_trackReturningEarlyDoesNotBlockOthers() throws Exception {
+        FakeDemuxSource source = newSource();
+        final CollectingDecoder collecting = new CollectingDecoder();
+        TrackDecoder decoder = new TrackDecoder() {
+            @Override
+            public void decode(TrackInfo track, SampleSource source, JobContext context) throws Exception {
+                if (track.getIndex() != 2) {
+                    collecting.decode(track, source, context);
+                }
+            }
+        };
+        new DemuxFanOut(source, decoder, 1, FakeDemuxSource.SAMPLE_SIZE, null).run(new int[]{2, 0}, new Context());
+        assertArrayEquals(samples(0, SAMPLES), collecting.mOutputs.get(0).toByteArray());
+    }
+
+    @Test
+    public void interrupt_waitsForDecoderBeforeReleasingBuffers() throws Exception {
+        final CountDownLatch reading = new CountDownLatch(1);
+        final AtomicBoolean decoderDone = new AtomicBoolean();
+        final AtomicBoolean sampleIntact = new AtomicBoolean();
+        final Context context = new Context();
+        // 解码器读到第一个样本后停在读取过程中（不前进，继续持有池中的buffer），不理会中断和取消
+        final TrackDecoder decoder = new TrackDecoder() {
+            @Override
+            public void decode(TrackInfo track, SampleSource source, JobContext trackContext) throws Exception {
+                ByteBuffer buffer = ByteBuffer.allocate(FakeDemuxSource.SAMPLE_SIZE);
+                source.readSampleData(buffer);
+                reading.countDown();
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(200);
+                while (System.nanoTime() < deadline) {
+                    try {
+                        Thread.sleep(10);
+                    } catch (InterruptedException e) {
+                        // 模拟没有及时响应中断的解码器
+                    }
+                }
+                buffer.clear();
+                source.readSampleData(buffer);
+                sampleIntact.set(Arrays.equals(FakeDemuxSource.sample(0, 0), buffer.array()));
+                decoderDone.set(true);
+            }
+        };
+        final DirectBufferPool pool = new DirectBufferPool();
+        final AtomicBoolean doneWhenReturned = new AtomicBoolean();
+        final Exception[] error = new Exception[1];
+        Thread runner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    new DemuxFanOut(newSource(), decoder, SAMPLES, FakeDemuxSource.SAMPLE_SIZE, pool)
+                            .run(new int[]{0}, context);
+                } catch (Exception e) {
+                    error[0] = e;
+                } finally {
+                    doneWhenReturned.set(decoderDone.get());
+                }
+            }
+        });
+        runner.start();
+        assertTrue(reading.await(5, TimeUnit.SECONDS));
+        // 读取线程已读完容器，在等待解码线程；像JobHandle.cancel一样先取消再中断
+        Thread.sleep(20);
+        context.mCancelled = true;
+        runner.interrupt();
+        runner.join(5000);
+        assertFalse(runner.isAlive());
+        assertTrue(doneWhenReturned.get());
+        assertTrue(sampleIntact.get());
+        assertTrue(error[0] instanceof InterruptedException);
+    }
+
+    @Test
+    public void run_cancelReturnsWithoutError() throws Exception {
+        final Context context = new Context();
+        final AtomicLong read = new AtomicLong();
+        TrackDecoder decoder = new TrackDecoder() {
+            @Override
+            public void decode(TrackInfo track, SampleSource source, JobContext trackContext) throws Exception {
+                ByteBuffer buffer = ByteBuffer.allocate(FakeDemuxSource.SAMPLE_SIZE);
+                while (source.readSampleData(buffer) >= 0) {
+                    if (read.incrementAndGet() == 20) {
+                        context.mCancelled = true;
+                    }
+                    source.advance();
+                }
+                assertTrue(trackContext.isCancelled());
+            }
+        };
+        new DemuxFanOut(newSource(), decoder, 2, FakeDemuxSource.SAMPLE_SIZE, null).run(new int[]{0, 2}, context);
+        assertTrue(read.get() < SAMPLES);
+    }
+}
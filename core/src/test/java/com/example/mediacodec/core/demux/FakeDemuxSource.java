@@ -0,0 +1,148 @@
+package com.example.mediacodec.core.demux;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 模拟MediaExtractor：各轨道的样本按时间戳交错排列。第track条轨道的第i个样本有SAMPLE_SIZE字节，
+ * 内容依次为track、i的低8位和样本内的偏移，时间戳为i * SAMPLE_DURATION_US。
+ * 记录每个样本被读取的次数，用于确认容器只读一遍
+ */
+class FakeDemuxSource implements DemuxSource {
+    static final int SAMPLE_SIZE = 16;
+    static final long SAMPLE_DURATION_US = 1000;
+
+    private final List<TrackInfo> mTracks = new ArrayList<>();
+    private final int[] mSampleCounts;
+    private final boolean[] mSelected;
+    // 全部样本按顺序排列的轨道号和样本号
+    private final int[] mOrderTracks;
+    private final int[] mOrderSamples;
+    private final int[] mReads;
+    private int mPosition = -1;
+    private boolean mStarted;
+
+    FakeDemuxSource(TrackInfo[] tracks, int[] sampleCounts) {
+        mTracks.addAll(Arrays.asList(tracks));
+        mSampleCounts = sampleCounts;
+        mSelected = new boolean[tracks.length];
+        int total = 0;
+        for (int count : sampleCounts) {
+            total += count;
+        }
+        mOrderTracks = new int[total];
+        mOrderSamples = new int[total];
+        mReads = new int[total];
+        int position = 0;
+        for (int i = 0; position < total; i++) {
+            for (int track = 0; track < sampleCounts.length; track++) {
+                if (i < sampleCounts[track]) {
+                    mOrderTracks[position] = track;
+                    mOrderSamples[position] = i;
+                    position++;
+                }
+            }
+        }
+    }
+
+    static TrackInfo audio(int index, String language, int samples) {
+        return new TrackInfo(index, "audio/mp4a-latm", 44100, 2, samples * SAMPLE_DURATION_US, language);
+    }
+
+    static TrackInfo video(int index, int samples) {
+        return new TrackInfo(index, "video/avc", 0, 0, samples * SAMPLE_DURATION_US, null);
+    }
+
+    static byte[] sample(int track, int index) {
+        byte[] data = new byte[SAMPLE_SIZE];
+        for (int i = 0; i < data.length; i++) {
+            data[i] = (byte) (i == 0 ? track : i == 1 ? index : i);
+        }
+        return data;
+    }
+
+    /**
+     * 被读取超过一次的样本数
+     */
+    int getRereadCount() {
+        int count = 0;
+        for (int reads : mReads) {
+            if (reads > 1) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 读取过的样本所属的轨道是否都已选中
+     */
+    boolean readOnlySelected() {
+        for (int i = 0; i < mReads.length; i++) {
+            if (mReads[i] > 0 && !mSelected[mOrderTracks[i]]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int getTrackCount() {
+        return mTracks.size();
+    }
+
+    @Override
+    public TrackInfo getTrackInfo(int track) {
+        return mTracks.get(track);
+    }
+
+    @Override
+    public void selectTrack(int track) {
+        mSelected[track] = true;
+        if (!mStarted) {
+            mPosition = nextSelected(0);
+        }
+    }
+
+    private int nextSelected(int from) {
+        while (from < mOrderTracks.length && !mSelected[mOrderTracks[from]]) {
+            from++;
+        }
+        return from;
+    }
+
+    @Override
+    public int getSampleTrackIndex() {
+        return mPosition >= 0 && mPosition < mOrderTracks.length ? mOrderTracks[mPosition] : -1;
+    }
+
+    @Override
+    public int readSampleData(ByteBuffer dst) {
+        if (getSampleTrackIndex() < 0) {
+            return -1;
+        }
+        mStarted = true;
+        mReads[mPosition]++;
+        int position = dst.position();
+        dst.put(sample(mOrderTracks[mPosition], mOrderSamples[mPosition]));
+        dst.position(position);
+        return SAMPLE_SIZE;
+    }
+
+    @Override
+    public long getSampleTime() {
+        return getSampleTrackIndex() < 0 ? -1 : mOrderSamples[mPosition] * SAMPLE_DURATION_US;
+    }
+
+    @Override
+    public boolean advance() {
+        if (getSampleTrackIndex() < 0) {
+            return false;
+        }
+        mStarted = true;
+        mPosition = nextSelected(mPosition + 1);
+        return mPosition < mOrderTracks.length;
+    }
+}
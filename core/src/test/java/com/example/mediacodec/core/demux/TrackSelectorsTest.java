@@ -0,0 +1,40 @@
+package com.example.mediacodec.core.demux;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TrackSelectorsTest {
+    // 视频、英语音轨、没有语言的音轨、日语音轨、字幕
+    private static final List<TrackInfo> TRACKS = Arrays.asList(
+            FakeDemuxSource.video(0, 10),
+            FakeDemuxSource.audio(1, "eng", 10),
+            FakeDemuxSource.audio(2, null, 10),
+            FakeDemuxSource.audio(3, "JPN", 10),
+            new TrackInfo(4, "text/vtt", 0, 0, 0, "eng"));
+
+    @Test
+    public void firstAndAllAudio() {
+        assertArrayEquals(new int[]{1}, TrackSelectors.firstAudio().select(TRACKS));
+        assertArrayEquals(new int[]{1, 2, 3}, TrackSelectors.allAudio().select(TRACKS));
+        List<TrackInfo> videoOnly = Arrays.asList(FakeDemuxSource.video(0, 10));
+        assertEquals(0, TrackSelectors.firstAudio().select(videoOnly).length);
+        assertEquals(0, TrackSelectors.allAudio().select(videoOnly).length);
+    }
+
+    @Test
+    public void audioLanguages_inPreferenceOrderWithFallback() {
+        assertArrayEquals(new int[]{3, 1}, TrackSelectors.audioLanguages("jpn", "eng").select(TRACKS));
+        // 字幕轨道也是eng，但不是音轨
+        assertArrayEquals(new int[]{1}, TrackSelectors.audioLanguages("eng", "eng").select(TRACKS));
+        assertArrayEquals(new int[]{1}, TrackSelectors.audioLanguages("fra").select(TRACKS));
+    }
+
+    @Test
+    public void indices_skipsInvalidAndNonAudio() {
+        assertArrayEquals(new int[]{3, 1}, TrackSelectors.indices(3, 0, 1, 9, 3, -1, 4).select(TRACKS));
+    }
+}
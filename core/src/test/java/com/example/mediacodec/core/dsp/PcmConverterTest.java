@@ -0,0 +1,157 @@
+package com.example.mediacodec.core.dsp;
+
+import com.example.mediacodec.core.io.DataSink;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class PcmConverterTest {
+
+    private static ByteBuffer pcm16(int frames, int channels) {
+        ByteBuffer buffer = ByteBuffer.allocate(frames * channels * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int f = 0; f < frames; f++) {
+            for (int c = 0; c < channels; c++) {
+                buffer.putShort((short) (10000 * Math.sin(f * 0.05) * (c + 1) / channels));
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    @Test
+    public void mixer_defaultMatrices() {
+        float[] data = {0.5f, 0, 0, 0, 0, 0};
+        // 单声道到立体声，原地处理
+        new ChannelMixer(1, 2).process(data, data, 2);
+        assertArrayEquals(new float[]{0.5f, 0.5f, 0, 0, 0, 0}, data, 0f);
+
+        float[] stereo = {0.2f, 0.6f, -1f, 1f};
+        float[] mono = new float[2];
+        new ChannelMixer(2, 1).process(stereo, mono, 2);
+        assertArrayEquals(new float[]{0.4f, 0f}, mono, 1e-6f);
+
+        // 5.1全满幅下混后不削波，LFE不参与
+        float[] surround = {1, 1, 1, 1, 1, 1, 0, 0, 0, 1, 0, 0};
+        float[] out = new float[4];
+        new ChannelMixer(6, 2).process(surround, out, 2);
+        assertEquals(1f, out[0], 1e-6f);
+        assertEquals(1f, out[1], 1e-6f);
+        assertEquals(0f, out[2], 0f);
+        assertEquals(0f, out[3], 0f);
+    }
+
+    @Test
+    public void convert_resamplesAndDownmixesWithinBound() {
+        PcmConverter converter = new PcmConverter(48000, 2, SampleConverter.ENCODING_PCM_16BIT,
+                44100, 1, SampleConverter.ENCODING_PCM_FLOAT);
+        ByteBuffer src = pcm16(4800, 2);
+        ByteBuffer dst = ByteBuffer.allocate(converter.maxOutputSize(src.remaining()));
+        converter.process(src, dst);
+        assertFalse(src.hasRemaining());
+        converter.flush(dst);
+        // 延迟已补偿，输出与输入等长
+        assertEquals(4410, dst.position() / 4);
+    }
+
+    @Test
+    public void convert_outputLengthMatchesInput() {
+        int[][] rates = {{48000, 44100}, {44100, 48000}, {22050, 44100}, {16000, 48000}, {44100, 32000}};
+        int[] lengths = {1, 15, 1000, 1024, 4800, 44101};
+        for (int[] rate : rates) {
+            for (int length : lengths) {
+                PcmConverter converter = new PcmConverter(rate[0], 1, rate[1], 1);
+                ByteBuffer src = pcm16(length, 1);
+                ByteBuffer dst = ByteBuffer.allocate(converter.maxOutputSize(src.remaining()));
+                converter.process(src, dst);
+                converter.flush(dst);
+                long expected = Math.round((double) length * rate[1] / rate[0]);
+                assertEquals(rate[0] + " -> " + rate[1] + ", " + length, expected, dst.position() / 2);
+            }
+        }
+    }
+
+    @Test
+    public void convert_impulseStaysInPlace() {
+        int[][] rates = {{48000, 44100}, {44100, 48000}, {16000, 48000}};
+        for (int[] rate : rates) {
+            int frames = rate[0] / 10;
+            int at = frames / 2;
+            ByteBuffer src = ByteBuffer.allocate(frames * 2).order(ByteOrder.LITTLE_ENDIAN);
+            src.putShort(at * 2, (short) 30000);
+            PcmConverter converter = new PcmConverter(rate[0], 1, rate[1], 1);
+            ByteBuffer dst = ByteBuffer.allocate(converter.maxOutputSize(src.remaining()))
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            converter.process(src, dst);
+            converter.flush(dst);
+            int peak = 0;
+            for (int i = 1; i < dst.position() / 2; i++) {
+                if (Math.abs(dst.getShort(i * 2)) > Math.abs(dst.getShort(peak * 2))) {
+                    peak = i;
+                }
+            }
+            // 峰值落在按采样率换算的位置上，误差不超过一个输出帧
+            double expected = (double) at * rate[1] / rate[0];
+            assertEquals(rate[0] + " -> " + rate[1], expected, peak, 1.0);
+        }
+    }
+
+    @Test
+    public void convert_sameFormatIsLossless() {
+        PcmConverter converter = new PcmConverter(44100, 2, 44100, 2);
+        assertTrue(converter.isIdentity());
+        ByteBuffer src = pcm16(3000, 2);
+        ByteBuffer dst = ByteBuffer.allocate(converter.maxOutputSize(src.remaining()));
+        converter.process(src.duplicate(), dst);
+        dst.flip();
+        assertEquals(src, dst);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void convert_rejectsPartialFrame() {
+        PcmConverter converter = new PcmConverter(44100, 2, 48000, 2);
+        converter.process(ByteBuffer.allocate(6), ByteBuffer.allocate(1024));
+    }
+
+    @Test
+    public void sink_transformsEveryWriteAndFlushesOnClose() throws Exception {
+        final ByteArrayOutputStream written = new ByteArrayOutputStream();
+        final boolean[] closed = new boolean[1];
+        DataSink sink = new DataSink() {
+            @Override
+            public void write(ByteBuffer src) {
+                while (src.hasRemaining()) {
+                    written.write(src.get());
+                }
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+                closed[0] = true;
+            }
+        };
+        TransformingDataSink transforming = new TransformingDataSink(sink, new PcmConverter(22050, 1, 44100, 2));
+        ByteBuffer src = pcm16(4096, 1);
+        for (int i = 0; i < 4; i++) {
+            ByteBuffer block = src.duplicate();
+            block.position(i * 2048).limit((i + 1) * 2048);
+            transforming.write(block);
+            assertFalse(block.hasRemaining());
+        }
+        assertFalse(closed[0]);
+        int beforeClose = written.size();
+        transforming.close();
+        assertTrue(closed[0]);
+        assertTrue(written.size() > beforeClose);
+        // 采样率翻倍、单声道变立体声：每个输入帧4个输出采样
+        assertEquals(4096 * 2 * 4, written.size());
+    }
+}
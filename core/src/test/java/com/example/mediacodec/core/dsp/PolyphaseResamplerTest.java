@@ -0,0 +1,115 @@
+package com.example.mediacodec.core.dsp;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class PolyphaseResamplerTest {
+
+    private static float[] sine(int rate, double frequency, int frames, int channels) {
+        float[] samples = new float[frames * channels];
+        for (int f = 0; f < frames; f++) {
+            for (int c = 0; c < channels; c++) {
+                samples[f * channels + c] = (float) (0.5 * Math.sin(2 * Math.PI * frequency * f / rate + c));
+            }
+        }
+        return samples;
+    }
+
+    /**
+     * 用最小二乘求信号中指定频率的幅度（只看第一个声道，跳过开头的延迟部分）
+     */
+    private static double amplitude(float[] samples, int frames, int channels, int rate, double frequency) {
+        double re = 0;
+        double im = 0;
+        int start = frames / 4;
+        int count = frames - start - frames / 4;
+        for (int f = start; f < start + count; f++) {
+            double phase = 2 * Math.PI * frequency * f / rate;
+            re += samples[f * channels] * Math.cos(phase);
+            im += samples[f * channels] * Math.sin(phase);
+        }
+        return 2 * Math.sqrt(re * re + im * im) / count;
+    }
+
+    private static float[] resample(PolyphaseResampler resampler, float[] in, int channels, int block) {
+        int frames = in.length / channels;
+        float[] out = new float[resampler.maxOutputFrames(frames) * channels + 1024 * channels];
+        float[] blockIn = new float[block * channels];
+        float[] blockOut = new float[resampler.maxOutputFrames(block) * channels];
+        int outFrames = 0;
+        for (int f = 0; f < frames; f += block) {
+            int n = Math.min(block, frames - f);
+            System.arraycopy(in, f * channels, blockIn, 0, n * channels);
+            int produced = resampler.process(blockIn, n, blockOut);
+            System.arraycopy(blockOut, 0, out, outFrames * channels, produced * channels);
+            outFrames += produced;
+        }
+        float[] result = new float[outFrames * channels];
+        System.arraycopy(out, 0, result, 0, result.length);
+        return result;
+    }
+
+    @Test
+    public void upsample_keepsFrequencyAndAmplitude() {
+        float[] in = sine(44100, 1000, 44100, 2);
+        float[] out = resample(new PolyphaseResampler(44100, 48000, 2), in, 2, 1024);
+        // 输出帧数按比例
+        assertEquals(48000, out.length / 2, 2);
+        assertEquals(0.5, amplitude(out, out.length / 2, 2, 48000, 1000), 0.005);
+        // 其他频率上几乎没有能量
+        assertTrue(amplitude(out, out.length / 2, 2, 48000, 1100) < 0.005);
+    }
+
+    @Test
+    public void downsample_rejectsContentAboveNewNyquist() {
+        // 20kHz在22050Hz的奈奎斯特频率之上，降采样后应被滤掉而不是混叠到2050Hz
+        float[] in = sine(44100, 20000, 44100, 1);
+        float[] out = resample(new PolyphaseResampler(44100, 22050, 1), in, 1, 1000);
+        assertEquals(22050, out.length, 2);
+        double aliased = amplitude(out, out.length, 1, 22050, 22050 - 20000);
+        // 至少60dB衰减
+        assertTrue("aliased amplitude " + aliased, aliased < 0.5 / 1000);
+
+        float[] pass = resample(new PolyphaseResampler(44100, 22050, 1), sine(44100, 5000, 44100, 1), 1, 1000);
+        assertEquals(0.5, amplitude(pass, pass.length, 1, 22050, 5000), 0.005);
+    }
+
+    @Test
+    public void blockSize_doesNotChangeOutput() {
+        float[] in = sine(48000, 440, 10000, 2);
+        float[] whole = resample(new PolyphaseResampler(48000, 44100, 2), in, 2, 10000);
+        for (int block : new int[]{1, 7, 256, 4099}) {
+            float[] blocks = resample(new PolyphaseResampler(48000, 44100, 2), in, 2, block);
+            assertArrayEquals("block " + block, whole, blocks, 0f);
+        }
+    }
+
+    @Test
+    public void flush_emitsDelayedTail() {
+        PolyphaseResampler resampler = new PolyphaseResampler(16000, 48000, 1);
+        float[] in = new float[160];
+        float[] out = new float[resampler.maxOutputFrames(160)];
+        int frames = resampler.process(in, 160, out);
+        float[] tail = new float[resampler.maxOutputFrames(resampler.getDelayFrames())];
+        frames += resampler.flush(new float[resampler.getDelayFrames()], tail);
+        assertEquals(3 * (160 + resampler.getDelayFrames()), frames);
+    }
+
+    @Test
+    public void sameRate_isPassThrough() {
+        PolyphaseResampler resampler = new PolyphaseResampler(44100, 44100, 2);
+        float[] in = sine(44100, 1000, 100, 2);
+        float[] out = new float[resampler.maxOutputFrames(100) * 2];
+        assertEquals(100, resampler.process(in, 100, out));
+        for (int i = 0; i < in.length; i++) {
+            assertEquals(in[i], out[i], 0f);
+        }
+        assertEquals(0, resampler.getDelayFrames());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void hugeRatio_isRejected() {
+        new PolyphaseResampler(44100, 44101, 1);
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.mediacodec.core.dsp;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class SampleConverterTest {
+
+    @Test
+    public void int16_roundTripsEveryValue() {
+        ByteBuffer src = ByteBuffer.allocate(65536 * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (int v = Short.MIN_VALUE; v <= Short.MAX_VALUE; v++) {
+            src.putShort((short) v);
+        }
+        float[] samples = new float[65536];
+        SampleConverter.toFloat(src, 0, SampleConverter.ENCODING_PCM_16BIT, samples, 0, samples.length);
+        assertEquals(-1f, samples[0], 0f);
+        assertEquals(0f, samples[32768], 0f);
+        ByteBuffer dst = ByteBuffer.allocateDirect(src.capacity()).order(ByteOrder.LITTLE_ENDIAN);
+        SampleConverter.fromFloat(samples, 0, samples.length, dst, 0, SampleConverter.ENCODING_PCM_16BIT);
+        for (int i = 0; i < samples.length; i++) {
+            assertEquals(src.getShort(i * 2), dst.getShort(i * 2));
+        }
+        assertEquals(0, src.position() - src.capacity());
+        assertEquals(0, dst.position());
+    }
+
+    @Test
+    public void int16_roundsAndClips() {
+        ByteBuffer dst = ByteBuffer.allocate(10).order(ByteOrder.LITTLE_ENDIAN);
+        float[] samples = {1.5f, -2f, 0.99999f, 0.4f / 32768, 0.6f / 32768};
+        SampleConverter.fromFloat(samples, 0, samples.length, dst, 0, SampleConverter.ENCODING_PCM_16BIT);
+        assertEquals(Short.MAX_VALUE, dst.getShort(0));
+        assertEquals(Short.MIN_VALUE, dst.getShort(2));
+        assertEquals(Short.MAX_VALUE, dst.getShort(4));
+        assertEquals(0, dst.getShort(6));
+        assertEquals(1, dst.getShort(8));
+    }
+
+    @Test
+    public void bytesAreLittleEndianWhateverTheBufferOrder() {
+        float[] samples = {0.5f, -0.25f};
+        ByteBuffer big = ByteBuffer.allocate(8);
+        ByteBuffer little = ByteBuffer.allocate(8).order(ByteOrder.LITTLE_ENDIAN);
+        for (int encoding : new int[]{SampleConverter.ENCODING_PCM_16BIT, SampleConverter.ENCODING_PCM_FLOAT}) {
+            SampleConverter.fromFloat(samples, 0, 2, big, 0, encoding);
+            SampleConverter.fromFloat(samples, 0, 2, little, 0, encoding);
+            assertArrayEquals(little.array(), big.array());
+            float[] back = new float[2];
+            SampleConverter.toFloat(big, 0, encoding, back, 0, 2);
+            assertArrayEquals(samples, back, 0f);
+        }
+        // 0.5 -> 0x4000，小端序低字节在前
+        assertEquals(0x00, little.get(0) & 0xFF);
+        assertEquals(0x3F, little.get(3) & 0xFF);
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.mediacodec.core.io;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class ChannelDataSinkTest {
+
+    @Test
+    public void smallWrites_areBatchedUntilThreshold() throws Exception {
+        CountingChannel channel = new CountingChannel(true);
+        ChannelDataSink sink = new ChannelDataSink(channel, 8192);
+        byte[] expected = new byte[100 * 1000];
+        ByteBuffer frame = ByteBuffer.allocateDirect(1000);
+        for (int i = 0; i < 100; i++) {
+            frame.clear();
+            for (int j = 0; j < 1000; j++) {
+                byte value = (byte) (i * 31 + j);
+                frame.put(value);
+                expected[i * 1000 + j] = value;
+            }
+            frame.flip();
+            sink.write(frame);
+            assertFalse(frame.hasRemaining());
+        }
+        assertEquals(100000 / 8192, channel.writes);
+        sink.close();
+
+        assertEquals((100000 + 8191) / 8192, channel.writes);
+        assertEquals(100000, sink.getBytesWritten());
+        assertTrue(channel.closed);
+        assertArrayEquals(expected, channel.data.toByteArray());
+    }
+
+    @Test
+    public void largeBuffer_bypassesStaging() throws Exception {
+        CountingChannel channel = new CountingChannel(true);
+        ChannelDataSink sink = new ChannelDataSink(channel, 4096);
+        byte[] data = new byte[64 * 1024];
+        Arrays.fill(data, (byte) 7);
+        sink.write(ByteBuffer.wrap(data));
+        assertEquals(1, channel.writes);
+
+        sink.flush();
+        assertEquals(1, sink.getChannelWrites());
+        assertArrayEquals(data, channel.data.toByteArray());
+    }
+
+    @Test
+    public void flush_writesPendingDataOnce() throws Exception {
+        CountingChannel channel = new CountingChannel(true);
+        ChannelDataSink sink = new ChannelDataSink(channel, 4096);
+        sink.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        assertEquals(0, channel.writes);
+        sink.flush();
+        sink.flush();
+        assertEquals(1, channel.writes);
+        assertArrayEquals(new byte[]{1, 2, 3}, channel.data.toByteArray());
+    }
+
+    @Test
+    public void steadyState_doesNotAllocate() throws Exception {
+        com.sun.management.ThreadMXBean bean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        CountingChannel channel = new CountingChannel(false);
+        ChannelDataSink sink = new ChannelDataSink(channel, 64 * 1024);
+        ByteBuffer frame = ByteBuffer.allocateDirect(4096);
+        for (int i = 0; i < 20000; i++) {
+            frame.clear();
+            sink.write(frame);
+        }
+        long threadId = Thread.currentThread().getId();
+        long before = bean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < 20000; i++) {
+            frame.clear();
+            sink.write(frame);
+        }
+        long allocated = bean.getThreadAllocatedBytes(threadId) - before;
+        sink.close();
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static class CountingChannel implements WritableByteChannel {
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        final boolean record;
+        int writes;
+        boolean closed;
+
+        CountingChannel(boolean record) {
+            this.record = record;
+        }
+
+        @Override
+        public int write(ByteBuffer src) {
+            writes++;
+            int count = src.remaining();
+            if (record) {
+                byte[] bytes = new byte[count];
+                src.get(bytes);
+                data.write(bytes, 0, count);
+            } else {
+                src.position(src.limit());
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return !closed;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+}
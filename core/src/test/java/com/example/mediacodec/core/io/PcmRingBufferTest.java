@@ -0,0 +1,163 @@
+package com.example.mediacodec.core.io;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class PcmRingBufferTest {
+
+    @Test
+    public void readWrite_wrapsAround() throws Exception {
+        PcmRingBuffer ring = new PcmRingBuffer(8);
+        byte[] out = new byte[8];
+        assertTrue(ring.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6})));
+        assertEquals(4, ring.read(out, 0, 4));
+        assertTrue(ring.write(ByteBuffer.wrap(new byte[]{7, 8, 9, 10, 11})));
+        assertEquals(7, ring.available());
+        // 第一次读取到数组末尾为止
+        assertEquals(4, ring.read(out, 0, 8));
+        assertEquals(3, ring.read(out, 4, 4));
+        assertArrayEquals(new byte[]{5, 6, 7, 8, 9, 10, 11, 0}, out);
+    }
+
+    @Test
+    public void readIntoByteBuffer_wrapsAround() throws Exception {
+        PcmRingBuffer ring = new PcmRingBuffer(8);
+        ByteBuffer out = ByteBuffer.allocateDirect(8);
+        ring.write(ByteBuffer.wrap(new byte[]{1, 2, 3, 4, 5, 6}));
+        out.limit(4);
+        assertEquals(4, ring.read(out));
+        ring.write(ByteBuffer.wrap(new byte[]{7, 8, 9, 10, 11}));
+        out.clear();
+        assertEquals(4, ring.read(out));
+        assertEquals(3, ring.read(out));
+        ring.finish();
+        assertEquals(-1, ring.read(out));
+        out.flip();
+        byte[] data = new byte[out.remaining()];
+        out.get(data);
+        assertArrayEquals(new byte[]{5, 6, 7, 8, 9, 10, 11}, data);
+    }
+
+    @Test
+    public void finish_drainsThenReturnsEndOfStream() throws Exception {
+        PcmRingBuffer ring = new PcmRingBuffer(16);
+        ring.write(ByteBuffer.wrap(new byte[]{1, 2, 3}));
+        ring.finish();
+        byte[] out = new byte[16];
+        assertEquals(3, ring.read(out, 0, 16));
+        assertEquals(-1, ring.read(out, 0, 16));
+    }
+
+    @Test
+    public void producerConsumer_preservesOrder() throws Exception {
+        final PcmRingBuffer ring = new PcmRingBuffer(1000);
+        final int total = 1 << 20;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                ByteBuffer frame = ByteBuffer.allocate(333);
+                int value = 0;
+                try {
+                    while (value < total) {
+                        frame.clear();
+                        while (frame.hasRemaining() && value < total) {
+                            frame.put((byte) value++);
+                        }
+                        frame.flip();
+                        ring.write(frame);
+                    }
+                } catch (InterruptedException e) {
+                    return;
+                }
+                ring.finish();
+            }
+        });
+        producer.start();
+
+        byte[] chunk = new byte[517];
+        int expected = 0;
+        int count;
+        while ((count = ring.read(chunk, 0, chunk.length)) != -1) {
+            for (int i = 0; i < count; i++) {
+                assertEquals((byte) expected++, chunk[i]);
+            }
+        }
+        assertEquals(total, expected);
+        producer.join();
+    }
+
+    @Test
+    public void fullBuffer_blocksProducerUntilRead() throws Exception {
+        final PcmRingBuffer ring = new PcmRingBuffer(4);
+        final CountDownLatch written = new CountDownLatch(1);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ring.write(ByteBuffer.wrap(new byte[6]));
+                    written.countDown();
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        producer.start();
+        assertFalse(written.await(100, TimeUnit.MILLISECONDS));
+        assertEquals(4, ring.available());
+
+        assertEquals(4, ring.read(new byte[4], 0, 4));
+        assertTrue(written.await(1, TimeUnit.SECONDS));
+        assertEquals(2, ring.available());
+    }
+
+    @Test
+    public void awaitReadable_waitsForPreroll() throws Exception {
+        final PcmRingBuffer ring = new PcmRingBuffer(64);
+        final AtomicBoolean ready = new AtomicBoolean();
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    ready.set(ring.awaitReadable(32));
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        consumer.start();
+        ring.write(ByteBuffer.wrap(new byte[16]));
+        consumer.join(100);
+        assertTrue(consumer.isAlive());
+
+        ring.write(ByteBuffer.wrap(new byte[16]));
+        consumer.join(1000);
+        assertFalse(consumer.isAlive());
+        assertTrue(ready.get());
+    }
+
+    @Test
+    public void cancel_releasesBlockedProducer() throws Exception {
+        final PcmRingBuffer ring = new PcmRingBuffer(4);
+        final AtomicBoolean accepted = new AtomicBoolean(true);
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    accepted.set(ring.write(ByteBuffer.wrap(new byte[10])));
+                } catch (InterruptedException ignored) {
+                }
+            }
+        });
+        producer.start();
+        producer.join(100);
+        ring.cancel();
+        producer.join(1000);
+        assertFalse(producer.isAlive());
+        assertFalse(accepted.get());
+        assertEquals(-1, ring.read(new byte[4], 0, 4));
+    }
+}
@@ -0,0 +1,315 @@
+package com.example.mediacodec.core.job;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class JobSchedulerTest {
+    private static final Executor DIRECT = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    private JobScheduler mScheduler;
+
+    @After
+    public void tearDown() throws Exception {
+        if (mScheduler != null) {
+            mScheduler.shutdown();
+            assertTrue(mScheduler.awaitTermination(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    public void pendingJobs_runByPriorityThenSubmitOrder() throws Exception {
+        mScheduler = new JobScheduler(1, DIRECT);
+        CountDownLatch gate = new CountDownLatch(1);
+        mScheduler.submit("gate", new BlockingJob(gate), null);
+        final List<String> order = Collections.synchronizedList(new ArrayList<String>());
+        RecordingListener listener = new RecordingListener(5);
+        for (String name : new String[]{"low", "normal1", "high", "normal2", "low2"}) {
+            int priority = name.startsWith("low") ? JobScheduler.PRIORITY_LOW
+                    : name.equals("high") ? JobScheduler.PRIORITY_HIGH : JobScheduler.PRIORITY_NORMAL;
+            final String jobName = name;
+            mScheduler.submit(name, new TranscodeJob() {
+                @Override
+                public void run(JobContext context) {
+                    order.add(jobName);
+                }
+            }, priority, listener);
+        }
+        gate.countDown();
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals(java.util.Arrays.asList("high", "normal1", "normal2", "low", "low2"), order);
+        assertEquals(5, listener.finished.get());
+    }
+
+    @Test
+    public void concurrency_isBoundedByPoolSize() throws Exception {
+        mScheduler = new JobScheduler(3, DIRECT);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        RecordingListener listener = new RecordingListener(20);
+        for (int i = 0; i < 20; i++) {
+            mScheduler.submit("job" + i, new TranscodeJob() {
+                @Override
+                public void run(JobContext context) throws Exception {
+                    int now = running.incrementAndGet();
+                    synchronized (maxRunning) {
+                        maxRunning.set(Math.max(maxRunning.get(), now));
+                    }
+                    Thread.sleep(10);
+                    running.decrementAndGet();
+                }
+            }, listener);
+        }
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals(3, maxRunning.get());
+        assertEquals(20, listener.finished.get());
+        assertTrue(mScheduler.getActiveJobs().isEmpty());
+    }
+
+    @Test
+    public void cancelPending_neverRuns() throws Exception {
+        mScheduler = new JobScheduler(1, DIRECT);
+        CountDownLatch gate = new CountDownLatch(1);
+        mScheduler.submit("gate", new BlockingJob(gate), null);
+        final AtomicInteger runs = new AtomicInteger();
+        RecordingListener listener = new RecordingListener(1);
+        JobHandle handle = mScheduler.submit("victim", new TranscodeJob() {
+            @Override
+            public void run(JobContext context) {
+                runs.incrementAndGet();
+            }
+        }, listener);
+        handle.cancel();
+        assertEquals(JobHandle.CANCELLED, handle.getState());
+        assertEquals(1, listener.cancelled.get());
+        gate.countDown();
+        Thread.sleep(50);
+        assertEquals(0, runs.get());
+    }
+
+    @Test
+    public void cancelRunning_interruptsJob() throws Exception {
+        mScheduler = new JobScheduler(1, DIRECT);
+        final CountDownLatch started = new CountDownLatch(1);
+        RecordingListener listener = new RecordingListener(1);
+        JobHandle handle = mScheduler.submit("long", new TranscodeJob() {
+            @Override
+            public void run(JobContext context) throws Exception {
+                started.countDown();
+                Thread.sleep(10000);
+            }
+        }, listener);
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        handle.cancel();
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, listener.cancelled.get());
+        assertEquals(0, listener.failed.get());
+        assertEquals(JobHandle.CANCELLED, handle.getState());
+
+        // 中断状态不会影响后面的任务
+        RecordingListener next = new RecordingListener(1);
+        mScheduler.submit("next", new TranscodeJob() {
+            @Override
+            public void run(JobContext context) throws Exception {
+                Thread.sleep(20);
+            }
+        }, next);
+        assertTrue(next.done.await(5, TimeUnit.SECONDS));
+        assertEquals(1, next.finished.get());
+    }
+
+    @Test
+    public void cancelAfterReturn_staysFinished() throws Exception {
+        final List<Runnable> queued = Collections.synchronizedList(new ArrayList<Runnable>());
+        mScheduler = new JobScheduler(1, new QueueingExecutor(queued), 0);
+        RecordingListener listener = new RecordingListener(1);
+        JobHandle handle = mScheduler.submit("quick", new TranscodeJob() {
+            @Override
+            public void run(JobContext context) {
+            }
+        }, listener);
+        // 任务已返回，完成回调还在主线程排队时取消
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (queued.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(1, queued.size());
+        handle.cancel();
+        assertEquals(JobHandle.FINISHED, handle.getState());
+        assertFalse(handle.isCancelled());
+
+        while (!queued.isEmpty()) {
+            queued.remove(0).run();
+        }
+        assertEquals(1, listener.finished.get());
+        assertEquals(0, listener.cancelled.get());
+    }
+
+    @Test
+    public void failureAndProgress_areReported() throws Exception {
+        mScheduler = new JobScheduler(2, DIRECT, 20);
+        RecordingListener listener = new RecordingListener(1);
+        final long[] elapsedNanos = new long[1];
+        JobHandle handle = mScheduler.submit("fail", new TranscodeJob() {
+            @Override
+            public void run(JobContext context) throws Exception {
+                // 尽可能快地报告进度，持续约200ms
+                long start = System.nanoTime();
+                long deadline = start + TimeUnit.MILLISECONDS.toNanos(200);
+                long i = 0;
+                while (System.nanoTime() < deadline) {
+                    context.setProgress(++i, Long.MAX_VALUE);
+                }
+                elapsedNanos[0] = System.nanoTime() - start;
+                throw new IllegalStateException("codec error");
+            }
+        }, listener);
+        assertTrue(listener.done.await(5, TimeUnit.SECONDS));
+        assertEquals(JobHandle.FAILED, handle.getState());
+        assertEquals("codec error", listener.error.getMessage());
+        // 回调次数不超过运行时间除以最小间隔再加一
+        long bound = elapsedNanos[0] / TimeUnit.MILLISECONDS.toNanos(20) + 1;
+        assertTrue(listener.progress.get() + " > " + bound, listener.progress.get() <= bound);
+        assertTrue(listener.progress.get() >= 2);
+        assertTrue(listener.lastDone > 0);
+        assertSame(listener.lastProgress, handle.getProgress());
+    }
+
+    @Test
+    public void slowCallbackThread_atMostOneProgressPending() throws Exception {
+        // 模拟忙碌的主线程：回调只排队不执行。即使不限制间隔，排队的进度回调也只有一个
+        final List<Runnable> queued = Collections.synchronizedList(new ArrayList<Runnable>());
+        mScheduler = new JobScheduler(1, new QueueingExecutor(queued), 0);
+        final CountDownLatch reported = new CountDownLatch(1);
+        final int[] queuedAtEnd = new int[1];
+        RecordingListener listener = new RecordingListener(1);
+        mScheduler.submit("fast", new TranscodeJob() {
+            @Override
+            public void run(JobContext context) throws Exception {
+                for (int i = 1; i <= 1000000; i++) {
+                    context.setProgress(i, 1000000);
+                }
+                queuedAtEnd[0] = queued.size();
+                reported.countDown();
+                Thread.sleep(10000);
+            }
+        }, listener);
+        assertTrue(reported.await(5, TimeUnit.SECONDS));
+        assertEquals(1, queuedAtEnd[0]);
+        // 回调执行时读取最新的进度，百万次报告合并为一次回调
+        queued.remove(0).run();
+        assertEquals(1, listener.progress.get());
+        assertEquals(1000000, listener.lastDone);
+        assertEquals(1.0, listener.lastProgress.getFraction(), 0);
+    }
+
+    @Test
+    public void progressAfterCallback_isPostedAgain() throws Exception {
+        final List<Runnable> queued = Collections.synchronizedList(new ArrayList<Runnable>());
+        mScheduler = new JobScheduler(1, new QueueingExecutor(queued), 0);
+        final CountDownLatch[] steps = {new CountDownLatch(1), new CountDownLatch(1), new CountDownLatch(1)};
+        RecordingListener listener = new RecordingListener(1);
+        mScheduler.submit("steps", new TranscodeJob() {
+            @Override
+            public void run(JobContext context) throws Exception {
+                context.setProgress(1, 10);
+                steps[0].countDown();
+                steps[1].await();
+                // 进度没有变化时不投递
+                context.setProgress(1, 10);
+                context.setProgress(2, 10);
+                steps[2].countDown();
+                Thread.sleep(10000);
+            }
+        }, listener);
+        assertTrue(steps[0].await(5, TimeUnit.SECONDS));
+        queued.remove(0).run();
+        steps[1].countDown();
+        assertTrue(steps[2].await(5, TimeUnit.SECONDS));
+        assertEquals(1, queued.size());
+        queued.remove(0).run();
+        assertEquals(2, listener.progress.get());
+        assertEquals(2, listener.lastDone);
+    }
+
+    private static class QueueingExecutor implements Executor {
+        private final List<Runnable> mQueue;
+
+        QueueingExecutor(List<Runnable> queue) {
+            this.mQueue = queue;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            mQueue.add(command);
+        }
+    }
+
+    private static class BlockingJob implements TranscodeJob {
+        private final CountDownLatch mGate;
+
+        BlockingJob(CountDownLatch gate) {
+            this.mGate = gate;
+        }
+
+        @Override
+        public void run(JobContext context) throws Exception {
+            mGate.await();
+        }
+    }
+
+    private static class RecordingListener implements JobListener {
+        final CountDownLatch done;
+        final AtomicInteger finished = new AtomicInteger();
+        final AtomicInteger failed = new AtomicInteger();
+        final AtomicInteger cancelled = new AtomicInteger();
+        final AtomicInteger progress = new AtomicInteger();
+        volatile Throwable error;
+        volatile long lastDone;
+        volatile JobProgress lastProgress;
+
+        RecordingListener(int jobs) {
+            done = new CountDownLatch(jobs);
+        }
+
+        @Override
+        public void onProgress(JobHandle job, JobProgress progress) {
+            this.progress.incrementAndGet();
+            lastDone = progress.getDone();
+            lastProgress = progress;
+        }
+
+        @Override
+        public void onFinish(JobHandle job) {
+            finished.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void onFail(JobHandle job, Throwable error) {
+            this.error = error;
+            failed.incrementAndGet();
+            done.countDown();
+        }
+
+        @Override
+        public void onCancel(JobHandle job) {
+            cancelled.incrementAndGet();
+            done.countDown();
+        }
+    }
+}
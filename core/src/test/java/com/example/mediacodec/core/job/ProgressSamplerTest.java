@@ -0,0 +1,97 @@
+package com.example.mediacodec.core.job;
+
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ProgressSamplerTest {
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    @Test
+    public void fastProducer_postsAtMostOncePerInterval() {
+        ProgressSampler sampler = new ProgressSampler(100 * MS);
+        sampler.start(0);
+        // 每微秒报告一次，持续1秒，回调立即执行
+        int posts = 0;
+        long lastPost = -1;
+        for (long t = 0; t < 1000 * MS; t += 1000) {
+            if (sampler.update(t, 1000 * MS, t)) {
+                assertTrue(lastPost < 0 || t - lastPost >= 100 * MS);
+                lastPost = t;
+                posts++;
+                sampler.sample(t);
+            }
+        }
+        assertEquals(10, posts);
+    }
+
+    @Test
+    public void pendingCallback_blocksFurtherPosts() {
+        ProgressSampler sampler = new ProgressSampler(0);
+        sampler.start(0);
+        assertTrue(sampler.update(1, 10, 0));
+        for (int i = 2; i < 10; i++) {
+            assertFalse(sampler.update(i, 10, i * MS));
+        }
+        JobProgress progress = sampler.sample(10 * MS);
+        assertEquals(9, progress.getDone());
+        // 进度没有变化时不再投递
+        assertFalse(sampler.update(9, 10, 20 * MS));
+        assertTrue(sampler.update(10, 10, 20 * MS));
+    }
+
+    @Test
+    public void sample_reportsMetricsThroughputAndEta() {
+        TranscodeMetrics metrics = new TranscodeMetrics("test");
+        ProgressSampler sampler = new ProgressSampler(100 * MS);
+        sampler.start(0);
+        JobProgress progress = sampler.sample(0);
+        assertEquals(-1, progress.getPositionUs());
+        assertEquals(-1, progress.getEtaMs());
+        sampler.setMetrics(metrics);
+        // 每秒处理10%、写入1MB，10秒完成
+        for (int second = 1; second <= 5; second++) {
+            metrics.bytesWritten.add(1 << 20);
+            metrics.framesOut.add(43);
+            metrics.setMediaTimeUs(second * 2000000L);
+            assertTrue(sampler.update(second, 10, second * 1000 * MS));
+            progress = sampler.sample(second * 1000 * MS);
+        }
+        assertEquals(5, progress.getDone());
+        assertEquals(0.5, progress.getFraction(), 1e-9);
+        assertEquals(10000000, progress.getPositionUs());
+        assertEquals(5 * 43, progress.getFrames());
+        assertEquals(5 << 20, progress.getBytes());
+        assertEquals(5000, progress.getElapsedMs());
+        assertEquals(1 << 20, progress.getBytesPerSecond(), 1);
+        assertEquals(5000, progress.getEtaMs(), 1);
+    }
+
+    @Test
+    public void eta_followsSpeedChange() {
+        ProgressSampler sampler = new ProgressSampler(0);
+        sampler.start(0);
+        for (int second = 1; second <= 3; second++) {
+            sampler.update(second, 100, second * 1000 * MS);
+            sampler.sample(second * 1000 * MS);
+        }
+        // 之后速度变为每秒5%，剩余时间向新的速度收敛
+        JobProgress progress = null;
+        long done = 3;
+        for (int second = 4; second <= 20; second++) {
+            done += 5;
+            sampler.update(done, 100, second * 1000 * MS);
+            progress = sampler.sample(second * 1000 * MS);
+        }
+        long expected = (100 - done) * 1000 / 5;
+        assertEquals(expected, progress.getEtaMs(), expected * 0.05);
+        // 不知道total时无法估计
+        sampler.update(200, 0, 21 * 1000 * MS);
+        assertEquals(-1, sampler.sample(21 * 1000 * MS).getEtaMs());
+        assertEquals(-1, sampler.sample(21 * 1000 * MS).getFraction(), 0);
+    }
+}
@@ -0,0 +1,111 @@
+package com.example.mediacodec.core.loudness;
+
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LookaheadLimiterTest {
+
+    private static float[] process(LookaheadLimiter limiter, float[] input, int channels, int chunk) {
+        int frames = input.length / channels;
+        float[] output = new float[input.length];
+        float[] buffer = new float[(chunk + limiter.getLatencyFrames()) * channels];
+        int out = 0;
+        for (int start = 0; start < frames; start += chunk) {
+            int n = Math.min(chunk, frames - start);
+            System.arraycopy(input, start * channels, buffer, 0, n * channels);
+            // 原地处理
+            int produced = limiter.process(buffer, 0, buffer, 0, n);
+            System.arraycopy(buffer, 0, output, out * channels, produced * channels);
+            out += produced;
+        }
+        int produced = limiter.flush(buffer, 0);
+        System.arraycopy(buffer, 0, output, out * channels, produced * channels);
+        assertEquals(frames, out + produced);
+        return output;
+    }
+
+    @Test
+    public void quietSignal_passesUnchanged() {
+        LookaheadLimiter limiter = new LookaheadLimiter(2, 0.5f, 64, 480);
+        float[] input = new float[1000 * 2];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (float) (0.4 * Math.sin(i * 0.01));
+        }
+        assertArrayEquals(input, process(limiter, input, 2, 77), 0);
+        // flush之后可以处理新的流
+        assertArrayEquals(input, process(limiter, input, 2, 1000), 0);
+    }
+
+    @Test
+    public void loudSignal_neverExceedsCeilingAndRampsSmoothly() {
+        float ceiling = 0.5f;
+        int lookahead = 48;
+        LookaheadLimiter limiter = new LookaheadLimiter(1, ceiling, lookahead, 4800);
+        Random random = new Random(3);
+        float[] input = new float[20000];
+        for (int i = 0; i < input.length; i++) {
+            input[i] = (float) (0.3 * Math.sin(i * 0.05));
+        }
+        // 突发的峰值
+        for (int i = 5000; i < 5200; i++) {
+            input[i] = (float) (0.95 * (random.nextBoolean() ? 1 : -1));
+        }
+        input[12000] = -1f;
+        float[] output = process(limiter, input, 1, 333);
+        for (int i = 0; i < output.length; i++) {
+            assertTrue("frame " + i + ": " + output[i], Math.abs(output[i]) <= ceiling);
+        }
+        // 峰值之前lookahead帧开始线性降低增益，每帧的变化不超过1/lookahead
+        float previous = 1f;
+        for (int i = 4900; i < 5000; i++) {
+            float gain = output[i] / input[i];
+            assertTrue("frame " + i, Math.abs(gain - previous) <= 1.0f / lookahead + 1e-4f);
+            previous = gain;
+        }
+        assertEquals(input[4900], output[4900], 0);
+        assertEquals(ceiling / 0.95f, output[5100] / input[5100], 1e-4);
+    }
+
+    @Test
+    public void normalizer_bringsQuietInputToTarget() {
+        PcmFormat format = new PcmFormat(48000, 2);
+        LoudnessNormalizer normalizer = new LoudnessNormalizer(format, -16, -1);
+        // 30秒-30dBFS的1kHz正弦（-30 LUFS）
+        int frames = 48000 * 30;
+        ByteBuffer src = ByteBuffer.allocate(4800 * 4).order(ByteOrder.LITTLE_ENDIAN);
+        ByteBuffer dst = ByteBuffer.allocate(normalizer.maxOutputSize(src.capacity())).order(ByteOrder.LITTLE_ENDIAN);
+        LoudnessMeter output = new LoudnessMeter(format);
+        double amplitude = 32768 * Math.pow(10, -30 / 20.0);
+        int outFrames = 0;
+        for (int f = 0; f < frames; ) {
+            src.clear();
+            while (src.hasRemaining()) {
+                short value = (short) Math.round(amplitude * Math.sin(2 * Math.PI * 1000 * f++ / 48000));
+                src.putShort(value).putShort(value);
+            }
+            src.flip();
+            dst.clear();
+            normalizer.process(src, dst);
+            dst.flip();
+            outFrames += dst.remaining() / 4;
+            // 只测量增益稳定之后的部分
+            if (f > 48000 * 20) {
+                output.accept(dst);
+            }
+        }
+        dst.clear();
+        normalizer.flush(dst);
+        dst.flip();
+        assertEquals(frames, outFrames + dst.remaining() / 4);
+        assertEquals(-30, normalizer.getMeter().getIntegratedLoudness(), 0.1);
+        assertEquals(14, normalizer.getGainDb(), 0.1);
+        assertEquals(-16, output.getIntegratedLoudness(), 0.2);
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.mediacodec.core.loudness;
+
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+/**
+ * 参考信号取自EBU Tech 3341的最低要求测试用例：1kHz正弦，两个声道相同
+ */
+public class LoudnessMeterTest {
+    private static final PcmFormat STEREO_48K = new PcmFormat(48000, 2);
+
+    /**
+     * 按块送入连续相位的正弦
+     */
+    private static class SineFeeder {
+        final LoudnessMeter mMeter;
+        final int mChannels;
+        final float[] mBlock = new float[997 * 6];
+        double mPhase;
+
+        SineFeeder(LoudnessMeter meter) {
+            mMeter = meter;
+            mChannels = meter.getFormat().getChannelCount();
+        }
+
+        /**
+         * @param levels 每声道的电平（dBFS），个数少于声道数时其余声道取最后一个
+         */
+        SineFeeder feed(double frequency, double seconds, double... levels) {
+            int rate = mMeter.getFormat().getSampleRate();
+            long frames = Math.round(seconds * rate);
+            while (frames > 0) {
+                int n = (int) Math.min(frames, mBlock.length / mChannels);
+                for (int f = 0; f < n; f++) {
+                    double value = Math.sin(mPhase);
+                    mPhase += 2 * Math.PI * frequency / rate;
+                    for (int c = 0; c < mChannels; c++) {
+                        double level = levels[Math.min(c, levels.length - 1)];
+                        mBlock[f * mChannels + c] = (float) (value * Math.pow(10, level / 20));
+                    }
+                }
+                mMeter.process(mBlock, 0, n);
+                frames -= n;
+            }
+            return this;
+        }
+    }
+
+    private static SineFeeder feeder(PcmFormat format) {
+        return new SineFeeder(new LoudnessMeter(format));
+    }
+
+    @Test
+    public void sine_at23dBFS_measuresMinus23Lufs() {
+        SineFeeder feeder = feeder(STEREO_48K).feed(1000, 20, -23);
+        assertEquals(-23, feeder.mMeter.getIntegratedLoudness(), 0.1);
+        assertEquals(-23, feeder.mMeter.getMomentaryLoudness(), 0.1);
+        assertEquals(-23, feeder.mMeter.getShortTermLoudness(), 0.1);
+        assertEquals(-33, feeder(STEREO_48K).feed(1000, 20, -33).mMeter.getIntegratedLoudness(), 0.1);
+    }
+
+    @Test
+    public void sine_atOtherSampleRates() {
+        assertEquals(-23, feeder(new PcmFormat(44100, 2)).feed(1000, 20, -23).mMeter.getIntegratedLoudness(), 0.1);
+        // 单声道只有一个声道的能量，比相同电平的立体声低3dB
+        assertEquals(-26, feeder(new PcmFormat(22050, 1)).feed(1000, 20, -23).mMeter.getIntegratedLoudness(), 0.1);
+    }
+
+    @Test
+    public void relativeGate_ignoresQuietParts() {
+        SineFeeder feeder = feeder(STEREO_48K).feed(1000, 10, -36).feed(1000, 60, -23).feed(1000, 10, -36);
+        assertEquals(-23, feeder.mMeter.getIntegratedLoudness(), 0.1);
+    }
+
+    @Test
+    public void absoluteGate_ignoresNearSilence() {
+        SineFeeder feeder = feeder(STEREO_48K).feed(1000, 10, -72).feed(1000, 10, -36).feed(1000, 60, -23)
+                .feed(1000, 10, -36).feed(1000, 10, -72);
+        assertEquals(-23, feeder.mMeter.getIntegratedLoudness(), 0.1);
+    }
+
+    @Test
+    public void gating_ofChangingLevels() {
+        SineFeeder feeder = feeder(STEREO_48K).feed(1000, 20, -26).feed(1000, 20.1, -20).feed(1000, 20, -26);
+        assertEquals(-23, feeder.mMeter.getIntegratedLoudness(), 0.1);
+    }
+
+    @Test
+    public void surround_weightsChannels() {
+        // 5.1：L R -28dBFS，C -24dBFS，环绕声道-30dBFS并加权1.41，LFE不计，合计-23 LUFS（Tech 3341 用例6）
+        SineFeeder feeder = feeder(new PcmFormat(48000, 6)).feed(1000, 20, -28, -28, -24, -50, -30, -30);
+        assertEquals(-23, feeder.mMeter.getIntegratedLoudness(), 0.2);
+    }
+
+    @Test
+    public void silence_isNegativeInfinity() {
+        SineFeeder feeder = feeder(STEREO_48K).feed(1000, 5, -200);
+        assertTrue(Double.isInfinite(feeder.mMeter.getIntegratedLoudness()));
+        assertEquals(0, feeder.mMeter.getInfo().gainDb(-16, -1), 0);
+    }
+
+    @Test
+    public void truePeak_findsPeaksBetweenSamples() {
+        // fs/4的正弦相位45°：采样点都在±0.707（-3dBFS），真峰值为0dBTP
+        LoudnessMeter meter = new LoudnessMeter(STEREO_48K);
+        float[] block = new float[4800 * 2];
+        for (int f = 0; f < 4800; f++) {
+            float value = (float) Math.sin(Math.PI / 2 * f + Math.PI / 4);
+            block[f * 2] = value;
+            block[f * 2 + 1] = value;
+        }
+        meter.process(block, 0, 4800);
+        assertEquals(0, meter.getTruePeak(), 0.2);
+
+        // 低频正弦的真峰值就是采样峰值
+        SineFeeder feeder = feeder(STEREO_48K).feed(997, 1, -6);
+        assertEquals(-6, feeder.mMeter.getTruePeak(), 0.1);
+    }
+
+    @Test
+    public void accept_readsPcm16InBufferOrder() {
+        LoudnessMeter meter = new LoudnessMeter(STEREO_48K);
+        ByteBuffer pcm = ByteBuffer.allocate(48000 * 4 * 5).order(ByteOrder.LITTLE_ENDIAN);
+        double amplitude = 32768 * Math.pow(10, -23 / 20.0);
+        for (int f = 0; f < 48000 * 5; f++) {
+            short value = (short) Math.round(amplitude * Math.sin(2 * Math.PI * 1000 * f / 48000));
+            pcm.putShort(value).putShort(value);
+        }
+        pcm.flip();
+        meter.accept(pcm);
+        assertEquals(0, pcm.position());
+        assertEquals(-23, meter.getIntegratedLoudness(), 0.1);
+    }
+
+    @Test
+    public void info_gainRespectsCeiling() {
+        // 峰值只允许提升7dB
+        assertEquals(7, new LoudnessInfo(-30, -8).gainDb(-16, -1), 1e-9);
+        assertEquals(5, new LoudnessInfo(-21, -8).gainDb(-16, -1), 1e-9);
+        assertEquals(-7, new LoudnessInfo(-9, -0.5).gainDb(-16, -1), 1e-9);
+    }
+
+    @Test
+    public void info_sidecarRoundTripAndStaleness() throws Exception {
+        File pcm = File.createTempFile("loud", ".pcm");
+        try {
+            FileOutputStream out = new FileOutputStream(pcm);
+            out.write(new byte[400]);
+            out.close();
+            assertNull(LoudnessInfo.load(pcm));
+            new LoudnessInfo(-19.5, -2.25).save(pcm);
+            LoudnessInfo loaded = LoudnessInfo.load(pcm);
+            assertEquals(-19.5, loaded.getIntegratedLoudness(), 0);
+            assertEquals(-2.25, loaded.getTruePeak(), 0);
+
+            out = new FileOutputStream(pcm, true);
+            out.write(1);
+            out.close();
+            assertNull(LoudnessInfo.load(pcm));
+        } finally {
+            LoudnessInfo.sidecarFile(pcm).delete();
+            pcm.delete();
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package com.example.mediacodec.core.memory;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class DirectBufferPoolTest {
+
+    @Test
+    public void capacity_roundsUpToPowerOfTwo() {
+        assertEquals(DirectBufferPool.MIN_SIZE, DirectBufferPool.capacityFor(1));
+        assertEquals(1024, DirectBufferPool.capacityFor(1024));
+        assertEquals(2048, DirectBufferPool.capacityFor(1025));
+        assertEquals(256 * 1024, DirectBufferPool.capacityFor(200 * 1024));
+        assertEquals(DirectBufferPool.MAX_SIZE, DirectBufferPool.capacityFor(DirectBufferPool.MAX_SIZE));
+        assertEquals(DirectBufferPool.MAX_SIZE + 1, DirectBufferPool.capacityFor(DirectBufferPool.MAX_SIZE + 1));
+    }
+
+    @Test
+    public void lease_reusesReleasedBuffer() {
+        DirectBufferPool pool = new DirectBufferPool();
+        PooledBuffer first = pool.lease(3000);
+        ByteBuffer buffer = first.buffer();
+        assertTrue(buffer.isDirect());
+        assertEquals(4096, buffer.capacity());
+        assertEquals(0, buffer.position());
+        assertEquals(3000, buffer.limit());
+        buffer.putInt(42);
+        first.release();
+
+        PooledBuffer second = pool.lease(4000);
+        assertSame(buffer, second.buffer());
+        assertEquals(0, second.buffer().position());
+        assertEquals(4000, second.buffer().limit());
+        // 不同级别不共用
+        PooledBuffer other = pool.lease(100);
+        assertEquals(1024, other.capacity());
+        assertEquals(2, pool.getAllocationCount());
+        second.release();
+        other.release();
+    }
+
+    @Test
+    public void release_onOtherThreadReachesSharedList() throws Exception {
+        // 不使用线程缓存，buffer只能经共享空闲表回到借出线程
+        final DirectBufferPool pool = new DirectBufferPool(0, DirectBufferPool.DEFAULT_SHARED_BYTES, false);
+        final PooledBuffer leased = pool.lease(8192);
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                leased.release();
+            }
+        });
+        releaser.start();
+        releaser.join();
+        PooledBuffer again = pool.lease(8192);
+        assertSame(leased, again);
+        assertEquals(1, pool.getAllocationCount());
+        again.release();
+    }
+
+    @Test
+    public void sharedList_isBounded() {
+        // 每级最多保留2个（以及线程缓存中的1个），其余丢弃
+        DirectBufferPool pool = new DirectBufferPool(1, 0, false);
+        List<PooledBuffer> buffers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            buffers.add(pool.lease(1024));
+        }
+        for (PooledBuffer buffer : buffers) {
+            buffer.release();
+        }
+        for (int i = 0; i < 10; i++) {
+            pool.lease(1024);
+        }
+        assertEquals(10 + 10 - 3, pool.getAllocationCount());
+    }
+
+    @Test
+    public void oversized_isNotPooled() {
+        DirectBufferPool pool = new DirectBufferPool();
+        PooledBuffer big = pool.lease(DirectBufferPool.MAX_SIZE + 1);
+        assertEquals(DirectBufferPool.MAX_SIZE + 1, big.capacity());
+        big.release();
+        assertNotSame(big, pool.lease(DirectBufferPool.MAX_SIZE + 1));
+        assertEquals(2, pool.getAllocationCount());
+    }
+
+    @Test
+    public void releaseTwice_throws() {
+        PooledBuffer buffer = new DirectBufferPool().lease(10);
+        buffer.release();
+        try {
+            buffer.release();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+        try {
+            buffer.buffer();
+            fail();
+        } catch (IllegalStateException expected) {
+        }
+    }
+
+    @Test
+    public void leakDetection_reportsUnreleasedBuffer() throws Exception {
+        DirectBufferPool pool = new DirectBufferPool(DirectBufferPool.DEFAULT_CACHE_SIZE,
+                DirectBufferPool.DEFAULT_SHARED_BYTES, true);
+        final AtomicReference<Throwable> leasedAt = new AtomicReference<>();
+        pool.setLeakListener(new DirectBufferPool.LeakListener() {
+            @Override
+            public void onLeak(int capacity, Throwable stack) {
+                assertEquals(2048, capacity);
+                leasedAt.set(stack);
+            }
+        });
+        // 正常release的不算泄漏
+        pool.lease(2048).release();
+        leak(pool);
+        for (int i = 0; i < 100 && pool.getLeakCount() == 0; i++) {
+            System.gc();
+            Thread.sleep(10);
+            pool.checkLeaks();
+        }
+        assertEquals(1, pool.getLeakCount());
+        assertNotNull(leasedAt.get());
+        // 调用栈中有借出的位置
+        boolean found = false;
+        for (StackTraceElement element : leasedAt.get().getStackTrace()) {
+            found |= element.getMethodName().equals("leak");
+        }
+        assertTrue(found);
+    }
+
+    private static void leak(DirectBufferPool pool) {
+        pool.lease(2048).buffer().put((byte) 1);
+    }
+
+    /**
+     * 多个线程随机大小地借出、写入、检查、把一部分交给其他线程归还：
+     * 同一个buffer不会同时借给两处，数据不会被其他线程改写，稳态下不再分配
+     */
+    @Test
+    public void stress_concurrentLeaseAndRelease() throws Exception {
+        final int threads = 8;
+        final int iterations = 20000;
+        final DirectBufferPool pool = new DirectBufferPool(2, 64 * 1024, true);
+        final ConcurrentHashMap<PooledBuffer, Boolean> inUse = new ConcurrentHashMap<>();
+        final BlockingQueue<PooledBuffer> handOff = new ArrayBlockingQueue<>(64);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final int seed = t;
+            workers[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        start.await();
+                        Random random = new Random(seed);
+                        for (int i = 0; i < iterations; i++) {
+                            PooledBuffer lease = pool.lease(1 + random.nextInt(16 * 1024));
+                            assertNull("leased twice", inUse.putIfAbsent(lease, Boolean.TRUE));
+                            ByteBuffer buffer = lease.buffer();
+                            byte mark = (byte) (seed * 31 + i);
+                            int count = Math.min(buffer.limit(), 64);
+                            for (int j = 0; j < count; j++) {
+                                buffer.put(j, mark);
+                            }
+                            Thread.yield();
+                            for (int j = 0; j < count; j++) {
+                                assertEquals(mark, buffer.get(j));
+                            }
+                            inUse.remove(lease);
+                            if ((i & 3) == 0 && handOff.offer(lease)) {
+                                //交给其他线程归还
+                                continue;
+                            }
+                            lease.release();
+                            PooledBuffer other = handOff.poll();
+                            if (other != null) {
+                                other.release();
+                            }
+                        }
+                    } catch (Throwable e) {
+                        failure.compareAndSet(null, e);
+                    }
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        if (failure.get() != null) {
+            throw new AssertionError(failure.get());
+        }
+        PooledBuffer remaining;
+        while ((remaining = handOff.poll()) != null) {
+            remaining.release();
+        }
+        long allocations = pool.getAllocationCount();
+        assertTrue("allocations " + allocations, allocations < threads * iterations / 100);
+        pool.checkLeaks();
+        assertEquals(0, pool.getLeakCount());
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.mediacodec.core.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class HistogramTest {
+
+    @Test
+    public void bucketIndex_boundsContainValue() {
+        long[] values = {0, 1, 7, 8, 15, 16, 17, 31, 32, 1000, 123456789L, Long.MAX_VALUE};
+        for (long value : values) {
+            int index = Histogram.bucketIndex(value);
+            assertTrue(value + " > upper bound", value <= Histogram.bucketUpperBound(index));
+            if (index > 0) {
+                assertTrue(value + " <= previous bound", value > Histogram.bucketUpperBound(index - 1));
+            }
+        }
+    }
+
+    @Test
+    public void percentiles_withinBucketError() {
+        Histogram histogram = new Histogram();
+        for (int i = 1; i <= 10000; i++) {
+            histogram.record(i * 1000L);
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10000, snapshot.getCount());
+        assertEquals(10000000L, snapshot.getMax());
+        assertEquals(5000500.0, snapshot.getMean(), 0.001);
+        assertBetween(5000000, snapshot.getPercentile(50), 0.125);
+        assertBetween(9900000, snapshot.getPercentile(99), 0.125);
+        assertEquals(10000000L, snapshot.getPercentile(100));
+    }
+
+    private static void assertBetween(long expected, long actual, double error) {
+        assertTrue(actual + " < " + expected, actual >= expected);
+        assertTrue(actual + " too large for " + expected, actual <= expected * (1 + error));
+    }
+
+    @Test
+    public void record_negativeAndEmpty() {
+        Histogram histogram = new Histogram();
+        assertEquals(0, histogram.snapshot().getPercentile(99));
+        histogram.record(-5);
+        assertEquals(1, histogram.snapshot().getCount());
+        assertEquals(0, histogram.snapshot().getMax());
+    }
+
+    @Test
+    public void record_concurrentWritersLoseNothing() throws Exception {
+        final Histogram histogram = new Histogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int offset = t;
+            threads[t] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 50000; i++) {
+                        histogram.record(i + offset);
+                    }
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Histogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(200000, snapshot.getCount());
+        assertEquals(50002, snapshot.getMax());
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.mediacodec.core.metrics;
+
+import com.example.mediacodec.core.io.DataSink;
+
+import org.junit.Test;
+
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class TranscodeMetricsTest {
+
+    @Test
+    public void snapshot_serializesAsSingleJsonLine() {
+        TranscodeMetrics metrics = new TranscodeMetrics("decode \"in.aac\"");
+        metrics.framesIn.add(3);
+        metrics.bytesWritten.add(4096);
+        metrics.recordWait(true, 1500);
+        metrics.recordWait(false, 2500);
+        String json = metrics.snapshot().toJson();
+        assertTrue(json, json.startsWith("{\"name\":\"decode \\\"in.aac\\\"\",\"time\":"));
+        assertTrue(json, json.contains("\"frames_in\":3,"));
+        assertTrue(json, json.contains("\"bytes_written\":4096,"));
+        assertTrue(json, json.contains("\"input_wait_ns\":{\"count\":1,\"mean\":1500,"));
+        assertTrue(json, json.contains("\"output_wait_ns\":{\"count\":1,\"mean\":2500,"));
+        assertFalse(json.contains("\n"));
+    }
+
+    @Test
+    public void realtimeFactor_isMediaTimeOverElapsedTime() throws Exception {
+        TranscodeMetrics metrics = new TranscodeMetrics("encode");
+        assertEquals(0, metrics.getRealtimeFactor(), 0);
+        metrics.start();
+        Thread.sleep(50);
+        metrics.setMediaTimeUs(1000000);
+        metrics.stop();
+        double factor = metrics.getRealtimeFactor();
+        assertTrue(String.valueOf(factor), factor > 2 && factor <= 20);
+        assertEquals(factor, metrics.getRealtimeFactor(), 0);
+    }
+
+    @Test
+    public void registry_dumpsFinishedJobsAsJsonLines() throws Exception {
+        MetricsRegistry registry = new MetricsRegistry();
+        StringWriter out = new StringWriter();
+        registry.setJsonLinesWriter(out);
+        TranscodeMetrics a = registry.register("a");
+        TranscodeMetrics b = registry.register("b");
+        assertEquals(2, registry.snapshotAll().size());
+
+        final int[] written = {0};
+        DataSink sink = new MeteredDataSink(new DataSink() {
+            @Override
+            public void write(ByteBuffer src) {
+                written[0] += src.remaining();
+                src.position(src.limit());
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        }, a);
+        sink.write(ByteBuffer.allocate(100));
+        sink.write(ByteBuffer.allocate(28));
+        assertEquals(128, written[0]);
+
+        registry.unregister(a);
+        registry.unregister(b);
+        assertTrue(registry.snapshotAll().isEmpty());
+        String[] lines = out.toString().split("\n");
+        assertEquals(2, lines.length);
+        assertTrue(lines[0], lines[0].contains("\"name\":\"a\""));
+        assertTrue(lines[0], lines[0].contains("\"bytes_written\":128,"));
+        assertTrue(lines[0], lines[0].contains("\"write_latency_ns\":{\"count\":2,"));
+        assertTrue(lines[1], lines[1].contains("\"name\":\"b\""));
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.mediacodec.core.mp4;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class Mp4WriterTest {
+    private static final int SAMPLE_RATE = 44100;
+    // 100帧，跨3个chunk（43+43+14）
+    private static final int FRAME_COUNT = 100;
+    private static final byte[] ASC = {0x12, 0x10};
+
+    private File mFile;
+    private File mScratch;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("mp4", ".m4a");
+        mScratch = File.createTempFile("mp4", ".mdat");
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+        mScratch.delete();
+    }
+
+    private static int frameSize(int index) {
+        return 100 + index * 37 % 300;
+    }
+
+    private static ByteBuffer frame(int index) {
+        ByteBuffer frame = ByteBuffer.allocate(frameSize(index));
+        for (int i = 0; i < frame.capacity(); i++) {
+            frame.put((byte) (index + i));
+        }
+        frame.flip();
+        return frame;
+    }
+
+    private static long frameTimeUs(int index) {
+        return index * 1024L * 1000000 / SAMPLE_RATE;
+    }
+
+    private void writeFrames(Mp4Writer writer) throws Exception {
+        writer.setAudioSpecificConfig(ByteBuffer.wrap(ASC));
+        for (int i = 0; i < FRAME_COUNT; i++) {
+            ByteBuffer frame = frame(i);
+            writer.writeFrame(frame, frameTimeUs(i));
+            assertFalse(frame.hasRemaining());
+        }
+        assertEquals(FRAME_COUNT, writer.getFrameCount());
+        writer.close();
+    }
+
+    private ByteBuffer readFile() throws Exception {
+        RandomAccessFile file = new RandomAccessFile(mFile, "r");
+        ByteBuffer data = ByteBuffer.allocate((int) file.length());
+        file.getChannel().read(data, 0);
+        file.close();
+        data.flip();
+        return data;
+    }
+
+    @Test
+    public void moovAtEnd_writesFramesAndSampleTable() throws Exception {
+        writeFrames(new Mp4Writer(new RandomAccessFile(mFile, "rw").getChannel(), SAMPLE_RATE, 2));
+        ByteBuffer file = readFile();
+        assertEquals(listOf("ftyp", "mdat", "moov"), topLevelTypes(file));
+        verify(file);
+    }
+
+    @Test
+    public void fastStart_putsMoovBeforeMdat() throws Exception {
+        FileChannel output = new RandomAccessFile(mFile, "rw").getChannel();
+        FileChannel scratch = new RandomAccessFile(mScratch, "rw").getChannel();
+        writeFrames(new Mp4Writer(output, scratch, SAMPLE_RATE, 2));
+        ByteBuffer file = readFile();
+        assertEquals(listOf("ftyp", "moov", "mdat"), topLevelTypes(file));
+        verify(file);
+    }
+
+    @Test
+    public void close_withoutConfig_derivesConfigFromFormat() throws Exception {
+        Mp4Writer writer = new Mp4Writer(new RandomAccessFile(mFile, "rw").getChannel(), SAMPLE_RATE, 2);
+        writer.writeFrame(frame(0), 0);
+        writer.close();
+        ByteBuffer esds = find(readFile(), "moov", "trak", "mdia", "minf", "stbl", "stsd");
+        assertArrayEquals(ASC, decoderSpecificInfo(esds));
+    }
+
+    private static List<String> listOf(String... types) {
+        List<String> list = new ArrayList<>();
+        for (String type : types) {
+            list.add(type);
+        }
+        return list;
+    }
+
+    private static List<String> topLevelTypes(ByteBuffer file) {
+        List<String> types = new ArrayList<>();
+        int pos = 0;
+        while (pos < file.limit()) {
+            types.add(type(file, pos));
+            long size = boxSize(file, pos);
+            assertTrue(size >= 8);
+            pos += size;
+        }
+        assertEquals(file.limit(), pos);
+        return types;
+    }
+
+    private static void verify(ByteBuffer file) {
+        ByteBuffer stbl = find(file, "moov", "trak", "mdia", "minf", "stbl");
+        assertArrayEquals(ASC, decoderSpecificInfo(child(stbl, "stsd")));
+
+        ByteBuffer stsz = child(stbl, "stsz");
+        assertEquals(0, stsz.getInt(4));
+        assertEquals(FRAME_COUNT, stsz.getInt(8));
+
+        ByteBuffer stts = child(stbl, "stts");
+        long samples = 0;
+        long duration = 0;
+        for (int i = 0; i < stts.getInt(4); i++) {
+            samples += stts.getInt(8 + i * 8);
+            duration += (long) stts.getInt(8 + i * 8) * stts.getInt(12 + i * 8);
+        }
+        assertEquals(FRAME_COUNT, samples);
+        // 时间戳取整后每帧1024个采样
+        assertEquals(FRAME_COUNT * 1024L, duration);
+        ByteBuffer mdhd = find(file, "moov", "trak", "mdia", "mdhd");
+        assertEquals(SAMPLE_RATE, mdhd.getInt(12));
+        assertEquals(duration, mdhd.getInt(16));
+
+        ByteBuffer stsc = child(stbl, "stsc");
+        assertEquals(2, stsc.getInt(4));
+        assertEquals(1, stsc.getInt(8));
+        assertEquals(Mp4Writer.SAMPLES_PER_CHUNK, stsc.getInt(12));
+        assertEquals(3, stsc.getInt(20));
+        assertEquals(FRAME_COUNT - 2 * Mp4Writer.SAMPLES_PER_CHUNK, stsc.getInt(24));
+
+        ByteBuffer stco = child(stbl, "stco");
+        assertEquals(3, stco.getInt(4));
+        int mdat = findTopLevel(file, "mdat");
+        int sample = 0;
+        for (int chunk = 0; chunk < 3; chunk++) {
+            int offset = stco.getInt(8 + chunk * 4);
+            assertTrue(offset >= mdat + 16);
+            for (int i = 0; i < Mp4Writer.SAMPLES_PER_CHUNK && sample < FRAME_COUNT; i++, sample++) {
+                int size = stsz.getInt(12 + sample * 4);
+                assertEquals(frameSize(sample), size);
+                assertEquals(frame(sample), slice(file, offset, size));
+                offset += size;
+            }
+        }
+    }
+
+    private static byte[] decoderSpecificInfo(ByteBuffer stsd) {
+        ByteBuffer mp4a = child(stsd, 8, "mp4a");
+        // mp4a的AudioSampleEntry头部为28字节
+        ByteBuffer esds = child(mp4a, 28, "esds");
+        for (int i = 4; i < esds.limit() - 2; i++) {
+            if (esds.get(i) == 0x05) {
+                byte[] config = new byte[esds.get(i + 1)];
+                for (int j = 0; j < config.length; j++) {
+                    config[j] = esds.get(i + 2 + j);
+                }
+                return config;
+            }
+        }
+        fail("no DecoderSpecificInfo");
+        return null;
+    }
+
+    private static String type(ByteBuffer buffer, int pos) {
+        char[] type = new char[4];
+        for (int i = 0; i < 4; i++) {
+            type[i] = (char) buffer.get(pos + 4 + i);
+        }
+        return new String(type);
+    }
+
+    private static long boxSize(ByteBuffer buffer, int pos) {
+        long size = buffer.getInt(pos) & 0xFFFFFFFFL;
+        return size == 1 ? buffer.getLong(pos + 8) : size;
+    }
+
+    private static int findTopLevel(ByteBuffer file, String type) {
+        int pos = 0;
+        while (pos < file.limit()) {
+            if (type(file, pos).equals(type)) {
+                return pos;
+            }
+            pos += boxSize(file, pos);
+        }
+        fail("no " + type);
+        return -1;
+    }
+
+    private static ByteBuffer slice(ByteBuffer buffer, int pos, int size) {
+        ByteBuffer slice = buffer.duplicate();
+        slice.limit(pos + size).position(pos);
+        return slice.slice();
+    }
+
+    /**
+     * 在box的内容中查找子box，返回子box的内容（不含8字节头部）
+     */
+    private static ByteBuffer child(ByteBuffer content, String type) {
+        return child(content, 0, type);
+    }
+
+    private static ByteBuffer child(ByteBuffer content, int skip, String type) {
+        int pos = skip;
+        while (pos < content.limit()) {
+            int size = (int) boxSize(content, pos);
+            if (type(content, pos).equals(type)) {
+                return slice(content, pos + 8, size - 8);
+            }
+            pos += size;
+        }
+        fail("no " + type);
+        return null;
+    }
+
+    private static ByteBuffer find(ByteBuffer file, String... path) {
+        int top = findTopLevel(file, path[0]);
+        ByteBuffer box = slice(file, top + 8, (int) boxSize(file, top) - 8);
+        for (int i = 1; i < path.length; i++) {
+            box = child(box, path[i]);
+        }
+        return box;
+    }
+}
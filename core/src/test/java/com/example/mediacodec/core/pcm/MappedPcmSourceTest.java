@@ -0,0 +1,114 @@
+package com.example.mediacodec.core.pcm;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import static org.junit.Assert.*;
+
+public class MappedPcmSourceTest {
+    private static final PcmFormat STEREO_44100 = new PcmFormat(44100, 2);
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("pcm", ".pcm");
+        // 1000帧加2字节不足一帧的尾巴，每个字节的值由它在文件中的位置决定
+        byte[] pcm = new byte[4000 + 2];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (byte) (i * 7);
+        }
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(pcm);
+        out.close();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private FileChannel open() throws Exception {
+        return new RandomAccessFile(mFile, "r").getChannel();
+    }
+
+    private static void assertData(ByteBuffer data, long filePosition) {
+        for (int i = data.position(); i < data.limit(); i++) {
+            assertEquals((byte) ((filePosition + i - data.position()) * 7), data.get(i));
+        }
+    }
+
+    @Test
+    public void next_readsWholeFileAcrossRemaps() throws Exception {
+        // 窗口1002字节向下对齐为1000字节（250帧）
+        MappedPcmSource source = new MappedPcmSource(open(), STEREO_44100, 1002, 512);
+        assertEquals(1000, source.getFrameCount());
+        long position = 0;
+        ByteBuffer data;
+        while ((data = source.next(302)) != null) {
+            assertTrue(data.isDirect());
+            assertEquals(0, data.remaining() % 4);
+            // 不能跨窗口
+            assertTrue(position / 1000 == (position + data.remaining() - 1) / 1000);
+            assertData(data, position);
+            position += data.remaining();
+            assertEquals(position / 4, source.getFramePosition());
+        }
+        assertEquals(4000, position);
+        assertEquals(4, source.getRemapCount());
+        source.close();
+    }
+
+    @Test
+    public void seekToFrame_jumpsWithoutReadingPrecedingData() throws Exception {
+        MappedPcmSource source = new MappedPcmSource(open(), STEREO_44100, 1000, 0);
+        source.seekToFrame(900);
+        ByteBuffer data = source.next(4096);
+        assertEquals(400, data.remaining());
+        assertData(data, 3600);
+        assertEquals(1, source.getRemapCount());
+        assertNull(source.next(4096));
+
+        // 回到同一窗口内不需要重新映射
+        source.seekToFrame(760);
+        data = source.next(8);
+        assertData(data, 3040);
+        assertEquals(1, source.getRemapCount());
+
+        source.seekToFrame(5000);
+        assertEquals(1000, source.getFramePosition());
+        assertNull(source.next(4096));
+        source.close();
+    }
+
+    @Test
+    public void feeder_fillsCodecInputFromSource() throws Exception {
+        MappedPcmSource source = new MappedPcmSource(open(), STEREO_44100);
+        PcmFeeder feeder = new PcmFeeder(source);
+        ByteBuffer input = ByteBuffer.allocateDirect(2048);
+
+        assertEquals(2048, feeder.fill(input, 4096));
+        assertEquals(0, feeder.getChunkTimeUs());
+        assertData(input, 0);
+
+        source.seekToFrame(441);
+        input.clear();
+        assertEquals(1024, feeder.fill(input, 1024));
+        assertEquals(10000, feeder.getChunkTimeUs());
+        assertData(input, 441 * 4);
+
+        input.clear();
+        while (feeder.fill(input, 2048) > 0) {
+            input.clear();
+        }
+        assertEquals(1000, feeder.getFramesRead());
+        source.close();
+    }
+}
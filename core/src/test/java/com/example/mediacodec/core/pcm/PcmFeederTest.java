@@ -0,0 +1,111 @@
+package com.example.mediacodec.core.pcm;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+
+import static org.junit.Assert.*;
+
+public class PcmFeederTest {
+    private static final PcmFormat STEREO_44100 = new PcmFormat(44100, 2);
+
+    @Test
+    public void fill_readsFrameAlignedChunksWithTimestamps() throws Exception {
+        byte[] pcm = new byte[4096 * 3];
+        for (int i = 0; i < pcm.length; i++) {
+            pcm[i] = (byte) i;
+        }
+        PcmFeeder feeder = new PcmFeeder(channel(pcm), STEREO_44100);
+        ByteBuffer input = ByteBuffer.allocateDirect(8192);
+
+        input.clear();
+        assertEquals(4096, feeder.fill(input, 4098));
+        assertEquals(0, feeder.getChunkTimeUs());
+        assertEquals(4096, input.limit());
+        assertEquals(0, input.get(0));
+
+        input.clear();
+        assertEquals(4096, feeder.fill(input, 4096));
+        // 1024帧 / 44100Hz
+        assertEquals(23219, feeder.getChunkTimeUs());
+        assertEquals(pcm[4096], input.get(0));
+
+        input.clear();
+        assertEquals(4096, feeder.fill(input, 8192));
+        assertEquals(46439, feeder.getChunkTimeUs());
+
+        input.clear();
+        assertEquals(-1, feeder.fill(input, 8192));
+        assertEquals(3072, feeder.getFramesRead());
+        assertEquals(69659, feeder.getPresentationTimeUs());
+    }
+
+    @Test
+    public void fill_neverExposesStaleBytesOnShortRead() throws Exception {
+        // 最后一块只有10字节，其中2字节不足一帧
+        byte[] pcm = new byte[4096 + 10];
+        java.util.Arrays.fill(pcm, (byte) 1);
+        PcmFeeder feeder = new PcmFeeder(channel(pcm), STEREO_44100);
+        ByteBuffer input = ByteBuffer.allocate(4096);
+
+        assertEquals(4096, feeder.fill(input, 4096));
+        input.clear();
+        java.util.Arrays.fill(input.array(), (byte) 9);
+        assertEquals(8, feeder.fill(input, 4096));
+        assertEquals(8, input.remaining());
+        while (input.hasRemaining()) {
+            assertEquals(1, input.get());
+        }
+        assertEquals(2, feeder.getDroppedBytes());
+        input.clear();
+        assertEquals(-1, feeder.fill(input, 4096));
+    }
+
+    @Test
+    public void fill_assemblesChunkFromTrickleReads() throws Exception {
+        final byte[] pcm = new byte[1000];
+        ReadableByteChannel trickle = new ReadableByteChannel() {
+            int mPos;
+
+            @Override
+            public int read(ByteBuffer dst) {
+                if (mPos == pcm.length) {
+                    return -1;
+                }
+                int count = Math.min(3, Math.min(dst.remaining(), pcm.length - mPos));
+                dst.put(pcm, mPos, count);
+                mPos += count;
+                return count;
+            }
+
+            @Override
+            public boolean isOpen() {
+                return true;
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        PcmFeeder feeder = new PcmFeeder(trickle, new PcmFormat(48000, 1));
+        ByteBuffer input = ByteBuffer.allocate(512);
+        assertEquals(512, feeder.fill(input, 512));
+        input.clear();
+        assertEquals(488, feeder.fill(input, 512));
+        assertEquals(256 * 1000000L / 48000, feeder.getChunkTimeUs());
+    }
+
+    @Test
+    public void timestamps_doNotDriftOverLongStreams() {
+        // 一小时的帧数对应的时间正好是3600秒
+        assertEquals(3600L * 1000000L, STEREO_44100.framesToUs(44100L * 3600));
+        assertEquals(44100L * 3600, STEREO_44100.usToFrames(3600L * 1000000L));
+    }
+
+    private static ReadableByteChannel channel(byte[] data) {
+        return Channels.newChannel(new ByteArrayInputStream(data));
+    }
+}
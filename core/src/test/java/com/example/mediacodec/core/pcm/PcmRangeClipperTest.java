@@ -0,0 +1,58 @@
+package com.example.mediacodec.core.pcm;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class PcmRangeClipperTest {
+    private static final PcmFormat STEREO_44100 = new PcmFormat(44100, 2);
+
+    private static long timeUs(long frame) {
+        return STEREO_44100.framesToUs(frame);
+    }
+
+    @Test
+    public void clip_keepsOnlyFramesInsideRange() {
+        // 区间为第1500帧到第3000帧
+        PcmRangeClipper clipper = new PcmRangeClipper(STEREO_44100, timeUs(1500), timeUs(3000));
+        ByteBuffer pcm = ByteBuffer.allocate(1024 * 4);
+
+        assertFalse(clipper.clip(pcm, timeUs(0)));
+        pcm.clear();
+        assertTrue(clipper.clip(pcm, timeUs(1024)));
+        assertEquals((1500 - 1024) * 4, pcm.position());
+        assertEquals(pcm.capacity(), pcm.limit());
+        pcm.clear();
+        assertTrue(clipper.clip(pcm, timeUs(2048)));
+        assertEquals(0, pcm.position());
+        assertEquals((3000 - 2048) * 4, pcm.limit());
+        pcm.clear();
+        assertFalse(clipper.clip(pcm, timeUs(3072)));
+        assertTrue(clipper.isPastEnd(timeUs(3000)));
+        assertFalse(clipper.isPastEnd(timeUs(2999)));
+    }
+
+    @Test
+    public void clip_isFrameExactForTruncatedTimestamps() {
+        // 时间戳向下取整到微秒，换算回帧数不能少一帧
+        for (long frame = 0; frame < 200000; frame += 1024) {
+            PcmRangeClipper clipper = new PcmRangeClipper(STEREO_44100, timeUs(frame), timeUs(frame + 1));
+            ByteBuffer pcm = ByteBuffer.allocate(8);
+            assertTrue(clipper.clip(pcm, timeUs(frame)));
+            assertEquals(0, pcm.position());
+            assertEquals(4, pcm.limit());
+        }
+    }
+
+    @Test
+    public void clip_respectsBufferPosition() {
+        PcmRangeClipper clipper = new PcmRangeClipper(STEREO_44100, timeUs(10), timeUs(20));
+        ByteBuffer pcm = ByteBuffer.allocate(200);
+        pcm.position(40).limit(140);
+        assertTrue(clipper.clip(pcm, timeUs(5)));
+        assertEquals(40 + 5 * 4, pcm.position());
+        assertEquals(40 + 15 * 4, pcm.limit());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.mediacodec.core.pipeline;
+
+import com.example.mediacodec.core.codec.CodecDriver;
+import com.example.mediacodec.core.memory.DirectBufferPool;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class BufferPoolTest {
+
+    @Test
+    public void acquire_returnsClearedBuffersUntilExhausted() throws Exception {
+        BufferPool pool = new BufferPool(2, 64);
+        MediaBuffer a = pool.tryAcquire();
+        MediaBuffer b = pool.acquire(0);
+        assertNotNull(a);
+        assertNotNull(b);
+        assertTrue(a.data.isDirect());
+        assertNull(pool.tryAcquire());
+        assertNull(pool.acquire(1000000L));
+
+        a.data.putInt(7).flip();
+        a.presentationTimeUs = 100;
+        a.flags = CodecDriver.FLAG_END_OF_STREAM;
+        pool.release(a);
+        MediaBuffer again = pool.tryAcquire();
+        assertSame(a, again);
+        assertEquals(0, again.data.position());
+        assertEquals(64, again.data.limit());
+        assertEquals(0, again.presentationTimeUs);
+        assertFalse(again.isEndOfStream());
+    }
+
+    @Test
+    public void close_returnsLeasedBuffersToDirectPool() {
+        DirectBufferPool directPool = new DirectBufferPool();
+        BufferPool pool = new BufferPool(4, 3000, directPool);
+        MediaBuffer buffer = pool.tryAcquire();
+        // 从4096字节的级别借用，只暴露申请的大小
+        assertEquals(3000, buffer.data.capacity());
+        pool.release(buffer);
+        pool.close();
+        new BufferPool(4, 3000, directPool).close();
+        assertEquals(4, directPool.getAllocationCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void release_rejectsForeignBuffer() {
+        BufferPool pool = new BufferPool(1, 64);
+        pool.release(new BufferPool(1, 32).tryAcquire());
+    }
+
+    @Test
+    public void acquireRelease_acrossTwoThreadsNeverDuplicatesBuffers() throws Exception {
+        final BufferPool pool = new BufferPool(4, 16);
+        final SpscQueue<MediaBuffer> inFlight = new SpscQueue<>(4);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        final int count = 200000;
+        Thread releaser = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        MediaBuffer buffer = inFlight.take(-1);
+                        if (buffer.data.getInt(0) != i) {
+                            throw new AssertionError("buffer " + i + " overwritten");
+                        }
+                        pool.release(buffer);
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        releaser.start();
+        for (int i = 0; i < count; i++) {
+            MediaBuffer buffer = pool.acquire(-1);
+            buffer.data.putInt(0, i);
+            assertTrue(inFlight.put(buffer, -1));
+        }
+        releaser.join();
+        assertNull(failure.get());
+        assertEquals(4, pool.available());
+    }
+}
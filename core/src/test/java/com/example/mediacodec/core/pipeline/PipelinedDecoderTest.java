@@ -0,0 +1,233 @@
+package com.example.mediacodec.core.pipeline;
+
+import com.example.mediacodec.core.codec.FakeCodec;
+import com.example.mediacodec.core.io.DataSink;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.*;
+
+public class PipelinedDecoderTest {
+
+    /**
+     * 第i个样本有i % 50 + 1个字节，内容是样本序号
+     */
+    private static class FakeSource implements SampleSource {
+        private final int mCount;
+        private int mIndex;
+
+        FakeSource(int count) {
+            this.mCount = count;
+        }
+
+        @Override
+        public int readSampleData(ByteBuffer dst) {
+            if (mIndex >= mCount) {
+                return -1;
+            }
+            int size = mIndex % 50 + 1;
+            for (int i = 0; i < size; i++) {
+                dst.put(dst.position() + i, (byte) mIndex);
+            }
+            return size;
+        }
+
+        @Override
+        public long getSampleTime() {
+            return mIndex * 1000L;
+        }
+
+        @Override
+        public boolean advance() {
+            return ++mIndex < mCount;
+        }
+    }
+
+    private static class CollectingSink implements DataSink {
+        final ByteArrayOutputStream mData = new ByteArrayOutputStream();
+        final long mWriteNanos;
+        int mFlushes;
+
+        CollectingSink(long writeNanos) {
+            this.mWriteNanos = writeNanos;
+        }
+
+        @Override
+        public void write(ByteBuffer src) throws IOException {
+            if (mWriteNanos > 0) {
+                long end = System.nanoTime() + mWriteNanos;
+                while (System.nanoTime() < end) {
+                    Thread.yield();
+                }
+            }
+            while (src.hasRemaining()) {
+                mData.write(src.get());
+            }
+        }
+
+        @Override
+        public void flush() {
+            mFlushes++;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static byte[] expected(int count) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int i = 0; i < count; i++) {
+            for (int j = 0; j < i % 50 + 1; j++) {
+                out.write(i);
+            }
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void run_deliversAllOutputInOrder() throws Exception {
+        CollectingSink sink = new CollectingSink(0);
+        FakeCodec codec = new FakeCodec(4, 64, 0);
+        // 输出池的buffer比部分样本小，需要拆分
+        PipelinedDecoder decoder = new PipelinedDecoder(new FakeSource(2000), codec, sink, 8, 64, 32);
+        decoder.run(null);
+        codec.release();
+        assertArrayEquals(expected(2000), sink.mData.toByteArray());
+        assertEquals(1, sink.mFlushes);
+        StageStats[] stats = decoder.getStats();
+        assertEquals(2001, stats[0].getItems());
+        assertEquals(expected(2000).length, stats[0].getBytes());
+        assertEquals(expected(2000).length, stats[1].getBytes());
+        assertEquals(expected(2000).length, stats[2].getBytes());
+        assertTrue(stats[1].getItems() > 2000);
+    }
+
+    @Test
+    public void slowSink_blocksCodecStageOnlyWhenPoolIsExhausted() throws Exception {
+        CollectingSink sink = new CollectingSink(200000);
+        FakeCodec codec = new FakeCodec(4, 64, 0);
+        PipelinedDecoder decoder = new PipelinedDecoder(new FakeSource(200), codec, sink, 8, 64, 64);
+        decoder.run(null);
+        codec.release();
+        assertArrayEquals(expected(200), sink.mData.toByteArray());
+        StageStats[] stats = decoder.getStats();
+        // 写入是瓶颈：编解码器阶段等待输出池，写入阶段几乎不等待数据
+        assertTrue(stats[1].toString(), stats[1].getBlockedNanos() > stats[2].getStarvedNanos());
+        assertTrue(stats[2].toString(), stats[2].getBusyNanos() >= 200 * 200000L);
+    }
+
+    @Test
+    public void sinkFailure_stopsPipelineAndIsRethrown() throws Exception {
+        final IOException error = new IOException("disk full");
+        DataSink sink = new CollectingSink(0) {
+            @Override
+            public void write(ByteBuffer src) throws IOException {
+                if (mData.size() > 1000) {
+                    throw error;
+                }
+                super.write(src);
+            }
+        };
+        FakeCodec codec = new FakeCodec(4, 64, 0);
+        PipelinedDecoder decoder = new PipelinedDecoder(new FakeSource(100000), codec, sink, 8, 64, 64);
+        try {
+            decoder.run(null);
+            fail();
+        } catch (IOException e) {
+            assertSame(error, e);
+        } finally {
+            codec.release();
+        }
+    }
+
+    @Test
+    public void listener_isCalledInOrderWithWrites() throws Exception {
+        final CollectingSink sink = new CollectingSink(0);
+        FakeCodec codec = new FakeCodec(4, 64, 0);
+        PipelinedDecoder decoder = new PipelinedDecoder(new FakeSource(300), codec, sink, 8, 64, 64);
+        final int[] formatChanges = new int[1];
+        final int[] sizeAtFormatChange = {-1};
+        final long[] lastTimeUs = {-1};
+        final Thread[] threads = new Thread[2];
+        decoder.setListener(new SerialDecoder.Listener() {
+            @Override
+            public void onOutputFormatChanged() {
+                formatChanges[0]++;
+                sizeAtFormatChange[0] = sink.mData.size();
+                threads[0] = Thread.currentThread();
+            }
+
+            @Override
+            public void onOutputWritten(long presentationTimeUs) {
+                // 结束标志的空输出时间戳为0
+                lastTimeUs[0] = Math.max(lastTimeUs[0], presentationTimeUs);
+                threads[1] = Thread.currentThread();
+            }
+        });
+        decoder.run(null);
+        codec.release();
+        assertArrayEquals(expected(300), sink.mData.toByteArray());
+        // FakeCodec在第一个输出之前报告格式，回调时还没有写入数据
+        assertEquals(1, formatChanges[0]);
+        assertEquals(0, sizeAtFormatChange[0]);
+        assertEquals(299000, lastTimeUs[0]);
+        // 都在写入阶段的线程中调用
+        assertEquals("decode-sink", threads[0].getName());
+        assertSame(threads[0], threads[1]);
+    }
+
+    @Test
+    public void interrupt_returnsAfterSinkStageEnded() throws Exception {
+        final AtomicBoolean writing = new AtomicBoolean();
+        final AtomicBoolean interruptedWrite = new AtomicBoolean();
+        final CountDownLatch started = new CountDownLatch(1);
+        DataSink sink = new CollectingSink(0) {
+            @Override
+            public void write(ByteBuffer src) throws IOException {
+                writing.set(true);
+                started.countDown();
+                long end = System.nanoTime() + 1000000;
+                while (System.nanoTime() < end) {
+                    if (Thread.currentThread().isInterrupted()) {
+                        interruptedWrite.set(true);
+                    }
+                }
+                super.write(src);
+                writing.set(false);
+            }
+        };
+        FakeCodec codec = new FakeCodec(4, 64, 0);
+        final PipelinedDecoder decoder = new PipelinedDecoder(new FakeSource(1000000), codec, sink, 8, 64, 64);
+        final AtomicBoolean writingAfterRun = new AtomicBoolean(true);
+        final Throwable[] error = new Throwable[1];
+        Thread runner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    decoder.run(null);
+                } catch (Throwable t) {
+                    error[0] = t;
+                }
+                writingAfterRun.set(writing.get());
+            }
+        });
+        runner.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        runner.interrupt();
+        runner.join(5000);
+        codec.release();
+        assertFalse(runner.isAlive());
+        assertNotNull(error[0]);
+        // 返回时写入阶段已经结束，写入线程也没有被中断
+        assertFalse(writingAfterRun.get());
+        assertFalse(interruptedWrite.get());
+    }
+}
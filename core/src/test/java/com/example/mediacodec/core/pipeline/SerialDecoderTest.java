@@ -0,0 +1,179 @@
+package com.example.mediacodec.core.pipeline;
+
+import com.example.mediacodec.core.codec.FakeCodec;
+import com.example.mediacodec.core.io.DataSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.pcm.PcmFormat;
+import com.example.mediacodec.core.pcm.PcmRangeClipper;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class SerialDecoderTest {
+    private static final PcmFormat FORMAT = new PcmFormat(1000, 1);
+    private static final int FRAMES_PER_SAMPLE = 10;
+
+    /**
+     * 假的编解码器原样输出，因此每个“压缩样本”直接是10帧单声道PCM，帧的值为帧序号
+     */
+    private static class PcmSampleSource implements SampleSource {
+        private final int mCount;
+        private int mIndex;
+
+        PcmSampleSource(int count) {
+            this.mCount = count;
+        }
+
+        @Override
+        public int readSampleData(ByteBuffer dst) {
+            if (mIndex >= mCount) {
+                return -1;
+            }
+            ByteBuffer out = dst.duplicate().order(ByteOrder.LITTLE_ENDIAN);
+            for (int i = 0; i < FRAMES_PER_SAMPLE; i++) {
+                out.putShort((short) (mIndex * FRAMES_PER_SAMPLE + i));
+            }
+            return FRAMES_PER_SAMPLE * 2;
+        }
+
+        @Override
+        public long getSampleTime() {
+            return FORMAT.framesToUs((long) mIndex * FRAMES_PER_SAMPLE);
+        }
+
+        @Override
+        public boolean advance() {
+            return ++mIndex < mCount;
+        }
+    }
+
+    private static class CollectingSink implements DataSink {
+        final ByteArrayOutputStream mData = new ByteArrayOutputStream();
+
+        @Override
+        public void write(ByteBuffer src) {
+            while (src.hasRemaining()) {
+                mData.write(src.get());
+            }
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class Context implements JobContext {
+        volatile boolean mCancelled;
+        long mDone;
+        long mTotal;
+
+        @Override
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public void setProgress(long done, long total) {
+            mDone = done;
+            mTotal = total;
+        }
+
+        @Override
+        public void setMetrics(TranscodeMetrics metrics) {
+        }
+    }
+
+    private static byte[] frames(int from, int to) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        for (int frame = from; frame < to; frame++) {
+            out.write(frame & 0xff);
+            out.write((frame >> 8) & 0xff);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void run_writesAllOutputAndNotifiesListener() throws Exception {
+        CollectingSink sink = new CollectingSink();
+        FakeCodec codec = new FakeCodec(4, 64, 0);
+        final int[] formatChanges = new int[1];
+        final int[] outputs = new int[1];
+        SerialDecoder decoder = new SerialDecoder(new PcmSampleSource(100), codec, sink);
+        decoder.setProgressRange(0, FORMAT.framesToUs(1000));
+        decoder.setListener(new SerialDecoder.Listener() {
+            @Override
+            public void onOutputFormatChanged() {
+                formatChanges[0]++;
+            }
+
+            @Override
+            public void onOutputWritten(long presentationTimeUs) {
+                outputs[0]++;
+            }
+        });
+        Context context = new Context();
+        try {
+            decoder.run(context);
+        } finally {
+            codec.release();
+        }
+        assertArrayEquals(frames(0, 1000), sink.mData.toByteArray());
+        assertEquals(1, formatChanges[0]);
+        // 每个样本一块输出，加上结束标志的空输出
+        assertEquals(101, outputs[0]);
+        assertEquals(FORMAT.framesToUs(1000), context.mTotal);
+    }
+
+    @Test
+    public void run_clipsOutputToRange() throws Exception {
+        CollectingSink sink = new CollectingSink();
+        FakeCodec codec = new FakeCodec(4, 64, 0);
+        SerialDecoder decoder = new SerialDecoder(new PcmSampleSource(100), codec, sink);
+        long startUs = FORMAT.framesToUs(255);
+        long endUs = FORMAT.framesToUs(613);
+        decoder.setClipper(new PcmRangeClipper(FORMAT, startUs, endUs));
+        decoder.setInputEndUs(endUs);
+        try {
+            decoder.run(new Context());
+        } finally {
+            codec.release();
+        }
+        assertArrayEquals(frames(255, 613), sink.mData.toByteArray());
+    }
+
+    @Test
+    public void run_stopsWhenCancelled() throws Exception {
+        CollectingSink sink = new CollectingSink();
+        FakeCodec codec = new FakeCodec(4, 64, 0);
+        final Context context = new Context();
+        SerialDecoder decoder = new SerialDecoder(new PcmSampleSource(1000000), codec, sink);
+        decoder.setListener(new SerialDecoder.Listener() {
+            @Override
+            public void onOutputFormatChanged() {
+            }
+
+            @Override
+            public void onOutputWritten(long presentationTimeUs) {
+                if (presentationTimeUs >= FORMAT.framesToUs(500)) {
+                    context.mCancelled = true;
+                }
+            }
+        });
+        try {
+            decoder.run(context);
+        } finally {
+            codec.release();
+        }
+        assertArrayEquals(frames(0, 510), sink.mData.toByteArray());
+    }
+}
@@ -0,0 +1,151 @@
+package com.example.mediacodec.core.pipeline;
+
+import com.example.mediacodec.core.codec.FakeCodec;
+import com.example.mediacodec.core.io.AacSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+import com.example.mediacodec.core.pcm.MappedPcmSource;
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SerialEncoderTest {
+    private static final PcmFormat FORMAT = new PcmFormat(44100, 2);
+    private static final int FRAMES = 10000;
+
+    private File mFile;
+    private byte[] mPcm;
+
+    /**
+     * 假的编解码器原样输出，每个“AAC帧”就是送入编码器的一块PCM
+     */
+    private static class RecordingSink implements AacSink {
+        final ByteArrayOutputStream mData = new ByteArrayOutputStream();
+        final List<Long> mTimes = new ArrayList<>();
+
+        @Override
+        public void setAudioSpecificConfig(ByteBuffer config) {
+            fail("unexpected codec config");
+        }
+
+        @Override
+        public void writeFrame(ByteBuffer frame, long presentationTimeUs) {
+            while (frame.hasRemaining()) {
+                mData.write(frame.get());
+            }
+            mTimes.add(presentationTimeUs);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class Context implements JobContext {
+        long mDone;
+        long mTotal;
+
+        @Override
+        public boolean isCancelled() {
+            return false;
+        }
+
+        @Override
+        public void setProgress(long done, long total) {
+            mDone = done;
+            mTotal = total;
+        }
+
+        @Override
+        public void setMetrics(TranscodeMetrics metrics) {
+        }
+    }
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("pcm", ".pcm");
+        mPcm = new byte[FRAMES * FORMAT.getBytesPerFrame()];
+        for (int i = 0; i < mPcm.length; i++) {
+            mPcm[i] = (byte) (i * 7);
+        }
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(mPcm);
+        out.close();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private RecordingSink encode(long startFrame, long endFrame, Context context) throws Exception {
+        return encode(startFrame, endFrame, context, 1f);
+    }
+
+    private RecordingSink encode(long startFrame, long endFrame, Context context, float gain) throws Exception {
+        RecordingSink sink = new RecordingSink();
+        FakeCodec codec = new FakeCodec(4, 4096, 0);
+        MappedPcmSource source = new MappedPcmSource(new RandomAccessFile(mFile, "r").getChannel(), FORMAT);
+        try {
+            SerialEncoder encoder = new SerialEncoder(source, codec, sink);
+            if (startFrame >= 0) {
+                encoder.setRange(startFrame, endFrame);
+            }
+            encoder.setGain(gain);
+            encoder.run(context);
+        } finally {
+            codec.release();
+            source.close();
+        }
+        return sink;
+    }
+
+    @Test
+    public void run_feedsWholeSourceWithFrameTimestamps() throws Exception {
+        Context context = new Context();
+        RecordingSink sink = encode(-1, -1, context);
+        assertArrayEquals(mPcm, sink.mData.toByteArray());
+        // 每块1024帧（4096字节），时间戳是每块第一帧的时间
+        for (int i = 0; i < sink.mTimes.size(); i++) {
+            assertEquals(FORMAT.framesToUs(i * 1024L), (long) sink.mTimes.get(i));
+        }
+        assertEquals(FRAMES, context.mDone);
+        assertEquals(FRAMES, context.mTotal);
+    }
+
+    @Test
+    public void run_encodesOnlyRange() throws Exception {
+        Context context = new Context();
+        RecordingSink sink = encode(1000, 5000, context);
+        int frameSize = FORMAT.getBytesPerFrame();
+        assertArrayEquals(Arrays.copyOfRange(mPcm, 1000 * frameSize, 5000 * frameSize), sink.mData.toByteArray());
+        assertEquals(FORMAT.framesToUs(1000), (long) sink.mTimes.get(0));
+        assertEquals(4000, context.mDone);
+        assertEquals(4000, context.mTotal);
+    }
+
+    @Test
+    public void run_appliesGainBeforeEncoding() throws Exception {
+        RecordingSink sink = encode(-1, -1, new Context(), 0.5f);
+        byte[] data = sink.mData.toByteArray();
+        assertEquals(mPcm.length, data.length);
+        for (int i = 0; i < mPcm.length; i += 2) {
+            int sample = (short) ((mPcm[i] & 0xFF) | (mPcm[i + 1] << 8));
+            int scaled = (short) ((data[i] & 0xFF) | (data[i + 1] << 8));
+            assertEquals(Math.round(sample * 0.5f), scaled, 1);
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.mediacodec.core.pipeline;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.*;
+
+public class SpscQueueTest {
+
+    @Test
+    public void offerPoll_fifoWithinRoundedCapacity() {
+        SpscQueue<Integer> queue = new SpscQueue<>(3);
+        assertEquals(4, queue.capacity());
+        assertNull(queue.poll());
+        for (int round = 0; round < 3; round++) {
+            for (int i = 0; i < 4; i++) {
+                assertTrue(queue.offer(round * 10 + i));
+            }
+            assertFalse(queue.offer(99));
+            assertEquals(4, queue.size());
+            for (int i = 0; i < 4; i++) {
+                assertEquals(Integer.valueOf(round * 10 + i), queue.poll());
+            }
+            assertTrue(queue.isEmpty());
+        }
+    }
+
+    @Test
+    public void takeAndPut_timeOut() throws Exception {
+        SpscQueue<String> queue = new SpscQueue<>(1);
+        long start = System.nanoTime();
+        assertNull(queue.take(20000000L));
+        assertTrue(System.nanoTime() - start >= 20000000L);
+        assertTrue(queue.put("a", 0));
+        assertFalse(queue.put("b", 5000000L));
+        assertEquals("a", queue.take(-1));
+    }
+
+    @Test
+    public void producerConsumer_transfersEveryElementInOrder() throws Exception {
+        final int count = 200000;
+        final SpscQueue<Integer> queue = new SpscQueue<>(64);
+        final AtomicReference<Throwable> failure = new AtomicReference<>();
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    for (int i = 0; i < count; i++) {
+                        // 交替使用非阻塞和阻塞两种写法
+                        if ((i & 1) == 0 || !queue.offer(i)) {
+                            queue.put(i, -1);
+                        }
+                    }
+                } catch (Throwable t) {
+                    failure.set(t);
+                }
+            }
+        });
+        producer.start();
+        for (int i = 0; i < count; i++) {
+            Integer value = (i & 2) == 0 ? queue.take(-1) : null;
+            while (value == null) {
+                Thread.yield();
+                value = queue.poll();
+            }
+            assertEquals(i, value.intValue());
+        }
+        producer.join();
+        assertNull(failure.get());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void take_wakesUpOnInterrupt() throws Exception {
+        final SpscQueue<String> queue = new SpscQueue<>(4);
+        final AtomicReference<Throwable> result = new AtomicReference<>();
+        Thread consumer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    queue.take(-1);
+                } catch (Throwable t) {
+                    result.set(t);
+                }
+            }
+        });
+        consumer.start();
+        Thread.sleep(20);
+        consumer.interrupt();
+        consumer.join(1000);
+        assertTrue(result.get() instanceof InterruptedException);
+    }
+}
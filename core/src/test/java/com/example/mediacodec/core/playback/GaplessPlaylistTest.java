@@ -0,0 +1,336 @@
+package com.example.mediacodec.core.playback;
+
+import com.example.mediacodec.core.dsp.PcmConverter;
+import com.example.mediacodec.core.dsp.TransformingDataSink;
+import com.example.mediacodec.core.io.DataSink;
+import com.example.mediacodec.core.io.PcmRingBuffer;
+import com.example.mediacodec.core.io.RingBufferSink;
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class GaplessPlaylistTest {
+    private static final PcmFormat FORMAT = new PcmFormat(8000, 1);
+
+    private static short sample(int item, int frame) {
+        return (short) (item * 7919 + frame * 31);
+    }
+
+    /**
+     * 在自己的线程中按小块写入可预测的采样
+     */
+    private static class SyntheticItem implements PlaylistItem {
+        final int mId;
+        final int mFrames;
+        final int mDelay;
+        final int mPadding;
+        final CountDownLatch mStarted = new CountDownLatch(1);
+        final CountDownLatch mStopped = new CountDownLatch(1);
+        volatile boolean mCancelledByConsumer;
+        // 写完这么多帧后等待mResume
+        int mPauseAt = -1;
+        CountDownLatch mResume;
+        boolean mFailOnStart;
+
+        SyntheticItem(int id, int frames, int delay, int padding) {
+            this.mId = id;
+            this.mFrames = frames;
+            this.mDelay = delay;
+            this.mPadding = padding;
+        }
+
+        @Override
+        public String getName() {
+            return "item" + mId;
+        }
+
+        @Override
+        public void start(final PcmRingBuffer target) throws IOException {
+            mStarted.countDown();
+            if (mFailOnStart) {
+                throw new IOException("cannot open " + getName());
+            }
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try {
+                        produce(target);
+                    } catch (InterruptedException e) {
+                        target.cancel();
+                    } finally {
+                        mStopped.countDown();
+                    }
+                }
+            }).start();
+        }
+
+        private void produce(PcmRingBuffer target) throws InterruptedException {
+            ByteBuffer chunk = ByteBuffer.allocate(2 * 37).order(ByteOrder.LITTLE_ENDIAN);
+            int pauseAt = mPauseAt;
+            for (int frame = 0; frame < mFrames; ) {
+                if (frame == pauseAt) {
+                    if (!mResume.await(5, TimeUnit.SECONDS)) {
+                        target.cancel();
+                        return;
+                    }
+                    pauseAt = -1;
+                }
+                chunk.clear();
+                while (chunk.hasRemaining() && frame < mFrames && frame != pauseAt) {
+                    chunk.putShort(sample(mId, frame++));
+                }
+                chunk.flip();
+                if (!target.write(chunk)) {
+                    mCancelledByConsumer = true;
+                    return;
+                }
+            }
+            target.finish();
+        }
+
+        @Override
+        public int getDelayFrames() {
+            return mDelay;
+        }
+
+        @Override
+        public int getPaddingFrames() {
+            return mPadding;
+        }
+
+        void appendExpected(ByteArrayOutputStream out) {
+            for (int frame = mDelay; frame < mFrames - mPadding; frame++) {
+                short value = sample(mId, frame);
+                out.write(value & 0xff);
+                out.write((value >> 8) & 0xff);
+            }
+        }
+    }
+
+    /**
+     * 16kHz的源经PcmConverter转换成播放列表的8kHz：开头delay帧和末尾padding帧为静音，中间为直流，
+     * 延迟和填充按采样率换算，与DecodePlaylistItem相同
+     */
+    private static class ConvertedItem implements PlaylistItem {
+        static final int SOURCE_RATE = 16000;
+        static final short LEVEL = 10000;
+        final int mFrames;
+        final int mDelay;
+        final int mPadding;
+
+        ConvertedItem(int frames, int delay, int padding) {
+            this.mFrames = frames;
+            this.mDelay = delay;
+            this.mPadding = padding;
+        }
+
+        @Override
+        public String getName() {
+            return "converted";
+        }
+
+        @Override
+        public void start(final PcmRingBuffer target) {
+            final DataSink sink = new TransformingDataSink(new RingBufferSink(target),
+                    new PcmConverter(SOURCE_RATE, 1, FORMAT.getSampleRate(), 1));
+            new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    ByteBuffer chunk = ByteBuffer.allocate(2 * 101).order(ByteOrder.LITTLE_ENDIAN);
+                    try {
+                        for (int frame = 0; frame < mFrames; ) {
+                            chunk.clear();
+                            while (chunk.hasRemaining() && frame < mFrames) {
+                                boolean content = frame >= mDelay && frame < mFrames - mPadding;
+                                chunk.putShort(content ? LEVEL : 0);
+                                frame++;
+                            }
+                            chunk.flip();
+                            sink.write(chunk);
+                        }
+                        sink.close();
+                    } catch (IOException e) {
+                        target.cancel();
+                    }
+                }
+            }).start();
+        }
+
+        private int toOutputFrames(int frames) {
+            return (int) Math.round((double) frames * FORMAT.getSampleRate() / SOURCE_RATE);
+        }
+
+        @Override
+        public int getDelayFrames() {
+            return toOutputFrames(mDelay);
+        }
+
+        @Override
+        public int getPaddingFrames() {
+            return toOutputFrames(mPadding);
+        }
+    }
+
+    private static class RecordingListener implements GaplessPlaylist.Listener {
+        final List<Long> mStartFrames = new ArrayList<>();
+        final List<Integer> mFailed = new ArrayList<>();
+        Throwable mError;
+
+        @Override
+        public void onItemStarted(int index, PlaylistItem item, long startFrame) {
+            mStartFrames.add(startFrame);
+        }
+
+        @Override
+        public void onItemFailed(int index, PlaylistItem item, Throwable error) {
+            mFailed.add(index);
+            mError = error;
+        }
+    }
+
+    private static byte[] drain(PcmRingBuffer ring) throws InterruptedException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[100];
+        int n;
+        while ((n = ring.read(buffer, 0, buffer.length)) >= 0) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    @Test
+    public void splice_trimsDelayAndPaddingSampleAccurately() throws Exception {
+        PcmRingBuffer output = new PcmRingBuffer(512);
+        GaplessPlaylist playlist = new GaplessPlaylist(FORMAT, output, 256);
+        RecordingListener listener = new RecordingListener();
+        playlist.setListener(listener);
+        SyntheticItem[] items = {
+                new SyntheticItem(0, 1000, 100, 50),
+                new SyntheticItem(1, 3000, 0, 0),
+                new SyntheticItem(2, 800, 200, 300)};
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (SyntheticItem item : items) {
+            playlist.add(item);
+            item.appendExpected(expected);
+        }
+        new Thread(playlist).start();
+
+        assertArrayEquals(expected.toByteArray(), drain(output));
+        assertEquals(3, listener.mStartFrames.size());
+        assertEquals(0, (long) listener.mStartFrames.get(0));
+        assertEquals(850, (long) listener.mStartFrames.get(1));
+        assertEquals(3850, (long) listener.mStartFrames.get(2));
+        assertEquals(3850, playlist.getStartFrame(2));
+        assertTrue(listener.mFailed.isEmpty());
+    }
+
+    @Test
+    public void splice_rateConvertedItemIsAligned() throws Exception {
+        PcmRingBuffer output = new PcmRingBuffer(512);
+        GaplessPlaylist playlist = new GaplessPlaylist(FORMAT, output, 256);
+        RecordingListener listener = new RecordingListener();
+        playlist.setListener(listener);
+        SyntheticItem next = new SyntheticItem(1, 300, 0, 0);
+        playlist.add(new ConvertedItem(1160, 100, 60));
+        playlist.add(next);
+        new Thread(playlist).start();
+
+        ByteBuffer data = ByteBuffer.wrap(drain(output)).order(ByteOrder.LITTLE_ENDIAN);
+        // 去掉延迟和填充后是1000个源帧，即500个输出帧，下一项紧接其后
+        assertEquals(500, playlist.getStartFrame(1));
+        assertEquals((500 + 300) * 2, data.limit());
+        // 直流的起点和终点正好在拼接处，误差不到一帧；不补偿滤波器延迟时开头会多出约8帧静音
+        assertTrue(data.getShort(0) > ConvertedItem.LEVEL / 2);
+        assertTrue(data.getShort(499 * 2) > ConvertedItem.LEVEL / 2);
+        for (int frame = 20; frame < 480; frame++) {
+            assertEquals("frame " + frame, ConvertedItem.LEVEL, data.getShort(frame * 2), ConvertedItem.LEVEL / 50);
+        }
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        next.appendExpected(expected);
+        byte[] tail = new byte[300 * 2];
+        data.position(500 * 2);
+        data.get(tail);
+        assertArrayEquals(expected.toByteArray(), tail);
+    }
+
+    @Test
+    public void nextItem_startsWhileCurrentIsPlaying() throws Exception {
+        PcmRingBuffer output = new PcmRingBuffer(512);
+        GaplessPlaylist playlist = new GaplessPlaylist(FORMAT, output, 1024);
+        SyntheticItem first = new SyntheticItem(0, 2000, 0, 0);
+        SyntheticItem second = new SyntheticItem(1, 2000, 0, 0);
+        // 第一项写到一半后等第二项启动，没有预取时第一项永远写不完
+        first.mPauseAt = 1000;
+        first.mResume = second.mStarted;
+        playlist.add(first);
+        playlist.add(second);
+        new Thread(playlist).start();
+
+        byte[] data = drain(output);
+        assertFalse("first item was cancelled", first.mCancelledByConsumer);
+        assertEquals(4000 * 2, data.length);
+        assertEquals(2000, playlist.getStartFrame(1));
+    }
+
+    @Test
+    public void failedItem_isSkipped() throws Exception {
+        PcmRingBuffer output = new PcmRingBuffer(512);
+        GaplessPlaylist playlist = new GaplessPlaylist(FORMAT, output, 256);
+        RecordingListener listener = new RecordingListener();
+        playlist.setListener(listener);
+        SyntheticItem first = new SyntheticItem(0, 600, 10, 10);
+        SyntheticItem broken = new SyntheticItem(1, 600, 0, 0);
+        broken.mFailOnStart = true;
+        SyntheticItem last = new SyntheticItem(2, 700, 0, 0);
+        playlist.add(first);
+        playlist.add(broken);
+        playlist.add(last);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        first.appendExpected(expected);
+        last.appendExpected(expected);
+        new Thread(playlist).start();
+
+        assertArrayEquals(expected.toByteArray(), drain(output));
+        assertEquals(1, listener.mFailed.size());
+        assertEquals(1, (int) listener.mFailed.get(0));
+        assertTrue(listener.mError instanceof IOException);
+        assertEquals(-1, playlist.getStartFrame(1));
+        assertEquals(580, playlist.getStartFrame(2));
+    }
+
+    @Test
+    public void cancel_stopsCurrentAndPrefetchedProducers() throws Exception {
+        PcmRingBuffer output = new PcmRingBuffer(512);
+        GaplessPlaylist playlist = new GaplessPlaylist(FORMAT, output, 256);
+        SyntheticItem first = new SyntheticItem(0, 1000000, 0, 0);
+        SyntheticItem second = new SyntheticItem(1, 1000000, 0, 0);
+        playlist.add(first);
+        playlist.add(second);
+        Thread thread = new Thread(playlist);
+        thread.start();
+        assertTrue(second.mStarted.await(5, TimeUnit.SECONDS));
+        assertTrue(output.awaitReadable(512));
+        byte[] buffer = new byte[1000];
+        assertTrue(output.read(buffer, 0, buffer.length) > 0);
+
+        playlist.cancel();
+        thread.join(5000);
+        assertFalse(thread.isAlive());
+        assertTrue(first.mStopped.await(5, TimeUnit.SECONDS));
+        assertTrue(second.mStopped.await(5, TimeUnit.SECONDS));
+        assertTrue(first.mCancelledByConsumer);
+        assertTrue(second.mCancelledByConsumer);
+        assertEquals(-1, output.read(buffer, 0, buffer.length));
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.mediacodec.core.playback;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class JitterBufferControllerTest {
+    private static final int RATE = 48000;
+    private static final int BURST = 192;
+    private static final long MS = 1000000L;
+
+    /**
+     * 模拟播放：写入线程每毫秒运行一次，把缓冲补满到目标，但在供数停顿期间写不进数据；
+     * 音频硬件每个burst周期取走BURST帧，不够时欠载。时间以1ms为步长。
+     */
+    private static final class Simulation {
+        final JitterBufferController controller;
+        // 停顿的周期和长度（毫秒），周期为0表示没有停顿
+        long stallPeriodMs;
+        long stallMs;
+        // 停顿只发生在这个时间之前
+        long stallsEndMs = Long.MAX_VALUE;
+        long nowMs;
+        int buffered;
+        int underruns;
+        private long mNextTickNanos;
+
+        Simulation(JitterBufferController controller) {
+            this.controller = controller;
+        }
+
+        boolean stalled() {
+            return stallPeriodMs > 0 && nowMs < stallsEndMs && nowMs % stallPeriodMs < stallMs;
+        }
+
+        /**
+         * 运行ms毫秒，返回期间的欠载次数
+         */
+        int run(long ms) {
+            int before = underruns;
+            for (long end = nowMs + ms; nowMs < end; nowMs++) {
+                long now = nowMs * MS;
+                if (!stalled()) {
+                    controller.update(now, buffered);
+                    buffered = Math.max(buffered, controller.getTargetFrames());
+                }
+                while (mNextTickNanos <= now) {
+                    if (buffered >= BURST) {
+                        buffered -= BURST;
+                    } else {
+                        buffered = 0;
+                        underruns++;
+                        controller.onUnderrun(now);
+                    }
+                    mNextTickNanos += BURST * 1000000000L / RATE;
+                }
+                int target = controller.getTargetFrames();
+                assertTrue(target >= controller.getMinFrames() && target <= controller.getMaxFrames());
+                assertEquals(0, target % BURST);
+            }
+            return underruns - before;
+        }
+    }
+
+    private static JitterBufferController newController() {
+        return new JitterBufferController(RATE, BURST, 2 * BURST, RATE);
+    }
+
+    @Test
+    public void bounds_areRoundedToBursts() {
+        JitterBufferController controller = new JitterBufferController(RATE, BURST, 300, 1000);
+        assertEquals(384, controller.getMinFrames());
+        assertEquals(960, controller.getMaxFrames());
+        controller.setTargetFrames(500);
+        assertEquals(576, controller.getTargetFrames());
+        controller.setTargetFrames(100000);
+        assertEquals(960, controller.getTargetFrames());
+        assertEquals(20000, controller.getTargetUs());
+    }
+
+    @Test
+    public void steadyWriter_shrinksToMinimum() {
+        JitterBufferController controller = newController();
+        controller.setTargetFrames(RATE / 5);
+        Simulation sim = new Simulation(controller);
+        assertEquals(0, sim.run(60000));
+        assertEquals(controller.getMinFrames(), controller.getTargetFrames());
+    }
+
+    @Test
+    public void periodicStalls_growUntilUnderrunsStop() {
+        JitterBufferController controller = newController();
+        Simulation sim = new Simulation(controller);
+        // 每秒停顿30ms（1440帧）
+        sim.stallPeriodMs = 1000;
+        sim.stallMs = 30;
+        int early = sim.run(10000);
+        assertTrue(early > 0);
+        int late = sim.run(50000);
+        assertEquals(0, late);
+        int target = controller.getTargetFrames();
+        assertTrue("target " + target, target >= 30 * RATE / 1000);
+        // 不会无限增大，也不会在停顿之间缩回去
+        assertTrue("target " + target, target <= 2 * 30 * RATE / 1000);
+        assertEquals(early, controller.getUnderrunCount());
+    }
+
+    @Test
+    public void stallsStop_shrinksBackToMinimum() {
+        JitterBufferController controller = newController();
+        Simulation sim = new Simulation(controller);
+        sim.stallPeriodMs = 500;
+        sim.stallMs = 50;
+        sim.stallsEndMs = 20000;
+        sim.run(20000);
+        int grown = controller.getTargetFrames();
+        assertTrue(grown >= 50 * RATE / 1000);
+        assertEquals(0, sim.run(90000));
+        assertEquals(controller.getMinFrames(), controller.getTargetFrames());
+    }
+
+    @Test
+    public void longStall_isCappedAtMaximum() {
+        JitterBufferController controller = new JitterBufferController(RATE, BURST, 2 * BURST, RATE / 10);
+        Simulation sim = new Simulation(controller);
+        sim.stallPeriodMs = 2000;
+        sim.stallMs = 500;
+        sim.run(30000);
+        assertEquals(controller.getMaxFrames(), controller.getTargetFrames());
+    }
+
+    @Test
+    public void underrunsDuringHoldoff_doNotGrowAgain() {
+        JitterBufferController controller = newController();
+        assertTrue(controller.onUnderrun(0));
+        int target = controller.getTargetFrames();
+        assertEquals(3 * BURST, target);
+        // 3个burst = 12ms内的欠载不再增大
+        assertFalse(controller.onUnderrun(5 * MS));
+        assertFalse(controller.onUnderrun(11 * MS));
+        assertEquals(target, controller.getTargetFrames());
+        assertTrue(controller.onUnderrun(13 * MS));
+        assertEquals(4, controller.getUnderrunCount());
+    }
+}
@@ -0,0 +1,71 @@
+package com.example.mediacodec.core.segment;
+
+import com.example.mediacodec.core.io.AacSink;
+import com.example.mediacodec.core.job.JobContext;
+
+import java.nio.ByteBuffer;
+
+/**
+ * 模拟AAC编码器：有DELAY个采样的编码延迟，输出的第j帧覆盖输入中[起点 + j*1024 - DELAY, +1024)的采样。
+ * 帧内容为覆盖区间的全局起始采样位置，以及编码器中是否已有前一帧的输入（MDCT重叠所需的状态）。
+ * 一次编码整个文件和分段编码后拼接，只有在预热足够时结果才完全相同。
+ */
+class FakeSegmentEncoder implements SegmentEncoder {
+    static final int SAMPLES_PER_FRAME = 1024;
+    static final int DELAY = 1024;
+
+    private final int mFrameSize;
+    private volatile int mMaxConcurrent;
+    private int mRunning;
+
+    /**
+     * @param frameSize 每个输出帧的字节数，至少9
+     */
+    FakeSegmentEncoder(int frameSize) {
+        this.mFrameSize = frameSize;
+    }
+
+    /**
+     * 一次编码[0, totalFrames)时的全部输出帧数
+     */
+    static long frameCount(long totalFrames) {
+        return (totalFrames + DELAY + SAMPLES_PER_FRAME - 1) / SAMPLES_PER_FRAME;
+    }
+
+    static long frameTimeUs(long sample) {
+        return sample * 1000000L / 44100;
+    }
+
+    int getMaxConcurrent() {
+        return mMaxConcurrent;
+    }
+
+    @Override
+    public void encode(Segment segment, AacSink output, JobContext context) throws Exception {
+        synchronized (this) {
+            mRunning++;
+            mMaxConcurrent = Math.max(mMaxConcurrent, mRunning);
+        }
+        try {
+            long start = segment.getInputStartFrame();
+            long frames = frameCount(segment.getInputEndFrame() - start);
+            ByteBuffer frame = ByteBuffer.allocate(mFrameSize);
+            for (long j = 0; j < frames && !context.isCancelled(); j++) {
+                long sample = start + j * SAMPLES_PER_FRAME - DELAY;
+                frame.clear();
+                frame.putLong(sample);
+                frame.put((byte) (j > 0 || start == 0 ? 1 : 0));
+                frame.position(0);
+                output.writeFrame(frame, frameTimeUs(start + j * SAMPLES_PER_FRAME));
+                if (j % 16 == 0) {
+                    // 让其他段的线程有机会交错执行
+                    Thread.yield();
+                }
+            }
+        } finally {
+            synchronized (this) {
+                mRunning--;
+            }
+        }
+    }
+}
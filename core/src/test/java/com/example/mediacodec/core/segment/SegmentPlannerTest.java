@@ -0,0 +1,64 @@
+package com.example.mediacodec.core.segment;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class SegmentPlannerTest {
+
+    @Test
+    public void plan_coversInputWithFrameAlignedSegments() {
+        long totalFrames = 1000L * 1024 + 333;
+        List<Segment> segments = SegmentPlanner.plan(totalFrames, 100 * 1024, 1024, 4);
+        assertEquals(10, segments.size());
+        long owned = 0;
+        for (int i = 0; i < segments.size(); i++) {
+            Segment segment = segments.get(i);
+            assertEquals(i, segment.getIndex());
+            assertEquals(0, segment.getInputStartFrame() % 1024);
+            // 预热部分紧接在前一段所属区间的末尾之前
+            assertEquals(owned * 1024, segment.getInputStartFrame() + segment.getSkipFrames() * 1024L);
+            assertEquals(i == 0 ? 0 : 4, segment.getSkipFrames());
+            if (segment.isLast()) {
+                assertEquals(totalFrames, segment.getInputEndFrame());
+            } else {
+                assertEquals(100, segment.getKeepFrames());
+                assertEquals((owned + segment.getKeepFrames()) * 1024, segment.getInputEndFrame());
+                owned += segment.getKeepFrames();
+            }
+        }
+        assertTrue(segments.get(segments.size() - 1).isLast());
+    }
+
+    @Test
+    public void plan_mergesShortTailIntoLastSegment() {
+        // 1030帧：最后30帧不足半段，并入第10段
+        List<Segment> segments = SegmentPlanner.plan(1030L * 1024, 100 * 1024, 1024, 2);
+        assertEquals(10, segments.size());
+        Segment last = segments.get(9);
+        assertEquals((900 - 2) * 1024, last.getInputStartFrame());
+        assertEquals(1030L * 1024, last.getInputEndFrame());
+    }
+
+    @Test
+    public void plan_smallInputIsSingleSegment() {
+        List<Segment> segments = SegmentPlanner.plan(5000, 100 * 1024, 1024, 4);
+        assertEquals(1, segments.size());
+        assertEquals(0, segments.get(0).getInputStartFrame());
+        assertEquals(0, segments.get(0).getSkipFrames());
+        assertTrue(segments.get(0).isLast());
+
+        segments = SegmentPlanner.plan(0, 100, 1024, 4);
+        assertEquals(1, segments.size());
+        assertEquals(0, segments.get(0).getInputEndFrame());
+    }
+
+    @Test
+    public void plan_segmentsAreAtLeastTwicePriming() {
+        List<Segment> segments = SegmentPlanner.plan(100 * 1024, 1, 1024, 4);
+        assertEquals(13, segments.size());
+        assertEquals(8, segments.get(0).getKeepFrames());
+    }
+}
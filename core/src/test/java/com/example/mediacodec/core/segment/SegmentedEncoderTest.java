@@ -0,0 +1,279 @@
+package com.example.mediacodec.core.segment;
+
+import com.example.mediacodec.core.codec.CodecBudget;
+import com.example.mediacodec.core.io.AacSink;
+import com.example.mediacodec.core.job.JobContext;
+import com.example.mediacodec.core.metrics.TranscodeMetrics;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class SegmentedEncoderTest {
+
+    private static class RecordingSink implements AacSink {
+        final List<Long> mSamples = new ArrayList<>();
+        final List<Long> mTimes = new ArrayList<>();
+        ByteBuffer mConfig;
+        int mConfigCalls;
+        int mFailAfter = -1;
+
+        @Override
+        public void setAudioSpecificConfig(ByteBuffer config) {
+            mConfig = config;
+            mConfigCalls++;
+        }
+
+        @Override
+        public void writeFrame(ByteBuffer frame, long presentationTimeUs) throws IOException {
+            if (mSamples.size() == mFailAfter) {
+                throw new IOException("disk full");
+            }
+            long sample = frame.getLong();
+            // 保留的帧都必须有前一帧的输入，否则说明预热不够
+            assertEquals("frame at sample " + sample, 1, frame.get());
+            frame.position(frame.limit());
+            mSamples.add(sample);
+            mTimes.add(presentationTimeUs);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static class Context implements JobContext {
+        volatile boolean mCancelled;
+        long mDone;
+        long mTotal;
+
+        @Override
+        public boolean isCancelled() {
+            return mCancelled;
+        }
+
+        @Override
+        public void setProgress(long done, long total) {
+            assertTrue(done >= mDone);
+            mDone = done;
+            mTotal = total;
+        }
+
+        @Override
+        public void setMetrics(TranscodeMetrics metrics) {
+        }
+    }
+
+    private static void assertSameAsSingleEncode(long totalFrames, RecordingSink sink) {
+        long frames = FakeSegmentEncoder.frameCount(totalFrames);
+        assertEquals(frames, sink.mSamples.size());
+        for (int k = 0; k < frames; k++) {
+            long sample = (long) k * FakeSegmentEncoder.SAMPLES_PER_FRAME - FakeSegmentEncoder.DELAY;
+            assertEquals(sample, sink.mSamples.get(k).longValue());
+            assertEquals(FakeSegmentEncoder.frameTimeUs(sample + FakeSegmentEncoder.DELAY), sink.mTimes.get(k).longValue());
+        }
+    }
+
+    @Test
+    public void run_stitchesSegmentsInOrder() throws Exception {
+        for (int parallelism : new int[]{1, 2, 4}) {
+            long totalFrames = 1000L * 1024 + 333;
+            List<Segment> segments = SegmentPlanner.plan(totalFrames, 40 * 1024, 1024, 2);
+            assertTrue(segments.size() > 10);
+            FakeSegmentEncoder encoder = new FakeSegmentEncoder(32);
+            RecordingSink sink = new RecordingSink();
+            Context context = new Context();
+            SegmentedEncoder segmented = new SegmentedEncoder(encoder, parallelism);
+            segmented.run(segments, sink, context);
+            assertSameAsSingleEncode(totalFrames, sink);
+            assertEquals(sink.mSamples.size(), segmented.getFramesWritten());
+            assertEquals(segments.size(), context.mDone);
+            assertEquals(segments.size(), context.mTotal);
+            assertTrue(encoder.getMaxConcurrent() <= parallelism);
+        }
+    }
+
+    @Test
+    public void codecBudget_limitsConcurrentEncoders() throws Exception {
+        final FakeSegmentEncoder fake = new FakeSegmentEncoder(16);
+        final CodecBudget budget = new CodecBudget(2);
+        final AtomicInteger running = new AtomicInteger();
+        final AtomicInteger maxRunning = new AtomicInteger();
+        SegmentEncoder encoder = new SegmentEncoder() {
+            @Override
+            public void encode(Segment segment, AacSink output, JobContext context) throws Exception {
+                int now = running.incrementAndGet();
+                while (true) {
+                    int max = maxRunning.get();
+                    if (now <= max || maxRunning.compareAndSet(max, now)) {
+                        break;
+                    }
+                }
+                try {
+                    Thread.sleep(20);
+                    fake.encode(segment, output, context);
+                } finally {
+                    running.decrementAndGet();
+                }
+            }
+        };
+        SegmentedEncoder segmented = new SegmentedEncoder(encoder, 4);
+        segmented.setCodecBudget(budget);
+        RecordingSink sink = new RecordingSink();
+        segmented.run(SegmentPlanner.plan(200 * 1024, 20 * 1024, 1024, 2), sink, new Context());
+        assertSameAsSingleEncode(200 * 1024, sink);
+        // 4个线程，但同时最多只有2个编码器
+        assertEquals(2, maxRunning.get());
+        assertEquals(2, budget.getAvailable());
+    }
+
+    @Test
+    public void run_forwardsOnlyFirstSegmentConfig() throws Exception {
+        SegmentEncoder encoder = new SegmentEncoder() {
+            @Override
+            public void encode(Segment segment, AacSink output, JobContext context) throws Exception {
+                output.setAudioSpecificConfig(ByteBuffer.wrap(new byte[]{(byte) segment.getIndex()}));
+            }
+        };
+        RecordingSink sink = new RecordingSink();
+        new SegmentedEncoder(encoder, 2).run(SegmentPlanner.plan(100 * 1024, 20 * 1024, 1024, 2), sink, new Context());
+        assertEquals(1, sink.mConfigCalls);
+        assertEquals(0, sink.mConfig.get(0));
+    }
+
+    @Test
+    public void run_failingSegmentCancelsOthersAndRethrows() throws Exception {
+        final FakeSegmentEncoder fake = new FakeSegmentEncoder(16);
+        SegmentEncoder encoder = new SegmentEncoder() {
+            @Override
+            public void encode(Segment segment, AacSink output, JobContext context) throws Exception {
+                if (segment.getIndex() == 3) {
+                    throw new IllegalStateException("codec error");
+                }
+                fake.encode(segment, output, context);
+            }
+        };
+        RecordingSink sink = new RecordingSink();
+        try {
+            new SegmentedEncoder(encoder, 2).run(SegmentPlanner.plan(200 * 1024, 10 * 1024, 1024, 2),
+                    sink, new Context());
+            fail();
+        } catch (IllegalStateException e) {
+            assertEquals("codec error", e.getMessage());
+        }
+    }
+
+    @Test
+    public void interrupt_waitsForRunningSegments() throws Exception {
+        final FakeSegmentEncoder fake = new FakeSegmentEncoder(16);
+        final CountDownLatch started = new CountDownLatch(1);
+        final AtomicBoolean slowFinished = new AtomicBoolean();
+        final Throwable[] slowError = new Throwable[1];
+        final SegmentEncoder encoder = new SegmentEncoder() {
+            @Override
+            public void encode(Segment segment, AacSink output, JobContext context) throws Exception {
+                started.countDown();
+                // 不响应中断，模拟还在写出数据的编码器
+                long end = System.nanoTime() + 200000000L;
+                while (System.nanoTime() < end) {
+                    Thread.yield();
+                }
+                try {
+                    fake.encode(segment, output, context);
+                } catch (Throwable t) {
+                    slowError[0] = t;
+                } finally {
+                    slowFinished.set(true);
+                }
+            }
+        };
+        final AtomicBoolean finishedWhenReturned = new AtomicBoolean();
+        final Throwable[] runError = new Throwable[1];
+        Thread runner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    new SegmentedEncoder(encoder, 2).run(SegmentPlanner.plan(40 * 1024, 20 * 1024, 1024, 2),
+                            new RecordingSink(), new Context());
+                } catch (Throwable t) {
+                    runError[0] = t;
+                }
+                finishedWhenReturned.set(slowFinished.get());
+            }
+        });
+        runner.start();
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        runner.interrupt();
+        runner.join(5000);
+        assertFalse(runner.isAlive());
+        assertTrue(runError[0] instanceof InterruptedException);
+        // 返回时编码线程都已结束，没有访问到已清理的sink
+        assertTrue(finishedWhenReturned.get());
+        assertNull(slowError[0]);
+    }
+
+    @Test
+    public void run_sinkErrorIsRethrown() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        sink.mFailAfter = 50;
+        try {
+            new SegmentedEncoder(new FakeSegmentEncoder(16), 3).run(
+                    SegmentPlanner.plan(300 * 1024, 20 * 1024, 1024, 2), sink, new Context());
+            fail();
+        } catch (IOException e) {
+            assertEquals("disk full", e.getMessage());
+        }
+        assertEquals(50, sink.mSamples.size());
+    }
+
+    @Test
+    public void run_cancelledBeforeStartWritesNothing() throws Exception {
+        RecordingSink sink = new RecordingSink();
+        Context context = new Context();
+        context.mCancelled = true;
+        new SegmentedEncoder(new FakeSegmentEncoder(16), 2).run(
+                SegmentPlanner.plan(100 * 1024, 20 * 1024, 1024, 2), sink, context);
+        assertEquals(0, sink.mSamples.size());
+    }
+
+    @Test
+    public void run_remainingSegmentsContinueWhereListenerReported() throws Exception {
+        long totalFrames = 300L * 1024 + 77;
+        final List<Segment> segments = SegmentPlanner.plan(totalFrames, 20 * 1024, 1024, 2);
+        final RecordingSink full = new RecordingSink();
+        final List<Integer> written = new ArrayList<>();
+        final List<Integer> framesAtWritten = new ArrayList<>();
+        SegmentedEncoder segmented = new SegmentedEncoder(new FakeSegmentEncoder(16), 3);
+        segmented.setListener(new SegmentedEncoder.Listener() {
+            @Override
+            public void onSegmentWritten(Segment segment) {
+                written.add(segment.getIndex());
+                framesAtWritten.add(full.mSamples.size());
+            }
+        });
+        segmented.run(segments, full, new Context());
+        assertSameAsSingleEncode(totalFrames, full);
+        assertEquals(segments.size(), written.size());
+        for (int i = 0; i < written.size(); i++) {
+            assertEquals(i, (int) written.get(i));
+        }
+
+        // 从第k段续接：输出接在第k-1段写完时的位置之后
+        for (int k : new int[]{1, segments.size() / 2, segments.size() - 1}) {
+            RecordingSink rest = new RecordingSink();
+            new SegmentedEncoder(new FakeSegmentEncoder(16), 2).run(segments.subList(k, segments.size()),
+                    rest, new Context());
+            int from = framesAtWritten.get(k - 1);
+            assertEquals(full.mSamples.subList(from, full.mSamples.size()), rest.mSamples);
+        }
+    }
+}
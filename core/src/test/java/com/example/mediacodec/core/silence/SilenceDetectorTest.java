@@ -0,0 +1,174 @@
+package com.example.mediacodec.core.silence;
+
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class SilenceDetectorTest {
+    // 采样率1000，10ms窗口为10帧，帧数即毫秒数
+    private static final PcmFormat FORMAT = new PcmFormat(1000, 2);
+
+    /**
+     * 按段生成PCM：每段{时长(ms), 电平(dBFS RMS)}，电平为null表示数字静音。方波使RMS电平准确
+     */
+    private static ByteBuffer pcm(double[]... parts) {
+        int frames = 0;
+        for (double[] part : parts) {
+            frames += (int) part[0];
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(frames * FORMAT.getBytesPerFrame()).order(ByteOrder.LITTLE_ENDIAN);
+        for (double[] part : parts) {
+            short amplitude = part.length > 1 ? (short) Math.round(32768 * Math.pow(10, part[1] / 20)) : 0;
+            for (int f = 0; f < (int) part[0]; f++) {
+                short value = (short) (f % 2 == 0 ? amplitude : -amplitude);
+                buffer.putShort(value).putShort(value);
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static double[] sound(double ms) {
+        return new double[]{ms, -20};
+    }
+
+    private static double[] silence(double ms) {
+        return new double[]{ms};
+    }
+
+    /**
+     * 按chunk字节分块送入
+     */
+    private static SilenceMap detect(SilenceTrimOptions options, ByteBuffer pcm, int chunk) {
+        SilenceDetector detector = options.newDetector(FORMAT);
+        for (int position = 0; position < pcm.limit(); position += chunk) {
+            ByteBuffer slice = pcm.duplicate().order(pcm.order());
+            slice.position(position);
+            slice.limit(Math.min(pcm.limit(), position + chunk));
+            detector.accept(slice);
+            assertEquals(position, slice.position());
+        }
+        return detector.finish();
+    }
+
+    private static void assertRanges(SilenceMap map, long... ranges) {
+        assertEquals(ranges.length / 2, map.getRangeCount());
+        for (int i = 0; i < map.getRangeCount(); i++) {
+            assertEquals("start " + i, ranges[i * 2], map.getStartFrame(i));
+            assertEquals("end " + i, ranges[i * 2 + 1], map.getEndFrame(i));
+        }
+    }
+
+    @Test
+    public void detect_readsLittleEndianRegardlessOfBufferOrder() {
+        // -80dBFS的采样值只有3，按大端读成768（约-33dBFS）就不是静音了
+        ByteBuffer pcm = pcm(new double[]{300, -80}, sound(1000), new double[]{500, -80});
+        SilenceMap map = detect(SilenceTrimOptions.DEFAULT, pcm.duplicate().order(ByteOrder.BIG_ENDIAN), 36);
+        assertRanges(map, 0, 300, 1300, 1800);
+    }
+
+    @Test
+    public void detect_findsLeadingInternalAndTrailingSilence() {
+        ByteBuffer pcm = pcm(silence(300), sound(1000), silence(200), sound(500), silence(2000), sound(400),
+                silence(150));
+        for (int chunk : new int[]{4, 36, 4000, pcm.limit()}) {
+            SilenceMap map = detect(SilenceTrimOptions.DEFAULT, pcm, chunk);
+            // 200ms的停顿短于最短静音时长，不记录；开头和结尾的静音不论长短
+            assertRanges(map, 0, 300, 2000, 4000, 4400, 4550);
+            assertEquals(4550, map.getTotalFrames());
+            assertEquals(300 + 2000 + 150, map.getSilentFrames());
+        }
+    }
+
+    @Test
+    public void detect_hysteresisKeepsStateInBetweenThresholds() {
+        // -53dB低于门限，-47dB介于门限和门限加回差之间：静音中保持静音，声音中保持声音
+        SilenceMap map = detect(SilenceTrimOptions.DEFAULT,
+                pcm(sound(500), new double[]{600, -53}, new double[]{300, -47}, new double[]{600, -53},
+                        new double[]{700, -47}, sound(500)), 100);
+        assertRanges(map, 500, 2700);
+
+        // 从声音降到门限和回差之间不算静音
+        map = detect(SilenceTrimOptions.DEFAULT, pcm(sound(500), new double[]{2000, -47}, sound(500)), 100);
+        assertRanges(map);
+    }
+
+    @Test
+    public void detect_everythingSilent() {
+        SilenceMap map = detect(SilenceTrimOptions.DEFAULT, pcm(silence(1234)), 64);
+        assertRanges(map, 0, 1234);
+        assertRanges(detect(SilenceTrimOptions.DEFAULT, pcm(sound(1234)), 64));
+    }
+
+    @Test
+    public void trim_removesAndCompresses() {
+        SilenceMap map = detect(SilenceTrimOptions.DEFAULT,
+                pcm(silence(300), sound(1000), silence(200), sound(500), silence(2000), sound(400), silence(150)), 400);
+        // 默认保留200ms padding，中间的静音压缩到1000ms；结尾的静音不比padding长，不裁剪
+        TrimPlan plan = map.trim(SilenceTrimOptions.DEFAULT);
+        assertEquals(2, plan.getRemovedCount());
+        assertEquals(0, plan.getRemovedStart(0));
+        assertEquals(100, plan.getRemovedEnd(0));
+        assertEquals(2500, plan.getRemovedStart(1));
+        assertEquals(3500, plan.getRemovedEnd(1));
+        assertEquals(4550 - 100 - 1000, plan.getOutputFrames());
+        assertEquals(2, plan.getKeptCount());
+        assertEquals(0, plan.toOutputFrame(100));
+        assertEquals(0, plan.toOutputFrame(50));
+        assertEquals(100, plan.toSourceFrame(0));
+        assertEquals(2499, plan.toSourceFrame(2399));
+        assertEquals(3500, plan.toSourceFrame(2400));
+        assertEquals(2400, plan.toOutputFrame(3000));
+        assertEquals(4550, plan.toSourceFrame(plan.getOutputFrames()));
+
+        // 只裁剪结尾，不压缩中间
+        TrimPlan trailing = map.trim(new SilenceTrimOptions.Builder().setTrimLeading(false)
+                .setMaxGapMs(SilenceTrimOptions.KEEP_GAPS).setPaddingMs(0).build());
+        assertEquals(1, trailing.getRemovedCount());
+        assertEquals(4400, trailing.getOutputFrames());
+
+        SilenceTrimOptions none = new SilenceTrimOptions.Builder().setTrimLeading(false).setTrimTrailing(false)
+                .setMaxGapMs(SilenceTrimOptions.KEEP_GAPS).build();
+        assertTrue(map.trim(none).isIdentity());
+    }
+
+    @Test
+    public void trim_everythingSilentKeepsPadding() {
+        TrimPlan plan = detect(SilenceTrimOptions.DEFAULT, pcm(silence(1234)), 64).trim(SilenceTrimOptions.DEFAULT);
+        assertEquals(200, plan.getOutputFrames());
+        assertEquals(0, plan.getKeptStart(0));
+    }
+
+    @Test
+    public void json_describesRemovedRanges() throws Exception {
+        SilenceMap map = detect(SilenceTrimOptions.DEFAULT, pcm(silence(300), sound(1000), silence(2000),
+                sound(100)), 400);
+        TrimPlan plan = map.trim(SilenceTrimOptions.DEFAULT);
+        String expected = "{\"sampleRate\":1000,\"channels\":2,\"sourceFrames\":3400,\"sourceUs\":3400000,"
+                + "\"outputFrames\":2300,\"outputUs\":2300000,\"removed\":["
+                + "{\"reason\":\"leading\",\"startFrame\":0,\"endFrame\":100,\"startUs\":0,\"endUs\":100000,"
+                + "\"outputFrame\":0,\"outputUs\":0},"
+                + "{\"reason\":\"gap\",\"startFrame\":1800,\"endFrame\":2800,\"startUs\":1800000,\"endUs\":2800000,"
+                + "\"outputFrame\":1700,\"outputUs\":1700000}]}";
+        assertEquals(expected, plan.toJson());
+
+        File file = File.createTempFile("silence", ".json");
+        try {
+            plan.saveJson(file);
+            byte[] bytes = new byte[(int) file.length()];
+            FileInputStream in = new FileInputStream(file);
+            assertEquals(bytes.length, in.read(bytes));
+            in.close();
+            assertEquals(expected, new String(bytes, "UTF-8"));
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.example.mediacodec.core.silence;
+
+import com.example.mediacodec.core.pcm.MappedPcmSource;
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class TrimmedPcmSourceTest {
+    private static final PcmFormat MONO = new PcmFormat(1000, 1);
+
+    private File mFile;
+
+    @Before
+    public void setUp() throws Exception {
+        mFile = File.createTempFile("trim", ".pcm");
+        // 1000帧单声道，每帧的值就是帧号（大端，与映射的视图相同）
+        ByteBuffer pcm = ByteBuffer.allocate(2000);
+        for (int i = 0; i < 1000; i++) {
+            pcm.putShort((short) i);
+        }
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(pcm.array());
+        out.close();
+    }
+
+    @After
+    public void tearDown() {
+        mFile.delete();
+    }
+
+    private TrimmedPcmSource open(TrimPlan plan) throws Exception {
+        // 窗口256字节，读取跨越窗口和保留段的边界
+        return new TrimmedPcmSource(new MappedPcmSource(new RandomAccessFile(mFile, "r").getChannel(), MONO,
+                256, 0), plan);
+    }
+
+    private static TrimPlan plan(long... removed) {
+        return new TrimPlan(MONO, 1000, removed, new int[removed.length / 2]);
+    }
+
+    /**
+     * 从当前位置读完，返回读到的帧号
+     */
+    private static int[] readAll(TrimmedPcmSource source, int maxBytes) throws Exception {
+        int[] frames = new int[(int) (source.getFrameCount() - source.getFramePosition())];
+        int count = 0;
+        ByteBuffer data;
+        while ((data = source.next(maxBytes)) != null) {
+            while (data.hasRemaining()) {
+                frames[count++] = data.getShort();
+            }
+            assertEquals(count, source.getFramePosition() - (source.getFrameCount() - frames.length));
+        }
+        assertEquals(frames.length, count);
+        return frames;
+    }
+
+    @Test
+    public void next_skipsRemovedRanges() throws Exception {
+        TrimPlan plan = plan(0, 100, 300, 650, 990, 1000);
+        assertEquals(540, plan.getOutputFrames());
+        for (int maxBytes : new int[]{2, 58, 1000, 4000}) {
+            TrimmedPcmSource source = open(plan);
+            assertEquals(540, source.getFrameCount());
+            int[] frames = readAll(source, maxBytes);
+            for (int i = 0; i < frames.length; i++) {
+                assertEquals(i < 200 ? 100 + i : 650 + i - 200, frames[i]);
+            }
+            source.close();
+        }
+    }
+
+    @Test
+    public void seekToFrame_mapsOutputPosition() throws Exception {
+        TrimmedPcmSource source = open(plan(0, 100, 300, 650, 990, 1000));
+        source.seekToFrame(200);
+        assertEquals(650, readAll(source, 60)[0]);
+        source.seekToFrame(199);
+        int[] frames = readAll(source, 60);
+        assertEquals(299, frames[0]);
+        assertEquals(650, frames[1]);
+        source.seekToFrame(540);
+        assertNull(source.next(60));
+        source.close();
+    }
+
+    @Test
+    public void identityPlan_readsEverything() throws Exception {
+        TrimmedPcmSource source = open(TrimPlan.identity(MONO, 1000));
+        int[] frames = readAll(source, 300);
+        assertEquals(1000, frames.length);
+        assertEquals(999, frames[999]);
+        source.close();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void mismatchedPlan_isRejected() throws Exception {
+        open(TrimPlan.identity(MONO, 999));
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.mediacodec.core.waveform;
+
+import com.example.mediacodec.core.pcm.PcmFormat;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class PeakPyramidTest {
+    private static final PcmFormat FORMAT = new PcmFormat(8000, 2);
+    private static final int BLOCK = 64;
+
+    private File mDir;
+
+    @Before
+    public void setUp() throws Exception {
+        mDir = File.createTempFile("peaks", "");
+        mDir.delete();
+        mDir.mkdirs();
+    }
+
+    @After
+    public void tearDown() {
+        File[] files = mDir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        mDir.delete();
+    }
+
+    private static short[] signal(int frames) {
+        Random random = new Random(7);
+        short[] samples = new short[frames * FORMAT.getChannelCount()];
+        for (int i = 0; i < samples.length; i++) {
+            double envelope = 0.2 + 0.8 * Math.abs(Math.sin(i * 0.0007));
+            samples[i] = (short) (envelope * (random.nextInt(65536) - 32768));
+        }
+        return samples;
+    }
+
+    /**
+     * 按随机大小（不按帧对齐）的块送入accumulator
+     */
+    private static PeakPyramid accumulate(short[] samples, int seed) {
+        ByteBuffer pcm = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (short sample : samples) {
+            pcm.putShort(sample);
+        }
+        PeakAccumulator accumulator = new PeakAccumulator(FORMAT, BLOCK, 1000);
+        Random random = new Random(seed);
+        int position = 0;
+        while (position < pcm.capacity()) {
+            int end = Math.min(pcm.capacity(), position + 2 * (1 + random.nextInt(500)));
+            pcm.limit(end).position(position);
+            // 大端的buffer也按小端读取，并且不改变position
+            pcm.order(ByteOrder.BIG_ENDIAN);
+            accumulator.accept(pcm);
+            assertEquals(position, pcm.position());
+            assertEquals(ByteOrder.BIG_ENDIAN, pcm.order());
+            pcm.order(ByteOrder.LITTLE_ENDIAN);
+            position = end;
+        }
+        assertEquals(samples.length / FORMAT.getChannelCount(), accumulator.getTotalFrames());
+        return accumulator.finish();
+    }
+
+    private static void assertBlock(short[] samples, long fromFrame, long toFrame, PeakPyramid pyramid,
+                                    int level, int block) {
+        int channels = FORMAT.getChannelCount();
+        int min = Short.MAX_VALUE;
+        int max = Short.MIN_VALUE;
+        double sumSquares = 0;
+        for (long i = fromFrame * channels; i < toFrame * channels; i++) {
+            min = Math.min(min, samples[(int) i]);
+            max = Math.max(max, samples[(int) i]);
+            sumSquares += (double) samples[(int) i] * samples[(int) i];
+        }
+        double rms = Math.sqrt(sumSquares / ((toFrame - fromFrame) * channels));
+        String where = "level " + level + " block " + block;
+        assertEquals(where, min, pyramid.getMin(level, block));
+        assertEquals(where, max, pyramid.getMax(level, block));
+        //各层的RMS由下一层舍入后的值合并
+        assertEquals(where, rms, pyramid.getRms(level, block), 1.0 + level);
+    }
+
+    @Test
+    public void accumulate_matchesBruteForceAtEveryLevel() {
+        int frames = BLOCK * 37 + 21;
+        short[] samples = signal(frames);
+        PeakPyramid pyramid = accumulate(samples, 1);
+
+        assertEquals(frames, pyramid.getTotalFrames());
+        // 38、19、10、5、3、2、1块
+        assertEquals(7, pyramid.getLevelCount());
+        assertEquals(38, pyramid.getBlockCount(0));
+        assertEquals(3, pyramid.getBlockCount(4));
+        assertEquals(1, pyramid.getBlockCount(6));
+        for (int level = 0; level < pyramid.getLevelCount(); level++) {
+            long blockFrames = pyramid.getBlockFrames(level);
+            for (int block = 0; block < pyramid.getBlockCount(level); block++) {
+                long from = block * blockFrames;
+                assertBlock(samples, from, Math.min(frames, from + blockFrames), pyramid, level, block);
+            }
+        }
+    }
+
+    @Test
+    public void accumulate_isIndependentOfChunking() {
+        short[] samples = signal(BLOCK * 100 + 3);
+        PeakPyramid a = accumulate(samples, 1);
+        PeakPyramid b = accumulate(samples, 2);
+        assertEquals(a.getLevelCount(), b.getLevelCount());
+        for (int level = 0; level < a.getLevelCount(); level++) {
+            for (int block = 0; block < a.getBlockCount(level); block++) {
+                assertEquals(a.getMin(level, block), b.getMin(level, block));
+                assertEquals(a.getMax(level, block), b.getMax(level, block));
+                assertEquals(a.getRms(level, block), b.getRms(level, block));
+            }
+        }
+    }
+
+    @Test
+    public void reset_reusesAccumulator() {
+        short[] samples = signal(BLOCK * 10);
+        ByteBuffer pcm = ByteBuffer.allocate(samples.length * 2).order(ByteOrder.LITTLE_ENDIAN);
+        for (short sample : samples) {
+            pcm.putShort(sample);
+        }
+        pcm.flip();
+        PeakAccumulator accumulator = new PeakAccumulator(FORMAT, BLOCK, 0);
+        accumulator.accept(pcm);
+        accumulator.finish();
+        accumulator.reset();
+        assertNull(accumulator.finish());
+        accumulator.accept(pcm);
+        PeakPyramid pyramid = accumulator.finish();
+        assertEquals(BLOCK * 10, pyramid.getTotalFrames());
+        assertEquals(10, pyramid.getBlockCount(0));
+        assertBlock(samples, 0, BLOCK * 10, pyramid, pyramid.getLevelCount() - 1, 0);
+    }
+
+    @Test
+    public void render_usesLevelMatchingZoom() {
+        int frames = BLOCK * 64;
+        short[] samples = signal(frames);
+        PeakPyramid pyramid = accumulate(samples, 3);
+        short[] min = new short[16];
+        short[] max = new short[16];
+        short[] rms = new short[16];
+
+        // 每列256帧，正好是第2层的一块
+        assertEquals(2, pyramid.selectLevel(256));
+        pyramid.render(0, frames, 16, min, max, rms);
+        for (int i = 0; i < 16; i++) {
+            assertEquals(pyramid.getMin(2, i), min[i]);
+            assertEquals(pyramid.getMax(2, i), max[i]);
+            assertEquals(pyramid.getRms(2, i), rms[i]);
+        }
+
+        // 放大到一列不足一块：列所在的第0层块
+        pyramid.render(BLOCK * 3, BLOCK * 3 + 16, 16, min, max, rms);
+        for (int i = 0; i < 16; i++) {
+            assertEquals(pyramid.getMin(0, 3), min[i]);
+            assertEquals(pyramid.getMax(0, 3), max[i]);
+        }
+
+        // 超出末尾的列为0
+        pyramid.render(frames - BLOCK * 8, frames + BLOCK * 8, 16, min, max, rms);
+        assertEquals(pyramid.getMax(0, 56), max[0]);
+        assertEquals(0, min[15]);
+        assertEquals(0, max[15]);
+        assertEquals(0, rms[15]);
+    }
+
+    @Test
+    public void sidecar_roundTripAndStaleness() throws Exception {
+        File audio = new File(mDir, "a.aac");
+        FileOutputStream out = new FileOutputStream(audio);
+        out.write(new byte[1000]);
+        out.close();
+        short[] samples = signal(BLOCK * 50 + 10);
+        PeakPyramid pyramid = accumulate(samples, 1);
+        assertNull(PeakPyramid.load(audio));
+        pyramid.save(audio);
+
+        PeakPyramid loaded = PeakPyramid.load(audio);
+        assertNotNull(loaded);
+        assertEquals(FORMAT, loaded.getFormat());
+        assertEquals(pyramid.getTotalFrames(), loaded.getTotalFrames());
+        assertEquals(pyramid.getLevelCount(), loaded.getLevelCount());
+        for (int level = 0; level < pyramid.getLevelCount(); level++) {
+            for (int block = 0; block < pyramid.getBlockCount(level); block++) {
+                assertEquals(pyramid.getMin(level, block), loaded.getMin(level, block));
+                assertEquals(pyramid.getMax(level, block), loaded.getMax(level, block));
+                assertEquals(pyramid.getRms(level, block), loaded.getRms(level, block));
+            }
+        }
+        assertFalse(new File(mDir, "a.aac" + PeakPyramid.SIDECAR_SUFFIX + ".tmp").exists());
+
+        // 截断的sidecar
+        File sidecar = PeakPyramid.sidecarFile(audio);
+        RandomAccessFile file = new RandomAccessFile(sidecar, "rw");
+        file.setLength(file.length() - 3);
+        file.close();
+        assertNull(PeakPyramid.load(audio));
+
+        // 源文件改变后sidecar失效
+        pyramid.save(audio);
+        assertNotNull(PeakPyramid.load(audio));
+        appendByte(audio);
+        assertNull(PeakPyramid.load(audio));
+    }
+
+    private static void appendByte(File file) throws IOException {
+        FileOutputStream out = new FileOutputStream(file, true);
+        try {
+            out.write(1);
+        } finally {
+            out.close();
+        }
+    }
+}